@@ -0,0 +1,108 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archiver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.io.CounterOutputStream;
+import com.mucommander.commons.io.SinkOutputStream;
+import com.mucommander.commons.io.StreamUtils;
+import com.mucommander.commons.io.TestData;
+
+/**
+ * Measures the time it takes the single and multi-threaded archivers to compress a 16 MB file, to be compared
+ * across the values of {@link #nbThreads}. Run with <code>./gradlew :mucommander-archiver:jmh</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ArchiverBenchmark {
+
+    /** Size of the archived file */
+    private final static int FILE_SIZE = 16 * 1024 * 1024;
+
+    @Param({"GZ", "BZ2", "ZIP"})
+    public String format;
+
+    /** Number of compression threads, 0 for as many as there are processors */
+    @Param({"1", "0"})
+    public int nbThreads;
+
+    private AbstractFile file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = FileFactory.getTemporaryFile(ArchiverBenchmark.class.getName(), false);
+        try (OutputStream out = file.getOutputStream()) {
+            out.write(TestData.createWords(FILE_SIZE, 3));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        file.delete();
+    }
+
+    /**
+     * Archives the file, discarding the archive, and returns the compressed size.
+     */
+    @Benchmark
+    public long archive() throws IOException {
+        CounterOutputStream counter = new CounterOutputStream(new SinkOutputStream());
+        Archiver archiver = Archiver.getArchiver(counter, getFormat(), Archiver.DEFAULT_COMPRESSION_LEVEL,
+                nbThreads > 0 ? nbThreads : Runtime.getRuntime().availableProcessors());
+        OutputStream out = archiver.createEntry(file.getName(), file);
+        try (InputStream in = file.getInputStream()) {
+            StreamUtils.copyStream(in, out);
+        }
+        archiver.close();
+        return counter.getCounter().getByteCount();
+    }
+
+    private int getFormat() {
+        switch (format) {
+        case "GZ":
+            return Archiver.GZ_FORMAT;
+        case "BZ2":
+            return Archiver.BZ2_FORMAT;
+        default:
+            return Archiver.ZIP_FORMAT;
+        }
+    }
+}
@@ -21,6 +21,9 @@ import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPOutputStream;
 
 import org.apache.tools.bzip2.CBZip2OutputStream;
@@ -71,6 +74,9 @@ public abstract class Archiver {
     /** Tar archive compressed with XZ format (many entries format) */
     public final static int TAR_XZ_FORMAT = 7;
 
+    /** Compression level that lets each format use its own default level */
+    public final static int DEFAULT_COMPRESSION_LEVEL = -1;
+
     /** Boolean array describing for each format if it can store more than one entry */
     private final static boolean SUPPORTS_MANY_ENTRIES[] = {
         true,
@@ -248,6 +254,24 @@ public abstract class Archiver {
      * @throws UnsupportedFileOperationException if the underlying filesystem does not support write operations
      */
     public static Archiver getArchiver(AbstractFile file, int format) throws IOException, UnsupportedFileOperationException {
+        return getArchiver(file, format, DEFAULT_COMPRESSION_LEVEL, 1);
+    }
+
+    /**
+     * Returns an Archiver for the specified format and that uses the given {@link AbstractFile} to write entries to,
+     * compressing data with the given level and number of threads. See {@link #getArchiver(AbstractFile, int)} for
+     * details.
+     *
+     * @param file the AbstractFile which the returned Archiver will write entries to
+     * @param format an archive format
+     * @param level the compression level, between 1 (fastest) and 9 (best), or {@link #DEFAULT_COMPRESSION_LEVEL}
+     * @param nbThreads the number of threads that compress data, for the Zip, Gzip and Bzip2 based formats
+     * @return an Archiver for the specified format and that uses the given {@link AbstractFile} to write entries to ;
+     * null if the specified format is not valid.
+     * @throws IOException if the file cannot be opened for write, or if an error occurred while intializing the archiver
+     * @throws UnsupportedFileOperationException if the underlying filesystem does not support write operations
+     */
+    public static Archiver getArchiver(AbstractFile file, int format, int level, int nbThreads) throws IOException, UnsupportedFileOperationException {
         OutputStream out = null;
 
         if(file.isFileOperationSupported(FileOperation.RANDOM_WRITE_FILE)) {
@@ -267,7 +291,7 @@ public abstract class Archiver {
         if(out==null)
             out = new BufferedOutputStream(file.getOutputStream());
 
-        return getArchiver(out, format);
+        return getArchiver(out, format, level, nbThreads);
     }
 
 
@@ -283,32 +307,53 @@ public abstract class Archiver {
      * @throws IOException if an error occurred while intializing the archiver
      */
     public static Archiver getArchiver(OutputStream out, int format) throws IOException {
+        return getArchiver(out, format, DEFAULT_COMPRESSION_LEVEL, 1);
+    }
+
+    /**
+     * Returns an Archiver for the specified format and that uses the given <code>OutputStream</code> to write entries
+     * to, compressing data with the given level and number of threads. See {@link #getArchiver(OutputStream, int)}
+     * for details.
+     *
+     * <p>With more than one thread, Gzip data is deflated by blocks that are compressed concurrently, Bzip2 data is
+     * written as a series of Bzip2 streams compressed concurrently, and Zip entries are deflated concurrently. The
+     * other formats ignore the number of threads.</p>
+     *
+     * @param out the OutputStream which the returned Archiver will write entries to
+     * @param format an archive format
+     * @param level the compression level, between 1 (fastest) and 9 (best), or {@link #DEFAULT_COMPRESSION_LEVEL}
+     * @param nbThreads the number of threads that compress data
+     * @return an Archiver for the specified format and that uses the given {@link AbstractFile} to write entries to ;
+     * null if the specified format is not valid.
+     * @throws IOException if an error occurred while intializing the archiver
+     */
+    public static Archiver getArchiver(OutputStream out, int format, int level, int nbThreads) throws IOException {
         Archiver archiver;
 
         switch(format) {
             case ZIP_FORMAT:
-                archiver = new ZipArchiver(out);
+                archiver = new ZipArchiver(out, level, nbThreads);
                 break;
             case GZ_FORMAT:
-                archiver = new SingleFileArchiver(new GZIPOutputStream(out));
+                archiver = new SingleFileArchiver(createGzipOutputStream(out, level, nbThreads));
                 break;
             case BZ2_FORMAT:
-                archiver = new SingleFileArchiver(createBzip2OutputStream(out));
+                archiver = new SingleFileArchiver(createBzip2OutputStream(out, level, nbThreads));
                 break;
             case XZ_FORMAT:
-                archiver = new SingleFileArchiver(new XZOutputStream(out, new LZMA2Options()));
+                archiver = new SingleFileArchiver(createXZOutputStream(out, level));
                 break;
             case TAR_FORMAT:
                 archiver = new TarArchiver(out);
                 break;
             case TAR_GZ_FORMAT:
-                archiver = new TarArchiver(new GZIPOutputStream(out));
+                archiver = new TarArchiver(createGzipOutputStream(out, level, nbThreads));
                 break;
             case TAR_BZ2_FORMAT:
-                archiver = new TarArchiver(createBzip2OutputStream(out));
+                archiver = new TarArchiver(createBzip2OutputStream(out, level, nbThreads));
                 break;
             case TAR_XZ_FORMAT:
-                archiver = new TarArchiver(new XZOutputStream(out, new LZMA2Options()));
+                archiver = new TarArchiver(createXZOutputStream(out, level));
                 break;
 
             default:
@@ -340,6 +385,79 @@ public abstract class Archiver {
     }
 
 
+    /**
+     * Creates and returns a Bzip2 <code>OutputStream</code> with the given block size (the compression level) and
+     * number of threads, using the given <code>OutputStream</code> as the underlying stream.
+     *
+     * @param out the underlying stream
+     * @param level the block size in units of 100k, between 1 and 9, or {@link #DEFAULT_COMPRESSION_LEVEL}
+     * @param nbThreads the number of compression threads
+     * @return a Bzip2 OutputStream
+     * @throws IOException if an error occurred while initializing the Bzip2 OutputStream
+     */
+    protected static OutputStream createBzip2OutputStream(OutputStream out, int level, int nbThreads) throws IOException {
+        int blockSize = level==DEFAULT_COMPRESSION_LEVEL ? CBZip2OutputStream.MAX_BLOCKSIZE : Math.min(CBZip2OutputStream.MAX_BLOCKSIZE, Math.max(CBZip2OutputStream.MIN_BLOCKSIZE, level));
+
+        if(nbThreads>1)
+            return new ParallelBzip2OutputStream(out, blockSize, nbThreads);
+
+        // Magic bytes required by CBZip2OutputStream, see createBzip2OutputStream(OutputStream)
+        out.write('B');
+        out.write('Z');
+
+        return new CBZip2OutputStream(out, blockSize);
+    }
+
+    /**
+     * Creates and returns a Gzip <code>OutputStream</code> with the given compression level and number of threads,
+     * using the given <code>OutputStream</code> as the underlying stream.
+     *
+     * @param out the underlying stream
+     * @param level the compression level, between 1 and 9, or {@link #DEFAULT_COMPRESSION_LEVEL}
+     * @param nbThreads the number of compression threads
+     * @return a Gzip OutputStream
+     * @throws IOException if an error occurred while writing the Gzip header
+     */
+    protected static OutputStream createGzipOutputStream(OutputStream out, int level, int nbThreads) throws IOException {
+        if(nbThreads>1)
+            return new ParallelGzipOutputStream(out, level, nbThreads);
+
+        return new GZIPOutputStream(out) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    /**
+     * Creates and returns a XZ <code>OutputStream</code> with the given compression preset, using the given
+     * <code>OutputStream</code> as the underlying stream.
+     *
+     * @param out the underlying stream
+     * @param level the compression preset, between 1 and 9, or {@link #DEFAULT_COMPRESSION_LEVEL}
+     * @return a XZ OutputStream
+     * @throws IOException if an error occurred while writing the XZ header
+     */
+    protected static OutputStream createXZOutputStream(OutputStream out, int level) throws IOException {
+        return new XZOutputStream(out, level==DEFAULT_COMPRESSION_LEVEL ? new LZMA2Options() : new LZMA2Options(level));
+    }
+
+    /**
+     * Creates an executor whose daemon threads compress data.
+     *
+     * @param nbThreads the number of threads
+     * @return an executor with the given number of threads
+     */
+    static ExecutorService createCompressionExecutor(int nbThreads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(nbThreads, runnable -> {
+            Thread thread = new Thread(runnable, "Archiver compression #" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
     /**
      * Returns an array of available archive formats, single entry formats or many entries formats
      * depending on the value of the specified boolean parameter. 
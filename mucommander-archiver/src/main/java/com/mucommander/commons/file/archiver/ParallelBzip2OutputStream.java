@@ -0,0 +1,177 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archiver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.tools.bzip2.CBZip2OutputStream;
+
+/**
+ * Bzip2 <code>OutputStream</code> that compresses data on several threads, in the manner of <code>pbzip2</code>.
+ *
+ * <p>The data is split into chunks the size of a Bzip2 block, each of which is compressed into a complete Bzip2
+ * stream by a different thread. The streams are concatenated in their original order, which Bzip2 decompressors
+ * read as a single stream.</p>
+ */
+class ParallelBzip2OutputStream extends OutputStream {
+
+    /** The underlying stream */
+    private final OutputStream out;
+
+    /** Size of the Bzip2 blocks, in units of 100k */
+    private final int blockSize;
+
+    /** Executes the compression of the chunks */
+    private final ExecutorService executor;
+
+    /** Maximum number of chunks that can be compressed at once, bounds the amount of memory used */
+    private final int maxPendingChunks;
+
+    /** Chunks being compressed, in the order they must be written */
+    private final Deque<Future<byte[]>> pendingChunks = new ArrayDeque<>();
+
+    /** Chunk being filled, submitted once full */
+    private byte[] chunk;
+
+    /** Number of bytes in the current chunk */
+    private int chunkLength;
+
+    /** True once this stream has been closed */
+    private boolean closed;
+
+
+    /**
+     * Creates a new <code>ParallelBzip2OutputStream</code>.
+     *
+     * @param out the underlying stream
+     * @param blockSize the size of the Bzip2 blocks in units of 100k, between 1 and 9
+     * @param nbThreads the number of compression threads
+     */
+    ParallelBzip2OutputStream(OutputStream out, int blockSize, int nbThreads) {
+        this.out = out;
+        this.blockSize = blockSize;
+        this.executor = Archiver.createCompressionExecutor(nbThreads);
+        this.maxPendingChunks = 2 * nbThreads;
+        this.chunk = new byte[blockSize * 100000];
+    }
+
+    /**
+     * Compresses the given data into a complete Bzip2 stream, including the 'BZ' magic bytes.
+     */
+    private static byte[] compress(byte[] data, int length, int blockSize) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(length / 4 + 64);
+        bout.write('B');
+        bout.write('Z');
+        try (CBZip2OutputStream bzout = new CBZip2OutputStream(bout, blockSize)) {
+            bzout.write(data, 0, length);
+        }
+        return bout.toByteArray();
+    }
+
+    /**
+     * Submits the current chunk for compression and starts a new one.
+     */
+    private void submitChunk() throws IOException {
+        while (pendingChunks.size() >= maxPendingChunks)
+            writeChunk(pendingChunks.removeFirst());
+
+        byte[] data = chunk;
+        int length = chunkLength;
+        pendingChunks.addLast(executor.submit(() -> compress(data, length, blockSize)));
+
+        chunk = new byte[chunk.length];
+        chunkLength = 0;
+    }
+
+    /**
+     * Waits for the given chunk to be compressed and writes it to the underlying stream.
+     */
+    private void writeChunk(Future<byte[]> pendingChunk) throws IOException {
+        try {
+            out.write(pendingChunk.get());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+
+    /////////////////////////////////
+    // OutputStream implementation //
+    /////////////////////////////////
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte)b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, chunk.length - chunkLength);
+            System.arraycopy(b, off, chunk, chunkLength, n);
+            chunkLength += n;
+            off += n;
+            len -= n;
+
+            if (chunkLength == chunk.length)
+                submitChunk();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Compresses the remaining data, writes all the streams and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        try {
+            // An empty input still makes a valid, empty Bzip2 stream
+            if (chunkLength > 0 || pendingChunks.isEmpty())
+                submitChunk();
+
+            while (!pendingChunks.isEmpty())
+                writeChunk(pendingChunks.removeFirst());
+        }
+        finally {
+            pendingChunks.forEach(pendingChunk -> pendingChunk.cancel(false));
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archiver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+
+import com.mucommander.commons.file.archive.zip.provider.ParallelDeflatedOutputStream;
+
+/**
+ * Gzip <code>OutputStream</code> that compresses data on several threads, in the manner of <code>pigz</code>.
+ *
+ * <p>The data is deflated by blocks by a {@link ParallelDeflatedOutputStream}, which produces a single DEFLATE stream:
+ * the output is a regular, single member Gzip file.</p>
+ */
+class ParallelGzipOutputStream extends OutputStream {
+
+    /** Gzip header: magic number, DEFLATE method, no flag, no modification time, no extra flag, unknown OS */
+    private final static byte[] HEADER = {0x1f, (byte)0x8b, 8, 0, 0, 0, 0, 0, 0, (byte)0xff};
+
+    /** The underlying stream */
+    private final OutputStream out;
+
+    /** Deflates the data by blocks */
+    private final ParallelDeflatedOutputStream deflated;
+
+    /** Executes the compression of the blocks */
+    private final ExecutorService executor;
+
+    /** True once this stream has been closed */
+    private boolean closed;
+
+
+    /**
+     * Creates a new <code>ParallelGzipOutputStream</code> and writes the Gzip header to the given stream.
+     *
+     * @param out the underlying stream
+     * @param level the compression level, between -1 (default) and 9
+     * @param nbThreads the number of compression threads
+     * @throws IOException if the header could not be written
+     */
+    ParallelGzipOutputStream(OutputStream out, int level, int nbThreads) throws IOException {
+        this.out = out;
+        this.executor = Archiver.createCompressionExecutor(nbThreads);
+        this.deflated = new ParallelDeflatedOutputStream(out, level, executor, nbThreads);
+
+        out.write(HEADER);
+    }
+
+    /**
+     * Writes the given int as 4 little-endian bytes.
+     */
+    private void writeInt(long i) throws IOException {
+        out.write((int)(i & 0xff));
+        out.write((int)((i >> 8) & 0xff));
+        out.write((int)((i >> 16) & 0xff));
+        out.write((int)((i >> 24) & 0xff));
+    }
+
+
+    /////////////////////////////////
+    // OutputStream implementation //
+    /////////////////////////////////
+
+    @Override
+    public void write(int b) throws IOException {
+        deflated.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        deflated.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Finishes the compression, writes the Gzip trailer and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        try {
+            deflated.finishDeflate();
+
+            // CRC32 and size modulo 2^32 of the uncompressed data
+            writeInt(deflated.getCrc());
+            writeInt(deflated.getTotalIn());
+        }
+        finally {
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+}
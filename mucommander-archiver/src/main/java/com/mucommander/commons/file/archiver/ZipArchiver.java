@@ -18,16 +18,25 @@
 package com.mucommander.commons.file.archiver;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
 
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FilePermissions;
 import com.mucommander.commons.file.SimpleFilePermissions;
 import com.mucommander.commons.file.UnsupportedFileOperationException;
+import com.mucommander.commons.file.archive.zip.provider.ParallelDeflatedOutputStream;
 import com.mucommander.commons.file.archive.zip.provider.UnixStat;
 import com.mucommander.commons.file.archive.zip.provider.ZipEntry;
 import com.mucommander.commons.file.archive.zip.provider.ZipOutputStream;
@@ -37,19 +46,103 @@ import com.mucommander.commons.file.protocol.local.LocalFile;
 /**
  * Archiver implementation using the Zip archive format.
  *
+ * <p>When several compression threads are used, entries that are small enough are written to memory and deflated
+ * concurrently while the next entries are being written, then assembled in their original order. Larger entries are
+ * written directly, their data being deflated by blocks on the compression threads.</p>
+ *
  * @author Maxence Bernard
  */
 class ZipArchiver extends Archiver {
 
+    /** Maximum size of the entries that are written to memory and deflated concurrently */
+    private final static int MAX_BUFFERED_ENTRY_SIZE = 1024 * 1024;
+
     private ZipOutputStream zos;
     private boolean firstEntry = true;
 
+    /** Compression level of the entries */
+    private int level;
+
+    /** Executes the compression of the entries, null if entries are compressed on the calling thread */
+    private ExecutorService executor;
+
+    /** Maximum number of entries that can be waiting to be written, bounds the amount of memory used */
+    private int maxPendingEntries;
+
+    /** Entries waiting to be written to the archive, in the order they were created */
+    private Deque<PendingEntry> pendingEntries = new ArrayDeque<>();
+
+    /** Entry being written to memory, null if none */
+    private ZipEntry bufferedEntry;
 
+    /** Contents of {@link #bufferedEntry} */
+    private ByteArrayOutputStream bufferedEntryData;
 
-    protected ZipArchiver(OutputStream outputStream) {
+
+    protected ZipArchiver(OutputStream outputStream, int level, int nbThreads) {
         super(outputStream);
 
         this.zos = new ZipOutputStream(outputStream);
+        this.level = level;
+        zos.setLevel(level);
+
+        if(nbThreads>1) {
+            executor = createCompressionExecutor(nbThreads);
+            zos.setCompressionExecutor(executor, nbThreads);
+            maxPendingEntries = 4*nbThreads;
+        }
+    }
+
+    /**
+     * Submits the entry being written to memory, if any, for compression.
+     */
+    private void submitBufferedEntry() {
+        if(bufferedEntry==null)
+            return;
+
+        PendingEntry pendingEntry = new PendingEntry(bufferedEntry);
+        byte[] data = bufferedEntryData.toByteArray();
+        bufferedEntry = null;
+        bufferedEntryData = null;
+
+        pendingEntry.size = data.length;
+        pendingEntry.deflated = executor.submit(() -> {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            pendingEntry.crc = crc.getValue();
+
+            return ParallelDeflatedOutputStream.deflate(null, 0, data, data.length, level, true);
+        });
+        pendingEntries.addLast(pendingEntry);
+    }
+
+    /**
+     * Writes the pending entries that are ready to the archive, or all of them if <code>all</code> is true. Entries are
+     * also waited for when too many of them are pending.
+     *
+     * @param all if true, all pending entries are written
+     * @throws IOException if an entry could not be compressed or written
+     */
+    private void writePendingEntries(boolean all) throws IOException {
+        while(!pendingEntries.isEmpty() && (all || pendingEntries.size()>=maxPendingEntries || pendingEntries.peekFirst().isDone())) {
+            PendingEntry pendingEntry = pendingEntries.removeFirst();
+
+            if(pendingEntry.deflated==null) {
+                zos.putNextEntry(pendingEntry.entry);
+                continue;
+            }
+
+            try {
+                zos.putDeflatedEntry(pendingEntry.entry, pendingEntry.deflated.get(), pendingEntry.size, pendingEntry.crc);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            catch(ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
     }
 
 
@@ -88,12 +181,33 @@ class ZipArchiver extends Archiver {
         unixMode |= file.getURL().getScheme() == LocalFile.SCHEMA && file.isSymlink() ? UnixStat.LINK_FLAG : 0;
         entry.setUnixMode(unixMode);
 
+        if(firstEntry)
+            firstEntry = false;
+
+        if(executor!=null) {
+            submitBufferedEntry();
+
+            // Directories and small files are queued behind the entries being compressed
+            if(isDirectory || (size>=0 && size<=MAX_BUFFERED_ENTRY_SIZE)) {
+                writePendingEntries(false);
+
+                if(isDirectory) {
+                    pendingEntries.addLast(new PendingEntry(entry));
+                    return null;
+                }
+
+                bufferedEntry = entry;
+                bufferedEntryData = new ByteArrayOutputStream((int)size);
+                return bufferedEntryData;
+            }
+
+            // Larger files are written as soon as the entries before them have been
+            writePendingEntries(true);
+        }
+
         // Add the entry
         zos.putNextEntry(entry);
 
-        if(firstEntry)
-            firstEntry = false;
-		
         // Return the OutputStream that allows to write to the entry, only if it isn't a directory 
         return isDirectory?null:zos;
     }
@@ -101,7 +215,18 @@ class ZipArchiver extends Archiver {
 
     @Override
     public void close() throws IOException {
-        zos.close();
+        try {
+            if(executor!=null) {
+                submitBufferedEntry();
+                writePendingEntries(true);
+            }
+
+            zos.close();
+        }
+        finally {
+            if(executor!=null)
+                executor.shutdownNow();
+        }
     }
 
     @Override
@@ -114,4 +239,27 @@ class ZipArchiver extends Archiver {
         }
         return super.getContentStream(file);
     }
+
+
+    /**
+     * An entry waiting to be written to the archive.
+     */
+    private static class PendingEntry {
+        /** The entry */
+        private final ZipEntry entry;
+        /** The deflated data of the entry, null for a directory */
+        private Future<byte[]> deflated;
+        /** Uncompressed size of the entry */
+        private long size;
+        /** CRC32 of the uncompressed data, set once the entry has been deflated */
+        private long crc;
+
+        private PendingEntry(ZipEntry entry) {
+            this.entry = entry;
+        }
+
+        private boolean isDone() {
+            return deflated==null || deflated.isDone();
+        }
+    }
 }
@@ -0,0 +1,180 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archiver;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.tools.bzip2.CBZip2InputStream;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.io.StreamUtils;
+import com.mucommander.commons.io.TestData;
+
+/**
+ * Tests the archivers that compress data on several threads, by decompressing their output with standard
+ * decompressors.
+ */
+@Test
+public class ParallelCompressionTest {
+
+    private final static int NB_THREADS = 4;
+
+    /** Temporary folder holding the files to archive */
+    private AbstractFile tempFolder;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        tempFolder = FileFactory.getTemporaryFile(ParallelCompressionTest.class.getName(), false);
+        tempFolder.mkdir();
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        tempFolder.deleteRecursively();
+    }
+
+    private AbstractFile createFile(String name, byte[] data) throws IOException {
+        AbstractFile file = tempFolder.getDirectChild(name);
+        try (OutputStream out = file.getOutputStream()) {
+            out.write(data);
+        }
+        return file;
+    }
+
+    private static byte[] archive(int format, int nbThreads, AbstractFile... files) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        Archiver archiver = Archiver.getArchiver(bout, format, Archiver.DEFAULT_COMPRESSION_LEVEL, nbThreads);
+        for (AbstractFile file : files) {
+            OutputStream out = archiver.createEntry(file.getName(), file);
+            if (out != null) {
+                try (InputStream in = file.getInputStream()) {
+                    StreamUtils.copyStream(in, out);
+                }
+            }
+        }
+        archiver.close();
+        return bout.toByteArray();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        StreamUtils.copyStream(in, bout);
+        return bout.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        return readFully(new GZIPInputStream(new ByteArrayInputStream(compressed)));
+    }
+
+    private static byte[] bunzip2(byte[] compressed) throws IOException {
+        InputStream in = new ByteArrayInputStream(compressed);
+        // Skip the 'BZ' magic bytes
+        in.skip(2);
+        return readFully(new CBZip2InputStream(in, true));
+    }
+
+    /**
+     * Asserts that the Gzip data written on several threads is a valid Gzip stream.
+     */
+    @Test
+    public void testGzip() throws IOException {
+        byte[] data = TestData.createWords(3 * 1024 * 1024 + 17, 1);
+        AbstractFile file = createFile("data", data);
+
+        assert Arrays.equals(data, gunzip(archive(Archiver.GZ_FORMAT, NB_THREADS, file)));
+
+        // Empty data
+        assert gunzip(archive(Archiver.GZ_FORMAT, NB_THREADS, createFile("empty", new byte[0]))).length == 0;
+    }
+
+    /**
+     * Asserts that the Bzip2 streams written on several threads are decompressed as a whole.
+     */
+    @Test
+    public void testBzip2() throws IOException {
+        byte[] data = TestData.createWords(2 * 1000 * 1000 + 17, 2);
+        AbstractFile file = createFile("data", data);
+
+        assert Arrays.equals(data, bunzip2(archive(Archiver.BZ2_FORMAT, NB_THREADS, file)));
+    }
+
+    /**
+     * Asserts that small and large entries deflated on several threads are written in order and can be read back.
+     */
+    @Test
+    public void testZip() throws IOException {
+        Map<String, byte[]> contents = new HashMap<>();
+        AbstractFile[] files = new AbstractFile[40];
+        for (int i = 0; i < files.length; i++) {
+            // Every 10th file is too large to be deflated in memory
+            byte[] data = TestData.createWords(i % 10 == 9 ? 3 * 1024 * 1024 : i * 1000, i);
+            files[i] = createFile("file" + i, data);
+            contents.put(files[i].getName(), data);
+        }
+        AbstractFile folder = tempFolder.getDirectChild("folder");
+        folder.mkdir();
+        files[20] = folder;
+
+        ZipInputStream zin = new ZipInputStream(new ByteArrayInputStream(archive(Archiver.ZIP_FORMAT, NB_THREADS, files)));
+        int i = 0;
+        ZipEntry entry;
+        while ((entry = zin.getNextEntry()) != null) {
+            assert entry.getName().startsWith(files[i].getName());
+            if (entry.isDirectory())
+                assert files[i].isDirectory();
+            else
+                assert Arrays.equals(contents.get(entry.getName()), readFully(zin));
+            i++;
+        }
+        assert i == files.length;
+    }
+
+    /**
+     * Asserts that the single and multi-threaded archivers of each format produce data that decompresses to the
+     * original data.
+     */
+    @Test
+    public void testSingleAndMultiThreaded() throws IOException {
+        byte[] data = TestData.createWords(1024 * 1024 + 17, 3);
+        AbstractFile file = createFile("data", data);
+
+        for (int threads : new int[] {1, NB_THREADS}) {
+            assert Arrays.equals(data, gunzip(archive(Archiver.GZ_FORMAT, threads, file)));
+            assert Arrays.equals(data, bunzip2(archive(Archiver.BZ2_FORMAT, threads, file)));
+
+            ZipInputStream zin = new ZipInputStream(new ByteArrayInputStream(archive(Archiver.ZIP_FORMAT, threads, file)));
+            assert zin.getNextEntry().getName().equals(file.getName());
+            assert Arrays.equals(data, readFully(zin));
+            assert zin.getNextEntry() == null;
+        }
+    }
+}
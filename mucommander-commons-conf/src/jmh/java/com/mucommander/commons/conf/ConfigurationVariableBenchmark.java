@@ -0,0 +1,67 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.conf;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the time it takes to read a variable from the {@link Configuration} and from a compiled
+ * {@link ConfigurationVariable}. Run with <code>./gradlew :mucommander-commons-conf:jmh</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConfigurationVariableBenchmark {
+
+    /** Name of the variable, nested in sections like most preferences */
+    private static final String VARIABLE_NAME = "section.subsection.variable";
+
+    private Configuration conf;
+    private ConfigurationVariable.IntegerVariable variable;
+
+    @Setup
+    public void setUp() {
+        conf = new Configuration();
+        conf.setVariable(VARIABLE_NAME, 10);
+        variable = conf.compileVariable(VARIABLE_NAME, 5);
+    }
+
+    @Benchmark
+    public int readConfiguration() {
+        return conf.getVariable(VARIABLE_NAME, 5);
+    }
+
+    @Benchmark
+    public int readCompiledVariable() {
+        return variable.getValue();
+    }
+}
@@ -898,8 +898,15 @@ public class Configuration {
     /**
      * Remove all variables & sub-sections under the root section 
      */
-    public void clear() {
+    public synchronized void clear() {
 		root.clear();
+
+        // No event is triggered for the removed variables, compiled variables must read them again
+        synchronized(LISTENERS) {
+            for(ConfigurationListener listener : LISTENERS.keySet())
+                if(listener instanceof ConfigurationVariable)
+                    ((ConfigurationVariable)listener).invalidate();
+        }
 	}
 
 
@@ -1048,6 +1055,74 @@ public class Configuration {
 
 
 
+    // - Compiled variables --------------------------------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------------------------------------
+    /**
+     * Returns a handle on the specified variable, whose value is cached until the variable is modified.
+     * <p>
+     * Reading the handle is equivalent to calling {@link #getVariable(String,String)}, but doesn't lock the
+     * configuration nor allocate objects while the variable is not modified. The handle must be kept referenced as
+     * long as it is used.
+     * </p>
+     * @param  name         name of the variable to retrieve.
+     * @param  defaultValue value to use if <code>name</code> is not set.
+     * @return              a handle on the specified variable.
+     * @see                 ConfigurationVariable
+     */
+    public ConfigurationVariable.StringVariable compileVariable(String name, String defaultValue) {
+        return new ConfigurationVariable.StringVariable(this, name, defaultValue);
+    }
+
+    /**
+     * Returns a handle on the specified integer variable, whose value is cached until the variable is modified.
+     * <p>
+     * Reading the handle is equivalent to calling {@link #getVariable(String,int)}, but doesn't lock the
+     * configuration nor allocate objects while the variable is not modified. The handle must be kept referenced as
+     * long as it is used.
+     * </p>
+     * @param  name         name of the variable to retrieve.
+     * @param  defaultValue value to use if <code>name</code> is not set.
+     * @return              a handle on the specified variable.
+     * @see                 ConfigurationVariable
+     */
+    public ConfigurationVariable.IntegerVariable compileVariable(String name, int defaultValue) {
+        return new ConfigurationVariable.IntegerVariable(this, name, defaultValue);
+    }
+
+    /**
+     * Returns a handle on the specified long variable, whose value is cached until the variable is modified.
+     * <p>
+     * Reading the handle is equivalent to calling {@link #getVariable(String,long)}, but doesn't lock the
+     * configuration nor allocate objects while the variable is not modified. The handle must be kept referenced as
+     * long as it is used.
+     * </p>
+     * @param  name         name of the variable to retrieve.
+     * @param  defaultValue value to use if <code>name</code> is not set.
+     * @return              a handle on the specified variable.
+     * @see                 ConfigurationVariable
+     */
+    public ConfigurationVariable.LongVariable compileVariable(String name, long defaultValue) {
+        return new ConfigurationVariable.LongVariable(this, name, defaultValue);
+    }
+
+    /**
+     * Returns a handle on the specified boolean variable, whose value is cached until the variable is modified.
+     * <p>
+     * Reading the handle is equivalent to calling {@link #getVariable(String,boolean)}, but doesn't lock the
+     * configuration nor allocate objects while the variable is not modified. The handle must be kept referenced as
+     * long as it is used.
+     * </p>
+     * @param  name         name of the variable to retrieve.
+     * @param  defaultValue value to use if <code>name</code> is not set.
+     * @return              a handle on the specified variable.
+     * @see                 ConfigurationVariable
+     */
+    public ConfigurationVariable.BooleanVariable compileVariable(String name, boolean defaultValue) {
+        return new ConfigurationVariable.BooleanVariable(this, name, defaultValue);
+    }
+
+
+
     // - Helper methods ------------------------------------------------------------------------------------------------
     // -----------------------------------------------------------------------------------------------------------------
     /**
@@ -0,0 +1,242 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.conf;
+
+/**
+ * Typed handle on the value of a configuration variable, meant to be read often.
+ * <p>
+ * Variables are created through the <code>compileVariable</code> methods of {@link Configuration}. The first read
+ * retrieves the value from the configuration as {@link Configuration#getVariable(String,String)} and its typed
+ * counterparts do, setting the variable to its default value if it isn't set. The parsed value is then cached until
+ * a {@link ConfigurationEvent configuration event} reports that the variable was modified: reads neither lock the
+ * configuration nor allocate objects in the meantime.
+ * </p>
+ * <p>
+ * Variables listen to their configuration, which only references them weakly: they must be kept referenced as long
+ * as they are used, typically in static fields.
+ * </p>
+ * @see Configuration#compileVariable(String,String)
+ */
+public abstract class ConfigurationVariable implements ConfigurationListener {
+    // - Class variables -----------------------------------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------------------------------------
+    /** Cached in place of <code>null</code> values, <code>null</code> meaning that the value must be read again. */
+    private static final Object NULL_VALUE = new Object();
+
+
+
+    // - Instance fields -----------------------------------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------------------------------------
+    /** Configuration in which the variable is stored. */
+    private final Configuration configuration;
+    /** Fully qualified name of the variable. */
+    private final String        name;
+    /** Parsed value of the variable, <code>null</code> if it must be read from the configuration. */
+    private volatile Object     value;
+
+
+
+    // - Initialisation ------------------------------------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------------------------------------
+    /**
+     * Creates a new handle on the specified variable and registers it as a listener of the configuration.
+     * @param configuration configuration in which the variable is stored.
+     * @param name          fully qualified name of the variable.
+     */
+    ConfigurationVariable(Configuration configuration, String name) {
+        this.configuration = configuration;
+        this.name          = name;
+        configuration.addConfigurationListener(this);
+    }
+
+
+
+    // - Variable access -----------------------------------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------------------------------------
+    /**
+     * Returns the fully qualified name of the variable.
+     * @return the fully qualified name of the variable.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the cached value of the variable, reading it from the configuration if it isn't cached.
+     * <p>
+     * Modifications of the configuration, and the events that invalidate the cached value, all happen while the
+     * configuration is locked. The value is read and cached while holding the same lock, so that an outdated value
+     * can't replace the invalidation of a newer one.
+     * </p>
+     * @return the parsed value of the variable.
+     */
+    Object getCachedValue() {
+        Object value = this.value;
+        if (value == null) {
+            synchronized (configuration) {
+                value = read(configuration);
+                if (value == null)
+                    value = NULL_VALUE;
+                this.value = value;
+            }
+        }
+        return value == NULL_VALUE ? null : value;
+    }
+
+    /**
+     * Reads the value of the variable from the specified configuration and parses it.
+     * @param  configuration configuration in which the variable is stored.
+     * @return               the parsed value of the variable.
+     */
+    abstract Object read(Configuration configuration);
+
+    /**
+     * Discards the cached value of the variable, which will be read again from the configuration.
+     */
+    void invalidate() {
+        value = null;
+    }
+
+
+
+    // - Configuration listening ---------------------------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------------------------------------
+    /**
+     * Discards the cached value if the event reports a modification of the variable.
+     * @param event describes the configuration modification.
+     */
+    @Override
+    public void configurationChanged(ConfigurationEvent event) {
+        if (name.equals(event.getVariable()))
+            invalidate();
+    }
+
+
+
+    // - Typed variables -----------------------------------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------------------------------------
+    /**
+     * String configuration variable.
+     * @see Configuration#compileVariable(String,String)
+     */
+    public static final class StringVariable extends ConfigurationVariable {
+        /** Value to use if the variable isn't set. */
+        private final String defaultValue;
+
+        StringVariable(Configuration configuration, String name, String defaultValue) {
+            super(configuration, name);
+            this.defaultValue = defaultValue;
+        }
+
+        /**
+         * Returns the value of the variable.
+         * @return the value of the variable.
+         */
+        public String getValue() {
+            return (String)getCachedValue();
+        }
+
+        @Override
+        Object read(Configuration configuration) {
+            return configuration.getVariable(getName(), defaultValue);
+        }
+    }
+
+    /**
+     * Integer configuration variable.
+     * @see Configuration#compileVariable(String,int)
+     */
+    public static final class IntegerVariable extends ConfigurationVariable {
+        /** Value to use if the variable isn't set. */
+        private final int defaultValue;
+
+        IntegerVariable(Configuration configuration, String name, int defaultValue) {
+            super(configuration, name);
+            this.defaultValue = defaultValue;
+        }
+
+        /**
+         * Returns the value of the variable.
+         * @return                       the value of the variable.
+         * @throws NumberFormatException if the variable's value cannot be cast to an integer.
+         */
+        public int getValue() {
+            return (Integer)getCachedValue();
+        }
+
+        @Override
+        Object read(Configuration configuration) {
+            return configuration.getVariable(getName(), defaultValue);
+        }
+    }
+
+    /**
+     * Long configuration variable.
+     * @see Configuration#compileVariable(String,long)
+     */
+    public static final class LongVariable extends ConfigurationVariable {
+        /** Value to use if the variable isn't set. */
+        private final long defaultValue;
+
+        LongVariable(Configuration configuration, String name, long defaultValue) {
+            super(configuration, name);
+            this.defaultValue = defaultValue;
+        }
+
+        /**
+         * Returns the value of the variable.
+         * @return                       the value of the variable.
+         * @throws NumberFormatException if the variable's value cannot be cast to a long.
+         */
+        public long getValue() {
+            return (Long)getCachedValue();
+        }
+
+        @Override
+        Object read(Configuration configuration) {
+            return configuration.getVariable(getName(), defaultValue);
+        }
+    }
+
+    /**
+     * Boolean configuration variable.
+     * @see Configuration#compileVariable(String,boolean)
+     */
+    public static final class BooleanVariable extends ConfigurationVariable {
+        /** Value to use if the variable isn't set. */
+        private final boolean defaultValue;
+
+        BooleanVariable(Configuration configuration, String name, boolean defaultValue) {
+            super(configuration, name);
+            this.defaultValue = defaultValue;
+        }
+
+        /**
+         * Returns the value of the variable.
+         * @return the value of the variable.
+         */
+        public boolean getValue() {
+            return (Boolean)getCachedValue();
+        }
+
+        @Override
+        Object read(Configuration configuration) {
+            return configuration.getVariable(getName(), defaultValue);
+        }
+    }
+}
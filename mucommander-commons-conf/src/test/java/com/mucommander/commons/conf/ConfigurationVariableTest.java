@@ -0,0 +1,97 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.conf;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+
+/**
+ * A test case for the {@link ConfigurationVariable} class.
+ */
+public class ConfigurationVariableTest {
+    // - Test constants ------------------------------------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------------------------------------
+    /** Name of the test variable. */
+    private static final String VARIABLE_NAME = "section.subsection.variable";
+
+
+
+    // - Instance fields -----------------------------------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------------------------------------
+    /** Configuration instance used by the tests. */
+    private Configuration conf;
+
+
+
+    // - Initialisation ------------------------------------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------------------------------------
+    /**
+     * Initialises the test case.
+     */
+    @BeforeMethod
+    public void setUp() {
+        conf = new Configuration();
+    }
+
+
+
+    // - Tests ---------------------------------------------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------------------------------------
+    /**
+     * Makes sure that compiled variables are set to their default value and follow the modifications of the
+     * configuration.
+     */
+    @Test
+    public void testInvalidation() throws Exception {
+        ConfigurationVariable.IntegerVariable variable = conf.compileVariable(VARIABLE_NAME, 5);
+
+        assert variable.getValue() == 5;
+        assert conf.getIntegerVariable(VARIABLE_NAME) == 5;
+
+        conf.setVariable(VARIABLE_NAME, 10);
+        assert variable.getValue() == 10;
+
+        conf.removeVariable(VARIABLE_NAME);
+        assert variable.getValue() == 5;
+
+        conf.setVariable(VARIABLE_NAME, 15);
+        conf.clear();
+        assert variable.getValue() == 5;
+
+        conf.read(new StringReader("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<root><section><subsection><variable>20</variable></subsection></section></root>"));
+        assert variable.getValue() == 20;
+    }
+
+    /**
+     * Makes sure that each type of compiled variable returns the same value as the matching getter.
+     */
+    @Test
+    public void testTypes() {
+        conf.setVariable("string", "value");
+        conf.setVariable("long", 15L);
+        conf.setVariable("boolean", true);
+
+        assert conf.compileVariable("string", "default").getValue().equals("value");
+        assert conf.compileVariable("long", 0L).getValue() == 15L;
+        assert conf.compileVariable("boolean", false).getValue();
+        assert conf.compileVariable("unset", (String)null).getValue() == null;
+    }
+}
@@ -44,6 +44,8 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
 
 /**
  * <code>AbstractFile</code> is the superclass of all files.
@@ -1898,6 +1900,29 @@ public abstract class AbstractFile implements FileAttributes {
      */
     public abstract void delete() throws IOException, UnsupportedFileOperationException;
 
+    /**
+     * Deletes the given children of this directory, which must not be directories, with as few requests as the
+     * underlying filesystem allows. This is meant for remote filesystems, which can delete many files at a time
+     * much faster than by calling {@link #delete()} on each of them.
+     *
+     * <p>The files that could not be deleted are returned along with the cause of the failure, the other files have
+     * been deleted.</p>
+     *
+     * <p>This {@link FileOperation#BATCH_DELETE file operation} is not supported by default --
+     * {@link #isFileOperationSupported(FileOperation)} can be called to find out if it is. If the operation isn't
+     * supported, a {@link UnsupportedFileOperation} will be thrown when this method is called.</p>
+     *
+     * @param children the children of this directory to delete
+     * @return the files that could not be deleted, mapped to the cause of the failure; empty if all files were deleted
+     * @throws IOException if an error that concerns all files occurred, e.g. an authentication failure
+     * @throws UnsupportedFileOperationException if this operation is not supported by the underlying filesystem,
+     * or is not implemented.
+     */
+    @UnsupportedFileOperation
+    public Map<AbstractFile, IOException> deleteChildren(List<AbstractFile> children) throws IOException, UnsupportedFileOperationException {
+        throw new UnsupportedFileOperationException(FileOperation.BATCH_DELETE);
+    }
+
     /**
      * Renames this file to a specified destination file, overwriting the destination if it exists. If this file is a
      * directory, any file or directory it contains will also be moved.
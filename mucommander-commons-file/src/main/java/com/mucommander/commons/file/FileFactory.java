@@ -20,13 +20,13 @@ package com.mucommander.commons.file;
 
 import java.io.IOException;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -95,7 +95,7 @@ public class FileFactory {
     private static final Logger LOGGER = LoggerFactory.getLogger(FileFactory.class);
 
     /** All registered protocol providers. */
-    private static Hashtable<String, ProtocolProvider> protocolProviders = new Hashtable<String, ProtocolProvider>();
+    private static Map<String, ProtocolProvider> protocolProviders = new ConcurrentHashMap<String, ProtocolProvider>();
 
     /** Local file provider to avoid hashtable lookups (faster). */
     private static ProtocolProvider localFileProvider;
@@ -104,10 +104,16 @@ public class FileFactory {
     private static Vector<ArchiveFormatProvider> archiveFormatProvidersV = new Vector<ArchiveFormatProvider>();
 
     /** Array of registered FileProtocolMapping instances, for quicker access */
-    private static ArchiveFormatProvider[] archiveFormatProviders = new ArchiveFormatProvider[0];
+    private static volatile ArchiveFormatProvider[] archiveFormatProviders = new ArchiveFormatProvider[0];
+
+    /** Max number of filenames whose archive format is remembered */
+    private static final int ARCHIVE_FORMAT_CACHE_SIZE = 4096;
+
+    /** Archive format of the filenames that were recently tested, empty if the filename is not an archive's */
+    private static final Map<String, Optional<ArchiveFormatProvider>> archiveFormatCache = new ConcurrentHashMap<>();
 
     /** Contains a FilePool instance for each registered scheme */
-    private static final HashMap<String, FilePool> FILE_POOL_MAP = new HashMap<String, FilePool>();
+    private static final Map<String, FilePool> FILE_POOL_MAP = new ConcurrentHashMap<String, FilePool>();
 
     /** System temp directory */
     private static final AbstractFile TEMP_DIRECTORY;
@@ -268,8 +274,10 @@ public class FileFactory {
      * Updates the <code>ArchiveFormatProvider</code> array to reflect the contents of the Vector.
      */
     private static void updateArchiveFormatProviderArray() {
-        archiveFormatProviders = new ArchiveFormatProvider[archiveFormatProvidersV.size()];
-        archiveFormatProvidersV.toArray(archiveFormatProviders);
+        ArchiveFormatProvider[] providers = new ArchiveFormatProvider[archiveFormatProvidersV.size()];
+        archiveFormatProvidersV.toArray(providers);
+        archiveFormatProviders = providers;
+        archiveFormatCache.clear();
     }
 
     /**
@@ -284,11 +292,23 @@ public class FileFactory {
         if(filename == null)
             return null;
 
+        // The same filenames are tested over and over as paths that share the same folders get resolved
+        Optional<ArchiveFormatProvider> cachedProvider = archiveFormatCache.get(filename);
+        if (cachedProvider != null)
+            return cachedProvider.orElse(null);
+
+        ArchiveFormatProvider matchingProvider = null;
         for (ArchiveFormatProvider provider : archiveFormatProviders) {
-            if (provider.getFilenameFilter().accept(filename))
-                return provider;
+            if (provider.getFilenameFilter().accept(filename)) {
+                matchingProvider = provider;
+                break;
+            }
         }
-        return null;
+
+        if (archiveFormatCache.size() >= ARCHIVE_FORMAT_CACHE_SIZE)
+            archiveFormatCache.clear();
+        archiveFormatCache.put(filename, Optional.ofNullable(matchingProvider));
+        return matchingProvider;
     }
 
     /**
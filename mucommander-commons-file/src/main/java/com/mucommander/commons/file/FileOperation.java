@@ -85,6 +85,13 @@ public enum FileOperation {
      **/
     DELETE,
 
+    /**
+     * Represents a 'batch delete' operation, as specified by {@link AbstractFile#deleteChildren(java.util.List)}.
+     *
+     * @see AbstractFile#deleteChildren(java.util.List)
+     **/
+    BATCH_DELETE,
+
     /**
      * Represents a 'remove copy' operation, as specified by {@link AbstractFile#copyRemotelyTo(AbstractFile)}.
      */
@@ -157,6 +164,8 @@ public enum FileOperation {
 
                 case DELETE:
                     return c.getMethod("delete");
+                case BATCH_DELETE:
+                    return c.getMethod("deleteChildren", java.util.List.class);
 
                 case RENAME:
                     return c.getMethod("renameTo", AbstractFile.class);
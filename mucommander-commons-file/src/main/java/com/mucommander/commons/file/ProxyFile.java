@@ -32,6 +32,8 @@ import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.List;
+import java.util.Map;
 
 /**
  * ProxyFile is an {@link AbstractFile} that acts as a proxy between the class that extends it
@@ -194,6 +196,11 @@ public abstract class ProxyFile extends AbstractFile {
         file.delete();
     }
 
+    @Override
+    public Map<AbstractFile, IOException> deleteChildren(List<AbstractFile> children) throws IOException, UnsupportedFileOperationException {
+        return file.deleteChildren(children);
+    }
+
     @Override
     public void copyRemotelyTo(AbstractFile destFile) throws IOException, UnsupportedFileOperationException {
         file.copyRemotelyTo(destFile);
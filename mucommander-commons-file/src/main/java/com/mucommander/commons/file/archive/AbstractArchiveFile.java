@@ -35,6 +35,9 @@ import org.slf4j.LoggerFactory;
 import javax.swing.tree.DefaultMutableTreeNode;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Vector;
 import java.util.WeakHashMap;
 
@@ -64,6 +67,11 @@ import java.util.WeakHashMap;
  * This tree is recreated (<code>getEntryIterator()</code> is called again) only if the archive file has changed, i.e.
  * if its date has changed since the tree was created.</p>
  *
+ * <p>The trees of the archives that were browsed recently are retained, within a limit on the number of entries they
+ * hold in total: the trees of the least recently browsed archives are released beyond it, and created again
+ * if the archives are browsed again. The tree of the most recently browsed archive is always retained. The archives are
+ * only referenced weakly, so that their tree is garbage collected along with them if they are not used anymore.</p>
+ *
  * <p>Files returned by the <code>ls()</code> are {@link AbstractArchiveEntryFile} instances which use an {@link ArchiveEntry}
  * object to retrieve the entry's attributes. In turn, these <code>AbstractArchiveEntryFile</code> instances query the
  * associated <code>AbstractArchiveFile</code> to list their content.
@@ -86,8 +94,17 @@ import java.util.WeakHashMap;
 public abstract class AbstractArchiveFile extends ProxyFile {
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractArchiveFile.class);
 
-    /** Archive entries tree */
-    protected ArchiveEntryTree entryTreeRoot;
+    /** Maximum number of entries in the retained trees of the archives that were not browsed last */
+    static final int MAX_RETAINED_ENTRIES = 250000;
+
+    /** Maximum number of archives whose tree is retained */
+    static final int MAX_RETAINED_TREES = 32;
+
+    /** Archives whose entries tree is retained, from the least to the most recently browsed, weakly referenced */
+    private static final Deque<WeakReference<AbstractArchiveFile>> browsedArchives = new ArrayDeque<>();
+
+    /** Archive entries tree, <code>null</code> if it hasn't been created yet or if it has been released */
+    protected volatile ArchiveEntryTree entryTreeRoot;
 
     /** Date this file had when the entries tree was created. Used to detect if the archive file has changed and entries
      * need to be reloaded */
@@ -145,8 +162,69 @@ public abstract class AbstractArchiveFile extends ProxyFile {
      * underlying file protocol.
      */
     protected void checkEntriesTree() throws IOException, UnsupportedFileOperationException {
-        if (this.entryTreeRoot==null || getDate()!=this.entryTreeDate)
+        getEntriesTree();
+    }
+
+    /**
+     * Returns the entries tree after creating or re-creating it as {@link #checkEntriesTree()} does, and marks this
+     * archive as the most recently browsed one. The returned tree is not affected if the tree is released
+     * concurrently.
+     *
+     * @return the entries tree
+     * @throws IOException if an error occurred while creating the tree
+     * @throws UnsupportedFileOperationException if {@link FileOperation#READ_FILE} operations are not supported by the
+     * underlying file protocol.
+     */
+    private ArchiveEntryTree getEntriesTree() throws IOException, UnsupportedFileOperationException {
+        ArchiveEntryTree treeRoot = this.entryTreeRoot;
+        if (treeRoot==null || getDate()!=this.entryTreeDate) {
             createEntriesTree();
+            treeRoot = this.entryTreeRoot;
+        }
+
+        retainEntriesTree(this);
+        return treeRoot;
+    }
+
+    /**
+     * Marks the given archive as the most recently browsed one, and releases the trees of the least recently browsed
+     * archives if the retained trees hold too many entries.
+     *
+     * @param archiveFile the archive that is being browsed
+     */
+    private static void retainEntriesTree(AbstractArchiveFile archiveFile) {
+        synchronized(browsedArchives) {
+            WeakReference<AbstractArchiveFile> mostRecentArchive = browsedArchives.peekLast();
+            if(mostRecentArchive!=null && mostRecentArchive.get()==archiveFile)
+                return;
+
+            // Also forget the archives that have been garbage collected
+            browsedArchives.removeIf(browsedArchive -> browsedArchive.get()==null || browsedArchive.get()==archiveFile);
+            // Trees of the other archives, the tree of the most recently browsed archive is always retained
+            long nbEntries = 0;
+            for(WeakReference<AbstractArchiveFile> browsedArchive : browsedArchives) {
+                AbstractArchiveFile otherArchive = browsedArchive.get();
+                if(otherArchive!=null)
+                    nbEntries += getEntryCount(otherArchive.entryTreeRoot);
+            }
+            browsedArchives.addLast(new WeakReference<>(archiveFile));
+
+            while(browsedArchives.size()>MAX_RETAINED_TREES || (nbEntries>MAX_RETAINED_ENTRIES && browsedArchives.size()>1)) {
+                AbstractArchiveFile leastRecentArchive = browsedArchives.removeFirst().get();
+                if(leastRecentArchive==null)
+                    continue;
+                nbEntries -= getEntryCount(leastRecentArchive.entryTreeRoot);
+                LOGGER.debug("releasing entries tree of "+leastRecentArchive.getAbsolutePath());
+                leastRecentArchive.entryTreeRoot = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries in the given tree, plus one to account for the tree itself.
+     */
+    private static int getEntryCount(ArchiveEntryTree treeRoot) {
+        return treeRoot==null ? 1 : treeRoot.getEntryCount()+1;
     }
 
     /**
@@ -169,8 +247,7 @@ public abstract class AbstractArchiveFile extends ProxyFile {
      * underlying file protocol.
      */
     protected void addToEntriesTree(ArchiveEntry entry) throws IOException, UnsupportedFileOperationException {
-        checkEntriesTree();
-        entryTreeRoot.addArchiveEntry(entry);
+        getEntriesTree().addArchiveEntry(entry);
     }
 
     /**
@@ -183,18 +260,16 @@ public abstract class AbstractArchiveFile extends ProxyFile {
      * underlying file protocol.
      */
     protected void removeFromEntriesTree(ArchiveEntry entry) throws IOException, UnsupportedFileOperationException {
-        checkEntriesTree();
-        DefaultMutableTreeNode entryNode = entryTreeRoot.findEntryNode(entry.getPath());
+        ArchiveEntryTree treeRoot = getEntriesTree();
+        DefaultMutableTreeNode entryNode = treeRoot.findEntryNode(entry.getPath());
 
-        if(entryNode!=null) {
-            DefaultMutableTreeNode parentNode = (DefaultMutableTreeNode)entryNode.getParent();
-            parentNode.remove(entryNode);
-        }
+        if(entryNode!=null && entryNode!=treeRoot)
+            treeRoot.removeEntryNode(entryNode);
     }
 
     /**
      * Returns the {@link ArchiveEntryTree} instance corresponding to the root of the archive entry tree.
-     * The returned value can be <code>null</code> if the tree hasn't been intialized yet.
+     * The returned value can be <code>null</code> if the tree hasn't been intialized yet or if it has been released.
      *
      * @return the ArchiveEntryTree instance corresponding to the root of the archive entry tree
      */
@@ -210,12 +285,12 @@ public abstract class AbstractArchiveFile extends ProxyFile {
      */
     protected AbstractFile[] ls(AbstractArchiveEntryFile entryFile, FilenameFilter filenameFilter, FileFilter fileFilter) throws IOException, UnsupportedFileOperationException {
         // Make sure the entries tree is created and up-to-date
-        checkEntriesTree();        
+        ArchiveEntryTree treeRoot = getEntriesTree();
 
         if(!entryFile.isBrowsable())
             throw new IOException();
 
-        DefaultMutableTreeNode matchNode = entryTreeRoot.findEntryNode(entryFile.getEntry().getPath());
+        DefaultMutableTreeNode matchNode = treeRoot.findEntryNode(entryFile.getEntry().getPath());
         if(matchNode==null)
             throw new IOException();
 
@@ -372,13 +447,13 @@ public abstract class AbstractArchiveFile extends ProxyFile {
      */
     public DefaultMutableTreeNode getArchiveEntryNode(String entryPath) throws IOException, UnsupportedFileOperationException {
         // Make sure the entries tree is created and up-to-date
-        checkEntriesTree();
+        ArchiveEntryTree treeRoot = getEntriesTree();
 
         // TODO: check if that's really necessary / if there is a way to remove this
         entryPath = entryPath.replace('\\', '/');
 
         // Find the entry node corresponding to the given path
-        return entryTreeRoot.findEntryNode(entryPath);
+        return treeRoot.findEntryNode(entryPath);
     }
 
     /**
@@ -392,7 +467,7 @@ public abstract class AbstractArchiveFile extends ProxyFile {
         DefaultMutableTreeNode parentNode = (DefaultMutableTreeNode)entryNode.getParent();
         return getArchiveEntryFile(
                 (ArchiveEntry)entryNode.getUserObject(),
-                parentNode==entryTreeRoot
+                parentNode.isRoot()
                     ?this
                     :getArchiveEntryFile(parentNode)
         );
@@ -406,6 +481,43 @@ public abstract class AbstractArchiveFile extends ProxyFile {
         this.password = password;
     }
 
+    /**
+     * Extracts the entries accepted by the given handler, reading the archive only once. This is more efficient than
+     * calling {@link #getEntryInputStream(ArchiveEntry, ArchiveEntryIterator)} for each entry when the entries are
+     * not stored independently of each other, e.g. in solid archives.
+     *
+     * <p>This implementation iterates through the entries with {@link #getEntryIterator()} and opens the
+     * <code>InputStream</code> of each accepted entry, the first time it is read, with
+     * {@link #getEntryInputStream(ArchiveEntry, ArchiveEntryIterator)}. Implementations should override it if they can
+     * extract several entries in a single pass.</p>
+     *
+     * @param handler selects the entries to extract and receives their contents
+     * @throws IOException if an error occurred while reading the archive, either because the archive is corrupt or
+     * because of an I/O error, or if the handler threw an <code>IOException</code>
+     * @throws UnsupportedFileOperationException if {@link FileOperation#READ_FILE} operations are not supported by the
+     * underlying file protocol.
+     */
+    public void extractEntries(ArchiveEntryHandler handler) throws IOException, UnsupportedFileOperationException {
+        try (ArchiveEntryIterator iterator = getEntryIterator()) {
+            ArchiveEntry entry;
+            while ((entry = iterator.nextEntry()) != null) {
+                if (!handler.accept(entry))
+                    continue;
+
+                if (entry.isDirectory()) {
+                    if (!handler.extract(entry, null))
+                        break;
+                    continue;
+                }
+
+                try (InputStream in = new EntryInputStream(entry, iterator)) {
+                    if (!handler.extract(entry, in))
+                        break;
+                }
+            }
+        }
+    }
+
     
     //////////////////////
     // Abstract methods //
@@ -495,9 +607,7 @@ public abstract class AbstractArchiveFile extends ProxyFile {
             return super.ls();
 
         // Make sure the entries tree is created and up-to-date
-        checkEntriesTree();
-
-        return ls(entryTreeRoot, this, null, null);
+        return ls(getEntriesTree(), this, null, null);
     }
 
     /**
@@ -518,9 +628,7 @@ public abstract class AbstractArchiveFile extends ProxyFile {
             return super.ls(filter);
 
         // Make sure the entries tree is created and up-to-date
-        checkEntriesTree();
-
-        return ls(entryTreeRoot, this, filter, null);
+        return ls(getEntriesTree(), this, filter, null);
     }
 
     /**
@@ -540,9 +648,7 @@ public abstract class AbstractArchiveFile extends ProxyFile {
             return super.ls(filter);
 
         // Make sure the entries tree is created and up-to-date
-        checkEntriesTree();
-
-        return ls(entryTreeRoot, this, null, filter);
+        return ls(getEntriesTree(), this, null, filter);
     }
 
     @Override
@@ -552,4 +658,62 @@ public abstract class AbstractArchiveFile extends ProxyFile {
 
     // Note: do not override #isDirectory() to always return true, as AbstractArchiveFile instances may be created when
     // the file does not exist yet, and then be mkdir(): in that case, the file will be a directory and not an archive.
+
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * <code>InputStream</code> of an entry, opened the first time it is read so that the entries that are not read
+     * are not opened at all.
+     */
+    private class EntryInputStream extends InputStream {
+
+        private final ArchiveEntry entry;
+        private final ArchiveEntryIterator iterator;
+        private InputStream in;
+        private boolean closed;
+
+        private EntryInputStream(ArchiveEntry entry, ArchiveEntryIterator iterator) {
+            this.entry = entry;
+            this.iterator = iterator;
+        }
+
+        private InputStream getInputStream() throws IOException {
+            if (closed)
+                throw new IOException("Stream closed");
+
+            if (in == null)
+                in = getEntryInputStream(entry, iterator);
+            return in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return getInputStream().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return getInputStream().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return getInputStream().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return getInputStream().available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            if (in != null)
+                in.close();
+        }
+    }
 }
@@ -0,0 +1,57 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This interface receives the entries extracted by {@link AbstractArchiveFile#extractEntries(ArchiveEntryHandler)},
+ * which reads the archive only once.
+ *
+ * <p>Both methods are called by the thread that called <code>extractEntries</code>. {@link #accept(ArchiveEntry)} is
+ * called once for every entry of the archive, in the order of the archive. {@link #extract(ArchiveEntry, InputStream)}
+ * is then called once for every accepted entry, not necessarily right after the entry has been accepted, and in the
+ * order in which the implementation reads the entries: this is the order of the archive by default, but some
+ * implementations extract all the directories before the files. A handler must therefore not expect the parent
+ * directory of an entry to have been extracted before the entry.</p>
+ *
+ * @see AbstractArchiveFile#extractEntries(ArchiveEntryHandler)
+ */
+public interface ArchiveEntryHandler {
+
+    /**
+     * Returns <code>true</code> if the given entry is to be extracted.
+     *
+     * @param entry an entry of the archive
+     * @return <code>true</code> if the given entry is to be extracted
+     */
+    boolean accept(ArchiveEntry entry);
+
+    /**
+     * Extracts the given entry. The given <code>InputStream</code> is only valid until this method returns, any data
+     * that has not been read by then is discarded. It does not need to be closed.
+     *
+     * @param entry an accepted entry
+     * @param in the contents of the entry, <code>null</code> if the entry is a directory
+     * @return <code>true</code> to continue with the next entries, <code>false</code> to stop the extraction
+     * @throws IOException if an I/O error occurred, stops the extraction
+     */
+    boolean extract(ArchiveEntry entry, InputStream in) throws IOException;
+}
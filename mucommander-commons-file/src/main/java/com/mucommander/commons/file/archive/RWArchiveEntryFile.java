@@ -120,12 +120,10 @@ public class RWArchiveEntryFile extends AbstractArchiveEntryFile {
 
         // Throw an IOException if this entry is a non-empty directory
         if(isDirectory()) {
-            ArchiveEntryTree tree = rwArchiveFile.getArchiveEntryTree();
-            if(tree!=null) {
-                DefaultMutableTreeNode node = tree.findEntryNode(entry.getPath());
-                if(node!=null && node.getChildCount()>0)
-                    throw new IOException();
-            }
+            // The entries tree is created again if it has been released
+            DefaultMutableTreeNode node = rwArchiveFile.getArchiveEntryNode(entry.getPath());
+            if(node!=null && node.getChildCount()>0)
+                throw new IOException();
         }
 
         // Delete the entry in the archive file
@@ -0,0 +1,314 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.file.protocol.local.LocalFile;
+
+/**
+ * Calculates the number of files and folders contained in a set of files and folders and their combined size.
+ *
+ * <p>Folders are listed concurrently by a pool of threads. The number of concurrent listings on a remote host is
+ * bounded by {@link #MAX_LISTINGS_PER_HOST}, across all the calculations in progress, so as not to overload the
+ * server. Totals are updated as files are encountered and can be read while the calculation is in progress.
+ * Symbolic links are skipped, except for the files the calculation starts from which are followed.
+ * Local files that have several hard links are counted once in the size.</p>
+ *
+ * <p>A calculator adds up the totals of successive calls to {@link #calculate(AbstractFile...)}, which share its pool
+ * of threads. It can be cancelled from another thread, and {@link #shutdown()} must be called once it is no longer
+ * used so that the threads are released.</p>
+ */
+public class DirectorySizeCalculator {
+
+    /** Default number of threads listing folders */
+    public static final int DEFAULT_PARALLELISM = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    /** Max number of folders listed concurrently on the same remote host */
+    public static final int MAX_LISTINGS_PER_HOST = 4;
+
+    /** Permits to list folders, by remote host */
+    private static final Map<String, Semaphore> HOST_PERMITS = new ConcurrentHashMap<>();
+
+    private final Predicate<AbstractFile> filter;
+    private final int parallelism;
+
+    private final LongAdder totalBytes = new LongAdder();
+    private final LongAdder nbFiles = new LongAdder();
+    private final LongAdder nbFolders = new LongAdder();
+
+    /** Device and inode of the local files with several hard links that have been counted */
+    private final Set<String> countedInodes = ConcurrentHashMap.newKeySet();
+    /** False if the unix attributes of local files are not available on this platform */
+    private volatile boolean hardLinksDetection = true;
+
+    private Consumer<AbstractFile> folderListener;
+    private volatile boolean cancelled;
+
+    /** Folders that are listed or waiting to be listed */
+    private final AtomicInteger pendingFolders = new AtomicInteger();
+    /** Lists the folders, created by the first calculation */
+    private volatile ExecutorService executor;
+    /** True once the calculator has been shut down */
+    private boolean shutdown;
+
+    /**
+     * Creates a calculator that counts all files and uses {@link #DEFAULT_PARALLELISM} threads.
+     */
+    public DirectorySizeCalculator() {
+        this(file -> true, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Creates a calculator that counts the files accepted by the given filter.
+     *
+     * @param filter the files to count, folders that are not accepted are not recursed into
+     * @param parallelism the number of threads listing folders
+     */
+    public DirectorySizeCalculator(Predicate<AbstractFile> filter, int parallelism) {
+        this.filter = filter;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Sets a listener that is notified, by the thread listing it, before a folder is listed.
+     * The listener may block, e.g. to pause the calculation.
+     *
+     * @param folderListener the listener to notify before a folder is listed
+     */
+    public void setFolderListener(Consumer<AbstractFile> folderListener) {
+        this.folderListener = folderListener;
+    }
+
+    /**
+     * Adds the given files to the totals, recursing into folders, and returns once all of them have been counted
+     * or the calculation has been cancelled.
+     *
+     * @param files files and folders to count
+     * @throws InterruptedException if the current thread was interrupted while waiting, the calculation is cancelled
+     */
+    public void calculate(AbstractFile... files) throws InterruptedException {
+        synchronized (this) {
+            if (shutdown)
+                return;
+            if (executor == null)
+                executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+                    Thread thread = new Thread(runnable, DirectorySizeCalculator.class.getSimpleName());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        }
+
+        try {
+            for (AbstractFile file : files) {
+                if (cancelled)
+                    break;
+                // The given files are followed if they are symbolic links to folders
+                if (!filter.test(file))
+                    continue;
+                if (file.isDirectory())
+                    addFolder(file);
+                else
+                    addFile(file);
+            }
+
+            synchronized (pendingFolders) {
+                while (pendingFolders.get() > 0 && !cancelled)
+                    pendingFolders.wait();
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * Cancels the calculation and stops the threads listing folders. The calculator can't be used afterwards.
+     */
+    public void shutdown() {
+        cancel();
+        synchronized (this) {
+            shutdown = true;
+            if (executor != null)
+                executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stops the calculation, the totals are left as they are.
+     */
+    public void cancel() {
+        cancelled = true;
+        synchronized (pendingFolders) {
+            pendingFolders.notifyAll();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the calculation has been cancelled.
+     *
+     * @return <code>true</code> if the calculation has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns the combined size in bytes of the files counted so far.
+     *
+     * @return the combined size in bytes of the files counted so far
+     */
+    public long getTotalBytes() {
+        return totalBytes.sum();
+    }
+
+    /**
+     * Returns the number of files, folders excluded, counted so far.
+     *
+     * @return the number of files, folders excluded, counted so far
+     */
+    public int getNbFiles() {
+        return nbFiles.intValue();
+    }
+
+    /**
+     * Returns the number of folders counted so far.
+     *
+     * @return the number of folders counted so far
+     */
+    public int getNbFolders() {
+        return nbFolders.intValue();
+    }
+
+    private void addFile(AbstractFile file) {
+        nbFiles.increment();
+        long size = file.getSize();
+        // Size can be equal to -1 if not available
+        if (size > 0 && isFirstHardLink(file))
+            totalBytes.add(size);
+    }
+
+    private void addFolder(AbstractFile folder) {
+        nbFolders.increment();
+        pendingFolders.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    listFolder(folder);
+                } finally {
+                    folderDone();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The calculation has been cancelled
+            folderDone();
+        }
+    }
+
+    private void folderDone() {
+        if (pendingFolders.decrementAndGet() == 0) {
+            synchronized (pendingFolders) {
+                pendingFolders.notifyAll();
+            }
+        }
+    }
+
+    private void listFolder(AbstractFile folder) {
+        if (cancelled)
+            return;
+
+        if (folderListener != null)
+            folderListener.accept(folder);
+
+        AbstractFile[] children;
+        Semaphore permits = getHostPermits(folder.getURL());
+        try {
+            if (permits != null)
+                permits.acquire();
+            try {
+                children = folder.ls();
+            } finally {
+                if (permits != null)
+                    permits.release();
+            }
+        } catch (IOException e) {
+            // The folder can't be listed, its content is not counted
+            return;
+        } catch (InterruptedException e) {
+            return;
+        }
+
+        for (AbstractFile child : children) {
+            if (cancelled)
+                return;
+            if (child.isSymlink() || !filter.test(child))
+                continue;
+            if (child.isDirectory())
+                addFolder(child);
+            else
+                addFile(child);
+        }
+    }
+
+    private static Semaphore getHostPermits(FileURL url) {
+        if (LocalFile.SCHEMA.equals(url.getScheme()))
+            return null;
+        return HOST_PERMITS.computeIfAbsent(url.getScheme() + "://" + url.getHost(),
+                host -> new Semaphore(MAX_LISTINGS_PER_HOST, true));
+    }
+
+    /**
+     * Returns <code>false</code> if the given file is a local file with several hard links, one of which has
+     * already been counted.
+     */
+    private boolean isFirstHardLink(AbstractFile file) {
+        if (!hardLinksDetection)
+            return true;
+
+        Object underlyingFile = file.getUnderlyingFileObject();
+        if (!(underlyingFile instanceof File))
+            return true;
+
+        try {
+            Map<String, Object> attributes = Files.readAttributes(((File) underlyingFile).toPath(), "unix:nlink,dev,ino", LinkOption.NOFOLLOW_LINKS);
+            if (((Number) attributes.get("nlink")).intValue() <= 1)
+                return true;
+            return countedInodes.add(attributes.get("dev") + ":" + attributes.get("ino"));
+        } catch (UnsupportedOperationException e) {
+            hardLinksDetection = false;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return true;
+        }
+    }
+}
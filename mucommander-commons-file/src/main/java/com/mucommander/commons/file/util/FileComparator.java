@@ -18,8 +18,10 @@
 
 package com.mucommander.commons.file.util;
 
+import com.ibm.icu.text.CollationKey;
 import com.ibm.icu.text.Collator;
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.util.IndexSort;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.Comparator;
@@ -159,6 +161,51 @@ public class FileComparator implements Comparator<AbstractFile> {
         return s;
     }
 
+    /**
+     * Compares the numbers contained by the given filenames, so that filenames are ordered by the number's value,
+     * e.g.: 1 &lt; 1a &lt; 2 &lt; 10, like Mac OS X Finder and Windows Explorer do.
+     *
+     * <p>This special order applies only if both strings contain a number and have the same prefix. Otherwise, or if
+     * the numbers are equal, <code>0</code> is returned and the general order applies.</p>
+     *
+     * @param s1 first filename to compare
+     * @param s2 second filename to compare
+     * @return the difference between the numbers of the given filenames, <code>0</code> if the general order applies
+     */
+    private int compareNumbers(String s1, String s2) {
+        Matcher m1 = FILENAME_WITH_NUMBER_PATTERN.matcher(s1);
+        if(m1.find()) {
+            Matcher m2 = FILENAME_WITH_NUMBER_PATTERN.matcher(s2);
+            if(m2.find()) {
+                // So we got two filenames that both contain a number, check if they have the same prefix
+                int start1 = m1.start();
+                int start2 = m2.start();
+
+                // Note: compare prefixes only if start indexes match, faster that way
+                if(start1==start2 && (start1==0 || s1.regionMatches(0, s2, 0, start1))) {
+                    String g1 = removeLeadingZeros(m1.group());
+                    String g2 = removeLeadingZeros(m2.group());
+
+                    int g1Len = g1.length();
+                    int g2Len = g2.length();
+
+                    if(g1Len!=g2Len)
+                        return g1Len - g2Len;
+
+                    int c1, c2;
+                    for (int i=0; i<g1Len && i<g2Len; i++) {
+                        c1 = g1.charAt(i);
+                        c2 = g2.charAt(i);
+                        if(c1 != c2)
+                            return c1 - c2;
+                    }
+                }
+            }
+        }
+
+        return 0;
+    }
+
     /**
      * Compare the specified files by their names, following the contract of {@link Comparator#compare(Object, Object)}.
      *
@@ -168,43 +215,22 @@ public class FileComparator implements Comparator<AbstractFile> {
      * than the second.
      */
     private int compareByFilename(AbstractFile file1, AbstractFile file2) {
-        String s1 = nameFunc.apply(file1);
-        String s2 = nameFunc.apply(file2);
+        return compareFilenames(nameFunc.apply(file1), nameFunc.apply(file2));
+    }
 
+    /**
+     * Compares the specified filenames in the order used by this comparator to compare filenames, in ascending order.
+     *
+     * @param s1 first filename to compare
+     * @param s2 second filename to compare
+     * @return a negative integer, zero, or a positive integer as the first argument is less than, equal to, or greater
+     * than the second.
+     */
+    public int compareFilenames(String s1, String s2) {
         if (this.mode == Mode.NATURAL) {
-            // Special treatment for strings that contain a number, so they are ordered by the number's value, e.g.:
-            // 1 < 1a < 2 < 10, like Mac OS X Finder and Windows Explorer do.
-            //
-            // This special order applies only if both strings contain a number and have the same prefix. Otherwise, the general order applies.
-            Matcher m1 = FILENAME_WITH_NUMBER_PATTERN.matcher(s1);
-            if(m1.find()) {
-                Matcher m2 = FILENAME_WITH_NUMBER_PATTERN.matcher(s2);
-                if(m2.find()) {
-                    // So we got two filenames that both contain a number, check if they have the same prefix
-                    int start1 = m1.start();
-                    int start2 = m2.start();
-
-                    // Note: compare prefixes only if start indexes match, faster that way
-                    if(start1==start2 && (start1==0 || s1.substring(0, start1).equals(s2.substring(0, start2)))) {
-                        String g1 = removeLeadingZeros(m1.group());
-                        String g2 = removeLeadingZeros(m2.group());
-
-                        int g1Len = g1.length();
-                        int g2Len = g2.length();
-
-                        if(g1Len!=g2Len)
-                            return g1Len - g2Len;
-
-                        int c1, c2;
-                        for (int i=0; i<g1Len && i<g2Len; i++) {
-                            c1 = g1.charAt(i);
-                            c2 = g2.charAt(i);
-                            if(c1 != c2)
-                                return c1 - c2;
-                        }
-                    }
-                }
-            }
+            int diff = compareNumbers(s1, s2);
+            if (diff != 0)
+                return diff;
         }
 
         var collator = Collator.getInstance(locale);
@@ -224,6 +250,44 @@ public class FileComparator implements Comparator<AbstractFile> {
     }
 
 
+    /**
+     * Returns the rank of each of the given filenames in the order used by this comparator to compare filenames,
+     * in ascending order. Filenames that are equal for this comparator have the same rank. This allows to sort a
+     * large number of files repeatedly without comparing their names again: the collation key of each filename
+     * is computed only once, instead of comparing the filenames with a new collator each time.
+     *
+     * @param names the filenames to rank
+     * @return the rank of each filename, between <code>0</code> and <code>names.length</code> (excluded)
+     */
+    public int[] rankFilenames(String[] names) {
+        int nbNames = names.length;
+        var collator = Collator.getInstance(locale);
+        collator.setStrength(Collator.TERTIARY);
+        CollationKey[] keys = new CollationKey[nbNames];
+        int[] indexes = new int[nbNames];
+        for (int i = 0; i < nbNames; i++) {
+            keys[i] = collator.getCollationKey(names[i]);
+            indexes[i] = i;
+        }
+
+        IndexSort.IndexComparator comparator = (i1, i2) -> {
+            if (mode == Mode.NATURAL) {
+                int diff = compareNumbers(names[i1], names[i2]);
+                if (diff != 0)
+                    return diff;
+            }
+            return keys[i1].compareTo(keys[i2]);
+        };
+        IndexSort.sort(indexes, comparator);
+
+        int[] ranks = new int[nbNames];
+        for (int i = 1; i < nbNames; i++)
+            ranks[indexes[i]] = ranks[indexes[i-1]] + (comparator.compare(indexes[i-1], indexes[i]) == 0 ? 0 : 1);
+
+        return ranks;
+    }
+
+
     ///////////////////////////////
     // Comparator implementation //
     ///////////////////////////////
@@ -15,13 +15,14 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-
 package com.mucommander.commons.file.util;
 
-import org.apache.commons.collections4.map.AbstractReferenceMap.ReferenceStrength;
-import org.apache.commons.collections4.map.ReferenceMap;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileURL;
 
 /**
  * This class allows {@link AbstractFile} instances to be pooled, so that existing file instances can be reused,
@@ -30,17 +31,35 @@ import com.mucommander.commons.file.AbstractFile;
  * but a sensible choice is to use the {@link AbstractFile#getURL() file's URL}.
  *
  * <p>Files are stored as {@link java.lang.ref.WeakReference weak references} so they can be garbage collected
- * when they are no longer hard-referenced.</p>
+ * when they are no longer hard-referenced. Mappings whose file has been garbage collected are purged as new files
+ * are added to the pool.</p>
  *
- * <p>This class uses the {@link ReferenceMap} class part of the <code>Apache Commons Collection</code> library.
- * All accesses to the underlying map is synchronized, making this class thread-safe.</p>
+ * <p>The underlying map is a {@link ConcurrentHashMap}, so that lookups, which are by far the most frequent
+ * operation, do not block each other when files are resolved from several threads. {@link FileURL} keys are copied
+ * when added to the pool, so that a URL modified after it was added cannot corrupt the pool; their hash code is
+ * computed once and cached by the copy. This class is thread-safe.</p>
  *
  * @author Maxence Bernard
  */
 public class FilePool {
 
     /** The actual hash map */
-    protected final ReferenceMap<Object, AbstractFile> hashMap = new ReferenceMap<>(ReferenceStrength.HARD, ReferenceStrength.WEAK);
+    protected final ConcurrentHashMap<Object, FileReference> hashMap = new ConcurrentHashMap<>();
+
+    /** Queue the references to the files that have been garbage collected are enqueued to */
+    private final ReferenceQueue<AbstractFile> referenceQueue = new ReferenceQueue<>();
+
+    /**
+     * Weak reference to a pooled file, that remembers the key the file is mapped onto.
+     */
+    protected static class FileReference extends WeakReference<AbstractFile> {
+        private final Object key;
+
+        private FileReference(Object key, AbstractFile file, ReferenceQueue<AbstractFile> queue) {
+            super(file, queue);
+            this.key = key;
+        }
+    }
 
     /**
      * Creates a new file pool.
@@ -57,8 +76,12 @@ public class FilePool {
      * @return returns the file instance previously mapped onto the given key, <code>null</code> if no
      * such mapping existed
      */
-    public synchronized AbstractFile put(Object key, AbstractFile value) {
-        return hashMap.put(key, value);
+    public AbstractFile put(Object key, AbstractFile value) {
+        purge();
+        // Use a copy of URLs, which are mutable, as keys
+        Object immutableKey = key instanceof FileURL ? ((FileURL) key).clone() : key;
+        FileReference previous = hashMap.put(immutableKey, new FileReference(immutableKey, value, referenceQueue));
+        return previous != null ? previous.get() : null;
     }
 
     /**
@@ -69,8 +92,9 @@ public class FilePool {
      * @return the {@link AbstractFile} instance mapped onto the given key if there is one,
      * <code>null</code> otherwise
      */
-    public synchronized AbstractFile get(Object key) {
-        return hashMap.get(key);
+    public AbstractFile get(Object key) {
+        FileReference reference = hashMap.get(key);
+        return reference != null ? reference.get() : null;
     }
 
     /**
@@ -81,8 +105,8 @@ public class FilePool {
      * @return <code>true</code> if this pool currently contains a key/file mapping where the given key is used as
      * the mapping's key.
      */
-    public synchronized boolean containsKey(Object key) {
-        return hashMap.containsKey(key);
+    public boolean containsKey(Object key) {
+        return get(key) != null;
     }
 
     /**
@@ -93,16 +117,21 @@ public class FilePool {
      * @return <code>true</code> if this pool currently contains a key/file mapping where the given file is used as
      * the mapping's key.
      */
-    public synchronized boolean containsValue(AbstractFile file) {
-        return hashMap.containsValue(file);
+    public boolean containsValue(AbstractFile file) {
+        for (FileReference reference : hashMap.values()) {
+            if (file.equals(reference.get()))
+                return true;
+        }
+        return false;
     }
 
     /**
      * Removes all existing key/file mapping from this pool, leaving the pool in the same state as it was right after
      * its creation.
      */
-    public synchronized void clear() {
+    public void clear() {
         hashMap.clear();
+        purge();
     }
 
     /**
@@ -110,7 +139,17 @@ public class FilePool {
      *
      * @return the number of key/file mapping this pool currently contains.
      */
-    public synchronized int size() {
+    public int size() {
+        purge();
         return hashMap.size();
     }
+
+    /**
+     * Removes the mappings whose file has been garbage collected.
+     */
+    private void purge() {
+        FileReference reference;
+        while ((reference = (FileReference) referenceQueue.poll()) != null)
+            hashMap.remove(reference.key, reference);
+    }
 }
@@ -0,0 +1,309 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.util;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.mucommander.commons.file.FileURL;
+
+/**
+ * Cache of the metadata of remote files, keyed by path, that spares remote protocols from querying the server for
+ * files whose metadata was recently obtained, typically when listing their parent folder.
+ *
+ * <p>Entries expire after a time-to-live and the least recently used ones are evicted when the cache exceeds its
+ * capacity. The cache also remembers the files that are known not to exist, either because a lookup failed or because
+ * they are missing from the listing of their parent folder. A listing is only trusted as long as all of its children
+ * are cached: evicting one of them discards the listing too. Protocols are expected to {@link #invalidate(String)}
+ * the paths they modify, so that changes made through the same client are visible immediately; changes made by other
+ * clients become visible once the entries expire.</p>
+ *
+ * <p>Connection pools hold several connections to the same server, so protocols should use the cache that
+ * {@link #getRealmCache(FileURL, String)} shares among all the connections to a realm: a cache owned by each
+ * connection would keep serving the listings and missing files that another connection has since modified.</p>
+ *
+ * <p>Paths are expected to be normalized by the caller (e.g. without trailing separator). This class is thread-safe.</p>
+ *
+ * @param <M> type of the metadata
+ */
+public class MetadataCache<M> {
+
+    /** Default time-to-live of the entries, in milliseconds */
+    public static final long DEFAULT_TTL = 60 * 1000;
+    /** Default max number of entries */
+    public static final int DEFAULT_CAPACITY = 100000;
+
+    /** Caches shared by the connections to a realm, by realm */
+    private static final Map<FileURL, MetadataCache<?>> REALM_CACHES = new ConcurrentHashMap<>();
+
+    private final String separator;
+    private final long ttl;
+    private final int capacity;
+
+    /** Metadata by path in access order, <code>null</code> metadata for files that do not exist */
+    private final LinkedHashMap<String, Entry<M>> entries;
+    /** Cached children and listings of folders, by path, sorted so that the descendants of a folder are contiguous */
+    private final NavigableMap<String, Folder> folders = new TreeMap<>();
+
+    private static class Entry<M> {
+        private final M metadata;
+        private final long expiration;
+
+        private Entry(M metadata, long expiration) {
+            this.metadata = metadata;
+            this.expiration = expiration;
+        }
+    }
+
+    private static class Folder {
+        /** Names of the children that have an entry */
+        private final Set<String> names = new HashSet<>();
+        /** Expiration date of the complete listing of the folder, 0 if it is not known */
+        private long listingExpiration;
+    }
+
+    /**
+     * Creates a cache with the {@link #DEFAULT_TTL default time-to-live} and {@link #DEFAULT_CAPACITY capacity}.
+     *
+     * @param separator the path separator of the protocol
+     */
+    public MetadataCache(String separator) {
+        this(separator, DEFAULT_TTL, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param separator the path separator of the protocol
+     * @param ttl time-to-live of the entries, in milliseconds
+     * @param capacity max number of entries
+     */
+    public MetadataCache(String separator, long ttl, int capacity) {
+        this.separator = separator;
+        this.ttl = ttl;
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, Entry<M>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<M>> eldest) {
+                if (size() <= MetadataCache.this.capacity)
+                    return false;
+                removeFromFolder(eldest.getKey());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache shared by all the connections to the given realm, with the {@link #DEFAULT_TTL default
+     * time-to-live} and {@link #DEFAULT_CAPACITY capacity}. The cache is created the first time the realm is requested.
+     *
+     * @param realm the realm of the connections, as returned by {@link FileURL#getRealm()}
+     * @param separator the path separator of the protocol
+     * @param <M> type of the metadata, which must be the same for all the callers of a realm
+     * @return the cache shared by the connections to the realm
+     */
+    @SuppressWarnings("unchecked")
+    public static <M> MetadataCache<M> getRealmCache(FileURL realm, String separator) {
+        return (MetadataCache<M>) REALM_CACHES.computeIfAbsent((FileURL) realm.clone(), r -> new MetadataCache<>(separator));
+    }
+
+    /**
+     * Looks the metadata of the given file up.
+     *
+     * @param path path of the file
+     * @return <code>null</code> if the cache knows nothing about the file, an empty Optional if the file is known not
+     * to exist, and the metadata of the file otherwise
+     */
+    public synchronized Optional<M> get(String path) {
+        long now = System.currentTimeMillis();
+        Entry<M> entry = entries.get(path);
+        if (entry != null) {
+            if (entry.expiration > now)
+                return Optional.ofNullable(entry.metadata);
+            entries.remove(path);
+            removeFromFolder(path);
+        }
+
+        // A file that is missing from the listing of its parent does not exist
+        String parent = getParent(path);
+        Folder folder = parent != null ? folders.get(parent) : null;
+        if (folder != null && folder.listingExpiration != 0) {
+            if (folder.listingExpiration > now)
+                return Optional.empty();
+            folder.listingExpiration = 0;
+            removeIfEmpty(parent, folder);
+        }
+        return null;
+    }
+
+    /**
+     * Caches the metadata of the given file.
+     *
+     * @param path path of the file
+     * @param metadata metadata of the file
+     */
+    public synchronized void put(String path, M metadata) {
+        putEntry(path, new Entry<>(metadata, System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * Remembers that the given file does not exist.
+     *
+     * @param path path of the file
+     */
+    public synchronized void putMissing(String path) {
+        putEntry(path, new Entry<>(null, System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * Caches the metadata of the children of the given folder, as returned by a complete listing of the folder.
+     * Children that are not part of the listing are then known not to exist.
+     *
+     * @param folderPath path of the folder
+     * @param children metadata of the children of the folder, by name
+     */
+    public synchronized void putListing(String folderPath, Map<String, M> children) {
+        long expiration = System.currentTimeMillis() + ttl;
+        String path = PathUtils.removeTrailingSeparator(folderPath, separator);
+        String prefix = path + separator;
+        // the children that are no longer part of the folder must not be served anymore
+        Folder folder = folders.computeIfAbsent(path, p -> new Folder());
+        for (String name : folder.names)
+            entries.remove(prefix + name);
+        folder.names.clear();
+
+        // set before the children are cached, so that the listing is discarded if one of them gets evicted
+        folder.listingExpiration = expiration;
+        for (Map.Entry<String, M> child : children.entrySet())
+            putEntry(prefix + child.getKey(), new Entry<>(child.getValue(), expiration));
+    }
+
+    /**
+     * Discards what is known about the given file and its descendants, and about the content of its parent folder.
+     * To be called whenever the file is created, modified, renamed or deleted.
+     *
+     * @param path path of the file
+     */
+    public synchronized void invalidate(String path) {
+        path = PathUtils.removeTrailingSeparator(path, separator);
+        entries.remove(path);
+        removeFromFolder(path);
+
+        removeFolder(path, folders.remove(path));
+        String prefix = path + separator;
+        Iterator<Map.Entry<String, Folder>> descendants = folders.subMap(prefix, prefix + Character.MAX_VALUE).entrySet().iterator();
+        while (descendants.hasNext()) {
+            Map.Entry<String, Folder> descendant = descendants.next();
+            removeFolder(descendant.getKey(), descendant.getValue());
+            descendants.remove();
+        }
+    }
+
+    /**
+     * Discards all the entries of the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        folders.clear();
+    }
+
+    /**
+     * Discards the expired entries of the cache.
+     */
+    public synchronized void purge() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<String, Entry<M>>> iterator = entries.entrySet().iterator(); iterator.hasNext();) {
+            Map.Entry<String, Entry<M>> entry = iterator.next();
+            if (entry.getValue().expiration <= now) {
+                iterator.remove();
+                removeFromFolder(entry.getKey());
+            }
+        }
+        for (Iterator<Folder> iterator = folders.values().iterator(); iterator.hasNext();) {
+            Folder folder = iterator.next();
+            if (folder.listingExpiration <= now) {
+                folder.listingExpiration = 0;
+                if (folder.names.isEmpty())
+                    iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries of the cache, including those that expired but were not purged yet.
+     *
+     * @return the number of entries of the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void putEntry(String path, Entry<M> entry) {
+        if (entries.put(path, entry) == null) {
+            String parent = getParent(path);
+            if (parent != null)
+                folders.computeIfAbsent(parent, p -> new Folder()).names.add(getName(path));
+        }
+    }
+
+    /**
+     * Forgets that the given file has an entry, and discards the listing of its parent folder that can't be trusted
+     * anymore.
+     */
+    private void removeFromFolder(String path) {
+        String parent = getParent(path);
+        Folder folder = parent != null ? folders.get(parent) : null;
+        if (folder != null) {
+            folder.names.remove(getName(path));
+            folder.listingExpiration = 0;
+            removeIfEmpty(parent, folder);
+        }
+    }
+
+    /**
+     * Discards the entries of the children of the given folder, which must be removed from {@link #folders} by the
+     * caller.
+     */
+    private void removeFolder(String path, Folder folder) {
+        if (folder != null) {
+            for (String name : folder.names)
+                entries.remove(path + separator + name);
+        }
+    }
+
+    private void removeIfEmpty(String path, Folder folder) {
+        if (folder.names.isEmpty() && folder.listingExpiration == 0)
+            folders.remove(path);
+    }
+
+    private String getName(String path) {
+        String trimmed = PathUtils.removeTrailingSeparator(path, separator);
+        return trimmed.substring(trimmed.lastIndexOf(separator) + separator.length());
+    }
+
+    private String getParent(String path) {
+        String trimmed = PathUtils.removeTrailingSeparator(path, separator);
+        int index = trimmed.lastIndexOf(separator);
+        return index >= 0 ? trimmed.substring(0, index) : null;
+    }
+}
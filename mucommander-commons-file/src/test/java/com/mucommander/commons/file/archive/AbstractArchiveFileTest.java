@@ -0,0 +1,206 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * A test case for the retention of the entries trees of {@link AbstractArchiveFile}: the trees of the least recently
+ * browsed archives are released once too many trees or entries are retained, and created again when needed. Also
+ * tests the default extraction of the entries in a single pass.
+ */
+public class AbstractArchiveFileTest {
+
+    /** Underlying file of the test archives */
+    private AbstractFile file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = FileFactory.getTemporaryFile(getClass().getSimpleName(), true);
+        file.mkfile();
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        file.delete();
+    }
+
+    /**
+     * Ensures that no more than {@link AbstractArchiveFile#MAX_RETAINED_TREES} trees are retained, and that a
+     * released tree is created again when its archive is browsed.
+     */
+    @Test
+    public void testMaxTrees() throws IOException {
+        List<TestArchiveFile> archives = new ArrayList<>();
+        for(int i=0; i<=AbstractArchiveFile.MAX_RETAINED_TREES; i++) {
+            TestArchiveFile archive = new TestArchiveFile(file, 1);
+            archive.ls();
+            archives.add(archive);
+        }
+
+        // The least recently browsed archive is the first one
+        assert archives.get(0).entryTreeRoot == null;
+        for(int i=1; i<archives.size(); i++)
+            assert archives.get(i).entryTreeRoot != null;
+
+        // Browsing an archive whose tree is retained doesn't create it again
+        archives.get(1).ls();
+        assert archives.get(1).nbIterations == 1;
+
+        archives.get(0).ls();
+        assert archives.get(0).nbIterations == 2;
+        assert archives.get(0).entryTreeRoot != null;
+        // The second archive was browsed again more recently than the third one
+        assert archives.get(1).entryTreeRoot != null;
+        assert archives.get(2).entryTreeRoot == null;
+    }
+
+    /**
+     * Ensures that the trees of the least recently browsed archives are released when the other trees hold more than
+     * {@link AbstractArchiveFile#MAX_RETAINED_ENTRIES} entries, but that the tree of the archive being browsed is
+     * always retained.
+     */
+    @Test
+    public void testMaxEntries() throws IOException {
+        // The large archive doesn't exceed the limit on its own, but does with both small ones
+        TestArchiveFile large = new TestArchiveFile(file, AbstractArchiveFile.MAX_RETAINED_ENTRIES-10);
+        TestArchiveFile small1 = new TestArchiveFile(file, 10);
+        TestArchiveFile small2 = new TestArchiveFile(file, 10);
+
+        large.ls();
+        assert large.entryTreeRoot != null;
+        small1.ls();
+        assert large.entryTreeRoot != null;
+
+        small2.ls();
+        assert large.entryTreeRoot == null;
+        assert small1.entryTreeRoot != null;
+        assert small2.entryTreeRoot != null;
+
+        large.ls();
+        assert large.nbIterations == 2;
+        assert large.entryTreeRoot != null;
+        assert small1.entryTreeRoot != null;
+        assert small2.entryTreeRoot != null;
+    }
+
+    /**
+     * Ensures that browsing an archive doesn't prevent it, and its tree, from being garbage collected.
+     */
+    @Test
+    public void testWeakRetention() throws IOException, InterruptedException {
+        TestArchiveFile archive = new TestArchiveFile(file, 10);
+        archive.ls();
+        WeakReference<TestArchiveFile> archiveRef = new WeakReference<>(archive);
+        archive = null;
+
+        for(int i=0; i<100 && archiveRef.get()!=null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assert archiveRef.get() == null;
+    }
+
+    /**
+     * Ensures that the accepted entries are extracted in order, that the entries that the handler doesn't read are not
+     * opened, and that the extraction stops when the handler asks it to.
+     */
+    @Test
+    public void testExtractEntries() throws IOException {
+        TestArchiveFile archive = new TestArchiveFile(file, 4);
+        List<String> extracted = new ArrayList<>();
+        archive.extractEntries(new ArchiveEntryHandler() {
+            @Override
+            public boolean accept(ArchiveEntry entry) {
+                return !entry.getPath().equals("dir/file1");
+            }
+
+            @Override
+            public boolean extract(ArchiveEntry entry, InputStream in) throws IOException {
+                extracted.add(entry.getPath());
+                try (InputStream entryIn = in) {
+                    if (!entry.getPath().equals("dir/file2"))
+                        assertEquals(new String(entryIn.readAllBytes(), StandardCharsets.UTF_8), entry.getPath());
+                }
+                return true;
+            }
+        });
+        assertEquals(extracted, List.of("dir/file0", "dir/file2", "dir/file3"));
+        assertEquals(archive.openedEntries, List.of("dir/file0", "dir/file3"));
+
+        extracted.clear();
+        archive.extractEntries(new ArchiveEntryHandler() {
+            @Override
+            public boolean accept(ArchiveEntry entry) {
+                return true;
+            }
+
+            @Override
+            public boolean extract(ArchiveEntry entry, InputStream in) {
+                extracted.add(entry.getPath());
+                return !entry.getPath().equals("dir/file1");
+            }
+        });
+        assertEquals(extracted, List.of("dir/file0", "dir/file1"));
+    }
+
+    /**
+     * An archive whose entries are the given number of files in a directory.
+     */
+    private static class TestArchiveFile extends AbstractROArchiveFile {
+        private final int nbEntries;
+        /** Number of times the entries have been iterated through */
+        private int nbIterations;
+        /** Paths of the entries that have been opened */
+        private final List<String> openedEntries = new ArrayList<>();
+
+        TestArchiveFile(AbstractFile file, int nbEntries) {
+            super(file);
+            this.nbEntries = nbEntries;
+        }
+
+        @Override
+        public ArchiveEntryIterator getEntryIterator() {
+            nbIterations++;
+            List<ArchiveEntry> entries = new ArrayList<>(nbEntries);
+            for(int i=0; i<nbEntries; i++)
+                entries.add(new ArchiveEntry("dir/file"+i, false, 0, 0, true));
+            return new WrapperArchiveEntryIterator(entries.iterator());
+        }
+
+        @Override
+        public InputStream getEntryInputStream(ArchiveEntry entry, ArchiveEntryIterator entryIterator) {
+            openedEntries.add(entry.getPath());
+            return new ByteArrayInputStream(entry.getPath().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
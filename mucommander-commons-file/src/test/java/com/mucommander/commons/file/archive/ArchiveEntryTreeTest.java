@@ -0,0 +1,113 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive;
+
+import org.testng.annotations.Test;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+/**
+ * A test case for {@link ArchiveEntryTree}.
+ */
+public class ArchiveEntryTreeTest {
+
+    /** Number of directories of the flat archive created by {@link #testFlatArchive()} */
+    private static final int NB_FLAT_DIRECTORIES = 100000;
+
+    private static ArchiveEntry createEntry(String path, boolean directory) {
+        return new ArchiveEntry(path, directory, 0, 0, true);
+    }
+
+    private static String getPath(DefaultMutableTreeNode node) {
+        return ((ArchiveEntry)node.getUserObject()).getPath();
+    }
+
+    /**
+     * Ensures that entries are found regardless of trailing slashes, including the directories that are not
+     * archive entries themselves, and that removed nodes can't be found anymore.
+     */
+    @Test
+    public void testFindAndRemove() {
+        ArchiveEntryTree tree = new ArchiveEntryTree();
+        tree.addArchiveEntry(createEntry("dir/subdir/file1", false));
+        tree.addArchiveEntry(createEntry("dir/subdir/file2", false));
+        tree.addArchiveEntry(createEntry("dir/", true));
+        tree.addArchiveEntry(createEntry("file", false));
+
+        assert tree.getEntryCount() == 5;
+        assert tree.findEntryNode("") == tree;
+        assert getPath(tree.findEntryNode("dir")).equals("dir/");
+        assert getPath(tree.findEntryNode("dir/subdir/")).equals("dir/subdir/");
+        assert getPath(tree.findEntryNode("dir/subdir/file2")).equals("dir/subdir/file2");
+        assert tree.findEntryNode("dir/file1") == null;
+
+        // The directory entry replaced the one created for its children
+        assert tree.getChildCount() == 2;
+        assert tree.findEntryNode("dir/").getChildCount() == 1;
+
+        tree.removeEntryNode(tree.findEntryNode("dir/subdir"));
+        assert tree.findEntryNode("dir/subdir") == null;
+        assert tree.findEntryNode("dir/subdir/file1") == null;
+        assert tree.findEntryNode("dir/").getChildCount() == 0;
+        assert tree.getEntryCount() == 2;
+    }
+
+    /**
+     * Ensures that the entries that have the same path are found in the order they were added, including after the
+     * one that is found has been removed.
+     */
+    @Test
+    public void testDuplicateEntries() {
+        ArchiveEntryTree tree = new ArchiveEntryTree();
+        ArchiveEntry first = createEntry("dir/file", false);
+        ArchiveEntry second = createEntry("dir/file", false);
+        ArchiveEntry third = createEntry("dir/file", false);
+        tree.addArchiveEntry(first);
+        tree.addArchiveEntry(createEntry("dir/other", false));
+        tree.addArchiveEntry(second);
+        tree.addArchiveEntry(third);
+
+        assert tree.findEntryNode("dir").getChildCount() == 4;
+        assert tree.findEntryNode("dir/file").getUserObject() == first;
+
+        tree.removeEntryNode(tree.findEntryNode("dir/file"));
+        assert tree.findEntryNode("dir/file").getUserObject() == second;
+        tree.removeEntryNode(tree.findEntryNode("dir/file"));
+        assert tree.findEntryNode("dir/file").getUserObject() == third;
+        tree.removeEntryNode(tree.findEntryNode("dir/file"));
+        assert tree.findEntryNode("dir/file") == null;
+        assert tree.findEntryNode("dir").getChildCount() == 1;
+    }
+
+    /**
+     * Creates the tree of an archive that has all of its directories in the same directory, and looks each of them
+     * up.
+     */
+    @Test
+    public void testFlatArchive() {
+        ArchiveEntryTree tree = new ArchiveEntryTree();
+
+        for(int i=0; i<NB_FLAT_DIRECTORIES; i++)
+            tree.addArchiveEntry(createEntry("dir/subdir"+i+"/", true));
+        for(int i=0; i<NB_FLAT_DIRECTORIES; i++)
+            assert getPath(tree.findEntryNode("dir/subdir"+i)).equals("dir/subdir"+i+"/");
+
+        assert tree.findEntryNode("dir").getChildCount() == NB_FLAT_DIRECTORIES;
+        assert tree.getEntryCount() == NB_FLAT_DIRECTORIES+1;
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.commons.file.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.io.StreamUtils;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Runs tests on {@link DirectorySizeCalculator}.
+ */
+public class DirectorySizeCalculatorTest {
+
+    private AbstractFile folder;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        folder = FileFactory.getTemporaryFile(getClass().getName(), true);
+        folder.mkdir();
+
+        // folder/a (10 bytes), folder/sub/b (20 bytes), folder/sub/subsub/c (30 bytes), folder/.hidden (40 bytes)
+        AbstractFile sub = folder.getChild("sub");
+        AbstractFile subsub = sub.getChild("subsub");
+        subsub.mkdirs();
+        createFile(folder.getChild("a"), 10);
+        createFile(sub.getChild("b"), 20);
+        createFile(subsub.getChild("c"), 30);
+        createFile(folder.getChild(".hidden"), 40);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        folder.deleteRecursively();
+    }
+
+    private static void createFile(AbstractFile file, int size) throws IOException {
+        try (OutputStream out = file.getOutputStream()) {
+            StreamUtils.fillWithConstant(out, (byte) 0, size);
+        }
+    }
+
+    @Test
+    public void testTotals() throws InterruptedException {
+        DirectorySizeCalculator calculator = new DirectorySizeCalculator();
+        calculator.calculate(folder);
+
+        assertEquals(calculator.getTotalBytes(), 100);
+        assertEquals(calculator.getNbFiles(), 4);
+        assertEquals(calculator.getNbFolders(), 3);
+    }
+
+    @Test
+    public void testFilter() throws InterruptedException {
+        DirectorySizeCalculator calculator = new DirectorySizeCalculator(file -> !file.getName().startsWith("."), 1);
+        calculator.calculate(folder.getChildSilently("a"), folder.getChildSilently("sub"), folder.getChildSilently(".hidden"));
+
+        assertEquals(calculator.getTotalBytes(), 60);
+        assertEquals(calculator.getNbFiles(), 3);
+        assertEquals(calculator.getNbFolders(), 2);
+    }
+
+    @Test
+    public void testHardLinks() throws IOException, InterruptedException {
+        File a = (File) folder.getChild("a").getUnderlyingFileObject();
+        try {
+            Files.createLink(new File(a.getParentFile(), "link").toPath(), a.toPath());
+        } catch (UnsupportedOperationException e) {
+            // hard links are not supported on this platform
+            return;
+        }
+
+        DirectorySizeCalculator calculator = new DirectorySizeCalculator();
+        calculator.calculate(folder);
+
+        assertEquals(calculator.getNbFiles(), 5);
+        // size of the hard links is counted once where unix attributes are available
+        if (!System.getProperty("os.name").startsWith("Windows"))
+            assertEquals(calculator.getTotalBytes(), 100);
+    }
+
+    @Test
+    public void testSymlinks() throws IOException, InterruptedException {
+        File a = (File) folder.getChild("a").getUnderlyingFileObject();
+        File sub = (File) folder.getChild("sub").getUnderlyingFileObject();
+        try {
+            Files.createSymbolicLink(new File(a.getParentFile(), "fileLink").toPath(), a.toPath());
+            Files.createSymbolicLink(new File(a.getParentFile(), "folderLink").toPath(), sub.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            // symbolic links are not supported on this platform
+            return;
+        }
+
+        DirectorySizeCalculator calculator = new DirectorySizeCalculator();
+        try {
+            calculator.calculate(folder);
+
+            // symbolic links are skipped
+            assertEquals(calculator.getTotalBytes(), 100);
+            assertEquals(calculator.getNbFiles(), 4);
+            assertEquals(calculator.getNbFolders(), 3);
+
+            // unless the calculation starts from them
+            calculator.calculate(folder.getChild("folderLink"));
+            assertEquals(calculator.getTotalBytes(), 150);
+        } finally {
+            calculator.shutdown();
+        }
+    }
+
+    @Test
+    public void testSuccessiveCalculations() throws IOException, InterruptedException {
+        DirectorySizeCalculator calculator = new DirectorySizeCalculator();
+        calculator.calculate(folder.getChild("a"));
+        calculator.calculate(folder.getChild("sub"));
+
+        // totals add up
+        assertEquals(calculator.getTotalBytes(), 60);
+        assertEquals(calculator.getNbFiles(), 3);
+        assertEquals(calculator.getNbFolders(), 2);
+
+        // nothing is counted once the calculator has been shut down
+        calculator.shutdown();
+        calculator.calculate(folder.getChild(".hidden"));
+        assertEquals(calculator.getNbFiles(), 3);
+    }
+}
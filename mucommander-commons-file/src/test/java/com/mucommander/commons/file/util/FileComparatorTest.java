@@ -239,5 +239,13 @@ public class FileComparatorTest {
         Assert.assertEquals(files[0], fileB);
         Assert.assertEquals(files[1], fileA);
     }
+
+    @Test
+    public void testRankFilenames() {
+        String[] names = new String[]{"60_test", "-b", "20_test", "a", "201_test", "a"};
+        FileComparator comparator = new FileComparator(CRITERION.NAME, true, true, AbstractFile::getName, Locale.ENGLISH, FileComparator.Mode.NATURAL);
+
+        Assert.assertEquals(comparator.rankFilenames(names), new int[]{2, 0, 1, 4, 3, 4});
+    }
     
 }
@@ -0,0 +1,94 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.commons.file.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.FileURL;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Runs tests on {@link FilePool}.
+ */
+public class FilePoolTest {
+
+    @Test
+    public void testPutGet() throws Exception {
+        FilePool pool = new FilePool();
+        AbstractFile folder = FileFactory.getTemporaryFolder();
+
+        assertNull(pool.put(folder.getURL(), folder));
+        assertSame(pool.get(folder.getURL()), folder);
+        assertSame(pool.put(folder.getURL(), folder), folder);
+        assertEquals(pool.size(), 1);
+
+        pool.clear();
+        assertNull(pool.get(folder.getURL()));
+    }
+
+    /**
+     * Asserts that modifying a URL after it was used as a key doesn't affect the pool.
+     */
+    @Test
+    public void testMutatedKey() throws Exception {
+        FilePool pool = new FilePool();
+        AbstractFile folder = FileFactory.getTemporaryFolder();
+        FileURL url = (FileURL)folder.getURL().clone();
+
+        pool.put(url, folder);
+        url.setPath(url.getPath() + "modified");
+
+        assertNull(pool.get(url));
+        assertSame(pool.get(folder.getURL()), folder);
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        FilePool pool = new FilePool();
+        AbstractFile folder = FileFactory.getTemporaryFolder();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 10000; j++) {
+                        String key = thread + "/" + (j % 100);
+                        pool.put(key, folder);
+                        assertSame(pool.get(key), folder);
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(pool.size(), 800);
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.util;
+
+import java.net.MalformedURLException;
+import java.util.Map;
+import java.util.Optional;
+
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.FileURL;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Runs tests on {@link MetadataCache}.
+ */
+public class MetadataCacheTest {
+
+    @Test
+    public void testUnknownPath() {
+        MetadataCache<String> cache = new MetadataCache<>("/");
+        assertNull(cache.get("/folder/file"));
+    }
+
+    @Test
+    public void testListing() {
+        MetadataCache<String> cache = new MetadataCache<>("/");
+        cache.putListing("/folder/", Map.of("a", "metadata of a", "b", "metadata of b"));
+
+        assertEquals(cache.get("/folder/a"), Optional.of("metadata of a"));
+        assertEquals(cache.get("/folder/b"), Optional.of("metadata of b"));
+        // files that are missing from the listing do not exist
+        assertEquals(cache.get("/folder/c"), Optional.empty());
+        // nothing is known about the descendants of the children
+        assertNull(cache.get("/folder/a/c"));
+    }
+
+    @Test
+    public void testMissing() {
+        MetadataCache<String> cache = new MetadataCache<>("/");
+        cache.putMissing("/folder/file");
+        assertEquals(cache.get("/folder/file"), Optional.empty());
+    }
+
+    @Test
+    public void testInvalidate() {
+        MetadataCache<String> cache = new MetadataCache<>("/");
+        cache.putListing("/folder", Map.of("a", "metadata of a"));
+        cache.putListing("/folder/a", Map.of("b", "metadata of b"));
+
+        cache.invalidate("/folder/a");
+        assertNull(cache.get("/folder/a"));
+        assertNull(cache.get("/folder/a/b"));
+        // the content of the parent folder changed
+        assertNull(cache.get("/folder/c"));
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        MetadataCache<String> cache = new MetadataCache<>("/", 10, MetadataCache.DEFAULT_CAPACITY);
+        cache.put("/folder/file", "metadata");
+        Thread.sleep(20);
+        assertNull(cache.get("/folder/file"));
+    }
+
+    @Test
+    public void testCapacity() {
+        MetadataCache<String> cache = new MetadataCache<>("/", MetadataCache.DEFAULT_TTL, 2);
+        cache.put("/a", "a");
+        cache.put("/b", "b");
+        cache.get("/a");
+        cache.put("/c", "c");
+        assertEquals(cache.size(), 2);
+        // the least recently used entry is evicted
+        assertNull(cache.get("/b"));
+        assertEquals(cache.get("/a"), Optional.of("a"));
+    }
+
+    /**
+     * Makes sure that the children of a listing are not reported as missing once one of them is evicted.
+     */
+    @Test
+    public void testEvictedListing() {
+        MetadataCache<String> cache = new MetadataCache<>("/", MetadataCache.DEFAULT_TTL, 2);
+        cache.putListing("/folder", Map.of("a", "metadata of a", "b", "metadata of b"));
+        cache.put("/c", "c");
+
+        assertNotEquals(cache.get("/folder/a"), Optional.empty());
+        assertNotEquals(cache.get("/folder/b"), Optional.empty());
+        assertNull(cache.get("/folder/d"));
+    }
+
+    /**
+     * Makes sure that the connections to the same realm share their cache, whatever their path and credentials.
+     */
+    @Test
+    public void testRealmCache() throws MalformedURLException {
+        MetadataCache<String> cache1 = MetadataCache.getRealmCache(FileURL.getFileURL("ftp://user1@realm-cache-host/folder").getRealm(), "/");
+        MetadataCache<String> cache2 = MetadataCache.getRealmCache(FileURL.getFileURL("ftp://user2@realm-cache-host/").getRealm(), "/");
+        assertSame(cache1, cache2);
+        assertNotSame(cache1, MetadataCache.getRealmCache(FileURL.getFileURL("ftp://other-realm-cache-host/").getRealm(), "/"));
+
+        // Listings and invalidations made through a connection apply to the others
+        cache1.putListing("/folder", Map.of("a", "metadata of a"));
+        assertEquals(cache2.get("/folder/b"), Optional.empty());
+        cache2.invalidate("/folder/b");
+        assertNull(cache1.get("/folder/b"));
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ProducerInputStream is an <code>InputStream</code> whose contents are written by a {@link Producer} running on a
+ * shared pool of threads. The producer writes to a pipe of a fixed size and is blocked when the pipe is full, until
+ * the contents are read from this stream.
+ *
+ * <p>If the producer fails, the exception it has thrown is thrown by the read methods of this stream instead of
+ * reporting the end of the stream, once the data written before the failure has been read. Closing this stream before
+ * it has been read entirely makes the producer fail on its next write, and interrupts it.</p>
+ *
+ * <p>The producer of each stream is started as soon as the stream is created: the pool creates a thread when none of
+ * its threads is idle, and lets idle threads terminate after a while. Producers are never queued, as a reader would
+ * wait forever for a producer queued behind the producers of streams that are not read. Note that a producer occupies
+ * its thread until the stream has been read entirely or closed: streams that are not needed anymore must be
+ * closed.</p>
+ */
+public class ProducerInputStream extends PipedInputStream {
+
+    /** Threads that run the producers of all streams, created on demand */
+    private final static ThreadPoolExecutor EXECUTOR;
+
+    static {
+        AtomicInteger threadCount = new AtomicInteger();
+        EXECUTOR = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "Stream producer #" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** The task that runs the producer */
+    private final Future<?> future;
+
+    /** The exception thrown by the producer, if any */
+    private volatile IOException failure;
+
+    /** True if this stream has been closed */
+    private volatile boolean closed;
+
+
+    /**
+     * Creates a new <code>ProducerInputStream</code> and starts the given producer on a thread of the pool.
+     *
+     * @param producer writes the contents of this stream
+     * @param pipeSize size of the pipe, i.e. maximum number of bytes written and not read yet
+     * @throws IOException if the pipe could not be created
+     */
+    public ProducerInputStream(Producer producer, int pipeSize) throws IOException {
+        super(pipeSize);
+
+        PipedOutputStream out = new PipedOutputStream(this);
+        future = EXECUTOR.submit(() -> {
+            try {
+                producer.produce(out);
+            }
+            catch(Exception e) {
+                // Failures caused by the stream being closed are expected
+                if(!closed)
+                    failure = e instanceof IOException ? (IOException)e : new IOException(e);
+            }
+            finally {
+                try {
+                    out.close();
+                }
+                catch(IOException e) {
+                    // Swallow the exception
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Throws the exception thrown by the producer, if any, when the end of the stream has been reached.
+     *
+     * @param ret the value returned by a read method
+     * @return the given value
+     * @throws IOException if the producer has failed
+     */
+    private int checkFailure(int ret) throws IOException {
+        if(ret==-1 && failure!=null)
+            throw failure;
+
+        return ret;
+    }
+
+
+    ////////////////////////
+    // Overridden methods //
+    ////////////////////////
+
+    @Override
+    public synchronized int read() throws IOException {
+        return checkFailure(super.read());
+    }
+
+    @Override
+    public synchronized int read(byte b[], int off, int len) throws IOException {
+        return checkFailure(super.read(b, off, len));
+    }
+
+    /**
+     * Closes this stream and stops the producer if it has not finished yet.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            super.close();
+        }
+        finally {
+            future.cancel(true);
+        }
+    }
+
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * Writes the contents of a {@link ProducerInputStream}.
+     */
+    public interface Producer {
+
+        /**
+         * Writes the contents of the stream to the given <code>OutputStream</code>, which is closed when this method
+         * returns. A write fails with an <code>IOException</code> if the stream has been closed by its reader.
+         *
+         * @param out the stream to write the contents to
+         * @throws Exception if the contents could not be produced, thrown by the read methods of the stream
+         */
+        void produce(OutputStream out) throws Exception;
+    }
+}
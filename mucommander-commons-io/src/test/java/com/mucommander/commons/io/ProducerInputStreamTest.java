@@ -0,0 +1,138 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A test case for {@link ProducerInputStream}.
+ */
+public class ProducerInputStreamTest {
+
+    private final static int PIPE_SIZE = 1024;
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            byte[] buffer = new byte[300];
+            int nbRead;
+            while ((nbRead = in.read(buffer, 0, buffer.length)) != -1)
+                bout.write(buffer, 0, nbRead);
+            return bout.toByteArray();
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Asserts that the contents written by the producer are read entirely and in order.
+     */
+    @Test
+    public void testRead() throws IOException {
+        InputStream in = new ProducerInputStream(out -> {
+            for (int i = 0; i < 100 * PIPE_SIZE; i++)
+                out.write(i);
+        }, PIPE_SIZE);
+
+        byte[] bytes = readFully(in);
+        assert bytes.length == 100 * PIPE_SIZE;
+        for (int i = 0; i < bytes.length; i++)
+            assert bytes[i] == (byte)i;
+    }
+
+    /**
+     * Asserts that the producer is blocked when the pipe is full, and stopped when the stream is closed.
+     */
+    @Test
+    public void testClose() throws Exception {
+        AtomicLong nbWritten = new AtomicLong();
+        CountDownLatch stopped = new CountDownLatch(1);
+        InputStream in = new ProducerInputStream(out -> {
+            try {
+                while (true) {
+                    out.write(new byte[100]);
+                    nbWritten.addAndGet(100);
+                }
+            }
+            finally {
+                stopped.countDown();
+            }
+        }, PIPE_SIZE);
+
+        assert in.read() == 0;
+        Thread.sleep(200);
+        assert nbWritten.get() <= 2 * PIPE_SIZE;
+
+        in.close();
+        assert stopped.await(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Asserts that a failure of the producer is thrown once the data written before the failure has been read.
+     */
+    @Test
+    public void testFailure() throws IOException {
+        InputStream in = new ProducerInputStream(out -> {
+            out.write(new byte[10]);
+            throw new IllegalStateException("failure");
+        }, PIPE_SIZE);
+
+        boolean exceptionThrown = false;
+        try {
+            readFully(in);
+        }
+        catch (IOException e) {
+            exceptionThrown = true;
+            assert e.getCause() instanceof IllegalStateException;
+        }
+        assert exceptionThrown;
+    }
+
+    /**
+     * Asserts that a stream can be read while many other streams are left unread, their producers being blocked.
+     */
+    @Test
+    public void testUnreadStreams() throws IOException {
+        InputStream[] unread = new InputStream[4 * Runtime.getRuntime().availableProcessors() + 4];
+        try {
+            for (int i = 0; i < unread.length; i++) {
+                unread[i] = new ProducerInputStream(out -> {
+                    while (true)
+                        out.write(new byte[100]);
+                }, PIPE_SIZE);
+            }
+
+            InputStream in = new ProducerInputStream(out -> out.write(new byte[10 * PIPE_SIZE]), PIPE_SIZE);
+            assert readFully(in).length == 10 * PIPE_SIZE;
+        }
+        finally {
+            for (InputStream in : unread) {
+                if (in != null)
+                    in.close();
+            }
+        }
+    }
+}
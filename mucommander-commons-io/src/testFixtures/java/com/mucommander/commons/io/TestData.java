@@ -0,0 +1,44 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import java.util.Random;
+
+/**
+ * Data shared by the tests and benchmarks of the modules that compress or decompress streams.
+ */
+public class TestData {
+
+    private TestData() {
+    }
+
+    /**
+     * Returns compressible data: random words separated by spaces. The same seed always returns the same data.
+     *
+     * @param length number of bytes to return
+     * @param seed seed of the random words
+     * @return the data
+     */
+    public static byte[] createWords(int length, long seed) {
+        Random random = new Random(seed);
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++)
+            data[i] = random.nextInt(8) == 0 ? (byte)' ' : (byte)('a' + random.nextInt(16));
+        return data;
+    }
+}
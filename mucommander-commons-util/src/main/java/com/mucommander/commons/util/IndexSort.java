@@ -0,0 +1,103 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.util;
+
+/**
+ * IndexSort sorts arrays of indexes designating elements that are stored elsewhere, for instance in the columns of a
+ * table. The indexes are compared with an {@link IndexComparator}, without being boxed.
+ *
+ * <p>The sort is a stable merge sort which takes advantage of the ranges that are already sorted, so that sorting
+ * an array again after a few changes is fast. Unlike <code>java.util.Arrays#sort</code>, it does not fail if the
+ * comparator does not impose a total order: the resulting order is then unspecified.</p>
+ */
+public class IndexSort {
+
+    /** Ranges smaller than this are sorted by insertion */
+    private final static int INSERTION_SORT_THRESHOLD = 32;
+
+    /**
+     * Compares two indexes, following the contract of {@link java.util.Comparator#compare(Object, Object)}.
+     */
+    public interface IndexComparator {
+
+        /**
+         * Compares the elements designated by the given indexes.
+         *
+         * @param index1 index of the first element
+         * @param index2 index of the second element
+         * @return a negative integer, zero, or a positive integer as the first element is less than, equal to, or
+         * greater than the second
+         */
+        int compare(int index1, int index2);
+    }
+
+    /**
+     * Sorts the given array of indexes.
+     *
+     * @param indexes the indexes to sort
+     * @param comparator compares the elements designated by the indexes
+     */
+    public static void sort(int[] indexes, IndexComparator comparator) {
+        sort(indexes, 0, indexes.length, comparator);
+    }
+
+    /**
+     * Sorts the given range of the given array of indexes.
+     *
+     * @param indexes the indexes to sort
+     * @param from index of the first element to sort, inclusive
+     * @param to index of the last element to sort, exclusive
+     * @param comparator compares the elements designated by the indexes
+     */
+    public static void sort(int[] indexes, int from, int to, IndexComparator comparator) {
+        if (to - from < 2)
+            return;
+
+        int[] buffer = new int[to - from];
+        sort(indexes, from, to, comparator, buffer);
+    }
+
+    private static void sort(int[] indexes, int from, int to, IndexComparator comparator, int[] buffer) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                int index = indexes[i];
+                int j = i;
+                for (; j > from && comparator.compare(indexes[j - 1], index) > 0; j--)
+                    indexes[j] = indexes[j - 1];
+                indexes[j] = index;
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        sort(indexes, from, middle, comparator, buffer);
+        sort(indexes, middle, to, comparator, buffer);
+
+        // Nothing to merge if both halves are in order already
+        if (comparator.compare(indexes[middle - 1], indexes[middle]) <= 0)
+            return;
+
+        int length = middle - from;
+        System.arraycopy(indexes, from, buffer, 0, length);
+        int i = 0, j = middle, k = from;
+        while (i < length && j < to)
+            indexes[k++] = comparator.compare(indexes[j], buffer[i]) < 0 ? indexes[j++] : buffer[i++];
+        System.arraycopy(buffer, i, indexes, k, length - i);
+    }
+}
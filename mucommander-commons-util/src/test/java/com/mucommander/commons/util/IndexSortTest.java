@@ -0,0 +1,122 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Runs tests on {@link IndexSort}, sorting indexes of an array of keys.
+ */
+public class IndexSortTest {
+
+    /**
+     * Provides sizes around the threshold under which ranges are sorted by insertion.
+     */
+    @DataProvider(name = "sizes")
+    public Object[][] sizes() {
+        return new Object[][] { {0}, {1}, {2}, {31}, {32}, {33}, {63}, {64}, {65}, {1000} };
+    }
+
+    /**
+     * Returns the indexes of the given keys in order, the indexes of equal keys being kept in the given order.
+     */
+    private static int[] expected(int[] indexes, int[] keys) {
+        return Arrays.stream(indexes).boxed()
+                .sorted(Comparator.comparingInt(index -> keys[index]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * Makes sure that the sort is stable, i.e. that the indexes of equal keys keep their order.
+     */
+    @Test(dataProvider = "sizes")
+    public void testStability(int size) {
+        Random random = new Random(size);
+        // Few distinct keys, so that most of them are equal to others
+        int[] keys = random.ints(size, 0, 5).toArray();
+        int[] indexes = IntStream.range(0, size).toArray();
+        // Equal keys must keep the order of their indexes in the array, not the natural order of the indexes
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int index = indexes[i];
+            indexes[i] = indexes[j];
+            indexes[j] = index;
+        }
+        int[] expected = expected(indexes, keys);
+
+        IndexSort.sort(indexes, (index1, index2) -> Integer.compare(keys[index1], keys[index2]));
+        assertEquals(indexes, expected);
+    }
+
+    /**
+     * Makes sure that sorted arrays are left unchanged, and that the halves that are in order already are not merged.
+     */
+    @Test(dataProvider = "sizes")
+    public void testSorted(int size) {
+        int[] keys = IntStream.range(0, size).toArray();
+        int[] indexes = IntStream.range(0, size).toArray();
+        int[] comparisons = new int[1];
+
+        IndexSort.sort(indexes, (index1, index2) -> {
+            comparisons[0]++;
+            return Integer.compare(keys[index1], keys[index2]);
+        });
+        assertEquals(indexes, IntStream.range(0, size).toArray());
+        // One comparison per element sorted by insertion, and one per pair of halves
+        assertTrue(comparisons[0] < Math.max(1, 2 * size), comparisons[0] + " comparisons");
+    }
+
+    @Test(dataProvider = "sizes")
+    public void testReversed(int size) {
+        int[] keys = IntStream.range(0, size).map(i -> size - i).toArray();
+        int[] indexes = IntStream.range(0, size).toArray();
+
+        IndexSort.sort(indexes, (index1, index2) -> Integer.compare(keys[index1], keys[index2]));
+        assertEquals(indexes, IntStream.range(0, size).map(i -> size - 1 - i).toArray());
+    }
+
+    /**
+     * Makes sure that only the given range is sorted.
+     */
+    @Test
+    public void testRange() {
+        int size = 100;
+        int from = 10;
+        int to = 90;
+        int[] keys = new Random(0).ints(size, 0, 1000).toArray();
+        int[] indexes = IntStream.range(0, size).toArray();
+        int[] expected = indexes.clone();
+        System.arraycopy(expected(Arrays.copyOfRange(indexes, from, to), keys), 0, expected, from, to - from);
+
+        IndexSort.sort(indexes, from, to, (index1, index2) -> {
+            assertTrue(index1 >= from && index1 < to && index2 >= from && index2 < to);
+            return Integer.compare(keys[index1], keys[index2]);
+        });
+        assertEquals(indexes, expected);
+    }
+}
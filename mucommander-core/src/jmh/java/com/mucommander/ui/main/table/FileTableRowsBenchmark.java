@@ -0,0 +1,102 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.ui.main.table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.util.FileComparator;
+
+/**
+ * Measures the latency of sorting the rows of a folder of 100k and 1M files entirely, by name and by size, and
+ * incrementally by name after 100 files have changed. Rows are created before each sort, as they are when a folder is
+ * loaded. Run with <code>./gradlew :mucommander-core:jmh -Pjmh=FileTableRowsBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileTableRowsBenchmark {
+
+    private final static FileComparator.Mode MODE = FileComparator.Mode.NATURAL;
+
+    @Param({"100000", "1000000"})
+    public int nbFiles;
+
+    private List<AbstractFile> files;
+    private List<AbstractFile> changedFiles;
+
+    /** Rows of the files before the changes, and their order by name */
+    private FileTableRows previousRows;
+    private int[] previousOrder;
+
+    /** Rows created for each sort */
+    private FileTableRows rows;
+    private FileTableRows changedRows;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(nbFiles);
+        files = FileTableRowsTest.createFiles(random, nbFiles);
+        previousRows = FileTableRowsTest.createRows(files);
+        previousOrder = FileTableRowsTest.sort(previousRows, FileComparator.CRITERION.NAME, true, MODE);
+
+        changedFiles = new ArrayList<>(files);
+        FileTableRowsTest.changeFiles(random, changedFiles, 100, nbFiles);
+    }
+
+    @Setup(Level.Invocation)
+    public void createRows() {
+        rows = FileTableRowsTest.createRows(files);
+        changedRows = FileTableRowsTest.createRows(changedFiles);
+    }
+
+    @Benchmark
+    public int[] sortByName() {
+        return FileTableRowsTest.sort(rows, FileComparator.CRITERION.NAME, true, MODE);
+    }
+
+    @Benchmark
+    public int[] sortBySize() {
+        return FileTableRowsTest.sort(rows, FileComparator.CRITERION.SIZE, true, MODE);
+    }
+
+    @Benchmark
+    public int[] sortIncrementally() {
+        return changedRows.sortIncrementally(previousRows, previousOrder, FileComparator.CRITERION.NAME, true, true,
+                FileTableRowsTest.LOCALE, MODE);
+    }
+}
@@ -43,7 +43,9 @@ import com.mucommander.conf.MuConfigurations;
 import com.mucommander.conf.MuPreference;
 import com.mucommander.conf.MuPreferences;
 import com.mucommander.conf.SystemIconsPolicy;
+import com.mucommander.core.FolderSizeCache;
 import com.mucommander.extension.ExtensionManager;
+import com.mucommander.search.index.FileIndexManager;
 import com.mucommander.snapshot.MuSnapshot;
 import com.mucommander.translator.Translator;
 import com.mucommander.ui.action.ActionManager;
@@ -526,6 +528,12 @@ public class Application {
                     }
                 }
 
+                // Load or build the indexes of the folders to search quickly in
+                FileIndexManager.start();
+
+                // Load the sizes of the folders calculated previously
+                FolderSizeCache.load();
+
                 // If no theme is configured in the preferences, ask for an initial theme.
                 if (showSetup) {
                     SwingUtilities.invokeLater(() -> {
@@ -24,6 +24,8 @@ import com.mucommander.auth.CredentialsManager;
 import com.mucommander.bookmark.BookmarkManager;
 import com.mucommander.command.CommandManager;
 import com.mucommander.conf.MuConfigurations;
+import com.mucommander.core.FolderSizeCache;
+import com.mucommander.search.index.FileIndexManager;
 import com.mucommander.snapshot.MuSnapshot;
 import com.mucommander.ui.action.ActionKeymapIO;
 import com.mucommander.ui.main.commandbar.CommandBarIO;
@@ -107,6 +109,14 @@ public class ShutdownHook extends Thread {
         try { ToolBarIO.saveToolBar(); }
         catch(Exception e) {LOGGER.warn("Failed to save toolbar", e); }
 
+        // Saves the search indexes.
+        try { FileIndexManager.stop(); }
+        catch(Exception e) {LOGGER.warn("Failed to save search indexes", e); }
+
+        // Saves the sizes of the folders.
+        try { FolderSizeCache.save(); }
+        catch(Exception e) {LOGGER.warn("Failed to save folder sizes", e); }
+
 
         // Shutdown tasks should only be performed once
         return shutdownTasksPerformed = true;
@@ -0,0 +1,257 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.conf.ConfigurationVariable;
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.util.PathUtils;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+import com.mucommander.conf.PlatformManager;
+import com.mucommander.search.index.FileIndexManager;
+
+/**
+ * Remembers the recursive size of the folders whose size was calculated, so that it can be displayed right away
+ * the next time the folders are shown. Sizes are saved to the preferences folder on shutdown and loaded on startup.
+ * <p>
+ * A size is stored along with the modification date of its folder and is up to date as long as the folder has the
+ * same date and no change was reported under it: changes reported by the watch service of the search indexes and
+ * changes made by file jobs invalidate the size of the changed folder and of its ancestors. Outdated sizes are still
+ * returned, to be displayed until they are calculated again. The size of folders covered by a search index is taken
+ * from the index, which is always up to date.
+ */
+public class FolderSizeCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FolderSizeCache.class);
+
+    /** Name of the file, within the preferences folder, where the sizes are saved */
+    private static final String CACHE_FILE_NAME = "folder_sizes.dat";
+    /** Version of the file format */
+    private static final int FORMAT_VERSION = 1;
+
+    /** Sizes by folder key, in access order */
+    private static final LinkedHashMap<String, FolderSize> sizes = new LinkedHashMap<>(256, 0.75f, true);
+    /** True if the sizes changed since they were loaded */
+    private static boolean modified;
+    /** Maximum number of sizes that are remembered, read each time a size is stored */
+    private static final ConfigurationVariable.IntegerVariable MAX_ENTRIES =
+            MuConfigurations.getPreferences().compileVariable(MuPreference.FOLDER_SIZE_CACHE_MAX_ENTRIES, MuPreferences.DEFAULT_FOLDER_SIZE_CACHE_MAX_ENTRIES);
+
+    /**
+     * The recursive size of a folder.
+     */
+    public static class FolderSize {
+        private final long size;
+        private final long date;
+        private final boolean invalidated;
+
+        private FolderSize(long size, long date, boolean invalidated) {
+            this.size = size;
+            this.date = date;
+            this.invalidated = invalidated;
+        }
+
+        /**
+         * Returns the combined size of the files under the folder, in bytes.
+         * @return the combined size of the files under the folder, in bytes
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns <code>true</code> if the folder may have changed since its size was calculated.
+         * @return <code>true</code> if the folder may have changed since its size was calculated
+         */
+        public boolean isOutdated() {
+            return invalidated;
+        }
+    }
+
+    /**
+     * Returns the size of the given folder, if known.
+     *
+     * @param folder a folder
+     * @return the size of the folder, <code>null</code> if it is not known
+     */
+    public static FolderSize get(AbstractFile folder) {
+        long indexedSize = FileIndexManager.getFolderSize(folder);
+        if (indexedSize >= 0)
+            return new FolderSize(indexedSize, folder.getDate(), false);
+
+        FolderSize folderSize;
+        synchronized (sizes) {
+            folderSize = sizes.get(getKey(folder));
+        }
+        if (folderSize == null || folderSize.invalidated || folderSize.date == folder.getDate())
+            return folderSize;
+        return new FolderSize(folderSize.size, folderSize.date, true);
+    }
+
+    /**
+     * Stores the size of the given folder, that has just been calculated.
+     *
+     * @param folder a folder
+     * @param size the combined size of the files under the folder, in bytes
+     */
+    public static void put(AbstractFile folder, long size) {
+        if (size < 0)
+            return;
+
+        int maxEntries = MAX_ENTRIES.getValue();
+        FolderSize folderSize = new FolderSize(size, folder.getDate(), false);
+        synchronized (sizes) {
+            sizes.put(getKey(folder), folderSize);
+            // Forget about the folders that were not used for the longest time
+            var iterator = sizes.values().iterator();
+            while (sizes.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+            modified = true;
+        }
+    }
+
+    /**
+     * Marks the size of the given folder and of its ancestors as outdated, following a change in the folder.
+     *
+     * @param folder a folder whose content changed
+     */
+    public static void invalidate(AbstractFile folder) {
+        synchronized (sizes) {
+            if (sizes.isEmpty())
+                return;
+            for (AbstractFile file = folder; file != null; file = file.getParent()) {
+                String key = getKey(file);
+                FolderSize folderSize = sizes.get(key);
+                if (folderSize != null && !folderSize.invalidated) {
+                    sizes.put(key, new FolderSize(folderSize.size, folderSize.date, true));
+                    modified = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the size of the local folder at the given path and of its ancestors as outdated.
+     *
+     * @param path absolute path of a local folder whose content changed
+     */
+    public static void invalidate(String path) {
+        AbstractFile folder = FileFactory.getFile(path);
+        if (folder != null)
+            invalidate(folder);
+    }
+
+    /**
+     * Forgets about all the sizes, without saving them. Package-private so that tests can start from an empty cache.
+     */
+    static void clear() {
+        synchronized (sizes) {
+            sizes.clear();
+            modified = false;
+        }
+    }
+
+    private static String getKey(AbstractFile folder) {
+        return PathUtils.removeTrailingSeparator(folder.getURL().toString(false), "/");
+    }
+
+    /**
+     * Loads the sizes saved to the preferences folder.
+     */
+    public static void load() {
+        File file = getCacheFile();
+        if (!file.exists())
+            return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION)
+                return;
+            int count = in.readInt();
+            Map<String, FolderSize> loaded = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                loaded.put(key, new FolderSize(in.readLong(), in.readLong(), in.readBoolean()));
+            }
+            synchronized (sizes) {
+                // Sizes calculated in the meantime are more recent
+                loaded.keySet().removeAll(sizes.keySet());
+                Map<String, FolderSize> recent = new LinkedHashMap<>(sizes);
+                sizes.clear();
+                sizes.putAll(loaded);
+                sizes.putAll(recent);
+            }
+            LOGGER.debug("loaded {} folder sizes", count);
+        } catch (IOException e) {
+            LOGGER.info("failed to load folder sizes", e);
+        }
+    }
+
+    /**
+     * Saves the sizes to the preferences folder, if they changed since they were loaded.
+     */
+    public static void save() {
+        Map<String, FolderSize> snapshot;
+        synchronized (sizes) {
+            if (!modified)
+                return;
+            snapshot = new LinkedHashMap<>(sizes);
+            modified = false;
+        }
+
+        File file = getCacheFile();
+        File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, FolderSize> entry : snapshot.entrySet()) {
+                    FolderSize folderSize = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(folderSize.size);
+                    out.writeLong(folderSize.date);
+                    out.writeBoolean(folderSize.invalidated);
+                }
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("failed to save folder sizes", e);
+        }
+    }
+
+    private static File getCacheFile() {
+        return new File(PlatformManager.getPreferencesFolder().getAbsolutePath(), CACHE_FILE_NAME);
+    }
+}
@@ -25,6 +25,8 @@ package com.mucommander.job;
 public enum FileJobState {
 	/** Indicates that this job has not started yet, this is a temporary state */
 	NOT_STARTED, 
+	/** Indicates that this job waits for other jobs using the same volumes or hosts to finish, this is a temporary state */
+	QUEUED,
 	/** Indicates that this job is currently processing files, this is a temporary state */
 	RUNNING,
 	/** Indicates that this job is currently paused, waiting for user response, this is a temporary state */
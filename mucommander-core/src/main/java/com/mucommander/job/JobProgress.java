@@ -76,14 +76,16 @@ public class JobProgress {
 			// components (progress bar in particular)
 			// reflect job completion
 			fullUpdate = true;
+		} else if (jobState == FileJobState.QUEUED) {
+			jobStatusString = Translator.get("progress_dialog.queued");
 		} else {
 			jobStatusString = job.getStatusString();
 		}
 		if (!fullUpdate) {
 			return false;
 		}
-		// Do not refresh progress information is job is paused, simply sleep
-		if (jobState == FileJobState.PAUSED) {
+		// Do not refresh progress information is job is paused or waits for other jobs, simply sleep
+		if (jobState == FileJobState.PAUSED || jobState == FileJobState.QUEUED) {
 			return false;
 		}
 		// Now is updated with current time, or job end date if job has finished
@@ -0,0 +1,344 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.job;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.conf.ConfigurationVariable;
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.file.protocol.local.LocalFile;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+
+/**
+ * Schedules the jobs that perform I/O on local volumes or remote hosts, so that jobs working on the same device
+ * don't run concurrently beyond a limit and thrash it (e.g. several copies onto the same hard drive or several
+ * uploads to the same server). Jobs that don't share a device run concurrently.
+ *
+ * <p>Each device has a queue, served in the order of a single priority list that the user can reorder: a queued job
+ * is started as soon as all the devices it works on have a free slot, and no job queued before it waits for one of
+ * these devices. Jobs that involve a remote host are only scheduled on their remote hosts, the network being the
+ * bottleneck, so that they don't hold back local jobs.</p>
+ */
+public class JobScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobScheduler.class);
+
+    /** Maximum number of jobs running on the same local volume, read each time a job may be started */
+    private static final ConfigurationVariable.IntegerVariable MAX_JOBS_PER_LOCAL_VOLUME =
+            MuConfigurations.getPreferences().compileVariable(MuPreference.MAX_JOBS_PER_LOCAL_VOLUME, MuPreferences.DEFAULT_MAX_JOBS_PER_LOCAL_VOLUME);
+
+    /** Maximum number of jobs running on the same remote host, read each time a job may be started */
+    private static final ConfigurationVariable.IntegerVariable MAX_JOBS_PER_REMOTE_HOST =
+            MuConfigurations.getPreferences().compileVariable(MuPreference.MAX_JOBS_PER_REMOTE_HOST, MuPreferences.DEFAULT_MAX_JOBS_PER_REMOTE_HOST);
+
+    /** An instance of this class */
+    private static final JobScheduler instance = new JobScheduler();
+
+    /** Jobs waiting to be started, in priority order */
+    private final List<ScheduledJob> queuedJobs = new ArrayList<>();
+
+    /** Jobs that were started by this scheduler and haven't ended yet */
+    private final Map<FileJob, ScheduledJob> runningJobs = new LinkedHashMap<>();
+
+    /** Devices that have running or queued jobs, by key */
+    private final Map<String, Device> devices = new LinkedHashMap<>();
+
+    /**
+     * Creates a new JobScheduler. Package-private so that tests can use their own scheduler, jobs should be scheduled
+     * with {@link #getInstance()}.
+     */
+    JobScheduler() {
+    }
+
+    /**
+     * Returns the instance of JobScheduler.
+     * @return the instance of JobScheduler.
+     */
+    public static JobScheduler getInstance() {
+        return instance;
+    }
+
+    /**
+     * A local volume or remote host, and the jobs that use it.
+     */
+    private static class Device {
+        private final String name;
+        private final boolean local;
+        private int runningJobs;
+        private int queuedJobs;
+
+        private Device(String name, boolean local) {
+            this.name = name;
+            this.local = local;
+        }
+
+        private boolean hasFreeSlot() {
+            int maxJobs = local ? MAX_JOBS_PER_LOCAL_VOLUME.getValue() : MAX_JOBS_PER_REMOTE_HOST.getValue();
+            return runningJobs < Math.max(1, maxJobs);
+        }
+    }
+
+    private static class ScheduledJob {
+        private final FileJob job;
+        private final List<Device> devices;
+        private final Runnable launcher;
+
+        private ScheduledJob(FileJob job, List<Device> devices, Runnable launcher) {
+            this.job = job;
+            this.devices = devices;
+            this.launcher = launcher;
+        }
+    }
+
+    /**
+     * Returns the status of the queue of a device: the device name, the number of running and queued jobs and the
+     * throughput of the running jobs.
+     */
+    public static class QueueStatus {
+        private final String name;
+        private final int runningJobs;
+        private final int queuedJobs;
+        private final long bytesPerSecond;
+
+        private QueueStatus(String name, int runningJobs, int queuedJobs, long bytesPerSecond) {
+            this.name = name;
+            this.runningJobs = runningJobs;
+            this.queuedJobs = queuedJobs;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        /**
+         * Returns the name of the volume or host.
+         * @return the name of the volume or host.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the number of jobs running on the device.
+         * @return the number of jobs running on the device.
+         */
+        public int getRunningJobs() {
+            return runningJobs;
+        }
+
+        /**
+         * Returns the number of jobs waiting for the device.
+         * @return the number of jobs waiting for the device.
+         */
+        public int getQueuedJobs() {
+            return queuedJobs;
+        }
+
+        /**
+         * Returns the current number of bytes per second transferred by the jobs running on the device.
+         * @return the current number of bytes per second transferred by the jobs running on the device.
+         */
+        public long getBytesPerSecond() {
+            return bytesPerSecond;
+        }
+    }
+
+    /**
+     * Schedules the given job, which is started right away by the given launcher if the devices of the given folders
+     * are available, or later on when they become available.
+     * {@link #jobEnded(FileJob)} must be called when the job has ended.
+     *
+     * @param job the job to schedule
+     * @param folders the folders the job works on
+     * @param launcher starts the job
+     */
+    public void schedule(FileJob job, List<AbstractFile> folders, Runnable launcher) {
+        synchronized (this) {
+            List<Device> jobDevices = getDevices(folders);
+            jobDevices.forEach(device -> device.queuedJobs++);
+            queuedJobs.add(new ScheduledJob(job, jobDevices, launcher));
+        }
+        dispatch();
+    }
+
+    /**
+     * Releases the devices used by the given job and starts the queued jobs that were waiting for them.
+     *
+     * @param job a job that has ended
+     */
+    public void jobEnded(FileJob job) {
+        synchronized (this) {
+            ScheduledJob scheduledJob = runningJobs.remove(job);
+            if (scheduledJob == null)
+                return;
+            scheduledJob.devices.forEach(device -> device.runningJobs--);
+            pruneDevices();
+        }
+        dispatch();
+    }
+
+    /**
+     * Removes the given job from the queue if it hasn't been started yet.
+     *
+     * @param job the job to cancel
+     * @return <code>true</code> if the job was removed from the queue, <code>false</code> if it isn't queued
+     */
+    public boolean cancel(FileJob job) {
+        synchronized (this) {
+            ScheduledJob scheduledJob = findQueued(job);
+            if (scheduledJob == null)
+                return false;
+            queuedJobs.remove(scheduledJob);
+            scheduledJob.devices.forEach(device -> device.queuedJobs--);
+            pruneDevices();
+        }
+        // jobs queued after the cancelled job may not have to wait anymore
+        dispatch();
+        return true;
+    }
+
+    /**
+     * Returns <code>true</code> if the given job waits for other jobs to end.
+     *
+     * @param job a job
+     * @return <code>true</code> if the given job waits for other jobs to end.
+     */
+    public synchronized boolean isQueued(FileJob job) {
+        return findQueued(job) != null;
+    }
+
+    /**
+     * Returns the jobs waiting for other jobs to end, in the order they will be started.
+     *
+     * @return the jobs waiting for other jobs to end
+     */
+    public synchronized List<FileJob> getQueuedJobs() {
+        return queuedJobs.stream().map(scheduledJob -> scheduledJob.job).collect(Collectors.toList());
+    }
+
+    /**
+     * Moves the given queued job before or after other queued jobs.
+     *
+     * @param job a queued job
+     * @param offset the number of positions to move the job by, negative to have it started sooner
+     */
+    public void moveJob(FileJob job, int offset) {
+        synchronized (this) {
+            ScheduledJob scheduledJob = findQueued(job);
+            if (scheduledJob == null)
+                return;
+            int index = queuedJobs.indexOf(scheduledJob);
+            queuedJobs.remove(index);
+            queuedJobs.add(Math.max(0, Math.min(queuedJobs.size(), index + offset)), scheduledJob);
+        }
+        dispatch();
+    }
+
+    /**
+     * Returns the status of the queues of the devices that have running or queued jobs.
+     *
+     * @return the status of the queues of the devices that have running or queued jobs
+     */
+    public synchronized List<QueueStatus> getQueueStatuses() {
+        List<QueueStatus> statuses = new ArrayList<>();
+        for (Device device : devices.values()) {
+            long bytesPerSecond = 0;
+            for (ScheduledJob scheduledJob : runningJobs.values()) {
+                if (scheduledJob.devices.contains(device))
+                    bytesPerSecond += scheduledJob.job.getJobProgress().getCurrentBps();
+            }
+            statuses.add(new QueueStatus(device.name, device.runningJobs, device.queuedJobs, bytesPerSecond));
+        }
+        return statuses;
+    }
+
+    /**
+     * Starts the queued jobs whose devices have a free slot, in priority order. A job that has to wait reserves its
+     * devices so that the jobs queued after it don't keep them busy.
+     */
+    private void dispatch() {
+        List<ScheduledJob> startedJobs = new ArrayList<>();
+        synchronized (this) {
+            Set<Device> reservedDevices = new LinkedHashSet<>();
+            for (Iterator<ScheduledJob> iterator = queuedJobs.iterator(); iterator.hasNext();) {
+                ScheduledJob scheduledJob = iterator.next();
+                boolean available = scheduledJob.devices.stream()
+                        .allMatch(device -> !reservedDevices.contains(device) && device.hasFreeSlot());
+                if (available) {
+                    iterator.remove();
+                    scheduledJob.devices.forEach(device -> {
+                        device.queuedJobs--;
+                        device.runningJobs++;
+                    });
+                    runningJobs.put(scheduledJob.job, scheduledJob);
+                    startedJobs.add(scheduledJob);
+                } else {
+                    reservedDevices.addAll(scheduledJob.devices);
+                }
+            }
+        }
+
+        for (ScheduledJob scheduledJob : startedJobs) {
+            LOGGER.debug("starting job {} on {}", scheduledJob.job,
+                    scheduledJob.devices.stream().map(device -> device.name).collect(Collectors.toList()));
+            scheduledJob.launcher.run();
+        }
+    }
+
+    private ScheduledJob findQueued(FileJob job) {
+        for (ScheduledJob scheduledJob : queuedJobs) {
+            if (scheduledJob.job == job)
+                return scheduledJob;
+        }
+        return null;
+    }
+
+    private void pruneDevices() {
+        devices.values().removeIf(device -> device.runningJobs == 0 && device.queuedJobs == 0);
+    }
+
+    /**
+     * Returns the devices of the given folders, only the remote ones if there are some.
+     */
+    private List<Device> getDevices(List<AbstractFile> folders) {
+        Map<String, Device> localDevices = new LinkedHashMap<>();
+        Map<String, Device> remoteDevices = new LinkedHashMap<>();
+        for (AbstractFile folder : folders) {
+            FileURL url = folder.getURL();
+            boolean local = LocalFile.SCHEMA.equals(url.getScheme());
+            String name;
+            if (local) {
+                AbstractFile volume = folder.getVolume();
+                name = volume != null ? volume.getAbsolutePath() : url.getScheme();
+            } else {
+                name = url.getScheme() + "://" + (url.getHost() != null ? url.getHost() : "");
+            }
+            Device device = devices.computeIfAbsent(name, key -> new Device(key, local));
+            (local ? localDevices : remoteDevices).put(name, device);
+        }
+        return new ArrayList<>((remoteDevices.isEmpty() ? localDevices : remoteDevices).values());
+    }
+}
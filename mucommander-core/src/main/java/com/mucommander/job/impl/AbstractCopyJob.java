@@ -31,6 +31,7 @@ import com.mucommander.ui.dialog.file.ProgressDialog;
 import com.mucommander.ui.main.MainFrame;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * This class is the parent class of {@link com.mucommander.job.impl.CopyJob} and {@link com.mucommander.job.impl.MoveJob} and
@@ -81,6 +82,11 @@ public abstract class AbstractCopyJob extends TransferFileJob {
         this.defaultFileExistsAction = fileExistsAction;
     }
 
+    @Override
+    protected List<AbstractFile> getScheduledFolders() {
+        return scheduledFolders(getBaseSourceFolder(), baseDestFolder);
+    }
+
     /**
      * Creates a destination file given a destination folder and a new file name.
      * @param destFolder a destination folder
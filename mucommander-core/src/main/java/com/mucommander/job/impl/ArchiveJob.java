@@ -21,6 +21,7 @@ package com.mucommander.job.impl;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +30,9 @@ import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.archiver.Archiver;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.commons.io.StreamUtils;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
 import com.mucommander.job.FileCollisionChecker;
 import com.mucommander.job.FileJobAction;
 import com.mucommander.job.FileJobState;
@@ -145,6 +149,11 @@ public class ArchiveJob extends TransferFileJob {
         } while(true);
     }
 
+    @Override
+    protected List<AbstractFile> getScheduledFolders() {
+        return scheduledFolders(getBaseSourceFolder(), destFile);
+    }
+
     @Override
     protected boolean hasFolderChangedImpl(AbstractFile folder) {
         // This job modifies the folder where the archive is
@@ -185,7 +194,7 @@ public class ArchiveJob extends TransferFileJob {
         do {
             try {
                 // Tries to get an Archiver instance.
-                this.archiver = Archiver.getArchiver(destFile, archiveFormat);
+                this.archiver = Archiver.getArchiver(destFile, archiveFormat, getCompressionLevel(), getCompressionThreads());
                 this.archiver.setComment(archiveComment);
 
                 break;
@@ -207,6 +216,22 @@ public class ArchiveJob extends TransferFileJob {
         } while(true);
     }
 
+    /**
+     * Returns the compression level set in the preferences.
+     */
+    private static int getCompressionLevel() {
+        int level = MuConfigurations.getPreferences().getVariable(MuPreference.ARCHIVER_COMPRESSION_LEVEL, MuPreferences.DEFAULT_ARCHIVER_COMPRESSION_LEVEL);
+        return level<1 || level>9 ? Archiver.DEFAULT_COMPRESSION_LEVEL : level;
+    }
+
+    /**
+     * Returns the number of compression threads set in the preferences, the number of processors if set to 0.
+     */
+    private static int getCompressionThreads() {
+        int nbThreads = MuConfigurations.getPreferences().getVariable(MuPreference.ARCHIVER_COMPRESSION_THREADS, MuPreferences.DEFAULT_ARCHIVER_COMPRESSION_THREADS);
+        return nbThreads>0 ? nbThreads : Runtime.getRuntime().availableProcessors();
+    }
+
     /**
      * Overridden method to close the archiver.
      */
@@ -22,6 +22,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.MessageDigest;
 import java.util.Arrays;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -193,6 +194,11 @@ public class CalculateChecksumJob extends TransferFileJob {
         } while(true);
     }
 
+    @Override
+    protected List<AbstractFile> getScheduledFolders() {
+        return scheduledFolders(getBaseSourceFolder(), checksumFile);
+    }
+
     @Override
     protected boolean hasFolderChangedImpl(AbstractFile folder) {
         // This job modifies the folder where the checksum file is
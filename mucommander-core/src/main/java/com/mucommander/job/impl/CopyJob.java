@@ -101,11 +101,9 @@ public class CopyJob extends AbstractCopyJob {
         // Destination folder
         AbstractFile destFolder = recurseParams==null ? baseDestFolder : (AbstractFile)recurseParams;
 		
-        // Is current file in base folder ?
-        boolean isFileInBaseFolder = files.indexOf(file)!=-1;
-
         // Determine filename in destination
-        String destFileName = isFileInBaseFolder && newName!=null ? newName : file.getName();
+        // The new name only applies to the files in base folder, which are looked up only if there is a new name
+        String destFileName = newName!=null && files.indexOf(file)!=-1 ? newName : file.getName();
 
         // Create destination AbstractFile instance
         AbstractFile destFile = createDestinationFile(file, destFolder, destFileName);
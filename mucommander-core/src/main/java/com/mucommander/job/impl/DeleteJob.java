@@ -19,11 +19,15 @@
 package com.mucommander.job.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileOperation;
 import com.mucommander.commons.file.archive.AbstractArchiveFile;
 import com.mucommander.commons.file.archive.AbstractRWArchiveFile;
 import com.mucommander.commons.file.util.FileSet;
@@ -51,6 +55,9 @@ import com.mucommander.ui.main.WindowManager;
  */
 public class DeleteJob extends FileJob {
 	private static final Logger LOGGER = LoggerFactory.getLogger(DeleteJob.class);
+
+    /** Number of files handed at once to {@link AbstractFile#deleteChildren(List)} */
+    private final static int BATCH_SIZE = 200;
 	
     /** Title used for error dialogs */
     private String errorDialogTitle;
@@ -101,6 +108,77 @@ public class DeleteJob extends FileJob {
             file.delete();
     }
 
+    /**
+     * Deletes the files (symlinks included) of the given folder's children in batches, using
+     * {@link AbstractFile#deleteChildren(List)}. The files that could not be deleted are reported one by one, like
+     * for a regular deletion.
+     *
+     * @param folder the folder that contains the files
+     * @param children the children of the folder
+     * @return the children that remain to be processed, i.e. the folders
+     */
+    private AbstractFile[] deleteFilesInBatches(AbstractFile folder, AbstractFile[] children) {
+        List<AbstractFile> files = new ArrayList<>();
+        List<AbstractFile> folders = new ArrayList<>();
+        for(AbstractFile child : children) {
+            if(child.isDirectory() && !child.isSymlink())
+                folders.add(child);
+            else
+                files.add(child);
+        }
+
+        for(int from=0; from<files.size() && getState() != FileJobState.INTERRUPTED; from+=BATCH_SIZE) {
+            List<AbstractFile> batch = files.subList(from, Math.min(files.size(), from+BATCH_SIZE));
+            nextFile(batch.get(0));
+
+            Map<AbstractFile, IOException> failures;
+            try {
+                failures = folder.deleteChildren(batch);
+            }
+            catch(IOException e) {
+                LOGGER.debug("IOException caught, deleting the files one by one", e);
+                failures = null;
+            }
+
+            for(AbstractFile child : batch) {
+                if(getState() == FileJobState.INTERRUPTED)
+                    break;
+                // Files of a batch that failed as a whole go through the regular deletion
+                if(failures==null) {
+                    nextFile(child);
+                    processFile(child, null);
+                }
+                else if(failures.containsKey(child)) {
+                    LOGGER.debug("IOException caught", failures.get(child));
+                    nextFile(child);
+                    retryDelete(child);
+                }
+            }
+        }
+
+        return folders.toArray(new AbstractFile[0]);
+    }
+
+    /**
+     * Reports that the given file could not be deleted and deletes it again for as long as the user asks to retry.
+     *
+     * @param file the file that could not be deleted
+     * @return <code>true</code> if the file was eventually deleted
+     */
+    private boolean retryDelete(AbstractFile file) {
+        while(showErrorDialog(errorDialogTitle, Translator.get("cannot_delete_file", file.getName()))==FileJobAction.RETRY) {
+            try {
+                file.delete();
+                return true;
+            }
+            catch(IOException e) {
+                LOGGER.debug("IOException caught", e);
+            }
+        }
+        // Cancel, skip or close dialog returns false
+        return false;
+    }
+
     /**
      * Invokes an error dialog saying that move to trash has failed.
      */
@@ -135,6 +213,9 @@ public class DeleteJob extends FileJob {
                     // Delete each file in this folder
                     try {
                         AbstractFile[] subFiles = file.ls();
+                        // Plain files are deleted together if the folder supports it, sparing a round trip per file
+                        if(file.isFileOperationSupported(FileOperation.BATCH_DELETE))
+                            subFiles = deleteFilesInBatches(file, subFiles);
                         for(int i=0; i<subFiles.length && getState() != FileJobState.INTERRUPTED; i++) {
                             // Notify job that we're starting to process this file (needed for recursive calls to processFile)
                             nextFile(subFiles[i]);
@@ -181,6 +262,11 @@ public class DeleteJob extends FileJob {
     }
 
     // This job modifies baseFolder and subfolders
+    @Override
+    protected List<AbstractFile> getScheduledFolders() {
+        return scheduledFolders(getBaseSourceFolder());
+    }
+
     @Override
     protected boolean hasFolderChangedImpl(AbstractFile folder) {
         return getBaseSourceFolder().isParentOf(folder);
@@ -18,8 +18,12 @@
 package com.mucommander.job.impl;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.WeakHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,10 +32,12 @@ import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.CachedFile;
 import com.mucommander.commons.file.protocol.search.SearchFile;
 import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.core.FolderSizeCache;
 import com.mucommander.job.FileJobAction;
 import com.mucommander.job.FileJobListener;
 import com.mucommander.job.FileJobState;
 import com.mucommander.job.JobProgress;
+import com.mucommander.job.JobScheduler;
 import com.mucommander.job.JobsManager;
 import com.mucommander.job.ui.DialogResult;
 import com.mucommander.job.ui.UserInputHelper;
@@ -159,18 +165,6 @@ public abstract class FileJob implements com.mucommander.job.FileJob {
         this.nbFiles = files.size();
         this.baseSourceFolder = files.getBaseFolder();
 
-        // Create CachedFile instances around the source files in order to cache the return value of frequently accessed
-        // methods. This eliminates some I/O, at the (small) cost of a bit more CPU and memory. Recursion is enabled
-        // so that children and parents of the files are also cached.
-        // Note: When cached methods are called, they no longer reflect changes in the underlying files. In particular,
-        // changes of size or date could potentially not be reflected when files are being processed but this should
-        // not really present a risk. 
-        AbstractFile tempFile;
-        for(int i=0; i<nbFiles; i++) {
-            tempFile = files.elementAt(i);
-            files.setElementAt((tempFile instanceof CachedFile)?tempFile:new CachedFile(tempFile, true), i);
-        }
-
         if (this.baseSourceFolder!=null)
             this.baseSourceFolder = (getBaseSourceFolder() instanceof CachedFile)?getBaseSourceFolder():new CachedFile(getBaseSourceFolder(), true);
 
@@ -214,13 +208,55 @@ public abstract class FileJob implements com.mucommander.job.FileJob {
         if (getState() != FileJobState.NOT_STARTED)
             return;
 
-        setState(FileJobState.RUNNING);
+        List<AbstractFile> scheduledFolders = getScheduledFolders();
+        if (scheduledFolders.isEmpty()) {
+            launch();
+            return;
+        }
+
+        // Wait for the jobs using the same volumes or hosts, the job is launched by the scheduler
+        setState(FileJobState.QUEUED);
+        JobScheduler.getInstance().schedule(this, scheduledFolders, this::launch);
+    }
+
+    /**
+     * Starts the job's thread.
+     */
+    private synchronized void launch() {
+        if (getState() == FileJobState.INTERRUPTED) {
+            // The job was interrupted while being taken off the queue
+            endDate = System.currentTimeMillis();
+            jobStopped();
+            JobsManager.getInstance().jobEnded(this);
+            JobScheduler.getInstance().jobEnded(this);
+            return;
+        }
+
         startDate = System.currentTimeMillis();
+        setState(FileJobState.RUNNING);
 
         jobThread = new Thread(this, getClass().getName());
         jobThread.start();
     }
 
+    /**
+     * Returns the folders this job reads from or writes to, used by the {@link JobScheduler} to queue this job after
+     * the jobs that use the same volumes or hosts. This method implementation returns an empty list, meaning that
+     * the job is started right away, but it can be overridden by subclasses that perform heavy I/O.
+     *
+     * @return the folders this job reads from or writes to
+     */
+    protected List<AbstractFile> getScheduledFolders() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns a list of the given folders without the <code>null</code> ones, for {@link #getScheduledFolders()}.
+     */
+    protected static List<AbstractFile> scheduledFolders(AbstractFile... folders) {
+        return Stream.of(folders).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
     @Override
     public ProgressDialog getProgressDialog() {
         return progressDialog;
@@ -339,6 +375,15 @@ public abstract class FileJob implements com.mucommander.job.FileJob {
         if (state == FileJobState.INTERRUPTED || state == FileJobState.FINISHED)
             return;
 
+        if (state == FileJobState.QUEUED && JobScheduler.getInstance().cancel(this)) {
+            // The job has never been launched
+            setState(FileJobState.INTERRUPTED);
+            endDate = System.currentTimeMillis();
+            jobStopped();
+            JobsManager.getInstance().jobEnded(this);
+            return;
+        }
+
         if (state == FileJobState.PAUSED)
             setPaused(false);
 
@@ -387,7 +432,7 @@ public abstract class FileJob implements com.mucommander.job.FileJob {
                 setState(FileJobState.RUNNING);
             }
             // Pause job if it not paused already
-            else if(paused && getState() != FileJobState.PAUSED && getState() != FileJobState.INTERRUPTED && getState() != FileJobState.FINISHED) {
+            else if(paused && getState() != FileJobState.PAUSED && getState() != FileJobState.QUEUED && getState() != FileJobState.INTERRUPTED && getState() != FileJobState.FINISHED) {
                 // Memorize pause time in order to calculate pause time when the job is resumed
                 setPauseStartDate();
                 // Call the jobPaused method to notify of the new job's state
@@ -609,6 +654,14 @@ public abstract class FileJob implements com.mucommander.job.FileJob {
         // Repaint the status bar as marked files have changed
         mainFrame.getStatusBar().updateSelectedFilesInfo();
     }
+
+    /**
+     * Marks the sizes calculated for the folders changed by this job as outdated, called by {@link #run()} when the
+     * job has ended.
+     */
+    protected void invalidateFolderSizes() {
+        getScheduledFolders().stream().filter(this::hasFolderChanged).forEach(FolderSizeCache::invalidate);
+    }
     
     @Override
     public float getTotalPercentDone() {
@@ -694,6 +747,30 @@ public abstract class FileJob implements com.mucommander.job.FileJob {
         return hasFolderChangedImpl(folder);
     }
 
+    /**
+     * Returns the file at the given index, replacing it in {@link #files} by a {@link CachedFile} instance if it isn't
+     * one already. Files are wrapped as they are processed rather than all at once when the job is created, which
+     * would allocate as many objects as files before the job starts.
+     *
+     * @param index index of the file in {@link #files}
+     * @return the file at the given index, as a CachedFile
+     */
+    private AbstractFile getCachedFile(int index) {
+        AbstractFile file = files.elementAt(index);
+
+        // Create CachedFile instances around the source files in order to cache the return value of frequently accessed
+        // methods. This eliminates some I/O, at the (small) cost of a bit more CPU and memory. Recursion is enabled
+        // so that children and parents of the files are also cached.
+        // Note: When cached methods are called, they no longer reflect changes in the underlying files. In particular,
+        // changes of size or date could potentially not be reflected when files are being processed but this should
+        // not really present a risk.
+        if (!(file instanceof CachedFile)) {
+            file = new CachedFile(file, true);
+            files.setElementAt(file, index);
+        }
+        return file;
+    }
+
     /////////////////////////////
     // Runnable implementation //
     /////////////////////////////
@@ -702,45 +779,52 @@ public abstract class FileJob implements com.mucommander.job.FileJob {
      * This method is public as a side-effect of this class implementing <code>Runnable</code>.
      */
     public final void run() {
-        FileTable activeTable = getMainFrame().getActiveTable();
+        try {
+            FileTable activeTable = getMainFrame().getActiveTable();
 
-        // Notify that this job has started
-        jobStarted();
+            // Notify that this job has started
+            jobStarted();
 
-        // Loop on all source files, checking that job has not been interrupted
-        for (currentFileIndex=0; currentFileIndex<nbFiles; currentFileIndex++) {
-            AbstractFile currentFile = files.elementAt(currentFileIndex);
+            // Loop on all source files, checking that job has not been interrupted
+            for (currentFileIndex=0; currentFileIndex<nbFiles; currentFileIndex++) {
+                AbstractFile currentFile = getCachedFile(currentFileIndex);
 
-            // Change current file and advance file index
-            nextFile(currentFile);
+                // Change current file and advance file index
+                nextFile(currentFile);
 
-            // Process current file
-            boolean success = processFile(currentFile, null);
+                // Process current file
+                boolean success = processFile(currentFile, null);
 
-            // Stop if job was interrupted
-            if (getState() == FileJobState.INTERRUPTED)
-                break;
+                // Stop if job was interrupted
+                if (getState() == FileJobState.INTERRUPTED)
+                    break;
 
-            // Unmark file in active table if 'auto unmark' is enabled
-            // and file was processed successfully
-            if (autoUnmark && success) {
-                // Do not repaint rows individually as it would be too expensive
-                activeTable.setFileMarked(currentFile, false, false);
+                // Unmark file in active table if 'auto unmark' is enabled
+                // and file was processed successfully
+                if (autoUnmark && success) {
+                    // Do not repaint rows individually as it would be too expensive
+                    activeTable.setFileMarked(currentFile, false, false);
+                }
             }
-        }
 
-        // If last file was reached without any user interruption, all files have been processed with or
-        // without errors, switch to FINISHED state and notify listeners
-        if (currentFileIndex == nbFiles && getState() != FileJobState.INTERRUPTED) {
-            stop();
-            jobCompleted();
-            setState(FileJobState.FINISHED);
-        }
+            // If last file was reached without any user interruption, all files have been processed with or
+            // without errors, switch to FINISHED state and notify listeners
+            if (currentFileIndex == nbFiles && getState() != FileJobState.INTERRUPTED) {
+                stop();
+                jobCompleted();
+                setState(FileJobState.FINISHED);
+            }
+
+            // Refresh tables's current folders, based on the job's refresh policy.
+            refreshTables();
 
-        // Refresh tables's current folders, based on the job's refresh policy.
-        refreshTables();
+            invalidateFolderSizes();
 
-        JobsManager.getInstance().jobEnded(this);
+            JobsManager.getInstance().jobEnded(this);
+        } finally {
+            // Let the jobs waiting for the volumes of this job start
+            JobScheduler.getInstance().jobEnded(this);
+        }
     }
 
 
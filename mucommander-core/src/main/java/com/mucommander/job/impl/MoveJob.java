@@ -96,11 +96,9 @@ public class MoveJob extends AbstractCopyJob {
             destFolder = file.getParent();
 
 		
-        // Is current file at the base folder level ?
-        boolean isFileInBaseFolder = files.indexOf(file)!=-1;
-
         // Determine filename in destination
-        String destFileName = isFileInBaseFolder && newName!=null ? newName : file.getName();
+        // The new name only applies to the files in base folder, which are looked up only if there is a new name
+        String destFileName = newName!=null && files.indexOf(file)!=-1 ? newName : file.getName();
 		
         // Create destination AbstractFile instance
         AbstractFile destFile = createDestinationFile(file, destFolder, destFileName);
@@ -19,58 +19,61 @@
 package com.mucommander.job.impl;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.util.DirectorySizeCalculator;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.conf.MuConfigurations;
 import com.mucommander.conf.MuPreference;
 import com.mucommander.conf.MuPreferences;
+import com.mucommander.core.FolderSizeCache;
 import com.mucommander.job.FileJobState;
 import com.mucommander.ui.main.MainFrame;
 
-import java.io.IOException;
-
 
 /**
  * This FileJob calculates the number of files contained in a list of file and folders and
- * computes their size.
+ * computes their size. Folders are listed concurrently by a {@link DirectorySizeCalculator}, the totals
+ * are updated as files are encountered.
  *
  * @author Maxence Bernard
  */
 public class PropertiesJob extends FileJob {
-    
-    /** Number of folders encountered so far */
-    private int nbFolders;
 
-    /** Number of regular files (not folders) encountered so far */
-    private int nbFilesRecurse;
-	
-    /** Combined size of all files encountered so far */
-    private long totalBytes;
+    /** Counts the files and their size */
+    private final DirectorySizeCalculator calculator;
+
+    /** True if hidden files are counted */
+    private final boolean showHiddenFiles;
 	
 	
     public PropertiesJob(FileSet files, MainFrame mainFrame) {
         super(mainFrame, files);
         setAutoUnmark(false);
+
+        showHiddenFiles = MuConfigurations.getPreferences().getVariable(MuPreference.SHOW_HIDDEN_FILES, MuPreferences.DEFAULT_SHOW_HIDDEN_FILES);
+        calculator = new DirectorySizeCalculator(file -> showHiddenFiles || !file.isHidden(), DirectorySizeCalculator.DEFAULT_PARALLELISM);
+        // Notify job that we're starting to process this folder, this also blocks the listing threads while the job is paused
+        calculator.setFolderListener(this::nextFile);
     }
 
     /**
      * Returns the size in bytes of all the files seen so far.
      */
     public long getTotalBytes() {
-        return totalBytes;
+        return calculator.getTotalBytes();
     }
 
     /**
      * Returns the number of folders counted so far.
      */
     public int getNbFolders() {
-        return nbFolders;
+        return calculator.getNbFolders();
     }
  
     /**
      * Returns the number of files (folders excluded) counted so far.
      */
     public int getNbFilesRecurse() {
-        return nbFilesRecurse;
+        return calculator.getNbFiles();
     }
  
 
@@ -88,36 +91,31 @@ public class PropertiesJob extends FileJob {
         if (getState() == FileJobState.INTERRUPTED)
             return false;
 
-        if (file.isHidden() && !MuConfigurations.getPreferences().getVariable(MuPreference.SHOW_HIDDEN_FILES, MuPreferences.DEFAULT_SHOW_HIDDEN_FILES))
-            return true;
-
-        // If file is a directory, increase folder counter and recurse
-        if (file.isDirectory() && !file.isSymlink()) {
-            nbFolders++;
-
-            try {
-                AbstractFile[] subFiles = file.ls();
-                for(int i=0; i<subFiles.length && getState() != FileJobState.INTERRUPTED; i++) {
-                    // Notify job that we're starting to process this file (needed for recursive calls to processFile)
-                    nextFile(subFiles[i]);
-                    processFile(subFiles[i], null);
-                }
-            }
-            catch(IOException e) {
-                // Should we tell the user?
-            }
+        long previousTotalBytes = calculator.getTotalBytes();
+        try {
+            calculator.calculate(file);
         }
-        // If not, increase file counter and bytes total
-        else {
-            nbFilesRecurse++;
-            long fileSize = file.getSize();
-            if(fileSize>0)		// Can be equal to -1 if size not available
-                totalBytes += fileSize;
+        catch(InterruptedException e) {
+            return false;
         }
-	
+
+        if (getState() == FileJobState.INTERRUPTED)
+            return false;
+
+        // Remember the size of the folder, provided that it is complete
+        if (showHiddenFiles && file.isDirectory())
+            FolderSizeCache.put(file, calculator.getTotalBytes() - previousTotalBytes);
+
         return true;
     }
 
+    @Override
+    protected void jobStopped() {
+        super.jobStopped();
+        // Releases the threads listing folders, which are shared by all the files of the job
+        calculator.shutdown();
+    }
+
     // This job does not modify anything
     @Override
     protected boolean hasFolderChangedImpl(AbstractFile folder) {
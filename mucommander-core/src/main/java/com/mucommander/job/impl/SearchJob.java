@@ -17,23 +17,25 @@
 package com.mucommander.job.impl;
 
 import java.io.IOException;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
 import com.mucommander.commons.file.protocol.search.SearchListener;
 import com.mucommander.commons.file.util.FileSet;
-import com.mucommander.commons.util.Pair;
 import com.mucommander.job.FileJobState;
+import com.mucommander.search.index.FileIndexManager;
+import com.mucommander.search.index.IndexQuery;
 import com.mucommander.ui.main.MainFrame;
 
 /**
@@ -47,11 +49,16 @@ public class SearchJob extends FileJob implements com.mucommander.commons.file.p
 
     private Predicate<AbstractFile> fileMatcher;
     private Predicate<AbstractFile> lsFilter;
+    private IndexQuery indexQuery;
     private List<AbstractFile> findings;
-    private SearchListener listener;
+    /** Never <code>null</code>, tasks still running after the search completed or was interrupted may notify it */
+    private volatile SearchListener listener = nullListener;
     private int depth, threads;
 
-    private ExecutorService customThreadPool;
+    private ForkJoinPool customThreadPool;
+
+    /** Max number of files matched by a single task */
+    private static final int MATCH_BATCH_SIZE = 16;
 
     private static final SearchListener nullListener = () -> {};
 
@@ -77,37 +84,124 @@ public class SearchJob extends FileJob implements com.mucommander.commons.file.p
         this.lsFilter = browseMatcher;
     }
 
-    private Pair<List<AbstractFile>, Boolean> search(List<AbstractFile> files, boolean lsFilter) {
-        try {
-            List<AbstractFile> children = customThreadPool.submit(() -> ls(files, lsFilter)).get();
-            List<AbstractFile> matches = customThreadPool.submit(() -> match(children)).get();
-            boolean searchChanged = findings.addAll(matches);
-            return new Pair<>(children, searchChanged);
-        } catch (Exception e) {
-            return new Pair<>(Collections.emptyList(), false);
-        }
+    /**
+     * Sets the criteria used to look the files up in the search index, if the searched folder is indexed.
+     * The files found in the index are then matched against the file matcher.
+     *
+     * @param indexQuery the criteria of the search that the index can evaluate, <code>null</code> to not use the index
+     */
+    public void setIndexQuery(IndexQuery indexQuery) {
+        this.indexQuery = indexQuery;
     }
 
-    private List<AbstractFile> ls(List<AbstractFile> files, boolean filter) {
-        Stream<AbstractFile> stream = files.parallelStream();
-        if (filter)
-            stream = stream.filter(lsFilter);
-        return stream.map(this::ls).flatMap(s -> s).collect(Collectors.toList());
-    }
+    /**
+     * Lists the given folder and matches its children, forking a new task for each child folder that should be
+     * searched in turn. Folders are thus processed as soon as they are listed, idle threads stealing tasks from busy
+     * ones, rather than one depth level at a time.
+     */
+    private class SearchTask extends RecursiveAction {
+        private final AbstractFile folder;
+        private final int level;
 
-    private List<AbstractFile> match(List<AbstractFile> files) {
-        return files.parallelStream().filter(this::match).collect(Collectors.toList());
-    }
+        SearchTask(AbstractFile folder, int level) {
+            this.folder = folder;
+            this.level = level;
+        }
 
-    private Stream<AbstractFile> ls(AbstractFile file) {
-        if (getState() != FileJobState.INTERRUPTED) {
+        @Override
+        protected void compute() {
+            if (getState() == FileJobState.INTERRUPTED)
+                return;
+
+            AbstractFile[] children;
             try {
-                return Stream.of(file.ls());
+                children = folder.ls();
             } catch (IOException e) {
-                LOGGER.debug("failed to list: " + file, e);
+                LOGGER.debug("failed to list: " + folder, e);
+                return;
+            }
+
+            List<SearchTask> subtasks = new ArrayList<>();
+            if (level + 1 < depth) {
+                for (AbstractFile child : children) {
+                    if (lsFilter.test(child)) {
+                        SearchTask subtask = new SearchTask(child, level + 1);
+                        subtask.fork();
+                        subtasks.add(subtask);
+                    }
+                }
+            }
+
+            new MatchTask(children, 0, children.length).invoke();
+
+            for (SearchTask subtask : subtasks)
+                subtask.join();
+        }
+    }
+
+    /**
+     * Matches a range of files, splitting it so that expensive matchers (e.g., content search) run in parallel.
+     * Matches are added to the findings as soon as they are found.
+     */
+    private class MatchTask extends RecursiveAction {
+        private final AbstractFile[] files;
+        private final int from, to;
+
+        MatchTask(AbstractFile[] files, int from, int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > MATCH_BATCH_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new MatchTask(files, from, middle), new MatchTask(files, middle, to));
+                return;
+            }
+
+            List<AbstractFile> matches = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                if (match(files[i]))
+                    matches.add(files[i]);
+            }
+            if (!matches.isEmpty() && findings.addAll(matches))
+                listener.searchChanged();
+        }
+    }
+
+    /**
+     * Resolves and matches a range of the paths found in the search index.
+     */
+    private class IndexMatchTask extends RecursiveAction {
+        private final List<String> paths;
+        private final int from, to;
+
+        IndexMatchTask(List<String> paths, int from, int to) {
+            this.paths = paths;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > MATCH_BATCH_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new IndexMatchTask(paths, from, middle), new IndexMatchTask(paths, middle, to));
+                return;
+            }
+
+            List<AbstractFile> matches = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                AbstractFile file = FileFactory.getFile(paths.get(i));
+                // the index may not reflect the latest changes yet
+                if (file != null && file.exists() && match(file))
+                    matches.add(file);
             }
+            if (!matches.isEmpty() && findings.addAll(matches))
+                listener.searchChanged();
         }
-        return Stream.empty();
     }
 
     private boolean match(AbstractFile file) {
@@ -140,17 +234,21 @@ public class SearchJob extends FileJob implements com.mucommander.commons.file.p
         LOGGER.info("start searching {}", file);
         customThreadPool = threads > 0 ? new ForkJoinPool(threads) : new ForkJoinPool();
         try {
-            List<AbstractFile> files = Collections.singletonList(file);
-            for (int i=0; getState() != FileJobState.INTERRUPTED && i<depth && !files.isEmpty(); i++) {
-                Pair<List<AbstractFile>, Boolean> result = search(files, i != 0);
-                files = result.first;
-                if (result.second)
-                    listener.searchChanged();
+            List<String> indexedFiles = indexQuery != null ? FileIndexManager.find(file, indexQuery) : null;
+            if (indexedFiles != null) {
+                LOGGER.info("found {} candidates in the search index", indexedFiles.size());
+                customThreadPool.invoke(new IndexMatchTask(indexedFiles, 0, indexedFiles.size()));
+            } else {
+                customThreadPool.invoke(new SearchTask(file, 0));
             }
+        } catch (RejectedExecutionException | CancellationException e) {
+            // the pool was shut down because the search was interrupted
+            LOGGER.debug("search was interrupted", e);
         } finally {
             LOGGER.info("completed searching {}", file);
-            listener = null;
             customThreadPool.shutdown();
+            // Tasks forked before the pool was shut down may still be running
+            setListener(null);
         }
         return true;
     }
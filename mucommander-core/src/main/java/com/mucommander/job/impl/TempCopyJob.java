@@ -18,6 +18,8 @@
 package com.mucommander.job.impl;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,6 +62,13 @@ public class TempCopyJob extends CopyJob {
         super(progressDialog, mainFrame, filesToCopy, getTemporaryFolder(filesToCopy), null, TransferMode.COPY, FileCollisionDialog.FileCollisionAction.OVERWRITE);
     }
 
+    /**
+     * Temporary copies are made for opening files, they are not queued after other jobs.
+     */
+    @Override
+    protected List<AbstractFile> getScheduledFolders() {
+        return Collections.emptyList();
+    }
 
     protected static AbstractFile getTemporaryFolder(FileSet files) {
         AbstractFile tempFolder;
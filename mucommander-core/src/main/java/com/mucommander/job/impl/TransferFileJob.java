@@ -644,7 +644,7 @@ public abstract class TransferFileJob extends FileJob {
         int nbFiles = getNbFiles();
 
         // If file is in base folder and is not a directory...
-        if(getCurrentFile()!=null && nbFilesProcessed!=nbFiles && files.indexOf(getCurrentFile())!=-1 && !getCurrentFile().isDirectory()) {
+        if(getCurrentFile()!=null && nbFilesProcessed!=nbFiles && getCurrentFileIndex()<files.size() && files.elementAt(getCurrentFileIndex())==getCurrentFile() && !getCurrentFile().isDirectory()) {
             // Add current file's progress
             long currentFileSize = getCurrentFile().getSize();
             if(currentFileSize>0)
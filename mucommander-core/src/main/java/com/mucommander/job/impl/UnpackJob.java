@@ -22,7 +22,7 @@ import com.mucommander.commons.file.*;
 import com.mucommander.commons.file.archive.AbstractArchiveFile;
 import com.mucommander.commons.file.archive.AbstractRWArchiveFile;
 import com.mucommander.commons.file.archive.ArchiveEntry;
-import com.mucommander.commons.file.archive.ArchiveEntryIterator;
+import com.mucommander.commons.file.archive.ArchiveEntryHandler;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.commons.file.util.PathUtils;
 import com.mucommander.desktop.ActionType;
@@ -44,8 +44,9 @@ import java.util.List;
 
 /**
  * This job unpacks a set of archive files to a base destination folder. Archive entries are extracted in their natural
- * order using {@link com.mucommander.commons.file.archive.AbstractArchiveFile#getEntryIterator()}, to traverse the archive only once
- * and achieve optimal performance.
+ * order using {@link com.mucommander.commons.file.archive.AbstractArchiveFile#extractEntries(ArchiveEntryHandler)}, to
+ * traverse the archive only once and achieve optimal performance. Zip archives with random read access inflate the
+ * next entries on other threads while the current one is being written.
  *
  * @author Maxence Bernard
  */
@@ -183,136 +184,13 @@ public class UnpackJob extends AbstractCopyJob {
         // 'Cast' the file as an archive file
         AbstractArchiveFile archiveFile = file.getAncestor(AbstractArchiveFile.class);
 
-        String destSeparator = destFolder.getSeparator();
-
         do {
-            // Unpack the archive, copying entries one by one, in the iterator's order
-            try (ArchiveEntryIterator iterator = archiveFile.getEntryIterator()) {
-                ArchiveEntry entry;
-                while ((entry = iterator.nextEntry()) != null && getState() != FileJobState.INTERRUPTED) {
-                    String entryPath = entry.getPath();
-
-                    boolean processEntry = false;
-                    if (selectedEntries == null) {    // Entries are processed
-                        processEntry = true;
-                    } else {                          // We need to determine if the entry should be processed or not
-                        // Process this entry if the selectedEntries set contains this entry, or a parent of this entry
-                        int nbSelectedEntries = selectedEntries.size();
-                        for (int i = 0; i < nbSelectedEntries; i++) {
-                            ArchiveEntry selectedEntry = selectedEntries.get(i);
-                            // Note: paths of directory entries must end with '/', so this compares whether
-                            // selectedEntry is a parent of the current entry.
-                            if (selectedEntry.isDirectory()) {
-                                if (entryPath.startsWith(selectedEntry.getPath())) {
-                                    processEntry = true;
-                                    break;
-                                    // Note: we can't remove selectedEntryPath from the set, we still need it
-                                }
-                            } else if (entryPath.equals(selectedEntry.getPath())) {
-                                // If the (regular file) entry is in the set, remove it as we no longer need it (will speed up
-                                // subsequent searches)
-                                processEntry = true;
-                                selectedEntries.remove(i);
-                                break;
-                            }
-                        }
-                    }
-
-                    if (!processEntry)
-                        continue;
-
-                    // Resolve the entry file
-                    AbstractFile entryFile = archiveFile.getArchiveEntryFile(entryPath);
-
-                    // Notify the job that we're starting to process this file
-                    nextFile(entryFile);
-
-                    // Figure out the destination file's path, relatively to the base destination folder
-                    String relDestPath = baseArchiveDepth == 0
-                            ? entry.getPath()
-                                    : PathUtils.removeLeadingFragments(entry.getPath(), "/", baseArchiveDepth);
-
-                    if (newName != null)
-                        relDestPath = newName + (PathUtils.getDepth(relDestPath, "/") <= 1 ? "" : "/" + PathUtils.removeLeadingFragments(relDestPath, "/", 1));
-
-                    if (!"/".equals(destSeparator))
-                        relDestPath = relDestPath.replace("/", destSeparator);
-
-                    // Create destination AbstractFile instance
-                    AbstractFile destFile = destFolder.getChild(relDestPath);
-
-                    // Check for ZipSlip (see https://snyk.io/research/zip-slip-vulnerability)
-                    do {
-                        if (destFolder.isParentOf(destFile))
-                            break;
-
-                        DialogAction ret = showErrorDialog(errorDialogTitle, Translator.get("unpack.entry_out_of_target_dir", destFile.getName()));
-                        // Retry loops
-                        if (ret == FileJobAction.RETRY)
-                            continue;
-                        // Cancel, skip or close dialog returns false
-                        return false;
-                    } while (true);
-
-                    // Check if the file does not already exist in the destination
-                    destFile = checkForCollision(entryFile, destFolder, destFile, false);
-                    if (destFile == null) {
-                        // A collision occurred and either the file was skipped, or the user cancelled the job
-                        continue;
-                    }
-
-                    // It is noteworthy that the iterator returns entries in no particular order (consider it random).
-                    // For that reason, we cannot assume that the parent directory of an entry will be processed
-                    // before the entry itself.
-
-                    // If the entry is a directory ...
-                    if (entryFile.isDirectory()) {
-                        // Create the directory in the destination, if it doesn't already exist
-                        if (!(destFile.exists() && destFile.isDirectory())) {
-                            // Loop for retry
-                            do {
-                                try {
-                                    // Use mkdirs() instead of mkdir() to create any parent folder that doesn't exist yet
-                                    destFile.mkdirs();
-                                } catch (IOException e) {
-                                    // Unable to create folder
-                                    DialogAction ret = showErrorDialog(errorDialogTitle, Translator.get("cannot_create_folder", entryFile.getName()));
-                                    // Retry loops
-                                    if (ret == FileJobAction.RETRY)
-                                        continue;
-                                    // Cancel or close dialog return false
-                                    return false;
-                                    // Skip continues
-                                }
-                                break;
-                            } while (true);
-                        }
-                    }
-                    // The entry is a regular file, copy it
-                    else {
-                        // Create the file's parent directory(s) if it doesn't already exist
-                        AbstractFile destParentFile = destFile.getParent();
-                        if (!destParentFile.exists()) {
-                            // Use mkdirs() instead of mkdir() to create any parent folder that doesn't exist yet
-                            destParentFile.mkdirs();
-                        }
+            // Unpack the archive, extracting entries one by one in a single pass, in the archive's order
+            EntryUnpacker unpacker = new EntryUnpacker(archiveFile, destFolder);
+            try {
+                archiveFile.extractEntries(unpacker);
 
-                        if (entry.isSymlink()) {
-                            Files.createSymbolicLink(
-                                    FileSystems.getDefault().getPath(destFile.getAbsolutePath()),
-                                    FileSystems.getDefault().getPath(entry.getLinkTarget()));
-                            continue;
-                        }
-
-                        // The entry is wrapped in a ProxyFile to override #getInputStream() and delegate it to
-                        // ArchiveFile#getEntryInputStream in order to take advantage of the ArchiveEntryIterator, which for
-                        // some archive file implementations (such as TAR) can speed things by an order of magnitude.
-                        if (!tryCopyFile(new ProxiedEntryFile(entryFile, entry, archiveFile, iterator), destFile, append, errorDialogTitle))
-                            return false;
-                    }
-                }
-
-                return true;
+                return !unpacker.failed;
             } catch (IOException e) {
                 DialogAction action = null;
                 if (archiveFile.getPassword() == null) {
@@ -380,23 +258,188 @@ public class UnpackJob extends AbstractCopyJob {
     // Inner classes //
     ///////////////////
 
+    /**
+     * Unpacks the entries of an archive extracted by {@link AbstractArchiveFile#extractEntries(ArchiveEntryHandler)}
+     * to the destination folder.
+     */
+    private class EntryUnpacker implements ArchiveEntryHandler {
+
+        private final AbstractArchiveFile archiveFile;
+        private final AbstractFile destFolder;
+        private final String destSeparator;
+
+        /** True if the unpacking has been aborted, either because of an error or because the user cancelled it */
+        private boolean failed;
+
+        private EntryUnpacker(AbstractArchiveFile archiveFile, AbstractFile destFolder) {
+            this.archiveFile = archiveFile;
+            this.destFolder = destFolder;
+            this.destSeparator = destFolder.getSeparator();
+        }
+
+        @Override
+        public boolean accept(ArchiveEntry entry) {
+            String entryPath = entry.getPath();
+
+            boolean processEntry = false;
+            if (selectedEntries == null) {    // Entries are processed
+                processEntry = true;
+            } else {                          // We need to determine if the entry should be processed or not
+                // Process this entry if the selectedEntries set contains this entry, or a parent of this entry
+                int nbSelectedEntries = selectedEntries.size();
+                for (int i = 0; i < nbSelectedEntries; i++) {
+                    ArchiveEntry selectedEntry = selectedEntries.get(i);
+                    // Note: paths of directory entries must end with '/', so this compares whether
+                    // selectedEntry is a parent of the current entry.
+                    if (selectedEntry.isDirectory()) {
+                        if (entryPath.startsWith(selectedEntry.getPath())) {
+                            processEntry = true;
+                            break;
+                            // Note: we can't remove selectedEntryPath from the set, we still need it
+                        }
+                    } else if (entryPath.equals(selectedEntry.getPath())) {
+                        // If the (regular file) entry is in the set, remove it as we no longer need it (will speed up
+                        // subsequent searches)
+                        processEntry = true;
+                        selectedEntries.remove(i);
+                        break;
+                    }
+                }
+            }
+
+            return processEntry;
+        }
+
+        @Override
+        public boolean extract(ArchiveEntry entry, InputStream in) throws IOException {
+            // Stop if interrupted
+            if (getState() == FileJobState.INTERRUPTED)
+                return false;
+
+            String entryPath = entry.getPath();
+
+            // Resolve the entry file
+            AbstractFile entryFile = archiveFile.getArchiveEntryFile(entryPath);
+
+            // Notify the job that we're starting to process this file
+            nextFile(entryFile);
+
+            // Figure out the destination file's path, relatively to the base destination folder
+            String relDestPath = baseArchiveDepth == 0
+                    ? entry.getPath()
+                            : PathUtils.removeLeadingFragments(entry.getPath(), "/", baseArchiveDepth);
+
+            if (newName != null)
+                relDestPath = newName + (PathUtils.getDepth(relDestPath, "/") <= 1 ? "" : "/" + PathUtils.removeLeadingFragments(relDestPath, "/", 1));
+
+            if (!"/".equals(destSeparator))
+                relDestPath = relDestPath.replace("/", destSeparator);
+
+            // Create destination AbstractFile instance
+            AbstractFile destFile = destFolder.getChild(relDestPath);
+
+            // Check for ZipSlip (see https://snyk.io/research/zip-slip-vulnerability)
+            do {
+                if (destFolder.isParentOf(destFile))
+                    break;
+
+                DialogAction ret = showErrorDialog(errorDialogTitle, Translator.get("unpack.entry_out_of_target_dir", destFile.getName()));
+                // Retry loops
+                if (ret == FileJobAction.RETRY)
+                    continue;
+                // Cancel, skip or close dialog returns false
+                failed = true;
+                return false;
+            } while (true);
+
+            // Check if the file does not already exist in the destination
+            destFile = checkForCollision(entryFile, destFolder, destFile, false);
+            if (destFile == null) {
+                // A collision occurred and either the file was skipped, or the user cancelled the job
+                return getState() != FileJobState.INTERRUPTED;
+            }
+
+            // It is noteworthy that entries are extracted in no particular order (consider it random).
+            // For that reason, we cannot assume that the parent directory of an entry will be processed
+            // before the entry itself.
+
+            // If the entry is a directory ...
+            if (entryFile.isDirectory()) {
+                // Create the directory in the destination, if it doesn't already exist
+                if (!(destFile.exists() && destFile.isDirectory())) {
+                    // Loop for retry
+                    do {
+                        try {
+                            // Use mkdirs() instead of mkdir() to create any parent folder that doesn't exist yet
+                            destFile.mkdirs();
+                        } catch (IOException e) {
+                            // Unable to create folder
+                            DialogAction ret = showErrorDialog(errorDialogTitle, Translator.get("cannot_create_folder", entryFile.getName()));
+                            // Retry loops
+                            if (ret == FileJobAction.RETRY)
+                                continue;
+                            // Cancel or close dialog return false
+                            failed = true;
+                            return false;
+                            // Skip continues
+                        }
+                        break;
+                    } while (true);
+                }
+            }
+            // The entry is a regular file, copy it
+            else {
+                // Create the file's parent directory(s) if it doesn't already exist
+                AbstractFile destParentFile = destFile.getParent();
+                if (!destParentFile.exists()) {
+                    // Use mkdirs() instead of mkdir() to create any parent folder that doesn't exist yet
+                    destParentFile.mkdirs();
+                }
+
+                if (entry.isSymlink()) {
+                    Files.createSymbolicLink(
+                            FileSystems.getDefault().getPath(destFile.getAbsolutePath()),
+                            FileSystems.getDefault().getPath(entry.getLinkTarget()));
+                    return true;
+                }
+
+                // The entry is wrapped in a ProxyFile to override #getInputStream() and return the stream provided by
+                // ArchiveFile#extractEntries, which reads the archive only once: for some archive file implementations
+                // (such as TAR or solid 7z archives) this can speed things by an order of magnitude.
+                if (!tryCopyFile(new ProxiedEntryFile(entryFile, entry, archiveFile, in), destFile, append, errorDialogTitle)) {
+                    failed = true;
+                    return false;
+                }
+            }
+
+            return getState() != FileJobState.INTERRUPTED;
+        }
+    }
+
     private static class ProxiedEntryFile extends ProxyFile {
 
         private ArchiveEntry entry;
         private AbstractArchiveFile archiveFile;
-        private ArchiveEntryIterator iterator;
+        private InputStream in;
 
-        public ProxiedEntryFile(AbstractFile entryFile, ArchiveEntry entry, AbstractArchiveFile archiveFile, ArchiveEntryIterator iterator) {
+        public ProxiedEntryFile(AbstractFile entryFile, ArchiveEntry entry, AbstractArchiveFile archiveFile, InputStream in) {
             super(entryFile);
 
             this.entry = entry;
             this.archiveFile = archiveFile;
-            this.iterator = iterator;
+            this.in = in;
         }
 
         @Override
         public InputStream getInputStream() throws IOException {
-            return archiveFile.getEntryInputStream(entry, iterator);
+            // The extracted stream can only be read once, the entry is read again from the archive if the copy is retried
+            if (in != null) {
+                InputStream entryIn = in;
+                in = null;
+                return entryIn;
+            }
+
+            return archiveFile.getEntryInputStream(entry, null);
         }
     }
 }
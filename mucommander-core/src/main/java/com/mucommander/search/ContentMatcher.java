@@ -0,0 +1,349 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.io.BinaryDetector;
+
+/**
+ * Predicate that tells whether the content of a file contains a given text, used by file searches.
+ * <p>
+ * Files are read as a stream and the search stops at the first match. Binary files, as guessed by
+ * {@link BinaryDetector} from their first bytes, never match, and neither does any file when the text is empty.
+ * Literal strings are searched directly in the bytes of the file using the Boyer-Moore-Horspool algorithm
+ * (case-insensitively for ASCII strings), reading local files by regions into a buffer with positional reads. Local
+ * files are not memory-mapped, as the mappings would keep them locked on Windows until they are garbage collected.
+ * Regular expressions and non-ASCII case-insensitive strings are matched line by line, like <code>grep</code> does.
+ * <p>
+ * Reads from streams are performed as {@link ForkJoinPool.ManagedBlocker managed blocks}, so that a fork/join pool
+ * running the search can compensate for the threads blocked on I/O and keep its cores busy matching.
+ */
+public class ContentMatcher implements Predicate<AbstractFile> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentMatcher.class);
+
+    /** Size of the buffer used to read streams */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** Size of the regions of local files that are read at once */
+    private static final int REGION_SIZE = 1024 * 1024;
+
+    private final Charset charset = Charset.defaultCharset();
+
+    /** Whether the searched text is empty, in which case no file matches */
+    private final boolean empty;
+
+    /** The searched text encoded in bytes, <code>null</code> if lines have to be matched against {@link #pattern} */
+    private final byte[] needle;
+    /** Whether bytes are compared case-insensitively (ASCII only) */
+    private final boolean foldCase;
+    /** Boyer-Moore-Horspool shift table of {@link #needle} */
+    private final int[] shifts;
+    /** The pattern lines are matched against, <code>null</code> if {@link #needle} is used */
+    private final Pattern pattern;
+    /** Size of the regions of local files that are searched at once */
+    private final int regionSize;
+
+    /**
+     * Creates a matcher for the given text.
+     *
+     * @param text the text to search for
+     * @param caseSensitive whether the search is case-sensitive
+     * @param regex whether the text is a regular expression
+     */
+    public ContentMatcher(String text, boolean caseSensitive, boolean regex) {
+        this(text, caseSensitive, regex, REGION_SIZE);
+    }
+
+    /**
+     * Creates a matcher for the given text, searching local files by regions of the given size.
+     */
+    ContentMatcher(String text, boolean caseSensitive, boolean regex, int regionSize) {
+        this.regionSize = regionSize;
+        this.empty = text.isEmpty();
+        if (!regex && (caseSensitive || isAscii(text)) && isAsciiCompatible(charset)) {
+            foldCase = !caseSensitive;
+            needle = foldCase ? fold(text.getBytes(charset)) : text.getBytes(charset);
+            shifts = createShiftTable(needle);
+            pattern = null;
+        } else {
+            int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+            pattern = Pattern.compile(regex ? text : Pattern.quote(text), flags);
+            needle = null;
+            foldCase = false;
+            shifts = null;
+        }
+    }
+
+    @Override
+    public boolean test(AbstractFile file) {
+        if (empty || file.isDirectory()) {
+            return false;
+        }
+
+        try {
+            if (pattern != null) {
+                return containsPattern(file);
+            }
+            if (file.getUnderlyingFileObject() instanceof java.io.File) {
+                return containsNeedle((java.io.File) file.getUnderlyingFileObject());
+            }
+            return containsNeedle(file);
+        } catch (IOException e) {
+            LOGGER.debug("failed to search content of " + file.getAbsolutePath(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Searches the literal text in the given local file, reading it by regions into the same buffer.
+     */
+    private boolean containsNeedle(java.io.File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < needle.length) {
+                return false;
+            }
+
+            ByteBuffer region = ByteBuffer.allocate((int) Math.min(Math.max(regionSize, needle.length * 2), size));
+            // Consecutive regions overlap so that matches spanning two regions are found
+            long position = 0;
+            while (position < size) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                int length = (int) Math.min(region.capacity(), size - position);
+                read(channel, position, region.clear().limit(length));
+                if (position == 0 && isBinary(region)) {
+                    return false;
+                }
+                // The region may be shorter than expected if the file has been truncated
+                if (indexOf(region, 0, region.limit()) >= 0) {
+                    return true;
+                }
+                if (region.limit() < length || position + length == size) {
+                    break;
+                }
+                position += length - (needle.length - 1);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Searches the literal text in the given file, reading it as a stream.
+     */
+    private boolean containsNeedle(AbstractFile file) throws IOException {
+        try (InputStream in = new ManagedBlockingInputStream(file.getInputStream())) {
+            byte[] buffer = new byte[Math.max(BUFFER_SIZE, needle.length * 2)];
+            ByteBuffer data = ByteBuffer.wrap(buffer);
+            int length = 0;
+            boolean head = true;
+            int read;
+            while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+                length += read;
+                if (head) {
+                    if (isBinary(ByteBuffer.wrap(buffer, 0, length))) {
+                        return false;
+                    }
+                    head = false;
+                }
+                if (indexOf(data, 0, length) >= 0) {
+                    return true;
+                }
+                // Keep the end of the buffer, in case it holds the beginning of a match
+                int kept = Math.min(length, needle.length - 1);
+                System.arraycopy(buffer, length - kept, buffer, 0, kept);
+                length = kept;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Matches the lines of the given file against the pattern.
+     */
+    private boolean containsPattern(AbstractFile file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new ManagedBlockingInputStream(file.getInputStream()), BUFFER_SIZE)) {
+            in.mark(BinaryDetector.RECOMMENDED_BYTE_SIZE);
+            if (BinaryDetector.guessBinary(in)) {
+                return false;
+            }
+            in.reset();
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (pattern.matcher(line).find()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Fills the given buffer up to its limit with the bytes at the given position of the channel, and flips it. The
+     * buffer holds fewer bytes than expected if the end of the file is reached before.
+     */
+    private static void read(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read == -1) {
+                break;
+            }
+        }
+        buffer.flip();
+    }
+
+    private static boolean isBinary(ByteBuffer data) {
+        byte[] head = new byte[Math.min(data.limit(), BinaryDetector.RECOMMENDED_BYTE_SIZE)];
+        data.duplicate().position(0).get(head);
+        return BinaryDetector.guessBinary(head);
+    }
+
+    /**
+     * Returns the index of the first occurrence of the searched text in the given range of the buffer, using the
+     * Boyer-Moore-Horspool algorithm.
+     *
+     * @param data the buffer to search
+     * @param from index of the first byte of the range
+     * @param to index following the last byte of the range
+     * @return the index of the first occurrence, or <code>-1</code> if the text was not found
+     */
+    int indexOf(ByteBuffer data, int from, int to) {
+        int last = needle.length - 1;
+        int i = from;
+        while (i + last < to) {
+            int j = last;
+            while (j >= 0 && fold(data.get(i + j)) == needle[j]) {
+                j--;
+            }
+            if (j < 0) {
+                return i;
+            }
+            i += shifts[fold(data.get(i + last)) & 0xFF];
+        }
+        return -1;
+    }
+
+    private byte fold(byte b) {
+        return foldCase && b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private byte[] fold(byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = fold(bytes[i]);
+        }
+        return bytes;
+    }
+
+    private static int[] createShiftTable(byte[] needle) {
+        int[] shifts = new int[256];
+        Arrays.fill(shifts, Math.max(1, needle.length));
+        for (int i = 0; i < needle.length - 1; i++) {
+            shifts[needle[i] & 0xFF] = needle.length - 1 - i;
+        }
+        return shifts;
+    }
+
+    private static boolean isAscii(String text) {
+        return text.chars().allMatch(c -> c < 0x80);
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        String ascii = "\n azAZ09";
+        return Arrays.equals(ascii.getBytes(charset), ascii.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * InputStream that performs its reads as {@link ForkJoinPool.ManagedBlocker managed blocks}, allowing the
+     * fork/join pool it runs in (if any) to activate a spare thread while the read is blocked.
+     */
+    private static class ManagedBlockingInputStream extends FilterInputStream {
+
+        ManagedBlockingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            ReadBlocker blocker = new ReadBlocker(in, b, off, len);
+            try {
+                ForkJoinPool.managedBlock(blocker);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            if (blocker.exception != null) {
+                throw blocker.exception;
+            }
+            return blocker.result;
+        }
+    }
+
+    private static class ReadBlocker implements ForkJoinPool.ManagedBlocker {
+        private final InputStream in;
+        private final byte[] b;
+        private final int off;
+        private final int len;
+        private boolean done;
+        private int result;
+        private IOException exception;
+
+        ReadBlocker(InputStream in, byte[] b, int off, int len) {
+            this.in = in;
+            this.b = b;
+            this.off = off;
+            this.len = len;
+        }
+
+        @Override
+        public boolean block() {
+            try {
+                result = in.read(b, off, len);
+            } catch (IOException e) {
+                exception = e;
+            }
+            done = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done;
+        }
+    }
+}
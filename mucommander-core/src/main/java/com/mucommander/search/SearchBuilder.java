@@ -17,23 +17,20 @@
 
 package com.mucommander.search;
 
-import java.io.IOException;
 import java.util.List;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.unix4j.Unix4j;
-import org.unix4j.unix.Grep;
-import org.unix4j.unix.grep.GrepOptionSet_Fcilnvx;
-import org.unix4j.unix.grep.GrepOptions;
 
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.protocol.search.SearchListener;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.commons.util.Pair;
 import com.mucommander.job.impl.SearchJob;
+import com.mucommander.search.index.IndexQuery;
 import com.mucommander.ui.main.MainFrame;
 
 /**
@@ -62,7 +59,7 @@ public class SearchBuilder implements com.mucommander.commons.file.protocol.sear
     private String searchText;
     private boolean textCaseSensitive;
     private boolean textMatchRegex;
-    private Predicate<AbstractFile> sizePredicate;
+    private LongPredicate sizePredicate;
 
     private SearchJob searchJob;
 
@@ -198,7 +195,7 @@ public class SearchBuilder implements com.mucommander.commons.file.protocol.sear
             SizeRelation searchSizeRelation = SearchUtils.getSizeRelation(value);
             long searchSize = SearchUtils.getSize(value);
             SizeUnit searchSizeUnit = SearchUtils.getSizeUnit(value);
-            Predicate<AbstractFile> predicate = file -> searchSizeRelation.matches(file.getSize(), searchSize, searchSizeUnit);
+            LongPredicate predicate = size -> searchSizeRelation.matches(size, searchSize, searchSizeUnit);
             sizePredicate = sizePredicate == null ? predicate : sizePredicate.and(predicate);
         });
         return this;
@@ -211,9 +208,17 @@ public class SearchBuilder implements com.mucommander.commons.file.protocol.sear
             searchJob.setDepth(searchDepth);
             searchJob.setThreads(searchThreads);
 
-            Predicate<AbstractFile> fileMatcher = createFilePredicate();
+            Predicate<String> nameMatcher = createFilenamePredicate();
+            Predicate<AbstractFile> fileMatcher = createFilePredicate(nameMatcher);
             searchJob.setFileMatcher(fileMatcher);
 
+            // the index does not hold the content of archives nor follows symbolic links
+            if (!searchInArchives && !searchInSymlinks)
+                searchJob.setIndexQuery(new IndexQuery(nameMatcher, sizePredicate,
+                        searchInSubfolders, searchInHidden,
+                        searchForSubfolders, searchForHidden, searchForSymlinks,
+                        searchDepth));
+
             Predicate<AbstractFile> lsFilter = createListFilter();
             searchJob.setListFilter(lsFilter);
 
@@ -226,8 +231,8 @@ public class SearchBuilder implements com.mucommander.commons.file.protocol.sear
         return searchJob;
     }
 
-    private Predicate<AbstractFile> createFilePredicate() {
-        Predicate<AbstractFile> predicate = createFilenamePredicate();
+    private Predicate<AbstractFile> createFilePredicate(Predicate<String> nameMatcher) {
+        Predicate<AbstractFile> predicate = file -> nameMatcher.test(file.getName());
         if (!searchForSubfolders) {
             Predicate<AbstractFile> isDirectory = AbstractFile::isDirectory;
             Predicate<AbstractFile> isNotDirectory = isDirectory.negate();
@@ -249,7 +254,7 @@ public class SearchBuilder implements com.mucommander.commons.file.protocol.sear
             predicate = predicate.and(isNotSymlink);
         }
         if (sizePredicate != null)
-            predicate =  predicate.and(sizePredicate);
+            predicate =  predicate.and(file -> sizePredicate.test(file.getSize()));
 
         // text should be the last predicate because it is the most expensive
         if (searchText != null)
@@ -258,7 +263,7 @@ public class SearchBuilder implements com.mucommander.commons.file.protocol.sear
         return predicate;
     }
 
-    private Predicate<AbstractFile> createFilenamePredicate() {
+    private Predicate<String> createFilenamePredicate() {
         if (!matchRegex) {
             String regex = SearchUtils.wildcardToRegex(searchStr);
             if (!searchStr.equals(regex)) {
@@ -270,29 +275,16 @@ public class SearchBuilder implements com.mucommander.commons.file.protocol.sear
         if (matchRegex) {
             int flags = matchCaseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
             Pattern pattern = Pattern.compile(searchStr, flags);
-            return file -> pattern.matcher(file.getName()).matches();
+            return name -> pattern.matcher(name).matches();
         }
 
         return matchCaseSensitive ?
-                file -> file.getName().equals(searchStr)
-                : file -> file.getName().equalsIgnoreCase(searchStr);
+                name -> name.equals(searchStr)
+                : name -> name.equalsIgnoreCase(searchStr);
     }
 
     private Predicate<AbstractFile> createFileContentPredicate() {
-        GrepOptionSet_Fcilnvx grepOptions = Grep.Options.l;
-        if (!textCaseSensitive)
-            grepOptions = grepOptions.i;
-        if (!textMatchRegex)
-            grepOptions = grepOptions.F;
-        final GrepOptions options = grepOptions;
-        return file -> {
-            try {
-                return !file.isDirectory() && !Unix4j.from(file.getInputStream()).grep(options, searchText).toStringResult().isEmpty();
-            } catch (IOException e) {
-                LOGGER.debug("failed to search content of " + file.getAbsolutePath(), e);
-                return false;
-            }
-        };
+        return new ContentMatcher(searchText, textCaseSensitive, textMatchRegex);
     }
 
     private Predicate<AbstractFile> createListFilter() {
@@ -0,0 +1,631 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.search.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.runtime.OsFamily;
+
+/**
+ * Compact index of the files under a local folder (the root of the index), that allows to look files up by name,
+ * size and type without traversing the file system.
+ * <p>
+ * Entries are stored in primitive arrays in depth-first order, so that the descendants of a folder are the entries
+ * that follow it up to the index held in {@link #ends}. Only the names of the files are kept, paths are built on
+ * demand. An index holds up to a maximum number of entries, beyond which it is incomplete and must not be used.
+ * <p>
+ * The index is refreshed incrementally, one folder at a time: the folder is listed again and its subfolders that
+ * were already indexed are copied from the current index rather than traversed again. The combined size of the files
+ * under each folder is computed whenever the entries change, so that {@link #getFolderSize(String)} doesn't scan them.
+ * <p>
+ * There is no name index (e.g. of trigrams): the name criterion of a search is an arbitrary predicate (wildcards,
+ * regular expression, case sensitivity), so {@link #find(String, IndexQuery)} tests the name of every entry under
+ * the searched folder. Scanning the arrays in memory takes a few tens of milliseconds per hundred thousand entries,
+ * and keeps the index about as large as the names themselves.
+ */
+public class FileIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileIndex.class);
+
+    /** Version of the file format of persisted indexes */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte DIRECTORY = 1;
+    private static final byte HIDDEN = 2;
+    private static final byte SYMLINK = 4;
+
+    private final String rootPath;
+    private final int maxEntries;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Entries entries;
+    private boolean complete;
+
+    private FileIndex(String rootPath, int maxEntries) {
+        this.rootPath = rootPath;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Builds the index of the given folder by traversing it.
+     *
+     * @param rootPath absolute path of the folder to index
+     * @param maxEntries max number of entries of the index
+     * @return the index of the folder, which is incomplete if the folder holds more than <code>maxEntries</code> files
+     * @throws IOException if the folder cannot be traversed
+     */
+    public static FileIndex build(String rootPath, int maxEntries) throws IOException {
+        FileIndex index = new FileIndex(rootPath, maxEntries);
+        Entries entries = new Entries(1024);
+        index.complete = walk(Paths.get(rootPath), rootPath, -1, entries, maxEntries);
+        if (entries.size == 0)
+            throw new IOException("cannot traverse " + rootPath);
+        entries.computeTotalSizes();
+        index.entries = entries;
+        LOGGER.info("indexed {} files under {}", entries.size, rootPath);
+        return index;
+    }
+
+    /**
+     * Returns the absolute path of the folder indexed by this index.
+     *
+     * @return the absolute path of the folder indexed by this index
+     */
+    public String getRootPath() {
+        return rootPath;
+    }
+
+    /**
+     * Returns <code>true</code> if all the files under the root folder could be indexed within the max number of
+     * entries.
+     *
+     * @return <code>true</code> if the index holds all the files under the root folder
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns the number of files held by the index.
+     *
+     * @return the number of files held by the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the given path is the root folder of this index or one of its descendants.
+     *
+     * @param path an absolute path
+     * @return <code>true</code> if the given path is covered by this index
+     */
+    public boolean covers(String path) {
+        return path.equals(rootPath) || path.startsWith(rootPath.endsWith(File.separator) ? rootPath : rootPath + File.separator);
+    }
+
+    /**
+     * Returns the paths of the files under the given folder that match the given query, traversing the subfolders
+     * the query allows to search in. The entries under the folder are scanned in order, there is no name index.
+     *
+     * @param folderPath absolute path of the folder to search in, covered by this index
+     * @param query the criteria of the search
+     * @return the paths of the matching files, <code>null</code> if the folder is not part of the index
+     */
+    public List<String> find(String folderPath, IndexQuery query) {
+        lock.readLock().lock();
+        try {
+            int folder = lookup(folderPath);
+            if (folder < 0)
+                return null;
+            List<String> results = new ArrayList<>();
+            find(folder, folderPath, 0, query, results);
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the combined size of the files under the given folder, symbolic links being counted as files.
+     * The size is computed beforehand, only the folder is looked up.
+     *
+     * @param folderPath absolute path of the folder, covered by this index
+     * @return the combined size of the files under the folder, <code>-1</code> if the folder is not part of the index
+     * or the index is incomplete
+     */
+    public long getFolderSize(String folderPath) {
+        lock.readLock().lock();
+        try {
+            int folder = lookup(folderPath);
+            if (folder < 0 || !complete)
+                return -1;
+            return entries.totalSizes[folder];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void find(int folder, String folderPath, int level, IndexQuery query, List<String> results) {
+        Entries e = entries;
+        for (int child = folder + 1; child < e.ends[folder]; child = e.ends[child]) {
+            byte flags = e.flags[child];
+            boolean directory = (flags & DIRECTORY) != 0;
+            boolean hidden = (flags & HIDDEN) != 0;
+            boolean symlink = (flags & SYMLINK) != 0;
+            String path = null;
+            if (query.matches(e.names[child], e.sizes[child], directory, hidden, symlink)) {
+                path = childPath(folderPath, e.names[child]);
+                results.add(path);
+            }
+            if (level + 1 < query.getDepth() && query.isTraversable(directory, hidden, symlink)) {
+                find(child, path != null ? path : childPath(folderPath, e.names[child]), level + 1, query, results);
+            }
+        }
+    }
+
+    /**
+     * Returns the paths of the folders held by the index, along with their modification date as indexed.
+     * The paths are passed to the given consumer in depth-first order.
+     *
+     * @param consumer receives the path and modification date of each folder
+     */
+    public void forEachFolder(FolderConsumer consumer) {
+        lock.readLock().lock();
+        try {
+            forEachFolder(0, rootPath, consumer);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void forEachFolder(int folder, String folderPath, FolderConsumer consumer) {
+        Entries e = entries;
+        consumer.accept(folderPath, e.dates[folder]);
+        for (int child = folder + 1; child < e.ends[folder]; child = e.ends[child]) {
+            if ((e.flags[child] & (DIRECTORY | SYMLINK)) == DIRECTORY)
+                forEachFolder(child, childPath(folderPath, e.names[child]), consumer);
+        }
+    }
+
+    /**
+     * Receives the folders of an index.
+     */
+    public interface FolderConsumer {
+        void accept(String path, long date);
+    }
+
+    /**
+     * Lists the given folder again and updates the index accordingly. Subfolders that were already indexed are kept
+     * as they are, new subfolders are traversed. If the folder is not part of the index (e.g. it has just been
+     * created) or no longer exists, its closest indexed ancestor is refreshed instead.
+     *
+     * @param folderPath absolute path of the folder to refresh, covered by this index
+     */
+    public void refresh(String folderPath) {
+        lock.writeLock().lock();
+        try {
+            String path = folderPath;
+            int folder = lookup(path);
+            while ((folder < 0 || !Files.isDirectory(Paths.get(path), LinkOption.NOFOLLOW_LINKS)) && !path.equals(rootPath)) {
+                path = Paths.get(path).getParent().toString();
+                folder = lookup(path);
+            }
+            if (folder < 0)
+                return;
+
+            Entries e = entries;
+            Entries refreshed = new Entries(e.ends[folder] - folder + 16);
+            int budget = maxEntries - (e.size - (e.ends[folder] - folder));
+            boolean refreshComplete = relist(Paths.get(path), folder, refreshed, budget);
+            Entries spliced = e.splice(folder, refreshed);
+            spliced.computeTotalSizes();
+            entries = spliced;
+            complete &= refreshComplete;
+        } catch (IOException e) {
+            LOGGER.debug("failed to refresh " + folderPath, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lists the given folder into the given entries, copying the subfolders that are already indexed.
+     */
+    private boolean relist(Path folder, int oldFolder, Entries out, int budget) throws IOException {
+        Entries e = entries;
+        BasicFileAttributes attrs = Files.readAttributes(folder, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        String name = e.names[oldFolder];
+        int index = out.add(name, -1, attrs.size(), attrs.lastModifiedTime().toMillis(), getFlags(name, attrs));
+
+        boolean complete = true;
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(folder)) {
+            for (Path child : children) {
+                if (out.size >= budget) {
+                    complete = false;
+                    break;
+                }
+                String childName = child.getFileName().toString();
+                BasicFileAttributes childAttrs;
+                try {
+                    childAttrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException ex) {
+                    continue;
+                }
+                byte flags = getFlags(childName, childAttrs);
+                if ((flags & DIRECTORY) == 0 || (flags & SYMLINK) != 0) {
+                    out.add(childName, index, childAttrs.size(), childAttrs.lastModifiedTime().toMillis(), flags);
+                    continue;
+                }
+
+                int oldChild = findChild(oldFolder, childName);
+                if (oldChild >= 0 && (e.flags[oldChild] & DIRECTORY) != 0) {
+                    if (out.size + e.ends[oldChild] - oldChild > budget) {
+                        complete = false;
+                        break;
+                    }
+                    out.copy(e, oldChild, index);
+                } else if (!walk(child, childName, index, out, budget)) {
+                    complete = false;
+                    break;
+                }
+            }
+        }
+        out.ends[index] = out.size;
+        return complete;
+    }
+
+    /**
+     * Traverses the given folder, adding its entries to the given ones.
+     *
+     * @return <code>false</code> if the max number of entries was reached
+     */
+    private static boolean walk(Path folder, String name, int parent, Entries out, int maxEntries) throws IOException {
+        boolean[] complete = { true };
+        // Folders being traversed, the innermost last
+        int[][] folders = { new int[64] };
+        int[] depth = { 0 };
+        Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+            private int currentFolder() {
+                return depth[0] == 0 ? parent : folders[0][depth[0] - 1];
+            }
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (out.size >= maxEntries) {
+                    complete[0] = false;
+                    return FileVisitResult.TERMINATE;
+                }
+                String dirName = depth[0] == 0 ? name : dir.getFileName().toString();
+                int index = out.add(dirName, currentFolder(), attrs.size(), attrs.lastModifiedTime().toMillis(), getFlags(dirName, attrs));
+                if (depth[0] == folders[0].length)
+                    folders[0] = Arrays.copyOf(folders[0], depth[0] * 2);
+                folders[0][depth[0]++] = index;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (out.size >= maxEntries) {
+                    complete[0] = false;
+                    return FileVisitResult.TERMINATE;
+                }
+                String fileName = file.getFileName().toString();
+                out.add(fileName, currentFolder(), attrs.size(), attrs.lastModifiedTime().toMillis(), getFlags(fileName, attrs));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                out.ends[folders[0][--depth[0]]] = out.size;
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        // Folders left open when the traversal was interrupted hold what was indexed so far
+        while (depth[0] > 0)
+            out.ends[folders[0][--depth[0]]] = out.size;
+        return complete[0];
+    }
+
+    private static byte getFlags(String name, BasicFileAttributes attrs) {
+        byte flags = 0;
+        if (attrs.isDirectory())
+            flags |= DIRECTORY;
+        if (attrs.isSymbolicLink())
+            flags |= SYMLINK;
+        boolean hidden = OsFamily.WINDOWS.isCurrent() ?
+                attrs instanceof DosFileAttributes && ((DosFileAttributes) attrs).isHidden()
+                : name.startsWith(".");
+        if (hidden)
+            flags |= HIDDEN;
+        return flags;
+    }
+
+    /**
+     * Returns the index of the entry of the given path, <code>-1</code> if it is not part of the index.
+     */
+    private int lookup(String path) {
+        if (path.equals(rootPath))
+            return 0;
+        if (!covers(path))
+            return -1;
+
+        String relativePath = path.substring(rootPath.endsWith(File.separator) ? rootPath.length() : rootPath.length() + 1);
+        int folder = 0;
+        for (String name : relativePath.split(java.util.regex.Pattern.quote(File.separator))) {
+            if (name.isEmpty())
+                continue;
+            folder = findChild(folder, name);
+            if (folder < 0)
+                return -1;
+        }
+        return folder;
+    }
+
+    private int findChild(int folder, String name) {
+        Entries e = entries;
+        for (int child = folder + 1; child < e.ends[folder]; child = e.ends[child]) {
+            if (e.names[child].equals(name))
+                return child;
+        }
+        return -1;
+    }
+
+    private static String childPath(String folderPath, String name) {
+        return folderPath.endsWith(File.separator) ? folderPath + name : folderPath + File.separator + name;
+    }
+
+    /**
+     * Writes this index to the given file. The index is first written to a temporary file which then replaces the
+     * given file, so that a valid index remains on disk if writing fails.
+     *
+     * @param file the file to write to
+     * @param maxDiskSize max size of the file, in bytes
+     * @return <code>false</code> if the index was not written because it exceeded the max size
+     * @throws IOException if an error occurred while writing the file
+     */
+    public boolean save(File file, long maxDiskSize) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            Entries e = entries;
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(rootPath);
+            out.writeBoolean(complete);
+            out.writeInt(e.size);
+            for (int i = 0; i < e.size; i++) {
+                out.writeUTF(e.names[i]);
+                out.writeInt(e.parents[i]);
+                out.writeInt(e.ends[i]);
+                out.writeLong(e.sizes[i]);
+                out.writeLong(e.dates[i]);
+                out.writeByte(e.flags[i]);
+                if (out.size() > maxDiskSize) {
+                    out.close();
+                    Files.delete(tmpFile.toPath());
+                    LOGGER.info("index of {} exceeds the max disk size and is not saved", rootPath);
+                    return false;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    /**
+     * Reads an index that was written by {@link #save(File, long)}.
+     *
+     * @param file the file to read from
+     * @param rootPath the expected root folder of the index
+     * @param maxEntries max number of entries of the index
+     * @return the index, <code>null</code> if the file holds the index of another folder or is in an unknown format
+     * @throws IOException if an error occurred while reading the file
+     */
+    public static FileIndex load(File file, String rootPath, int maxEntries) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(rootPath))
+                return null;
+            FileIndex index = new FileIndex(rootPath, maxEntries);
+            index.complete = in.readBoolean();
+            int size = in.readInt();
+            Entries e = new Entries(size);
+            for (int i = 0; i < size; i++) {
+                String name = in.readUTF();
+                int parent = in.readInt();
+                int end = in.readInt();
+                int added = e.add(name, parent, in.readLong(), in.readLong(), in.readByte());
+                e.ends[added] = end;
+            }
+            e.computeTotalSizes();
+            index.entries = e;
+            index.complete &= size <= maxEntries;
+            return index;
+        }
+    }
+
+    /**
+     * Growable primitive arrays holding the entries of an index.
+     */
+    private static class Entries {
+        private int size;
+        private String[] names;
+        private int[] parents;
+        private int[] ends;
+        private long[] sizes;
+        private long[] dates;
+        private byte[] flags;
+        /** Combined size of the files under each folder, or the size of each file, set by {@link #computeTotalSizes()} */
+        private long[] totalSizes;
+
+        Entries(int capacity) {
+            capacity = Math.max(capacity, 16);
+            names = new String[capacity];
+            parents = new int[capacity];
+            ends = new int[capacity];
+            sizes = new long[capacity];
+            dates = new long[capacity];
+            flags = new byte[capacity];
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= names.length)
+                return;
+            int newCapacity = Math.max(capacity, names.length + (names.length >> 1));
+            names = Arrays.copyOf(names, newCapacity);
+            parents = Arrays.copyOf(parents, newCapacity);
+            ends = Arrays.copyOf(ends, newCapacity);
+            sizes = Arrays.copyOf(sizes, newCapacity);
+            dates = Arrays.copyOf(dates, newCapacity);
+            flags = Arrays.copyOf(flags, newCapacity);
+        }
+
+        /**
+         * Computes the combined size of the files under each folder, once all the entries have been added. Entries
+         * follow their parent, so they are visited in reverse order for their total to be complete when it is added
+         * to their parent's.
+         */
+        void computeTotalSizes() {
+            totalSizes = new long[size];
+            for (int i = size - 1; i >= 0; i--) {
+                // Symbolic links are counted as files
+                if ((flags[i] & (DIRECTORY | SYMLINK)) != DIRECTORY && sizes[i] > 0)
+                    totalSizes[i] = sizes[i];
+                if (parents[i] >= 0)
+                    totalSizes[parents[i]] += totalSizes[i];
+            }
+        }
+
+        /**
+         * Adds an entry, with no descendants until its end is set.
+         */
+        int add(String name, int parent, long size, long date, byte flag) {
+            ensureCapacity(this.size + 1);
+            int index = this.size++;
+            names[index] = name;
+            parents[index] = parent;
+            ends[index] = index + 1;
+            sizes[index] = size;
+            dates[index] = date;
+            flags[index] = flag;
+            return index;
+        }
+
+        /**
+         * Copies the given entry of another index, along with its descendants, as a child of the given entry.
+         *
+         * @return the index of the copied entry
+         */
+        int copy(Entries from, int entry, int parent) {
+            int count = from.ends[entry] - entry;
+            ensureCapacity(size + count);
+            int offset = size - entry;
+            System.arraycopy(from.names, entry, names, size, count);
+            System.arraycopy(from.sizes, entry, sizes, size, count);
+            System.arraycopy(from.dates, entry, dates, size, count);
+            System.arraycopy(from.flags, entry, flags, size, count);
+            for (int i = 0; i < count; i++) {
+                parents[size + i] = from.parents[entry + i] + offset;
+                ends[size + i] = from.ends[entry + i] + offset;
+            }
+            int copied = size;
+            parents[copied] = parent;
+            size += count;
+            return copied;
+        }
+
+        /**
+         * Returns new entries in which the given entry and its descendants are replaced by the given entries.
+         */
+        Entries splice(int entry, Entries replacement) {
+            int oldEnd = ends[entry];
+            int delta = replacement.size - (oldEnd - entry);
+            Entries result = new Entries(size + delta);
+            result.size = size + delta;
+
+            // Entries before the replaced one, whose end is shifted if they are ancestors of it
+            System.arraycopy(names, 0, result.names, 0, entry);
+            System.arraycopy(parents, 0, result.parents, 0, entry);
+            System.arraycopy(sizes, 0, result.sizes, 0, entry);
+            System.arraycopy(dates, 0, result.dates, 0, entry);
+            System.arraycopy(flags, 0, result.flags, 0, entry);
+            for (int i = 0; i < entry; i++)
+                result.ends[i] = ends[i] >= oldEnd ? ends[i] + delta : ends[i];
+
+            // Replacement entries
+            int count = replacement.size;
+            System.arraycopy(replacement.names, 0, result.names, entry, count);
+            System.arraycopy(replacement.sizes, 0, result.sizes, entry, count);
+            System.arraycopy(replacement.dates, 0, result.dates, entry, count);
+            System.arraycopy(replacement.flags, 0, result.flags, entry, count);
+            for (int i = 0; i < count; i++) {
+                result.parents[entry + i] = replacement.parents[i] + entry;
+                result.ends[entry + i] = replacement.ends[i] + entry;
+            }
+            result.parents[entry] = parents[entry];
+
+            // Entries after the replaced one
+            int tail = size - oldEnd;
+            int newEnd = entry + count;
+            System.arraycopy(names, oldEnd, result.names, newEnd, tail);
+            System.arraycopy(sizes, oldEnd, result.sizes, newEnd, tail);
+            System.arraycopy(dates, oldEnd, result.dates, newEnd, tail);
+            System.arraycopy(flags, oldEnd, result.flags, newEnd, tail);
+            for (int i = 0; i < tail; i++) {
+                int parent = parents[oldEnd + i];
+                result.parents[newEnd + i] = parent >= oldEnd ? parent + delta : parent;
+                result.ends[newEnd + i] = ends[oldEnd + i] + delta;
+            }
+            return result;
+        }
+    }
+}
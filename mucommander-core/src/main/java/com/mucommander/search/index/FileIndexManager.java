@@ -0,0 +1,449 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.search.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.archive.AbstractArchiveEntryFile;
+import com.mucommander.commons.file.protocol.local.LocalFile;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+import com.mucommander.conf.PlatformManager;
+import com.mucommander.core.FolderSizeCache;
+
+/**
+ * Maintains the {@link FileIndex indexes} of the folders set in the {@link MuPreference#SEARCH_INDEX_ROOTS}
+ * preference.
+ * <p>
+ * Indexes are saved to the preferences folder on shutdown and loaded on startup, after which only the folders whose
+ * modification date changed in the meantime are listed again. While the application runs, indexed folders are
+ * watched for changes, up to a max number of folders (the shallowest ones first), and the changed folders are
+ * refreshed periodically. Folders that are not watched are checked for changes less often, by comparing their
+ * modification dates with the indexed ones.
+ */
+public class FileIndexManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileIndexManager.class);
+
+    /** Name of the folder, within the preferences folder, where indexes are saved */
+    private static final String INDEX_FOLDER_NAME = "search_index";
+    /** Extension of the files indexes are saved to */
+    private static final String INDEX_FILE_EXTENSION = ".idx";
+
+    /** Period in seconds at which changed folders are refreshed */
+    private static final long REFRESH_PERIOD = 30;
+    /** Period in seconds at which the modification date of the folders that are not watched is checked */
+    private static final long RESCAN_PERIOD = 15 * 60;
+
+    /** Indexes that are ready to be used, by root folder */
+    private static final Map<String, FileIndex> indexes = new ConcurrentHashMap<>();
+    /** Indexes that changed since they were loaded or built */
+    private static final Set<FileIndex> modifiedIndexes = ConcurrentHashMap.newKeySet();
+    /** Folders that changed and are to be refreshed */
+    private static final Set<String> changedFolders = ConcurrentHashMap.newKeySet();
+    /** Watched folders, by watch key */
+    private static final Map<WatchKey, String> watchedFolders = new ConcurrentHashMap<>();
+    /** Paths of the watched folders */
+    private static final Set<String> watchedPaths = ConcurrentHashMap.newKeySet();
+    /** Indexes that hold folders that are not watched */
+    private static final Set<FileIndex> partiallyWatchedIndexes = ConcurrentHashMap.newKeySet();
+
+    private static volatile ScheduledExecutorService executor;
+    private static WatchService watchService;
+    private static int maxWatchedFolders;
+
+    /**
+     * Loads or builds the indexes of the folders set in the preferences, in the background, and starts watching them
+     * for changes. Does nothing if no folder is to be indexed.
+     */
+    public static synchronized void start() {
+        List<String> roots = MuConfigurations.getPreferences().getListVariable(MuPreference.SEARCH_INDEX_ROOTS, MuPreferences.SEARCH_INDEX_ROOTS_SEPARATOR);
+        if (roots == null || roots.isEmpty() || executor != null)
+            return;
+
+        maxWatchedFolders = MuConfigurations.getPreferences().getVariable(MuPreference.SEARCH_INDEX_MAX_WATCHED_FOLDERS, MuPreferences.DEFAULT_SEARCH_INDEX_MAX_WATCHED_FOLDERS);
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SearchIndex");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            Thread watcher = new Thread(FileIndexManager::watch, "SearchIndexWatcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        } catch (IOException e) {
+            LOGGER.info("failed to create watch service, indexed folders are checked periodically", e);
+        }
+
+        for (String root : roots) {
+            String rootPath = root.trim();
+            if (!rootPath.isEmpty())
+                executor.execute(() -> open(rootPath));
+        }
+        executor.scheduleWithFixedDelay(FileIndexManager::refreshChangedFolders, REFRESH_PERIOD, REFRESH_PERIOD, TimeUnit.SECONDS);
+        executor.scheduleWithFixedDelay(FileIndexManager::rescan, RESCAN_PERIOD, RESCAN_PERIOD, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops maintaining the indexes and saves those that changed.
+     */
+    public static synchronized void stop() {
+        if (executor == null)
+            return;
+
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOGGER.debug("failed to close watch service", e);
+            }
+            watchService = null;
+        }
+        watchedFolders.clear();
+        watchedPaths.clear();
+
+        for (FileIndex index : modifiedIndexes)
+            save(index);
+        modifiedIndexes.clear();
+    }
+
+    /**
+     * Looks the files under the given folder that match the given query up in the index that covers the folder.
+     *
+     * @param folder the folder to search in
+     * @param query the criteria of the search
+     * @return the paths of the matching files, <code>null</code> if the folder is not indexed
+     */
+    public static List<String> find(AbstractFile folder, IndexQuery query) {
+        FileIndex index = getIndex(folder);
+        return index != null ? index.find(getPath(folder.getAbsolutePath()), query) : null;
+    }
+
+    /**
+     * Returns the combined size of the files under the given folder, as indexed.
+     *
+     * @param folder a folder
+     * @return the combined size of the files under the folder, <code>-1</code> if the folder is not indexed or
+     * changed since it was indexed
+     */
+    public static long getFolderSize(AbstractFile folder) {
+        if (indexes.isEmpty() || !isIndexable(folder))
+            return -1;
+
+        // Pending changes are not applied here, this is called when displaying folders
+        String path = getPath(folder.getAbsolutePath());
+        if (hasChanged(path))
+            return -1;
+
+        for (FileIndex index : indexes.values()) {
+            if (index.covers(path))
+                return index.getFolderSize(path);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index that covers the given folder, if any.
+     * If the folder or one of its subfolders changed since it was indexed, the index is not returned: the pending
+     * changes are applied in the background rather than by the caller, which is expected to look the files up without
+     * the index in the meantime.
+     *
+     * @param folder the folder to search in
+     * @return the index that covers the given folder, <code>null</code> if the folder is not indexed, its index is
+     * not ready yet or it changed since it was indexed
+     */
+    public static FileIndex getIndex(AbstractFile folder) {
+        if (indexes.isEmpty() || !isIndexable(folder))
+            return null;
+
+        String path = getPath(folder.getAbsolutePath());
+        if (hasChanged(path)) {
+            ScheduledExecutorService executor = FileIndexManager.executor;
+            try {
+                if (executor != null)
+                    executor.execute(FileIndexManager::refreshChangedFolders);
+            } catch (RejectedExecutionException e) {
+                // The indexes are no longer maintained
+            }
+            return null;
+        }
+
+        for (FileIndex index : indexes.values()) {
+            if (index.covers(path))
+                return index;
+        }
+        return null;
+    }
+
+    /**
+     * Returns <code>true</code> if the given folder or one of its subfolders changed and is to be refreshed.
+     */
+    private static boolean hasChanged(String path) {
+        String pathPrefix = path.endsWith(File.separator) ? path : path + File.separator;
+        return changedFolders.stream().anyMatch(changedFolder -> changedFolder.equals(path) || changedFolder.startsWith(pathPrefix));
+    }
+
+    /**
+     * Returns the given path without trailing separator, unless it is a root folder.
+     */
+    static String getPath(String path) {
+        if (path.length() > 1 && path.endsWith(File.separator) && Paths.get(path).getParent() != null)
+            return path.substring(0, path.length() - 1);
+        return path;
+    }
+
+    private static boolean isIndexable(AbstractFile folder) {
+        return LocalFile.SCHEMA.equals(folder.getURL().getScheme())
+                && folder.hasAncestor(LocalFile.class)
+                && !folder.isArchive()
+                && !folder.hasAncestor(AbstractArchiveEntryFile.class);
+    }
+
+    /**
+     * Loads the index of the given folder, brings it up to date or builds it if it cannot be loaded.
+     */
+    private static void open(String root) {
+        String rootPath = getPath(root);
+        int maxEntries = MuConfigurations.getPreferences().getVariable(MuPreference.SEARCH_INDEX_MAX_ENTRIES, MuPreferences.DEFAULT_SEARCH_INDEX_MAX_ENTRIES);
+        FileIndex index = null;
+        File indexFile = getIndexFile(rootPath);
+        if (indexFile.exists()) {
+            try {
+                index = FileIndex.load(indexFile, rootPath, maxEntries);
+            } catch (IOException e) {
+                LOGGER.info("failed to load index of " + rootPath, e);
+            }
+        }
+
+        try {
+            if (index != null && index.isComplete()) {
+                refreshModifiedFolders(index);
+            } else {
+                index = FileIndex.build(rootPath, maxEntries);
+                modifiedIndexes.add(index);
+            }
+        } catch (IOException e) {
+            LOGGER.info("failed to index " + rootPath, e);
+            return;
+        }
+
+        if (!index.isComplete()) {
+            LOGGER.info("{} holds more than {} files and is not indexed", rootPath, maxEntries);
+            return;
+        }
+
+        registerFolders(index);
+        indexes.put(rootPath, index);
+    }
+
+    /**
+     * Refreshes the folders of the given index whose modification date differs from the indexed one.
+     */
+    private static void refreshModifiedFolders(FileIndex index) {
+        List<String> modifiedFolders = new ArrayList<>();
+        index.forEachFolder((path, date) -> {
+            try {
+                if (Files.getLastModifiedTime(Paths.get(path), LinkOption.NOFOLLOW_LINKS).toMillis() != date)
+                    modifiedFolders.add(path);
+            } catch (IOException e) {
+                modifiedFolders.add(path);
+            }
+        });
+
+        for (String folder : modifiedFolders)
+            index.refresh(folder);
+        if (!modifiedFolders.isEmpty())
+            modifiedIndexes.add(index);
+    }
+
+    /**
+     * Registers the folders of the given index to the watch service, the shallowest first, as long as the max number
+     * of watched folders is not reached.
+     */
+    private static void registerFolders(FileIndex index) {
+        if (watchService == null) {
+            partiallyWatchedIndexes.add(index);
+            return;
+        }
+
+        List<String> folders = new ArrayList<>();
+        index.forEachFolder((path, date) -> folders.add(path));
+        folders.sort(Comparator.comparingInt(FileIndexManager::getDepth));
+        for (String folder : folders) {
+            if (!register(folder)) {
+                partiallyWatchedIndexes.add(index);
+                break;
+            }
+        }
+    }
+
+    private static int getDepth(String path) {
+        int depth = 0;
+        for (int i = path.indexOf(File.separatorChar); i >= 0; i = path.indexOf(File.separatorChar, i + 1))
+            depth++;
+        return depth;
+    }
+
+    /**
+     * Registers the given folder to the watch service.
+     *
+     * @return <code>false</code> if the max number of watched folders is reached
+     */
+    private static boolean register(String folder) {
+        if (watchedFolders.size() >= maxWatchedFolders)
+            return false;
+
+        try {
+            WatchKey key = Paths.get(folder).register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedFolders.put(key, folder);
+            watchedPaths.add(folder);
+        } catch (IOException | ClosedWatchServiceException e) {
+            LOGGER.debug("failed to watch " + folder, e);
+        }
+        return true;
+    }
+
+    /**
+     * Marks the folders reported by the watch service as changed, until the watch service is closed.
+     */
+    private static void watch() {
+        WatchService service = watchService;
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                key.pollEvents();
+                String folder = watchedFolders.get(key);
+                if (folder != null) {
+                    changedFolders.add(folder);
+                    FolderSizeCache.invalidate(folder);
+                }
+                if (!key.reset() && folder != null) {
+                    watchedFolders.remove(key);
+                    watchedPaths.remove(folder);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            LOGGER.debug("stopped watching indexed folders");
+        }
+    }
+
+    /**
+     * Refreshes the folders that changed and watches the folders that were created in them.
+     */
+    private static void refreshChangedFolders() {
+        for (String folder : changedFolders) {
+            changedFolders.remove(folder);
+            for (FileIndex index : indexes.values()) {
+                if (!index.covers(folder))
+                    continue;
+                index.refresh(folder);
+                modifiedIndexes.add(index);
+                if (watchService != null && !registerSubfolders(folder))
+                    partiallyWatchedIndexes.add(index);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Registers the subfolders of the given folder that are not watched yet.
+     *
+     * @return <code>false</code> if the max number of watched folders is reached
+     */
+    private static boolean registerSubfolders(String folder) {
+        Path path = Paths.get(folder);
+        if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS))
+            return true;
+
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(path, child -> Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS))) {
+            for (Path child : children) {
+                String childPath = child.toString();
+                if (!watchedPaths.contains(childPath) && !register(childPath))
+                    return false;
+            }
+        } catch (IOException e) {
+            LOGGER.debug("failed to list " + folder, e);
+        }
+        return true;
+    }
+
+    /**
+     * Refreshes the folders of the indexes that are not entirely watched and whose modification date changed.
+     */
+    private static void rescan() {
+        for (FileIndex index : partiallyWatchedIndexes)
+            refreshModifiedFolders(index);
+    }
+
+    private static void save(FileIndex index) {
+        long maxDiskSize = MuConfigurations.getPreferences().getVariable(MuPreference.SEARCH_INDEX_MAX_DISK_SIZE, MuPreferences.DEFAULT_SEARCH_INDEX_MAX_DISK_SIZE) * 1024L * 1024L;
+        File indexFile = getIndexFile(index.getRootPath());
+        try {
+            File indexFolder = indexFile.getParentFile();
+            if (!indexFolder.exists() && !indexFolder.mkdirs())
+                throw new IOException("cannot create " + indexFolder);
+            if (!index.save(indexFile, maxDiskSize))
+                Files.deleteIfExists(indexFile.toPath());
+        } catch (IOException e) {
+            LOGGER.warn("failed to save index of " + index.getRootPath(), e);
+        }
+    }
+
+    private static File getIndexFile(String rootPath) {
+        File indexFolder = new File(PlatformManager.getPreferencesFolder().getAbsolutePath(), INDEX_FOLDER_NAME);
+        return new File(indexFolder, Integer.toHexString(rootPath.hashCode()) + INDEX_FILE_EXTENSION);
+    }
+}
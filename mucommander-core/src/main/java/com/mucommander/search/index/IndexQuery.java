@@ -0,0 +1,81 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.search.index;
+
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+/**
+ * The criteria of a file search that can be evaluated against a {@link FileIndex}, as set by
+ * {@link com.mucommander.search.SearchBuilder}. The index only narrows the search down to candidate files, which
+ * are then matched against the complete criteria of the search.
+ */
+public class IndexQuery {
+    private final Predicate<String> namePredicate;
+    private final LongPredicate sizePredicate;
+    private final boolean searchInSubfolders;
+    private final boolean searchInHidden;
+    private final boolean searchForSubfolders;
+    private final boolean searchForHidden;
+    private final boolean searchForSymlinks;
+    private final int depth;
+
+    /**
+     * @param namePredicate predicate the name of the files must match
+     * @param sizePredicate predicate the size of the files must match, <code>null</code> for any size
+     * @param searchInSubfolders whether to search in subfolders
+     * @param searchInHidden whether to search in hidden folders
+     * @param searchForSubfolders whether folders can match
+     * @param searchForHidden whether hidden files can match
+     * @param searchForSymlinks whether symbolic links can match
+     * @param depth max depth of the search, <code>0</code> for no limit
+     */
+    public IndexQuery(Predicate<String> namePredicate, LongPredicate sizePredicate,
+                      boolean searchInSubfolders, boolean searchInHidden,
+                      boolean searchForSubfolders, boolean searchForHidden, boolean searchForSymlinks,
+                      int depth) {
+        this.namePredicate = namePredicate;
+        this.sizePredicate = sizePredicate;
+        this.searchInSubfolders = searchInSubfolders;
+        this.searchInHidden = searchInHidden;
+        this.searchForSubfolders = searchForSubfolders;
+        this.searchForHidden = searchForHidden;
+        this.searchForSymlinks = searchForSymlinks;
+        this.depth = depth == 0 ? Integer.MAX_VALUE : depth;
+    }
+
+    boolean matches(String name, long size, boolean directory, boolean hidden, boolean symlink) {
+        if (directory && !symlink && !searchForSubfolders)
+            return false;
+        if (hidden && !searchForHidden)
+            return false;
+        if (symlink && !searchForSymlinks)
+            return false;
+        if (sizePredicate != null && !sizePredicate.test(size))
+            return false;
+        return namePredicate.test(name);
+    }
+
+    boolean isTraversable(boolean directory, boolean hidden, boolean symlink) {
+        // symbolic links are not followed by the index
+        return searchInSubfolders && directory && !symlink && (searchInHidden || !hidden);
+    }
+
+    int getDepth() {
+        return depth;
+    }
+}
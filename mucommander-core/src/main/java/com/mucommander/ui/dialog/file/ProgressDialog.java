@@ -349,7 +349,13 @@ public class ProgressDialog extends FocusDialog implements ActionListener, ItemL
                 updateCurrentSpeedLabel("N/A");
             break;
 
+        case QUEUED:
+            // The job can only be stopped until other jobs let it start
+            pauseResumeButton.setEnabled(false);
+            break;
+
         case RUNNING:
+            pauseResumeButton.setEnabled(true);
             pauseResumeButton.setText(Translator.get("pause"));
             pauseResumeButton.setIcon(IconManager.getIcon(IconManager.PROGRESS_ICON_SET, PAUSE_ICON));
 
@@ -18,13 +18,17 @@ package com.mucommander.ui.main;
 
 import java.awt.Insets;
 
+import javax.swing.JMenu;
 import javax.swing.JMenuItem;
 import javax.swing.JPopupMenu;
 
 import com.mucommander.commons.util.ui.button.RolloverButtonAdapter;
 import com.mucommander.job.FileJob;
 import com.mucommander.job.JobListener;
+import com.mucommander.job.JobScheduler;
 import com.mucommander.job.JobsManager;
+import com.mucommander.text.SizeFormat;
+import com.mucommander.translator.Translator;
 import com.mucommander.ui.button.PopupButton;
 import com.mucommander.ui.icon.IconManager;
 
@@ -32,7 +36,8 @@ import com.mucommander.ui.icon.IconManager;
  * JobsPopupButton is a button that allows to interact with {@link FileJob}s that are running in the background.
  * When the button is clicked, a popup menu is displayed, showing the operations that are currently running
  * int the background. Clicking on a job displays its progress dialog and removes it from the list of jobs
- * that are running in the background (the job switches to blocking mode).
+ * that are running in the background (the job switches to blocking mode). Jobs that wait for other jobs using the
+ * same volumes can be moved up or down in the queue, and the state of the queues is listed below the jobs.
  * Note that this button will only be functional when there are jobs running in the background. 
  *
  * @author Arik Hadas
@@ -80,17 +85,37 @@ class JobsPopupButton extends PopupButton implements JobListener {
         JPopupMenu popupMenu = new JPopupMenu();
 
         JobsManager jobsManager = JobsManager.getInstance();
+        JobScheduler jobScheduler = JobScheduler.getInstance();
         for (FileJob job : jobsManager.getBackgroundJobs()) {
-            JMenuItem jobItem = new JMenuItem();
+            boolean queued = jobScheduler.isQueued(job);
+            JMenuItem jobItem = queued ? new JMenu() : new JMenuItem();
 
             jobItem.setText(String.format("%s (%s%%)",
                     job.getProgressDialog().getTitle(),
                     job.getJobProgress().getTotalPercentInt()));
 
-            jobItem.addActionListener(e -> {
-                job.setRunInBackground(false);
-                job.getProgressDialog().showDialog();
-            });
+            if (queued) {
+                JMenuItem showItem = new JMenuItem(Translator.get("jobs_popup.show"));
+                showItem.addActionListener(e -> {
+                    job.setRunInBackground(false);
+                    job.getProgressDialog().showDialog();
+                });
+                jobItem.add(showItem);
+
+                JMenuItem moveUpItem = new JMenuItem(Translator.get("jobs_popup.move_up"));
+                moveUpItem.addActionListener(e -> jobScheduler.moveJob(job, -1));
+                jobItem.add(moveUpItem);
+
+                JMenuItem moveDownItem = new JMenuItem(Translator.get("jobs_popup.move_down"));
+                moveDownItem.addActionListener(e -> jobScheduler.moveJob(job, 1));
+                jobItem.add(moveDownItem);
+            }
+            else {
+                jobItem.addActionListener(e -> {
+                    job.setRunInBackground(false);
+                    job.getProgressDialog().showDialog();
+                });
+            }
 
             jobsManager.addJobListener(new JobListener() {
                 @Override
@@ -106,6 +131,24 @@ class JobsPopupButton extends PopupButton implements JobListener {
             popupMenu.add(jobItem);
         }
 
+        // List the volumes and hosts that jobs are waiting for
+        boolean separatorAdded = false;
+        for (JobScheduler.QueueStatus status : jobScheduler.getQueueStatuses()) {
+            if (status.getQueuedJobs() == 0)
+                continue;
+            if (!separatorAdded) {
+                popupMenu.addSeparator();
+                separatorAdded = true;
+            }
+            JMenuItem statusItem = new JMenuItem(Translator.get("jobs_popup.queue_status",
+                    status.getName(),
+                    String.valueOf(status.getRunningJobs()),
+                    String.valueOf(status.getQueuedJobs()),
+                    SizeFormat.format(status.getBytesPerSecond(), SizeFormat.UNIT_SPEED| SizeFormat.DIGITS_MEDIUM| SizeFormat.UNIT_SHORT)));
+            statusItem.setEnabled(false);
+            popupMenu.add(statusItem);
+        }
+
         return popupMenu;
     }
 
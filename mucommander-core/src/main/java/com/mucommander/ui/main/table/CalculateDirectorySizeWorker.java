@@ -18,11 +18,12 @@
 package com.mucommander.ui.main.table;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.util.DirectorySizeCalculator;
+import com.mucommander.core.FolderSizeCache;
 import com.mucommander.ui.main.table.FileTableModel;
 // import com.mucommander.ui.main.table.views.BaseFileTableModel;
 
 import javax.swing.SwingWorker;
-import java.io.IOException;
 import java.util.List;
 
 /**
@@ -36,8 +37,9 @@ public class CalculateDirectorySizeWorker extends SwingWorker<Long, Long> {
     private final FileTableModel fileTableModel;
     private final AbstractFile path;
     private final FileTable table;
-    private long size;
-    private long lastRefreshTime;
+    private final DirectorySizeCalculator calculator = new DirectorySizeCalculator();
+    private volatile long size;
+    private volatile long lastRefreshTime;
 
     public CalculateDirectorySizeWorker(FileTableModel fileTableModel, FileTable table, AbstractFile path) {
         this.fileTableModel = fileTableModel;
@@ -48,62 +50,51 @@ public class CalculateDirectorySizeWorker extends SwingWorker<Long, Long> {
     @Override
     protected Long doInBackground() {
         size = 0;
+        // Folders are listed concurrently, publish the partial size from time to time
+        calculator.setFolderListener(folder -> {
+            if (isCancelled()) {
+                calculator.cancel();
+                return;
+            }
+            long tm = System.currentTimeMillis();
+            if (tm - lastRefreshTime > REFRESH_RATE_MS) {
+                lastRefreshTime = tm;
+                size = calculator.getTotalBytes();
+                publish(size);
+            }
+        });
         try {
-            calcDirectorySize(path);
+            calculator.calculate(path);
+            size = calculator.getTotalBytes();
+        } catch (InterruptedException e) {
+            size = calculator.getTotalBytes();
         } catch (Exception e) {
             e.printStackTrace();
             size = -1;
+        } finally {
+            calculator.shutdown();
         }
         return size;
     }
 
     @Override
     protected void done() {
+        if (!isCancelled()) {
+            FolderSizeCache.put(path, size);
+        }
         fileTableModel.addProcessedDirectory(path, table, size, true);
-        fileTableModel.fillCellCache();
+        fileTableModel.updateDirectorySizes();
         table.repaint();
     }
 
     @Override
     protected void process(List<Long> chunks) {
         fileTableModel.addProcessedDirectory(path, table, size, false);
-        fileTableModel.fillCellCache();
+        fileTableModel.updateDirectorySizes();
         table.repaint();
         // table.updateSelectedFilesStatusBar();
     }
 
-    private void calcDirectorySize(AbstractFile path) throws IOException {
-        if (isCancelled()) {
-            return;
-        }
-        long tm = System.currentTimeMillis();
-        if (tm - lastRefreshTime > REFRESH_RATE_MS) {
-            lastRefreshTime = tm;
-            publish(size);
-        }
-        if (path.isSymlink() && path != this.path) {
-            return;
-        }
-        AbstractFile[] childs;
-        try {
-            childs = path.ls();
-        } catch (IOException e) {
-            return;
-        }
-        for (AbstractFile f : childs) {
-            if (isCancelled()) {
-                return;
-            }
-            if (f.isDirectory()) {
-                calcDirectorySize(f);
-            } else if (!f.isSymlink()) {
-                size += f.getSize();
-            }
-        }
-
-    }
-
-
     public AbstractFile getFile() {
         return path;
     }
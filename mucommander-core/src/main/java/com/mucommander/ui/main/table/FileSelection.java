@@ -0,0 +1,142 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.ui.main.table;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.CachedFile;
+import com.mucommander.commons.file.util.FileSet;
+
+/**
+ * A snapshot of the files that are marked in a {@link FileTableModel}, which doesn't hold the files themselves but
+ * their indexes in the folder's contents: a bit per file of the folder, plus the files and the order of the rows that
+ * the snapshot shares with the table model. Creating it doesn't allocate an object per marked file, and the files are
+ * returned in the order of the rows as they are streamed.
+ *
+ * <p>The snapshot doesn't change when files are marked/unmarked or when the table is sorted or refreshed afterwards.
+ * {@link #toFileSet()} adapts it to code that expects a {@link FileSet}.</p>
+ */
+public class FileSelection implements Iterable<AbstractFile> {
+
+    /** The folder containing the files */
+    private final AbstractFile baseFolder;
+
+    /** The files of the folder, which are not modified by the table model once they are set */
+    private final AbstractFile[] files;
+
+    /** Indexes of the files in the order of the rows, which are not modified by the table model once they are set */
+    private final int[] order;
+
+    /** Indexes of the marked files */
+    private final BitSet marked;
+
+    /** Number of marked files */
+    private final int size;
+
+    FileSelection(AbstractFile baseFolder, AbstractFile[] files, int[] order, BitSet marked, int size) {
+        this.baseFolder = baseFolder;
+        this.files = files;
+        this.order = order;
+        this.marked = marked;
+        this.size = size;
+    }
+
+    /**
+     * Returns the folder containing the files.
+     *
+     * @return the folder containing the files
+     */
+    public AbstractFile getBaseFolder() {
+        return baseFolder;
+    }
+
+    /**
+     * Returns the number of marked files.
+     *
+     * @return the number of marked files
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <code>true</code> if no file is marked.
+     *
+     * @return true if no file is marked
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the marked files in the order of the rows. The files are looked up as the stream is consumed.
+     *
+     * @return the marked files in the order of the rows
+     */
+    public Stream<AbstractFile> stream() {
+        if (size == 0)
+            return Stream.empty();
+
+        return Arrays.stream(order)
+                .filter(marked::get)
+                .mapToObj(this::getFile);
+    }
+
+    /**
+     * Returns the first row at or after the given one whose file is marked, -1 if there is none.
+     */
+    int nextMarkedRow(int fromRow) {
+        for (int row = fromRow; row < order.length; row++) {
+            if (marked.get(order[row]))
+                return row;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the file of the given row.
+     */
+    AbstractFile getFileAtRow(int row) {
+        return getFile(order[row]);
+    }
+
+    private AbstractFile getFile(int fileIndex) {
+        AbstractFile file = files[fileIndex];
+        return file instanceof CachedFile ? ((CachedFile)file).getProxiedFile() : file;
+    }
+
+    @Override
+    public Iterator<AbstractFile> iterator() {
+        return stream().iterator();
+    }
+
+    /**
+     * Returns a {@link FileSet} containing the marked files in the order of the rows, with the same base folder. The
+     * set is backed by this snapshot: it is not filled until it is modified, or accessed otherwise than by its size,
+     * iteration and sequential access by index.
+     *
+     * @return a FileSet containing the marked files
+     */
+    public FileSet toFileSet() {
+        return new SelectionFileSet(this);
+    }
+}
@@ -520,9 +520,9 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
 
         // If we're refreshing the current folder, save the current selection and marked files
         // in order to restore them properly.
-        FileSet markedFiles  = null;
+        FileSelection markedFiles  = null;
         if(currentFolder != null && folder.equalsCanonical(currentFolder)) {
-            markedFiles = tableModel.getMarkedFiles();
+            markedFiles = tableModel.getMarkedSelection();
             if(fileToSelect==null)
                 fileToSelect = getSelectedFile();
         }
@@ -533,10 +533,13 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
                 fileToSelect = currentFolder;
         }
 
+        // Retrieve the attributes of the files and sort them in this thread, rather than in the swing thread
+        FileTableModel.FolderContents contents = tableModel.prepareCurrentFolder(folder, children);
+
         // Changes the current folder in the swing thread to make sure that repaints cannot
         // happen in the middle of the operation - this is used to prevent flickering, badly
         // refreshed frames and such unpleasant graphical artifacts.
-        Runnable folderChangeThread = new FolderChangeThread(folder, children, markedFiles, fileToSelect);
+        Runnable folderChangeThread = new FolderChangeThread(contents, markedFiles, fileToSelect);
 
         // Wait for the task to complete, so that we return only when the folder has actually been changed and the
         // table updated to reflect the new folder.
@@ -1015,17 +1018,21 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
      * their position will have changed in the newly sorted table.
      */
     private void sortTable() {
-        // Save currently selected file
-        AbstractFile selectedFile = tableModel.getFileAtRow(currentRow);
+        // Large tables are sorted in the background, the sorted order replaces the current one when it is ready
+        tableModel.sortRows(sort -> {
+            // Save currently selected file
+            AbstractFile selectedFile = tableModel.getFileAtRow(currentRow);
 
-        // Sort table, doesn't affect marked files
-        tableModel.sortRows();
+            // Sort table, doesn't affect marked files
+            sort.run();
+            quickSearch.itemsChanged();
 
-        // Restore selected file
-        selectFile(selectedFile);
+            // Restore selected file
+            selectFile(selectedFile);
 
-        // Repaint table
-        repaint();
+            // Repaint table
+            repaint();
+        });
     }
 
 
@@ -1491,7 +1498,6 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
         switch(event.getVariable()) {
         case MuPreferences.DISPLAY_COMPACT_FILE_SIZE:
             FileTableModel.setSizeFormat(event.getBooleanValue());
-            tableModel.fillCellCache();
             resizeAndRepaint();
             break;
         case MuPreferences.SHOW_PARENT_FOLDER:
@@ -1506,7 +1512,6 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
             // Since listeners are stored by MuConfiguration in a hash map, order is pretty much random.
             // So CustomDateFormat#updateDateFormat() has to be called before to ensure that is uses the new date format.
             CustomDateFormat.updateDateFormat();
-            tableModel.fillCellCache();
             resizeAndRepaint();
             break;
         // Repaint file icons if their size has changed
@@ -1687,6 +1692,11 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
             return getFileNameAtRow(index);
 		}
 
+		@Override
+		protected String getFoldedItemString(int index) {
+            return tableModel.getFoldedNameAtRow(index);
+		}
+
 		@Override
 		protected void searchStringBecameEmpty(String searchString) {
 			mainFrame.getStatusBar().setStatusInfo(searchString); // TODO: is needed?
@@ -1852,22 +1862,21 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
      * @author Nicolas Rinaudo, Maxence Bernard
      */
     private class FolderChangeThread implements Runnable {
-        private AbstractFile   folder;
-        private AbstractFile[] children;
-        private FileSet        markedFiles;
+        private FileTableModel.FolderContents contents;
+        private FileSelection  markedFiles;
         private AbstractFile   selectedFile;
 
-        private FolderChangeThread(AbstractFile folder, AbstractFile[] children, FileSet markedFiles, AbstractFile selectedFile) {
-            this.folder       = folder;
-            this.children     = children;
+        private FolderChangeThread(FileTableModel.FolderContents contents, FileSelection markedFiles, AbstractFile selectedFile) {
+            this.contents     = contents;
             this.markedFiles  = markedFiles;
             this.selectedFile = selectedFile;
         }
 
         public void run() {
             try {
-                // Set the new current folder.
-                tableModel.setCurrentFolder(folder, children);
+                // Set the new current folder, whose files are sorted already.
+                tableModel.setCurrentFolder(contents);
+                tableModel.refreshOutdatedDirectorySizes(FileTable.this);
 
                 // Update the visibility state of conditional columns
                 FileTableColumnModel columnModel = getFileTableColumnModel();
@@ -1880,8 +1889,7 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
                     setTableHeaderRenderingProperties();
                 }
 
-                // Sort the new folder using the current sort criteria, ascending/descending order and
-                // 'show folders first' values.
+                // Sort the new folder again if the sort criterion has been changed above, or in the meantime.
                 tableModel.sortRows();
 
                 // Computes the index of the new row selection.
@@ -1905,10 +1913,8 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
                 // Restore previously marked files (if any / current folder hasn't changed)
                 if(markedFiles != null) {
                     // Restore previously marked files
-                    int nbMarkedFiles = markedFiles.size();
-                    int fileRow;
-                    for(int i  =0; i < nbMarkedFiles; i++) {
-                        fileRow = tableModel.getFileRow(markedFiles.elementAt(i));
+                    for(AbstractFile markedFile : markedFiles) {
+                        int fileRow = tableModel.getFileRow(markedFile);
                         if(fileRow != -1)
                             tableModel.setRowMarked(fileRow, true);
                     }
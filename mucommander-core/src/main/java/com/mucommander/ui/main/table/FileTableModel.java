@@ -18,6 +18,8 @@
 package com.mucommander.ui.main.table;
 
 import java.awt.Cursor;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -25,11 +27,19 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
+import javax.swing.SwingWorker;
 import javax.swing.table.AbstractTableModel;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.conf.ConfigurationVariable;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.CachedFile;
 import com.mucommander.commons.file.FileFactory;
@@ -37,11 +47,14 @@ import com.mucommander.commons.file.filter.FileFilter;
 import com.mucommander.commons.file.protocol.search.SearchFile;
 import com.mucommander.commons.file.util.FileComparator;
 import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.commons.util.IndexSort;
 import com.mucommander.conf.MuConfigurations;
 import com.mucommander.conf.MuPreference;
 import com.mucommander.conf.MuPreferences;
+import com.mucommander.core.FolderSizeCache;
 import com.mucommander.text.CustomDateFormat;
 import com.mucommander.text.SizeFormat;
+import com.mucommander.ui.quicksearch.QuickSearch;
 
 
 /**
@@ -50,6 +63,7 @@ import com.mucommander.text.SizeFormat;
  * @author Maxence Bernard
  */
 public class FileTableModel extends AbstractTableModel {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileTableModel.class);
 
     private static final Cursor WAIT_CURSOR = new Cursor(Cursor.WAIT_CURSOR);
 
@@ -65,14 +79,17 @@ public class FileTableModel extends AbstractTableModel {
     /** Cached file instances */
     private AbstractFile cachedFiles[];
 
-    /** Index array */
+    /** Index array, replaced rather than modified when the rows are sorted so that it can be shared with snapshots */
     private int fileArrayIndex[];
 
-    /** Cell values cache */
-    private Object cellValuesCache[][];
+    /** Attributes of the cached files, used to sort the rows and to create the cell values */
+    private FileTableRows rows;
+
+    /** Names of the cached files folded for quick search, computed when they are first searched */
+    private String foldedNames[];
 
-    /** Marked rows array */
-    private boolean rowMarked[];
+    /** Order of the rows in {@link #fileArrayIndex}, <code>null</code> until the current folder is set */
+    private SortOrder sortOrder;
 
     /** Combined size of files currently marked */
     private long markedTotalSize;
@@ -116,6 +133,20 @@ public class FileTableModel extends AbstractTableModel {
     /** Stores marked directories to calculate these size if need */
     private final Set<AbstractFile> markedDirectories = new HashSet<>();
 
+    /** Directories whose cached size is displayed but may have changed */
+    private final List<AbstractFile> outdatedDirectories = new ArrayList<>();
+
+    /** True if the cached sizes of directories are displayed */
+    private static boolean showCachedFolderSizes;
+
+    /** Tables that have fewer rows than this are sorted in the event dispatch thread */
+    private final static int BACKGROUND_SORT_THRESHOLD = 10000;
+
+    /** Whether file names are sorted lexicographically, read each time the rows are sorted */
+    private final static ConfigurationVariable.BooleanVariable LEXICOGRAPHIC_SORT =
+            MuConfigurations.getPreferences().compileVariable(MuPreference.FILE_COMPARATOR_USE_LEXICOGRAPHIC_SORT,
+                    MuPreferences.DEFAULT_FILES_LEXICOGRAPHIC_ORDER);
+
 
     static {
         // Initialize the size column format based on the configuration
@@ -123,6 +154,8 @@ public class FileTableModel extends AbstractTableModel {
                                                   MuPreferences.DEFAULT_DISPLAY_COMPACT_FILE_SIZE));
         setShowParentFolder(MuConfigurations.getPreferences().getVariable(MuPreference.SHOW_PARENT_FOLDER,
                 MuPreferences.DEFAULT_SHOW_PARENT_FOLDER));
+        showCachedFolderSizes = MuConfigurations.getPreferences().getVariable(MuPreference.SHOW_CACHED_FOLDER_SIZES,
+                MuPreferences.DEFAULT_SHOW_CACHED_FOLDER_SIZES);
     }
 
 
@@ -160,8 +193,8 @@ public class FileTableModel extends AbstractTableModel {
         // Init arrays to avoid NullPointerExceptions until setCurrentFolder() gets called for the first time
         cachedFiles = new AbstractFile[0];
         fileArrayIndex = new int[0];
-        cellValuesCache = new Object[0][Column.values().length-1];
-        rowMarked = new boolean[0];
+        foldedNames = new String[0];
+        rows = new FileTableRows(cachedFiles, AbstractFile::getName, false, false);
     }
 
     /**
@@ -179,7 +212,7 @@ public class FileTableModel extends AbstractTableModel {
     }
 
     /**
-     * Returns the current folder, i.e. the last folder set using {@link #setCurrentFolder(com.mucommander.commons.file.AbstractFile, com.mucommander.commons.file.AbstractFile[])}.
+     * Returns the current folder, i.e. the last folder set using {@link #setCurrentFolder(FolderContents)}.
      *
      * @return the current folder
      */
@@ -188,10 +221,10 @@ public class FileTableModel extends AbstractTableModel {
     }
 
     /**
-     * Returns the date of the current folder, when it was set using {@link #setCurrentFolder(com.mucommander.commons.file.AbstractFile, com.mucommander.commons.file.AbstractFile[])}.
+     * Returns the date of the current folder, when it was set using {@link #setCurrentFolder(FolderContents)}.
      * In other words, the returned date is a snapshot of the current folder's date which is never updated.
      *
-     * @return Returns the date of the current folder, when it was set using #setCurrentFolder(Abstract, Abstract[])
+     * @return Returns the date of the current folder, when it was set using #setCurrentFolder(FolderContents)
      */
     public synchronized long getCurrentFolderDateSnapshot() {
         return currentFolderDateSnapshot;
@@ -226,47 +259,100 @@ public class FileTableModel extends AbstractTableModel {
     }
 
     /**
-     * Sets the current folder and its children.
+     * Prepares the contents of the table for the given folder and its children, to be displayed by
+     * {@link #setCurrentFolder(FolderContents)}. The attributes of the files are retrieved and the files are sorted
+     * by this method, which is I/O-bound and should not be called from the event dispatch thread.
+     *
+     * <p>If the given folder is the current folder and only a few of its files have been added, removed or modified,
+     * the files are sorted incrementally from the current order.</p>
      *
      * @param folder the current folder
      * @param children the current folder's children
+     * @return the contents of the table for the folder
      */
-    synchronized void setCurrentFolder(AbstractFile folder, AbstractFile children[]) {
+    FolderContents prepareCurrentFolder(AbstractFile folder, AbstractFile children[]) {
         int nbFiles = children.length;
+        FolderContents contents = new FolderContents();
 
-        this.currentFolder = (folder instanceof CachedFile)?folder:new CachedFile(folder, true);
+        contents.folder = (folder instanceof CachedFile)?folder:new CachedFile(folder, true);
 
-        this.parent = showParentFolder ? currentFolder.getParent() : null;    // Note: the returned parent is a CachedFile instance
-        if(parent!=null) {
+        contents.parent = showParentFolder ? contents.folder.getParent() : null;    // Note: the returned parent is a CachedFile instance
+        if(contents.parent!=null) {
             // Pre-fetch the attributes that are used by the table renderer and some actions.
-            prefetchCachedFileAttributes(parent);
+            prefetchCachedFileAttributes(contents.parent);
         }
-        stopSizeCalculation();
 
-        // Initialize file indexes and create CachedFile instances to speed up table display and navigation
-        this.cachedFiles = children;
-        this.fileArrayIndex = new int[nbFiles];
-        AbstractFile file;
+        // Create CachedFile instances to speed up table display and navigation
+        AbstractFile[] cachedFiles = children;
         for(int i=0; i<nbFiles; i++) {
-            file = new CachedFile(children[i], true);
+            AbstractFile file = new CachedFile(children[i], true);
 
             // Pre-fetch the attributes that are used by the table renderer and some actions.
             prefetchCachedFileAttributes(file);
 
             cachedFiles[i] = file;
-            fileArrayIndex[i] = i;
         }
+        contents.cachedFiles = cachedFiles;
+
+        // Retrieve the attributes displayed by the table once and for all, and store them in columns that are much
+        // more compact than the CachedFile instances and cell values
+        boolean canGetOwner, canGetGroup;
+        if (contents.parent != null) {
+            contents.dateSnapshot = contents.folder.getDate();
+            canGetOwner = contents.parent.canGetOwner();
+            canGetGroup = contents.parent.canGetGroup();
+        }
+        else {
+            canGetOwner = nbFiles > 0 && cachedFiles[0].canGetOwner();
+            canGetGroup = nbFiles > 0 && cachedFiles[0].canGetGroup();
+        }
+        contents.rows = new FileTableRows(cachedFiles, getNameFunc(contents.folder), canGetOwner, canGetGroup);
+
+        // Sort the files incrementally if the current folder is refreshed
+        contents.sortOrder = getSortOrder();
+        FileTableRows previousRows = null;
+        int[] previousOrder = null;
+        synchronized(this) {
+            if(contents.sortOrder.equals(sortOrder) && contents.folder.equals(currentFolder)) {
+                previousRows = rows;
+                previousOrder = fileArrayIndex.clone();
+            }
+        }
+        if(previousRows!=null)
+            contents.fileArrayIndex = contents.sortOrder.sortIncrementally(contents.rows, previousRows, previousOrder);
+        if(contents.fileArrayIndex==null) {
+            contents.fileArrayIndex = new int[nbFiles];
+            for(int i=0; i<nbFiles; i++)
+                contents.fileArrayIndex[i] = i;
+            IndexSort.sort(contents.fileArrayIndex, contents.sortOrder.getComparator(contents.rows));
+        }
+
+        return contents;
+    }
+
+    /**
+     * Sets the current folder and its children, as prepared by {@link #prepareCurrentFolder(AbstractFile, AbstractFile[])}.
+     * The contents replace the current ones at once, the rows being sorted already.
+     *
+     * @param contents the contents of the table for the current folder
+     */
+    synchronized void setCurrentFolder(FolderContents contents) {
+        this.currentFolder = contents.folder;
+        this.parent = contents.parent;
+        this.currentFolderDateSnapshot = contents.dateSnapshot;
+        stopSizeCalculation();
+
+        this.cachedFiles = contents.cachedFiles;
+        this.fileArrayIndex = contents.fileArrayIndex;
+        this.rows = contents.rows;
+        this.sortOrder = contents.sortOrder;
+        this.foldedNames = new String[cachedFiles.length];
 
         // Reset marked files
-        int nbRows = getRowCount();
-        this.rowMarked = new boolean[nbRows];
         this.markedTotalSize = 0;
         this.nbRowsMarked = 0;
 
-        // Init and fill cell cache to speed up table even more
-        this.cellValuesCache = new Object[nbRows][Column.values().length-1];
-
-        fillCellCache();
+        updateDirectorySizes();
     }
 
     /**
@@ -290,74 +376,48 @@ public class FileTableModel extends AbstractTableModel {
 
 
     /**
-     * Retrieves all cell values and stores them in an array for fast access.
+     * Retrieves the sizes of directories that have been calculated or cached, so that they are displayed in the size
+     * column.
      */
-    synchronized void fillCellCache() {
-        int len = cellValuesCache.length;
-        if (len == 0)
-            return;
-
-        Boolean canGetGroup = null, canGetOwner = null;
-        // Special '..' file
-        if (parent != null) {
-            cellValuesCache[0][Column.NAME.ordinal()-1] = "..";
-            cellValuesCache[0][Column.SIZE.ordinal()-1] = DIRECTORY_SIZE_STRING;
-            currentFolderDateSnapshot = currentFolder.getDate();
-            cellValuesCache[0][Column.DATE.ordinal()-1] = CustomDateFormat.format(new Date(currentFolderDateSnapshot));
-            // Don't display parent's permissions as they can have a different format from the folder contents
-            // (e.g. for archives) and this looks weird
-            cellValuesCache[0][Column.PERMISSIONS.ordinal()-1] = "";
-            cellValuesCache[0][Column.OWNER.ordinal()-1] = "";
-            cellValuesCache[0][Column.GROUP.ordinal()-1] = "";
-            canGetGroup = parent.canGetGroup();
-            canGetOwner = parent.canGetOwner();
-        }
-
-        var nameFunc = getNameFunc();
-        int fileIndex = 0;
-        final int indexOffset = parent == null ? 0 : 1;
-        for (int i = indexOffset; i < len; i++) {
-            var file = getCachedFileAtRow(i);
-            if (i == indexOffset) {
-                if (canGetGroup == null || canGetOwner == null) {
-                    canGetGroup = file.canGetGroup();
-                    canGetOwner = file.canGetOwner();
-		}
+    synchronized void updateDirectorySizes() {
+        outdatedDirectories.clear();
+        int nbFiles = rows.size();
+        for (int i = 0; i < nbFiles; i++) {
+            if (!rows.isDirectory(i))
+                continue;
+
+            AbstractFile file = cachedFiles[i];
+            Long dirSize = null;
+            if (hasCalculatedDirectories) {
+                synchronized (directorySizes) {
+                    dirSize = directorySizes.get(file);
+                }
             }
-            int cellIndex = fileArrayIndex[fileIndex] + indexOffset;
-            Object sizeValue;
-            if (file.isDirectory()) {
-                if (hasCalculatedDirectories) {
-                    Long dirSize;
-                    synchronized (directorySizes) {
-                        dirSize = directorySizes.get(file);
-                    }
-                    if (dirSize != null) {
-                        sizeValue = SizeFormat.format(dirSize, sizeFormat);
-                    } else {
-                        synchronized (calculateSizeQueue) {
-                            sizeValue = calculateSizeQueue.contains(file) ? QUEUED_DIRECTORY_SIZE_STRING : DIRECTORY_SIZE_STRING;
-                        }
-                    }
-                } else {
-                    sizeValue = DIRECTORY_SIZE_STRING;
+            FolderSizeCache.FolderSize cachedSize = dirSize == null && showCachedFolderSizes ? FolderSizeCache.get(file) : null;
+            boolean queued = false;
+            long size = -1;
+            if (dirSize != null) {
+                size = dirSize;
+            } else if (cachedSize != null) {
+                // Display the size calculated before, calculate it again if it may have changed
+                size = cachedSize.getSize();
+                if (cachedSize.isOutdated()) {
+                    outdatedDirectories.add(file);
+                }
+            } else if (hasCalculatedDirectories) {
+                synchronized (calculateSizeQueue) {
+                    queued = calculateSizeQueue.contains(file);
                 }
-            } else {
-                sizeValue = SizeFormat.format(file.getSize(), sizeFormat);
             }
-
-            cellValuesCache[cellIndex][Column.NAME.ordinal()-1] = nameFunc.apply(file);
-            cellValuesCache[cellIndex][Column.SIZE.ordinal()-1] = sizeValue;
-            cellValuesCache[cellIndex][Column.DATE.ordinal()-1] = CustomDateFormat.format(new Date(file.getDate()));
-            cellValuesCache[cellIndex][Column.PERMISSIONS.ordinal()-1] = file.getPermissionsString();
-            cellValuesCache[cellIndex][Column.OWNER.ordinal()-1] = canGetOwner ? file.getOwner() : null;
-            cellValuesCache[cellIndex][Column.GROUP.ordinal()-1] = canGetGroup ? file.getGroup() : null;
-
-            fileIndex++;
+            rows.setDirectorySize(i, size, queued);
         }
     }
 
     public Function<AbstractFile, String> getNameFunc() {
+        return getNameFunc(currentFolder);
+    }
+
+    private static Function<AbstractFile, String> getNameFunc(AbstractFile currentFolder) {
         switch (currentFolder.getURL().getScheme()) {
         case SearchFile.SCHEMA:
             String basePath = currentFolder.getURL().getHost();
@@ -394,6 +454,30 @@ public class FileTableModel extends AbstractTableModel {
         return null;
     }
 
+    /**
+     * Returns the name of the file located at the given row index, folded by {@link QuickSearch#fold(String)}.
+     * The folded names are computed once for the current folder. Returns '..' for the parent folder if a parent
+     * exists and rowIndex is 0, and <code>null</code> if rowIndex is out of bounds.
+     *
+     * @param rowIndex a row index, comprised between 0 and #getRowCount()
+     * @return the folded name of the file located at the given row index
+     */
+    public synchronized String getFoldedNameAtRow(int rowIndex) {
+        if(rowIndex==0 && parent!=null)
+            return "..";
+
+        if(parent!=null)
+            rowIndex--;
+
+        if(rowIndex<0 || rowIndex>=fileArrayIndex.length)
+            return null;
+
+        int fileIndex = fileArrayIndex[rowIndex];
+        if(foldedNames[fileIndex]==null)
+            foldedNames[fileIndex] = QuickSearch.fold(cachedFiles[fileIndex].getName());
+        return foldedNames[fileIndex];
+    }
+
     /**
      * Returns the current folder's children. The returned array contains {@link CachedFile} instances, where
      * most attributes have already been fetched and cached.
@@ -459,23 +543,31 @@ public class FileTableModel extends AbstractTableModel {
         if(parent!=null && file.equals(parent))
             return 0;
 
-        // Use dichotomic binary search rather than a dumb linear search since file array is sorted,
-        // complexity is reduced to O(log n) instead of O(n^2)
-        int left = parent==null?0:1;
-        int right = getRowCount()-1;
-        int mid;
-        AbstractFile midFile;
-        FileComparator fc = getFileComparator(sortInfo, filenameLocale);
-
-        while(left<=right) {
-            mid = (right-left)/2 + left;
-            midFile = getCachedFileAtRow(mid);
-            if(midFile.equals(file))
-                return mid;
-            if(fc.compare(file, midFile)<0)
-                right = mid-1;
+        if(sortOrder==null)
+            return -1;
+
+        // Look the file up by name, rather than comparing it with the files of the rows
+        int fileIndex = rows.indexOf(getNameFunc().apply(file), i -> cachedFiles[i].equals(file));
+        if(fileIndex==-1)
+            return -1;
+
+        // Find the row of the file with a binary search, the rows being sorted by this comparator
+        IndexSort.IndexComparator comparator = sortOrder.getComparator(rows);
+        int low = 0;
+        int high = fileArrayIndex.length;
+        while(low<high) {
+            int mid = (low+high) >>> 1;
+            if(comparator.compare(fileArrayIndex[mid], fileIndex)<0)
+                low = mid+1;
             else
-                left = mid+1;
+                high = mid;
+        }
+
+        // Files that are equal for the comparator may precede the file
+        int firstRow = parent==null?0:1;
+        for(int i=low; i<fileArrayIndex.length && comparator.compare(fileArrayIndex[i], fileIndex)==0; i++) {
+            if(fileArrayIndex[i]==fileIndex)
+                return i + firstRow;
         }
 
         return -1;
@@ -521,7 +613,7 @@ public class FileTableModel extends AbstractTableModel {
         if(row==0 && parent!=null)
             return false;
 
-        return row<getRowCount() && rowMarked[fileArrayIndex[parent==null?row:row-1]];
+        return row<getRowCount() && rows.isMarked(fileArrayIndex[parent==null?row:row-1]);
     }
 
 
@@ -540,19 +632,17 @@ public class FileTableModel extends AbstractTableModel {
 
         // Return if the row is already marked/unmarked
         final int fileIndex = fileArrayIndex[rowIndex];
-        if (marked == rowMarked[fileIndex])
+        if (marked == rows.isMarked(fileIndex))
             return;
 
-        AbstractFile file = getCachedFileAtRow(row);
-
-        // Do not call getSize() on directories, it's unnecessary and the value is most likely not cached by CachedFile yet
+        // The size of directories is added separately, if it has been calculated
         long fileSize;
 
-        if (file.isDirectory()) {
-            markedDirectories.add(file);
+        if (rows.isDirectory(fileIndex)) {
+            markedDirectories.add(cachedFiles[fileIndex]);
             fileSize = 0;
         } else {
-            fileSize = file.getSize();
+            fileSize = rows.getSize(fileIndex);
         }
 
         // Update :
@@ -573,7 +663,7 @@ public class FileTableModel extends AbstractTableModel {
             nbRowsMarked--;
         }
 
-        rowMarked[fileIndex] = marked;
+        rows.setMarked(fileIndex, marked);
     }
 
 
@@ -632,31 +722,26 @@ public class FileTableModel extends AbstractTableModel {
      * The returned <code>FileSet</code> is a freshly created instance, so it can be safely modified.
      & However, it won't be kept current : the returned FileSet is just a snapshot
      * which might not reflect the current marked files state after this method has returned and additional
-     * files have been marked/unmarked.
+     * files have been marked/unmarked. The files are not copied into the set until it is modified, see
+     * {@link FileSelection#toFileSet()}.
      * </p>
      *
      * @return a FileSet containing all the files that are currently marked
      */
     public synchronized FileSet getMarkedFiles() {
-        FileSet markedFiles = new FileSet(currentFolder, nbRowsMarked);
-        int nbRows = getRowCount();
-
-        if(parent==null) {
-            for(int i=0; i<nbRows; i++) {
-                if(rowMarked[fileArrayIndex[i]])
-                    markedFiles.add(getFileAtRow(i));
-            }
-        }
-        else {
-            for(int i=1, iMinusOne=0; i<nbRows; i++) {
-                if(rowMarked[fileArrayIndex[iMinusOne]])
-                    markedFiles.add(getFileAtRow(i));
-
-                iMinusOne = i;
-            }
-        }
+        return getMarkedSelection().toFileSet();
+    }
 
-        return markedFiles;
+    /**
+     * Returns a {@link FileSelection} snapshot of the currently marked files. Unlike {@link #getMarkedFiles()}, the
+     * snapshot holds a bit per file of the current folder rather than the marked files, which are looked up as the
+     * selection is streamed.
+     *
+     * @return a snapshot of the currently marked files
+     */
+    public synchronized FileSelection getMarkedSelection() {
+        return new FileSelection(currentFolder, cachedFiles, fileArrayIndex,
+                nbRowsMarked==0 ? new BitSet() : rows.getMarked(), nbRowsMarked);
     }
 
     /**
@@ -695,88 +780,91 @@ public class FileTableModel extends AbstractTableModel {
     // Sort methods //
     //////////////////
 
-    private FileComparator getFileComparator(SortInfo sortInfo, Locale locale) {
-        FileComparator.Mode fileComparatorMode = FileComparator.Mode.getMode(
-                MuConfigurations.getPreferences().getVariable(
-                        MuPreference.FILE_COMPARATOR_USE_LEXICOGRAPHIC_SORT,
-                        MuPreferences.DEFAULT_FILES_LEXICOGRAPHIC_ORDER)
-        );
-
-        return new FileComparator(sortInfo.getCriterion().getFileComparatorCriterion(),
+    private SortOrder getSortOrder() {
+        return new SortOrder(sortInfo.getCriterion().getFileComparatorCriterion(),
                 sortInfo.getAscendingOrder(),
                 sortInfo.getFoldersFirst(),
-                getNameFunc(),
-                locale,
-                fileComparatorMode);
+                filenameLocale,
+                getFileComparatorMode());
+    }
+
+    private static FileComparator.Mode getFileComparatorMode() {
+        return FileComparator.Mode.getMode(LEXICOGRAPHIC_SORT.getValue());
     }
 
 
     /**
-     * Sorts rows by the current criterion, ascending/descending order and 'folders first' value.
+     * Sorts rows by the current criterion, ascending/descending order and 'folders first' value. The rows are sorted
+     * by comparing the columns of {@link FileTableRows}, in the same order as {@link FileComparator}. Nothing is done
+     * if the rows are sorted this way already.
      */
     synchronized void sortRows()  {
-        sort(getFileComparator(sortInfo, filenameLocale), 0, fileArrayIndex.length-1);
-    }
+        SortOrder sortOrder = getSortOrder();
+        if(sortOrder.equals(this.sortOrder))
+            return;
 
+        // Sort a copy, the current order may be shared with a FileSelection
+        int[] order = fileArrayIndex.clone();
+        IndexSort.sort(order, sortOrder.getComparator(rows));
+        this.fileArrayIndex = order;
+        this.sortOrder = sortOrder;
+    }
 
     /**
-     * Quick sort implementation, based on James Gosling's implementation.
+     * Sorts rows like {@link #sortRows()}, without blocking the event dispatch thread if there are many rows: a copy
+     * of the current order is then sorted in the background, and replaces the current order when it is sorted.
+     * This method must be called from the event dispatch thread.
+     *
+     * <p>The given consumer is called from the event dispatch thread with a <code>Runnable</code> that replaces the
+     * current order with the sorted one, so that the state of the table can be saved before and restored after.
+     * It is not called if the current folder has been changed or the rows sorted differently in the meantime.</p>
+     *
+     * @param sorter consumer of the <code>Runnable</code> that replaces the current order with the sorted one
      */
-    private void sort(FileComparator fc, int lo0, int hi0) {
-        int lo = lo0;
-        int hi = hi0;
-
-        int temp;
-
-        if (lo >= hi) {
-            return;
+    void sortRows(Consumer<Runnable> sorter) {
+        SortOrder sortOrder = getSortOrder();
+        FileTableRows sortedRows;
+        int[] order;
+        synchronized(this) {
+            sortedRows = rows;
+            order = fileArrayIndex.length<BACKGROUND_SORT_THRESHOLD || sortOrder.equals(this.sortOrder) ? null : fileArrayIndex.clone();
         }
-        else if( lo == hi - 1 ) {
-            // sort a two element list by swapping if necessary
-            if (fc.compare(cachedFiles[fileArrayIndex[lo]],cachedFiles[fileArrayIndex[hi]])>0) {
-                temp = fileArrayIndex[lo];
-                fileArrayIndex[lo] = fileArrayIndex[hi];
-                fileArrayIndex[hi] = temp;
-            }
+
+        if(order==null) {
+            sorter.accept(this::sortRows);
             return;
         }
 
-        // Pick a pivot and move it out of the way
-        int pivotIndex = fileArrayIndex[(lo + hi) / 2];
-        fileArrayIndex[(lo + hi) / 2] = fileArrayIndex[hi];
-        fileArrayIndex[hi] = pivotIndex;
-        AbstractFile pivot = cachedFiles[pivotIndex];
-
-        while( lo < hi ) {
-            // Search forward from files[lo] until an element is found that
-            // is greater than the pivot or lo >= hi
-            while (fc.compare(cachedFiles[fileArrayIndex[lo]], pivot)<=0 && lo < hi) {
-                lo++;
-            }
-
-            // Search backward from files[hi] until element is found that
-            // is less than the pivot, or lo >= hi
-            while (fc.compare(pivot, cachedFiles[fileArrayIndex[hi]])<=0 && lo < hi ) {
-                hi--;
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                IndexSort.sort(order, sortOrder.getComparator(sortedRows));
+                return null;
             }
 
-            // Swap elements files[lo] and files[hi]
-            if( lo < hi ) {
-                temp = fileArrayIndex[lo];
-                fileArrayIndex[lo] = fileArrayIndex[hi];
-                fileArrayIndex[hi] = temp;
-            }
-        }
+            @Override
+            protected void done() {
+                try {
+                    get();
+                }
+                catch(InterruptedException | ExecutionException e) {
+                    LOGGER.warn("Caught exception while sorting rows", e);
+                    return;
+                }
 
-        // Put the median in the "center" of the list
-        fileArrayIndex[hi0] = fileArrayIndex[hi];
-        fileArrayIndex[hi] = pivotIndex;
+                synchronized(FileTableModel.this) {
+                    if(sortedRows!=rows || !sortOrder.equals(getSortOrder()))
+                        return;
+                }
 
-        // Recursive calls, elements files[lo0] to files[lo-1] are less than or
-        // equal to pivot, elements files[hi+1] to files[hi0] are greater than
-        // pivot.
-        sort(fc, lo0, lo-1);
-        sort(fc, hi+1, hi0);
+                sorter.accept(() -> {
+                    synchronized(FileTableModel.this) {
+                        fileArrayIndex = order;
+                        FileTableModel.this.sortOrder = sortOrder;
+                    }
+                });
+            }
+        }.execute();
     }
 
 
@@ -816,13 +904,46 @@ public class FileTableModel extends AbstractTableModel {
         if(column==Column.EXTENSION)
             return null;
 
-        // Decrement column index for cellValuesCache array
-        columnIndex--;
         // Handle special '..' file
-        if(rowIndex==0 && parent!=null)
-            return cellValuesCache[0][columnIndex];
-        int fileIndex = parent==null?rowIndex:rowIndex-1;
-        return cellValuesCache[fileArrayIndex[fileIndex]+(parent==null?0:1)][columnIndex];
+        if(rowIndex==0 && parent!=null) {
+            switch(column) {
+            case NAME:
+                return "..";
+            case SIZE:
+                return DIRECTORY_SIZE_STRING;
+            case DATE:
+                return CustomDateFormat.format(new Date(currentFolderDateSnapshot));
+            default:
+                // Don't display parent's permissions as they can have a different format from the folder contents
+                // (e.g. for archives) and this looks weird
+                return "";
+            }
+        }
+
+        // Cell values are created from the columns of the rows when they are displayed, rather than stored
+        int fileIndex = fileArrayIndex[parent==null?rowIndex:rowIndex-1];
+        switch(column) {
+        case NAME:
+            return rows.getName(fileIndex);
+        case SIZE:
+            if (rows.isDirectory(fileIndex)) {
+                if (rows.isQueued(fileIndex))
+                    return QUEUED_DIRECTORY_SIZE_STRING;
+                if (rows.getSize(fileIndex) == -1)
+                    return DIRECTORY_SIZE_STRING;
+            }
+            return SizeFormat.format(rows.getSize(fileIndex), sizeFormat);
+        case DATE:
+            return CustomDateFormat.format(new Date(rows.getDate(fileIndex)));
+        case PERMISSIONS:
+            return rows.getPermissionsString(fileIndex);
+        case OWNER:
+            return rows.getOwner(fileIndex);
+        case GROUP:
+            return rows.getGroup(fileIndex);
+        default:
+            return null;
+        }
     }
 
 
@@ -868,6 +989,21 @@ public class FileTableModel extends AbstractTableModel {
         }
     }
 
+    /**
+     * Calculates again, in the background, the size of the directories whose cached size is displayed but may
+     * have changed.
+     * @param table
+     */
+    void refreshOutdatedDirectorySizes(FileTable table) {
+        List<AbstractFile> directories;
+        synchronized (this) {
+            directories = new ArrayList<>(outdatedDirectories);
+        }
+        for (AbstractFile directory : directories) {
+            startDirectorySizeCalculation(table, directory);
+        }
+    }
+
     /**
      * Takes a first ask for queue and starts calculation worker
      * @param table
@@ -955,4 +1091,64 @@ public class FileTableModel extends AbstractTableModel {
         return result;
     }
 
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * Contents of the table for a folder, prepared by {@link #prepareCurrentFolder(AbstractFile, AbstractFile[])}
+     * and displayed by {@link #setCurrentFolder(FolderContents)}.
+     */
+    static class FolderContents {
+        private AbstractFile folder;
+        private AbstractFile parent;
+        private long dateSnapshot;
+        private AbstractFile[] cachedFiles;
+        private FileTableRows rows;
+        private int[] fileArrayIndex;
+        private SortOrder sortOrder;
+    }
+
+    /**
+     * Parameters the rows are sorted by. Two instances are equal if they sort the rows the same way.
+     */
+    private static class SortOrder {
+        private final FileComparator.CRITERION criterion;
+        private final boolean ascending;
+        private final boolean foldersFirst;
+        private final Locale locale;
+        private final FileComparator.Mode mode;
+
+        private SortOrder(FileComparator.CRITERION criterion, boolean ascending, boolean foldersFirst, Locale locale, FileComparator.Mode mode) {
+            this.criterion = criterion;
+            this.ascending = ascending;
+            this.foldersFirst = foldersFirst;
+            this.locale = locale;
+            this.mode = mode;
+        }
+
+        private IndexSort.IndexComparator getComparator(FileTableRows rows) {
+            return rows.getComparator(criterion, ascending, foldersFirst, locale, mode);
+        }
+
+        private int[] sortIncrementally(FileTableRows rows, FileTableRows previousRows, int[] previousOrder) {
+            return rows.sortIncrementally(previousRows, previousOrder, criterion, ascending, foldersFirst, locale, mode);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof SortOrder))
+                return false;
+
+            SortOrder order = (SortOrder)o;
+            return criterion==order.criterion && ascending==order.ascending && foldersFirst==order.foldersFirst
+                    && Objects.equals(locale, order.locale) && mode==order.mode;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(criterion, ascending, foldersFirst, locale, mode);
+        }
+    }
 }
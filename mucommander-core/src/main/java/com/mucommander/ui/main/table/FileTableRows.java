@@ -0,0 +1,628 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.ui.main.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.CachedFile;
+import com.mucommander.commons.file.FilePermissions;
+import com.mucommander.commons.file.util.FileComparator;
+import com.mucommander.commons.util.IndexSort;
+
+/**
+ * FileTableRows stores the attributes of the files displayed by a {@link FileTableModel} in columns of primitive
+ * values, rather than in objects created for each file and each cell. The columns are populated once when the
+ * current folder is changed: the table can then be sorted, and its cells rendered, without calling the files.
+ *
+ * <p>Files are designated by their index in the array of files the rows were created with. Filenames are stored in a
+ * single array of chars. Strings that are shared by many files (extensions, permissions, owners and groups) are stored
+ * once and designated by an identifier.</p>
+ *
+ * <p>The attributes of the files are not modified once the rows have been created, except for the marks and the size
+ * of directories, which are not used to sort the rows. The rows can thus be sorted by a background thread while they
+ * are displayed. Other accesses are synchronized by {@link FileTableModel}.</p>
+ */
+class FileTableRows {
+
+    /** Flag set if the file is a directory */
+    private final static int DIRECTORY = 1;
+    /** Flag set if the file is marked */
+    private final static int MARKED = 1 << 1;
+    /** Flag set if the directory is queued for size calculation */
+    private final static int QUEUED = 1 << 2;
+
+    /** The rows are sorted incrementally if at most 1 out of this number of files has changed */
+    private final static int INCREMENTAL_SORT_RATIO = 8;
+
+    /** Number of files */
+    private final int nbFiles;
+
+    /** Names of all files, as displayed in the name column */
+    private final char[] names;
+
+    /** Offset of each file's name in {@link #names}, followed by the end of the last name */
+    private final int[] nameOffsets;
+
+    /** Size of each file, size of directories when it has been calculated, -1 if not available */
+    private final long[] sizes;
+
+    /** Date of each file */
+    private final long[] dates;
+
+    /** Permissions of each file, as returned by {@link FilePermissions#getIntValue()} */
+    private final int[] permissions;
+
+    /** Flags of each file */
+    private final int[] flags;
+
+    /** Identifier of each file's extension */
+    private final int[] extensionIds;
+
+    /** Identifier of each file's permissions string */
+    private final int[] permissionsStringIds;
+
+    /** Identifier of each file's owner */
+    private final int[] ownerIds;
+
+    /** Identifier of each file's group */
+    private final int[] groupIds;
+
+    /** Strings that are shared by the files, designated by their identifier. Identifier 0 is <code>null</code> */
+    private final String[] strings;
+
+    /** Rank of each shared string in case-insensitive order, <code>null</code> being first */
+    private final int[] stringRanks;
+
+    /** Rank of each file's name in the order of the name column, for {@link #nameRanksLocale} and {@link #nameRanksMode},
+     * guarded by this instance */
+    private int[] nameRanks;
+    private Locale nameRanksLocale;
+    private FileComparator.Mode nameRanksMode;
+
+    /** Open addressing hash table of the names, containing file indexes + 1, 0 for empty slots, created the first time
+     * a file is looked up by name and guarded by this instance */
+    private int[] nameTable;
+
+
+    /**
+     * Creates new rows for the given files and populates the columns. The file attributes used by the table are
+     * retrieved once and for all by this constructor.
+     *
+     * @param files the files to display, {@link CachedFile} instances whose attributes are cached
+     * @param nameFunc returns the value of the name column for a file
+     * @param canGetOwner <code>true</code> if the owner of the files can be retrieved
+     * @param canGetGroup <code>true</code> if the group of the files can be retrieved
+     */
+    FileTableRows(AbstractFile[] files, Function<AbstractFile, String> nameFunc, boolean canGetOwner, boolean canGetGroup) {
+        nbFiles = files.length;
+        nameOffsets = new int[nbFiles + 1];
+        sizes = new long[nbFiles];
+        dates = new long[nbFiles];
+        permissions = new int[nbFiles];
+        flags = new int[nbFiles];
+        extensionIds = new int[nbFiles];
+        permissionsStringIds = new int[nbFiles];
+        ownerIds = new int[nbFiles];
+        groupIds = new int[nbFiles];
+
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        strings.add(null);
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < nbFiles; i++) {
+            AbstractFile file = files[i];
+            // Strings that are not shared are retrieved from the proxied file, so that CachedFile doesn't retain them
+            AbstractFile proxiedFile = file instanceof CachedFile ? ((CachedFile)file).getProxiedFile() : file;
+
+            names.append(nameFunc.apply(proxiedFile));
+            nameOffsets[i + 1] = names.length();
+
+            if (file.isDirectory()) {
+                flags[i] = DIRECTORY;
+                sizes[i] = -1;
+            } else {
+                sizes[i] = file.getSize();
+            }
+            dates[i] = file.getDate();
+            FilePermissions filePermissions = file.getPermissions();
+            permissions[i] = filePermissions == null ? 0 : filePermissions.getIntValue();
+
+            extensionIds[i] = getStringId(proxiedFile.getExtension(), ids, strings);
+            permissionsStringIds[i] = getStringId(file.getPermissionsString(), ids, strings);
+            ownerIds[i] = canGetOwner ? getStringId(file.getOwner(), ids, strings) : 0;
+            groupIds[i] = canGetGroup ? getStringId(file.getGroup(), ids, strings) : 0;
+        }
+        this.names = new char[names.length()];
+        names.getChars(0, names.length(), this.names, 0);
+
+        this.strings = strings.toArray(new String[0]);
+        int nbStrings = this.strings.length;
+        int[] sortedIds = new int[nbStrings - 1];
+        for (int id = 1; id < nbStrings; id++)
+            sortedIds[id - 1] = id;
+        IndexSort.IndexComparator stringComparator = (id1, id2) -> this.strings[id1].compareToIgnoreCase(this.strings[id2]);
+        IndexSort.sort(sortedIds, stringComparator);
+        stringRanks = new int[nbStrings];
+        for (int i = 0; i < sortedIds.length; i++)
+            stringRanks[sortedIds[i]] = i == 0 ? 1 : stringRanks[sortedIds[i - 1]] + (stringComparator.compare(sortedIds[i - 1], sortedIds[i]) == 0 ? 0 : 1);
+    }
+
+    /**
+     * Returns the identifier of the given shared string, assigning a new identifier if the string is encountered for
+     * the first time.
+     */
+    private static int getStringId(String string, Map<String, Integer> ids, List<String> strings) {
+        if (string == null)
+            return 0;
+
+        return ids.computeIfAbsent(string, s -> {
+            strings.add(s);
+            return strings.size() - 1;
+        });
+    }
+
+    /**
+     * Returns the number of files.
+     */
+    int size() {
+        return nbFiles;
+    }
+
+    /**
+     * Returns the name of the given file, as displayed in the name column.
+     */
+    String getName(int fileIndex) {
+        return new String(names, nameOffsets[fileIndex], nameOffsets[fileIndex + 1] - nameOffsets[fileIndex]);
+    }
+
+    /**
+     * Returns the index of a file that has the given name, as displayed in the name column, and that matches the given
+     * predicate. The files are looked up in a hash table of their names, created the first time this method is called.
+     *
+     * @param name the name of the file
+     * @param predicate tests the files that have the given name
+     * @return the index of the file, -1 if no file has the given name and matches the predicate
+     */
+    int indexOf(String name, IntPredicate predicate) {
+        int[] table = getNameTable();
+        int mask = table.length - 1;
+        char[] chars = name.toCharArray();
+        // Same hash as hashName()
+        int hash = name.hashCode();
+        for (int slot = (hash ^ (hash >>> 16)) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int i = table[slot] - 1;
+            if (Arrays.equals(names, nameOffsets[i], nameOffsets[i + 1], chars, 0, chars.length) && predicate.test(i))
+                return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the hash table of the names, creating it if it doesn't exist yet.
+     */
+    private synchronized int[] getNameTable() {
+        if (nameTable == null) {
+            int[] table = new int[Integer.highestOneBit(Math.max(nbFiles, 1)) << 2];
+            int mask = table.length - 1;
+            for (int i = 0; i < nbFiles; i++) {
+                int slot = hashName(i) & mask;
+                while (table[slot] != 0)
+                    slot = (slot + 1) & mask;
+                table[slot] = i + 1;
+            }
+            nameTable = table;
+        }
+
+        return nameTable;
+    }
+
+    /**
+     * Returns <code>true</code> if the given file is a directory.
+     */
+    boolean isDirectory(int fileIndex) {
+        return (flags[fileIndex] & DIRECTORY) != 0;
+    }
+
+    /**
+     * Returns the size of the given file, or the size of the given directory if it has been calculated. Returns -1
+     * if the size is not available.
+     */
+    long getSize(int fileIndex) {
+        return sizes[fileIndex];
+    }
+
+    /**
+     * Sets the size of the given directory, as calculated or cached, -1 if it is not available.
+     *
+     * @param fileIndex index of a directory
+     * @param size the size of the directory, -1 if not available
+     * @param queued <code>true</code> if the directory is queued for size calculation
+     */
+    void setDirectorySize(int fileIndex, long size, boolean queued) {
+        sizes[fileIndex] = size;
+        flags[fileIndex] = queued ? flags[fileIndex] | QUEUED : flags[fileIndex] & ~QUEUED;
+    }
+
+    /**
+     * Returns <code>true</code> if the given directory is queued for size calculation.
+     */
+    boolean isQueued(int fileIndex) {
+        return (flags[fileIndex] & QUEUED) != 0;
+    }
+
+    /**
+     * Returns the date of the given file.
+     */
+    long getDate(int fileIndex) {
+        return dates[fileIndex];
+    }
+
+    /**
+     * Returns the permissions string of the given file.
+     */
+    String getPermissionsString(int fileIndex) {
+        return strings[permissionsStringIds[fileIndex]];
+    }
+
+    /**
+     * Returns the owner of the given file, <code>null</code> if it is not available.
+     */
+    String getOwner(int fileIndex) {
+        return strings[ownerIds[fileIndex]];
+    }
+
+    /**
+     * Returns the group of the given file, <code>null</code> if it is not available.
+     */
+    String getGroup(int fileIndex) {
+        return strings[groupIds[fileIndex]];
+    }
+
+    /**
+     * Returns <code>true</code> if the given file is marked.
+     */
+    boolean isMarked(int fileIndex) {
+        return (flags[fileIndex] & MARKED) != 0;
+    }
+
+    /**
+     * Returns the indexes of the marked files.
+     */
+    BitSet getMarked() {
+        BitSet marked = new BitSet(flags.length);
+        for (int i = 0; i < flags.length; i++)
+            if ((flags[i] & MARKED) != 0)
+                marked.set(i);
+        return marked;
+    }
+
+    /**
+     * Marks/unmarks the given file.
+     */
+    void setMarked(int fileIndex, boolean marked) {
+        flags[fileIndex] = marked ? flags[fileIndex] | MARKED : flags[fileIndex] & ~MARKED;
+    }
+
+    /**
+     * Returns a comparator of file indexes that orders the files like a {@link FileComparator} created with the
+     * same parameters. Names are compared by their rank, which is calculated only once for a given locale and mode.
+     *
+     * @param criterion comparison criterion
+     * @param ascending if true, ascending order will be used, descending order otherwise
+     * @param directoriesFirst specifies whether directories should precede files or be handled as regular files
+     * @param locale the locale by which filenames are sorted
+     * @param mode sort mode to use when comparing names
+     * @return a comparator of file indexes
+     */
+    IndexSort.IndexComparator getComparator(FileComparator.CRITERION criterion, boolean ascending, boolean directoriesFirst,
+                                            Locale locale, FileComparator.Mode mode) {
+        int[] nameRanks = getNameRanks(locale, mode);
+
+        return (i1, i2) -> {
+            if (directoriesFirst) {
+                boolean is1Directory = isDirectory(i1);
+                if (is1Directory != isDirectory(i2))
+                    return is1Directory ? -1 : 1;   // ascending has no effect on the result (a directory is always first)
+            }
+
+            int diff;
+            switch (criterion) {
+            case SIZE:
+                diff = Long.compare(getSortSize(i1), getSortSize(i2));
+                break;
+            case DATE:
+                diff = Long.compare(dates[i1], dates[i2]);
+                break;
+            case PERMISSIONS:
+                diff = Integer.compare(permissions[i1], permissions[i2]);
+                break;
+            case EXTENSION:
+                diff = Integer.compare(stringRanks[extensionIds[i1]], stringRanks[extensionIds[i2]]);
+                break;
+            case OWNER:
+                diff = Integer.compare(stringRanks[ownerIds[i1]], stringRanks[ownerIds[i2]]);
+                break;
+            case GROUP:
+                diff = Integer.compare(stringRanks[groupIds[i1]], stringRanks[groupIds[i2]]);
+                break;
+            case NAME:
+            default:
+                diff = 0;
+            }
+
+            // If both files have the same criterion's value, compare names
+            if (diff == 0)
+                diff = Integer.compare(nameRanks[i1], nameRanks[i2]);
+
+            return ascending ? diff : -diff;
+        };
+    }
+
+    /**
+     * Returns the size used to sort the given file, like {@link FileComparator}: directories are considered to have a
+     * size of 0, and unavailable sizes to be enormous.
+     */
+    private long getSortSize(int fileIndex) {
+        if (isDirectory(fileIndex))
+            return 0;
+
+        return sizes[fileIndex] == -1 ? Long.MAX_VALUE : sizes[fileIndex];
+    }
+
+    /**
+     * Returns the rank of each file's name, calculating the ranks if the locale or mode has changed.
+     */
+    private synchronized int[] getNameRanks(Locale locale, FileComparator.Mode mode) {
+        if (nameRanks == null || !Objects.equals(locale, nameRanksLocale) || mode != nameRanksMode) {
+            String[] names = new String[nbFiles];
+            for (int i = 0; i < nbFiles; i++)
+                names[i] = getName(i);
+
+            FileComparator fileComparator = new FileComparator(FileComparator.CRITERION.NAME, true, false, AbstractFile::getName, locale, mode);
+            nameRanks = fileComparator.rankFilenames(names);
+            nameRanksLocale = locale;
+            nameRanksMode = mode;
+        }
+
+        return nameRanks;
+    }
+
+    /**
+     * Returns the files of these rows in the order defined by {@link #getComparator}, if these rows replace the given
+     * previous rows of the same folder and few files have been added, removed or modified since then. The files
+     * that haven't changed are kept in the previous order, and the other ones are inserted at the position found by
+     * a binary search, instead of sorting all the files again.
+     *
+     * @param previous the rows that are replaced by these rows
+     * @param previousOrder the previous rows' files, sorted with the same parameters
+     * @param criterion comparison criterion
+     * @param ascending if true, ascending order will be used, descending order otherwise
+     * @param directoriesFirst specifies whether directories should precede files or be handled as regular files
+     * @param locale the locale by which filenames are sorted
+     * @param mode sort mode to use when comparing names
+     * @return the indexes of the files in order, <code>null</code> if too many files have changed and the files
+     * must be sorted entirely
+     */
+    int[] sortIncrementally(FileTableRows previous, int[] previousOrder, FileComparator.CRITERION criterion,
+                            boolean ascending, boolean directoriesFirst, Locale locale, FileComparator.Mode mode) {
+        // Index of each file in the previous rows, if it hasn't changed
+        int[] previousIndexes = matchFiles(previous);
+        int[] indexes = new int[previous.nbFiles];
+        Arrays.fill(indexes, -1);
+        int nbChanged = 0;
+        for (int i = 0; i < nbFiles; i++) {
+            int previousIndex = previousIndexes[i];
+            if (previousIndex != -1 && indexes[previousIndex] == -1)
+                indexes[previousIndex] = i;
+            else {
+                previousIndexes[i] = -1;
+                nbChanged++;
+            }
+        }
+
+        if (nbChanged > nbFiles / INCREMENTAL_SORT_RATIO || !inheritNameRanks(previous, previousIndexes, locale, mode))
+            return null;
+
+        IndexSort.IndexComparator comparator = getComparator(criterion, ascending, directoriesFirst, locale, mode);
+
+        int nbKept = 0;
+        int[] kept = new int[nbFiles - nbChanged];
+        for (int previousIndex : previousOrder) {
+            if (indexes[previousIndex] != -1)
+                kept[nbKept++] = indexes[previousIndex];
+        }
+
+        int[] changed = new int[nbChanged];
+        for (int i = 0, j = 0; i < nbFiles; i++) {
+            if (previousIndexes[i] == -1)
+                changed[j++] = i;
+        }
+        IndexSort.sort(changed, comparator);
+
+        return merge(kept, changed, comparator);
+    }
+
+    /**
+     * Returns the index of each file in the given previous rows, if a file with the same name and attributes exists
+     * in the previous rows, -1 otherwise.
+     */
+    private int[] matchFiles(FileTableRows previous) {
+        int[] table = previous.getNameTable();
+        int mask = table.length - 1;
+
+        int[] previousIndexes = new int[nbFiles];
+        for (int i = 0; i < nbFiles; i++) {
+            previousIndexes[i] = -1;
+            for (int slot = hashName(i) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+                int j = table[slot] - 1;
+                if (Arrays.equals(names, nameOffsets[i], nameOffsets[i + 1], previous.names, previous.nameOffsets[j], previous.nameOffsets[j + 1])) {
+                    if (hasSameAttributes(i, previous, j))
+                        previousIndexes[i] = j;
+                    break;
+                }
+            }
+        }
+
+        return previousIndexes;
+    }
+
+    /**
+     * Returns a hash code of the given file's name.
+     */
+    private int hashName(int fileIndex) {
+        int hash = 0;
+        for (int i = nameOffsets[fileIndex]; i < nameOffsets[fileIndex + 1]; i++)
+            hash = 31 * hash + names[i];
+
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns <code>true</code> if the given file has the same attributes as the given file of the given rows, that
+     * is if they are sorted the same way for any criterion. The size of directories is not compared, as it is not
+     * used to sort the rows.
+     */
+    private boolean hasSameAttributes(int fileIndex, FileTableRows rows, int rowsFileIndex) {
+        return isDirectory(fileIndex) == rows.isDirectory(rowsFileIndex)
+                && (isDirectory(fileIndex) || sizes[fileIndex] == rows.sizes[rowsFileIndex])
+                && dates[fileIndex] == rows.dates[rowsFileIndex]
+                && permissions[fileIndex] == rows.permissions[rowsFileIndex]
+                && Objects.equals(strings[extensionIds[fileIndex]], rows.strings[rows.extensionIds[rowsFileIndex]])
+                && Objects.equals(strings[ownerIds[fileIndex]], rows.strings[rows.ownerIds[rowsFileIndex]])
+                && Objects.equals(strings[groupIds[fileIndex]], rows.strings[rows.groupIds[rowsFileIndex]]);
+    }
+
+    /**
+     * Merges the given sorted arrays of indexes: each index of <code>inserted</code> is inserted in
+     * <code>sorted</code> at the position found by a binary search. This is faster than a regular merge when
+     * <code>inserted</code> is much shorter than <code>sorted</code>.
+     */
+    private int[] merge(int[] sorted, int[] inserted, IndexSort.IndexComparator comparator) {
+        int[] merged = new int[sorted.length + inserted.length];
+        int nbMerged = 0;
+        int from = 0;
+        for (int index : inserted) {
+            // Insert after the indexes that are equal, the indexes being inserted after them in the rows
+            int low = from;
+            int high = sorted.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (comparator.compare(sorted[middle], index) <= 0)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+
+            System.arraycopy(sorted, from, merged, nbMerged, low - from);
+            nbMerged += low - from;
+            merged[nbMerged++] = index;
+            from = low;
+        }
+        System.arraycopy(sorted, from, merged, nbMerged, sorted.length - from);
+
+        return merged;
+    }
+
+    /**
+     * Calculates the rank of each file's name from the ranks of the given previous rows, without ranking again the
+     * names of the files that haven't changed.
+     *
+     * @param previous the rows that are replaced by these rows
+     * @param previousIndexes the index of each file in the previous rows, -1 if the file has changed
+     * @param locale the locale by which filenames are sorted
+     * @param mode sort mode to use when comparing names
+     * @return <code>false</code> if the ranks of the previous rows are not available for the given locale and mode
+     */
+    private boolean inheritNameRanks(FileTableRows previous, int[] previousIndexes, Locale locale, FileComparator.Mode mode) {
+        int[] previousRanks;
+        synchronized (previous) {
+            if (previous.nameRanks == null || !Objects.equals(locale, previous.nameRanksLocale) || mode != previous.nameRanksMode)
+                return false;
+            previousRanks = previous.nameRanks;
+        }
+
+        // Order the files that haven't changed by their previous rank, with a counting sort
+        int[] counts = new int[previous.nbFiles + 1];
+        int nbKept = 0;
+        for (int previousIndex : previousIndexes) {
+            if (previousIndex != -1) {
+                counts[previousRanks[previousIndex] + 1]++;
+                nbKept++;
+            }
+        }
+        for (int rank = 0; rank < previous.nbFiles; rank++)
+            counts[rank + 1] += counts[rank];
+        int[] kept = new int[nbKept];
+        for (int i = 0; i < nbFiles; i++) {
+            if (previousIndexes[i] != -1)
+                kept[counts[previousRanks[previousIndexes[i]]]++] = i;
+        }
+
+        // Order the other files by ranking their names
+        int nbChanged = nbFiles - nbKept;
+        int[] changed = new int[nbChanged];
+        String[] changedNames = new String[nbChanged];
+        for (int i = 0, j = 0; i < nbFiles; i++) {
+            if (previousIndexes[i] == -1) {
+                changed[j] = i;
+                changedNames[j++] = getName(i);
+            }
+        }
+        FileComparator fileComparator = new FileComparator(FileComparator.CRITERION.NAME, true, false, AbstractFile::getName, locale, mode);
+        int[] changedRanks = fileComparator.rankFilenames(changedNames);
+        int[] positions = new int[nbChanged];
+        for (int j = 0; j < nbChanged; j++)
+            positions[j] = j;
+        IndexSort.sort(positions, (j1, j2) -> Integer.compare(changedRanks[j1], changedRanks[j2]));
+        int[] changedOrder = new int[nbChanged];
+        for (int j = 0; j < nbChanged; j++)
+            changedOrder[j] = changed[positions[j]];
+
+        IndexSort.IndexComparator nameComparator = (i1, i2) -> fileComparator.compareFilenames(getName(i1), getName(i2));
+        int[] order = merge(kept, changedOrder, nameComparator);
+
+        int[] ranks = new int[nbFiles];
+        for (int i = 1; i < nbFiles; i++) {
+            int i1 = order[i - 1];
+            int i2 = order[i];
+            boolean equal = previousIndexes[i1] != -1 && previousIndexes[i2] != -1
+                    ? previousRanks[previousIndexes[i1]] == previousRanks[previousIndexes[i2]]
+                    : nameComparator.compare(i1, i2) == 0;
+            ranks[i2] = ranks[i1] + (equal ? 0 : 1);
+        }
+
+        synchronized (this) {
+            nameRanks = ranks;
+            nameRanksLocale = locale;
+            nameRanksMode = mode;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.ui.main.table;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.util.FileSet;
+
+/**
+ * A {@link FileSet} of the files of a {@link FileSelection}, which is not filled when it is created. The size of the
+ * set, its iteration, the sequential access to its files by index and their replacement, as done by the jobs, are
+ * served by the selection. The set is filled the first time it is modified or accessed in another way, by the thread
+ * that does so.
+ */
+class SelectionFileSet extends FileSet {
+
+    /** The selection, <code>null</code> once this set has been filled */
+    private FileSelection selection;
+
+    /** Files that replaced the ones of the selection, by index */
+    private final Map<Integer, AbstractFile> replacedFiles = new HashMap<>();
+
+    /** Index of the file that was accessed last, -1 if none */
+    private int cursorIndex = -1;
+    /** Row of the file that was accessed last, -1 if none */
+    private int cursorRow = -1;
+
+    SelectionFileSet(FileSelection selection) {
+        super(selection.getBaseFolder());
+        this.selection = selection;
+    }
+
+    /**
+     * Fills this set with the files of the selection, if it hasn't been filled yet.
+     */
+    private synchronized void fill() {
+        if (selection != null) {
+            FileSelection selection = this.selection;
+            this.selection = null;
+            super.ensureCapacity(selection.size());
+            selection.stream().forEach(super::addElement);
+            replacedFiles.forEach((index, file) -> super.setElementAt(file, index));
+            replacedFiles.clear();
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return selection != null ? selection.size() : super.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return selection != null ? selection.isEmpty() : super.isEmpty();
+    }
+
+    @Override
+    public synchronized AbstractFile elementAt(int index) {
+        if (selection == null)
+            return super.elementAt(index);
+
+        if (index < 0 || index >= selection.size())
+            throw new ArrayIndexOutOfBoundsException(index);
+        // Files are looked up from the last one that was accessed, so that sequential accesses don't scan the rows again
+        if (index < cursorIndex) {
+            cursorIndex = -1;
+            cursorRow = -1;
+        }
+        AbstractFile file = replacedFiles.get(index);
+        if (file != null)
+            return file;
+
+        while (cursorIndex < index) {
+            cursorRow = selection.nextMarkedRow(cursorRow + 1);
+            cursorIndex++;
+        }
+        return selection.getFileAtRow(cursorRow);
+    }
+
+    @Override
+    public synchronized void setElementAt(AbstractFile obj, int index) {
+        if (selection == null) {
+            super.setElementAt(obj, index);
+            return;
+        }
+
+        if (index < 0 || index >= selection.size())
+            throw new ArrayIndexOutOfBoundsException(index);
+        replacedFiles.put(index, obj);
+    }
+
+    @Override
+    public AbstractFile get(int index) {
+        return elementAt(index);
+    }
+
+    @Override
+    public AbstractFile firstElement() {
+        return elementAt(0);
+    }
+
+    @Override
+    public synchronized Iterator<AbstractFile> iterator() {
+        if (!replacedFiles.isEmpty())
+            fill();
+        return selection != null ? selection.iterator() : super.iterator();
+    }
+
+    @Override
+    public synchronized Stream<AbstractFile> stream() {
+        if (!replacedFiles.isEmpty())
+            fill();
+        return selection != null ? selection.stream() : super.stream();
+    }
+
+    @Override
+    public void forEach(Consumer<? super AbstractFile> action) {
+        stream().forEach(action);
+    }
+
+    // The other methods fill the set before they are called
+
+    @Override
+    public synchronized void copyInto(Object[] anArray) {
+        fill();
+        super.copyInto(anArray);
+    }
+
+    @Override
+    public synchronized void trimToSize() {
+        fill();
+        super.trimToSize();
+    }
+
+    @Override
+    public synchronized void ensureCapacity(int minCapacity) {
+        fill();
+        super.ensureCapacity(minCapacity);
+    }
+
+    @Override
+    public synchronized void setSize(int newSize) {
+        fill();
+        super.setSize(newSize);
+    }
+
+    @Override
+    public synchronized int capacity() {
+        fill();
+        return super.capacity();
+    }
+
+    @Override
+    public Enumeration<AbstractFile> elements() {
+        fill();
+        return super.elements();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        fill();
+        return super.contains(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        fill();
+        return super.indexOf(o);
+    }
+
+    @Override
+    public synchronized int indexOf(Object o, int index) {
+        fill();
+        return super.indexOf(o, index);
+    }
+
+    @Override
+    public synchronized int lastIndexOf(Object o) {
+        fill();
+        return super.lastIndexOf(o);
+    }
+
+    @Override
+    public synchronized int lastIndexOf(Object o, int index) {
+        fill();
+        return super.lastIndexOf(o, index);
+    }
+
+    @Override
+    public synchronized AbstractFile lastElement() {
+        fill();
+        return super.lastElement();
+    }
+
+    @Override
+    public synchronized void removeElementAt(int index) {
+        fill();
+        super.removeElementAt(index);
+    }
+
+    @Override
+    public synchronized void insertElementAt(AbstractFile obj, int index) {
+        fill();
+        super.insertElementAt(obj, index);
+    }
+
+    @Override
+    public synchronized void addElement(AbstractFile obj) {
+        fill();
+        super.addElement(obj);
+    }
+
+    @Override
+    public synchronized boolean removeElement(Object obj) {
+        fill();
+        return super.removeElement(obj);
+    }
+
+    @Override
+    public synchronized void removeAllElements() {
+        fill();
+        super.removeAllElements();
+    }
+
+    @Override
+    public synchronized Object clone() {
+        fill();
+        return super.clone();
+    }
+
+    @Override
+    public synchronized Object[] toArray() {
+        fill();
+        return super.toArray();
+    }
+
+    @Override
+    public synchronized <T> T[] toArray(T[] a) {
+        fill();
+        return super.toArray(a);
+    }
+
+    @Override
+    public <T> T[] toArray(IntFunction<T[]> generator) {
+        fill();
+        return super.toArray(generator);
+    }
+
+    @Override
+    public synchronized AbstractFile set(int index, AbstractFile element) {
+        fill();
+        return super.set(index, element);
+    }
+
+    @Override
+    public synchronized boolean add(AbstractFile e) {
+        fill();
+        return super.add(e);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        fill();
+        return super.remove(o);
+    }
+
+    @Override
+    public void add(int index, AbstractFile element) {
+        fill();
+        super.add(index, element);
+    }
+
+    @Override
+    public synchronized AbstractFile remove(int index) {
+        fill();
+        return super.remove(index);
+    }
+
+    @Override
+    public void clear() {
+        fill();
+        super.clear();
+    }
+
+    @Override
+    public synchronized boolean containsAll(Collection<?> c) {
+        fill();
+        return super.containsAll(c);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends AbstractFile> c) {
+        fill();
+        return super.addAll(c);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        fill();
+        return super.removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        fill();
+        return super.retainAll(c);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super AbstractFile> filter) {
+        fill();
+        return super.removeIf(filter);
+    }
+
+    @Override
+    public synchronized boolean addAll(int index, Collection<? extends AbstractFile> c) {
+        fill();
+        return super.addAll(index, c);
+    }
+
+    @Override
+    public synchronized boolean equals(Object o) {
+        fill();
+        return super.equals(o);
+    }
+
+    @Override
+    public synchronized int hashCode() {
+        fill();
+        return super.hashCode();
+    }
+
+    @Override
+    public synchronized String toString() {
+        fill();
+        return super.toString();
+    }
+
+    @Override
+    public synchronized List<AbstractFile> subList(int fromIndex, int toIndex) {
+        fill();
+        return super.subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public synchronized ListIterator<AbstractFile> listIterator(int index) {
+        fill();
+        return super.listIterator(index);
+    }
+
+    @Override
+    public synchronized ListIterator<AbstractFile> listIterator() {
+        fill();
+        return super.listIterator();
+    }
+
+    @Override
+    public synchronized void replaceAll(UnaryOperator<AbstractFile> operator) {
+        fill();
+        super.replaceAll(operator);
+    }
+
+    @Override
+    public synchronized void sort(Comparator<? super AbstractFile> c) {
+        fill();
+        super.sort(c);
+    }
+
+    @Override
+    public Spliterator<AbstractFile> spliterator() {
+        fill();
+        return super.spliterator();
+    }
+}
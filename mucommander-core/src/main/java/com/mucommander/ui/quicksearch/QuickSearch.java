@@ -28,6 +28,9 @@ import com.mucommander.conf.MuPreferences;
 
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.BitSet;
 
 import javax.swing.JComponent;
 
@@ -36,6 +39,10 @@ import javax.swing.JComponent;
  * the user's keyboard input.
  * This class is abstract, and should be inherited by subclasses that define 'quick search' 
  * functionality for specific components. 
+ *
+ * <p>Items are matched regardless of case and diacritics, by comparing their folded strings (see {@link #fold(String)}).
+ * The items that match the search string are remembered: when a character is typed, only them are tested against the
+ * new search string, and highlighting the matching items doesn't require to test them again.</p>
  * 
  * @author Arik Hadas
  */
@@ -58,6 +65,16 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable, Con
     /** Whether or not the search is active */
     private boolean active;
 
+    /** Whether items that contain the characters of the search string in order, but not contiguously, match */
+    private boolean fuzzyMatching;
+
+    /** Indexes of the items that match each prefix of the search string, by prefix length, in ascending order.
+     * An element is <code>null</code> if the matches of the prefix have not been computed. */
+    private int[][] candidates = new int[0][];
+
+    /** Items that match the search string, <code>null</code> until they are needed by {@link #matches(int)} */
+    private BitSet matchingItems;
+
     /** Icon that is used to indicate in the status bar that quick search has failed */
     protected final static String QUICK_SEARCH_KO_ICON = "quick_search_ko.png";
 
@@ -73,6 +90,7 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable, Con
     	component.addKeyListener(this);
     	// set the initial timeout according to the configuration
     	quickSearchTimeout = MuConfigurations.getPreferences().getVariable(MuPreference.QUICK_SEARCH_TIMEOUT, MuPreferences.DEFAULT_QUICK_SEARCH_TIMEOUT) * 1000;
+    	fuzzyMatching = MuConfigurations.getPreferences().getVariable(MuPreference.QUICK_SEARCH_FUZZY_MATCHING, MuPreferences.DEFAULT_QUICK_SEARCH_FUZZY_MATCHING);
     	// and update the timeout when the configuration changes
     	MuConfigurations.addPreferencesListener(this);
     }
@@ -86,6 +104,7 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable, Con
         if(!isActive()) {
             // Reset search string
             searchString = "";
+            itemsChanged();
             // Start the thread that's responsible for canceling the quick search on timeout, if timeout is set
             if (quickSearchTimeout > 0) {
                 timeoutThread = new Thread(this, "QuickSearch timeout thread");
@@ -105,6 +124,7 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable, Con
         if(isActive()) {
             timeoutThread = null;
             active = false;
+            itemsChanged();
             searchStopped();
         }
     }
@@ -127,7 +147,151 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable, Con
      * @return true if the current quick search string matches the given string
      */
     public boolean matches(String string) {
-        return isActive() && string.toLowerCase().indexOf(searchString.toLowerCase())!=-1;
+        return isActive() && matchesFolded(fold(string), fold(searchString));
+    }
+
+    /**
+     * Returns <code>true</code> if the current quick search string matches the item at the given index.
+     * Always returns <code>false</code> when the quick search is inactive. The result is computed once for all the
+     * items until the search string changes, so this method can be called each time an item is painted.
+     *
+     * @param index index of the item to test against the quick search string
+     * @return true if the current quick search string matches the item at the given index
+     */
+    public synchronized boolean matches(int index) {
+        if(!isActive())
+            return false;
+
+        if(matchingItems==null) {
+            matchingItems = new BitSet();
+            int[] items = getCandidates();
+            if(items==null)
+                matchingItems.set(0, getNumOfItems());
+            else
+                for(int item : items)
+                    matchingItems.set(item);
+        }
+
+        return matchingItems.get(index);
+    }
+
+    /**
+     * Notifies this quick search that the items have changed or have been reordered, so that the items which match
+     * the search string are searched again.
+     */
+    public synchronized void itemsChanged() {
+        candidates = new int[0][];
+        matchingItems = null;
+    }
+
+    /**
+     * Folds the case and removes the diacritics of the given string, so that it can be compared to other folded
+     * strings regardless of them. Characters are folded independently of each other, so the folded string of a prefix
+     * is a prefix of the folded string.
+     *
+     * @param string the string to fold
+     * @return the folded string, the given string if it doesn't need to be folded
+     */
+    public static String fold(String string) {
+        int length = string.length();
+        int i = 0;
+        // Nothing to fold in lower case ASCII strings
+        while(i<length) {
+            char c = string.charAt(i);
+            if(c>=128 || (c>='A' && c<='Z'))
+                break;
+            i++;
+        }
+        if(i==length)
+            return string;
+
+        // Decompose the characters to separate their diacritics, and drop the diacritics
+        String decomposed = Normalizer.normalize(string, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for(i=0; i<decomposed.length(); ) {
+            int c = decomposed.codePointAt(i);
+            i += Character.charCount(c);
+            int type = Character.getType(c);
+            if(type==Character.NON_SPACING_MARK || type==Character.ENCLOSING_MARK || type==Character.COMBINING_SPACING_MARK)
+                continue;
+            // Upper case first, so that the variants of a lower case letter are folded to the same letter
+            folded.appendCodePoint(Character.toLowerCase(Character.toUpperCase(c)));
+        }
+
+        return folded.toString();
+    }
+
+    /**
+     * Returns a score of how well the given folded string matches the given folded search string when fuzzy matching
+     * is enabled, that is when it contains the characters of the search string in order. Characters that follow the
+     * previous match or begin a word score higher.
+     *
+     * @param item the folded string to test
+     * @param search the folded search string
+     * @return the score of the match, higher for better matches, -1 if the string doesn't match
+     */
+    static int getFuzzyScore(String item, String search) {
+        int searchLength = search.length();
+        int itemLength = item.length();
+        int score = 0;
+        int j = 0;
+        int previousMatch = -2;
+        for(int i=0; i<itemLength && j<searchLength; i++) {
+            if(item.charAt(i)!=search.charAt(j))
+                continue;
+
+            score++;
+            if(i==previousMatch+1)
+                score += 2;
+            if(i==0 || !Character.isLetterOrDigit(item.charAt(i-1)))
+                score += 3;
+            previousMatch = i;
+            j++;
+        }
+
+        return j==searchLength ? score : -1;
+    }
+
+    /**
+     * Returns <code>true</code> if the given folded string matches the given folded search string.
+     */
+    private boolean matchesFolded(String item, String search) {
+        return fuzzyMatching ? getFuzzyScore(item, search)!=-1 : item.contains(search);
+    }
+
+    /**
+     * Returns the indexes of the items that match the search string, in ascending order, <code>null</code> if the
+     * search string is empty and all the items match. The items are searched among the ones that match the longest
+     * prefix of the search string whose matches are known, rather than among all of them.
+     */
+    private synchronized int[] getCandidates() {
+        int length = searchString.length();
+        if(length==0)
+            return null;
+
+        if(candidates.length<=length)
+            candidates = Arrays.copyOf(candidates, length+1);
+
+        if(candidates[length]==null) {
+            int prefixLength = length-1;
+            while(prefixLength>0 && candidates[prefixLength]==null)
+                prefixLength--;
+            int[] previous = prefixLength==0 ? null : candidates[prefixLength];
+
+            String foldedSearchString = fold(searchString);
+            int nbItems = getNumOfItems();
+            int nbPrevious = previous==null ? nbItems : previous.length;
+            int[] matching = new int[nbPrevious];
+            int nbMatching = 0;
+            for(int k=0; k<nbPrevious; k++) {
+                int index = previous==null ? k : previous[k];
+                if(index<nbItems && matchesFolded(getFoldedItemString(index), foldedSearchString))
+                    matching[nbMatching++] = index;
+            }
+            candidates[length] = Arrays.copyOf(matching, nbMatching);
+        }
+
+        return candidates[length];
     }
 
 
@@ -182,6 +346,12 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable, Con
         // the cancel() method will be called, and repainting twice would result in an
         // unpleasant graphical artifact.
         searchString = searchString.substring(0, searchString.length()-1);
+        // The matches of the removed character are not valid for the next one
+        synchronized(this) {
+            if(candidates.length>searchString.length()+1)
+                Arrays.fill(candidates, searchString.length()+1, candidates.length, null);
+            matchingItems = null;
+        }
         if(searchString.length() != 0)
             component.repaint();
 	}
@@ -191,6 +361,9 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable, Con
         // Since the search string has been updated, match information has changed as well
         // and we need to repaint the table.
         searchString += keyChar;
+        synchronized(this) {
+            matchingItems = null;
+        }
         component.repaint();
 	}
 	
@@ -219,33 +392,41 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable, Con
     }
 	
 	private int getBestMatch(int startRow, boolean descending, boolean findBestMatch) {
-    	String searchStringLC = searchString.toLowerCase();
-    	int searchStringLen = searchString.length();
+    	String foldedSearchString = fold(searchString);
         int startsWithCaseMatch = -1;
-        int startsWithNoCaseMatch = -1;
+        int startsWithFoldedMatch = -1;
         int containsCaseMatch = -1;
-        int containsNoCaseMatch = -1;
+        int containsFoldedMatch = -1;
+        int fuzzyMatch = -1;
+        int fuzzyMatchScore = -1;
         int nbRows = getNumOfItems();
 
-        // Iterate on rows and look the first strings to match one of the following tests,
+        // Only the items that match the search string are tested, starting from the given row
+        int[] items = getCandidates();
+        if(items==null)
+            return -1;
+        int position = Arrays.binarySearch(items, startRow);
+        if(position<0)
+            position = descending ? -position-1 : -position-2;
+
+        // Iterate on matching rows and look the first strings to match one of the following tests,
         // in the following order of importance :
         // - search string matches the beginning of the string with the same case
-        // - search string matches the beginning of the string with a different case
+        // - search string matches the beginning of the string with a different case or diacritics
         // - string contains search string with the same case
-        // - string contains search string with a different case
-        for(int i=startRow; descending?i<nbRows:i>=0; i=descending?i+1:i-1) {
+        // - string contains search string with a different case or diacritics
+        // - string contains the characters of the search string in order (fuzzy matching), the best scored one
+        for(int p=position; descending?p<items.length:p>=0; p=descending?p+1:p-1) {
             // if findBestMatch was not specified, stop to the first match
-            if(!findBestMatch && (startsWithCaseMatch!=-1 || startsWithNoCaseMatch!=-1 || containsCaseMatch!=-1 || containsNoCaseMatch!=-1))
+            if(!findBestMatch && (startsWithCaseMatch!=-1 || startsWithFoldedMatch!=-1 || containsCaseMatch!=-1 || containsFoldedMatch!=-1 || fuzzyMatch!=-1))
                 break;
 
-            String item = getItemString(i);
-            int itemLen = item.length();
-
-            // No need to compare strings if quick search string is longer than compared string,
-            // they won't match
-            if(itemLen<searchStringLen)
+            int i = items[p];
+            if(i>=nbRows)
                 continue;
 
+            String item = getItemString(i);
+
             // Compare quick search string against
             if (item.startsWith(searchString)) {
                 // We've got the best match we could ever have, let's get out of this loop!
@@ -254,49 +435,52 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable, Con
             }
 
             // If we already have a match on this test case, let's skip to the next string
-            if(startsWithNoCaseMatch!=-1)
+            if(startsWithFoldedMatch!=-1)
                 continue;
 
-            String itemLC = item.toLowerCase();
-            if(itemLC.startsWith(searchStringLC)) {
+            String foldedItem = getFoldedItemString(i);
+            if(foldedItem.startsWith(foldedSearchString)) {
                 // We've got a match, let's see if we can find a better match on the next string
-                startsWithNoCaseMatch = i;
-            }
-
-            // No need to check if the compared string contains search string if both size are equal,
-            // in the case startsWith test yields the same result
-            if(itemLen==searchStringLen)
+                startsWithFoldedMatch = i;
                 continue;
+            }
 
             // If we already have a match on this test case, let's skip to the next string
             if(containsCaseMatch!=-1)
                 continue;
 
-            if(item.indexOf(searchString)!=-1) {
+            if(item.contains(searchString)) {
                 // We've got a match, let's see if we can find a better match on the next string
                 containsCaseMatch = i;
                 continue;
             }
 
             // If we already have a match on this test case, let's skip to the next string
-            if(containsNoCaseMatch!=-1)
+            if(containsFoldedMatch!=-1)
                 continue;
 
-            if(itemLC.indexOf(searchStringLC)!=-1) {
+            if(foldedItem.contains(foldedSearchString)) {
                 // We've got a match, let's see if we can find a better match on the next string
-                containsNoCaseMatch = i;
+                containsFoldedMatch = i;
                 continue;
             }
+
+            // The item matches only if fuzzy matching is enabled, keep the one with the best score
+            int score = getFuzzyScore(foldedItem, foldedSearchString);
+            if(score>fuzzyMatchScore) {
+                fuzzyMatch = i;
+                fuzzyMatchScore = score;
+            }
         }
     	
         // Determines what the best match is, based on all the matches we found
         int bestMatch = startsWithCaseMatch!=-1?startsWithCaseMatch
-            :startsWithNoCaseMatch!=-1?startsWithNoCaseMatch
+            :startsWithFoldedMatch!=-1?startsWithFoldedMatch
             :containsCaseMatch!=-1?containsCaseMatch
-            :containsNoCaseMatch!=-1?containsNoCaseMatch
-            :-1;
+            :containsFoldedMatch!=-1?containsFoldedMatch
+            :fuzzyMatch;
         
-        LOGGER.trace("startsWithCaseMatch="+startsWithCaseMatch+" containsCaseMatch="+containsCaseMatch+" startsWithNoCaseMatch="+startsWithNoCaseMatch+" containsNoCaseMatch="+containsNoCaseMatch);
+        LOGGER.trace("startsWithCaseMatch="+startsWithCaseMatch+" containsCaseMatch="+containsCaseMatch+" startsWithFoldedMatch="+startsWithFoldedMatch+" containsFoldedMatch="+containsFoldedMatch+" fuzzyMatch="+fuzzyMatch);
         LOGGER.trace("bestMatch="+bestMatch);
         
         return bestMatch;
@@ -330,6 +514,17 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable, Con
 	 * @return item at index as String
 	 */
 	protected abstract String getItemString(int index);
+
+	/**
+	 * Returns the string of the item at a given index, folded by {@link #fold(String)}. This method can be
+	 * overridden to return folded strings that are computed once for all the searches.
+	 *
+	 * @param index - index of item
+	 * @return the folded string of the item at index
+	 */
+	protected String getFoldedItemString(int index) {
+		return fold(getItemString(index));
+	}
 	
 	/**
 	 * Hook that is called after a search was done for an empty string
@@ -395,5 +590,9 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable, Con
         if (var.equals(MuPreferences.QUICK_SEARCH_TIMEOUT)) {
             quickSearchTimeout = event.getIntegerValue() * 1000;
         }
+        else if (var.equals(MuPreferences.QUICK_SEARCH_FUZZY_MATCHING)) {
+            fuzzyMatching = event.getBooleanValue();
+            itemsChanged();
+        }
     }
 }
@@ -0,0 +1,292 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+import com.mucommander.conf.PlatformManager;
+import com.mucommander.job.impl.FileJob;
+import com.mucommander.search.index.FileIndexManager;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Runs tests on {@link FolderSizeCache}.
+ */
+public class FolderSizeCacheTest {
+
+    /** Max time to wait for the watch service to report a change, long enough for polling implementations */
+    private static final long WATCH_TIMEOUT = 30000;
+
+    private Path root;
+    private Path preferences;
+    private AbstractFile previousPreferences;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory(getClass().getSimpleName());
+        preferences = Files.createTempDirectory(getClass().getSimpleName());
+        previousPreferences = PlatformManager.getPreferencesFolder();
+        PlatformManager.setPreferencesFolder(preferences.toString());
+        FolderSizeCache.clear();
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        FolderSizeCache.clear();
+        MuConfigurations.getPreferences().setVariable(MuPreference.FOLDER_SIZE_CACHE_MAX_ENTRIES, MuPreferences.DEFAULT_FOLDER_SIZE_CACHE_MAX_ENTRIES);
+        PlatformManager.setPreferencesFolder(previousPreferences.getAbsolutePath());
+        delete(root);
+        delete(preferences);
+    }
+
+    private static void delete(Path folder) throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                Files.delete(path);
+        }
+    }
+
+    private AbstractFile folder(String relativePath) throws IOException {
+        Path path = Files.createDirectories(root.resolve(relativePath));
+        return FileFactory.getFile(path.toString());
+    }
+
+    private static void assertSize(AbstractFile folder, long size, boolean outdated) {
+        FolderSizeCache.FolderSize folderSize = FolderSizeCache.get(folder);
+        assertEquals(folderSize.getSize(), size);
+        assertEquals(folderSize.isOutdated(), outdated);
+    }
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        AbstractFile folder = folder("folder");
+        assertNull(FolderSizeCache.get(folder));
+
+        FolderSizeCache.put(folder, 100);
+        assertSize(folder, 100, false);
+        // Sizes that could not be calculated are ignored
+        FolderSizeCache.put(folder, -1);
+        assertSize(folder, 100, false);
+
+        // The size is outdated once the date of the folder changes
+        Files.setLastModifiedTime(root.resolve("folder"), FileTime.fromMillis(folder.getDate() - 10000));
+        assertSize(folder, 100, true);
+        FolderSizeCache.put(folder, 200);
+        assertSize(folder, 200, false);
+    }
+
+    /**
+     * Makes sure that the sizes that were not used for the longest time are forgotten first once the max number of
+     * sizes is reached.
+     */
+    @Test
+    public void testEviction() throws IOException {
+        MuConfigurations.getPreferences().setVariable(MuPreference.FOLDER_SIZE_CACHE_MAX_ENTRIES, 3);
+        AbstractFile a = folder("a");
+        AbstractFile b = folder("b");
+        AbstractFile c = folder("c");
+        AbstractFile d = folder("d");
+
+        FolderSizeCache.put(a, 1);
+        FolderSizeCache.put(b, 2);
+        FolderSizeCache.put(c, 3);
+        // a is now used more recently than b
+        FolderSizeCache.get(a);
+        FolderSizeCache.put(d, 4);
+
+        assertNull(FolderSizeCache.get(b));
+        assertSize(a, 1, false);
+        assertSize(c, 3, false);
+        assertSize(d, 4, false);
+
+        // Storing the size of a folder that is already known doesn't evict any other
+        FolderSizeCache.put(c, 5);
+        assertSize(a, 1, false);
+        assertSize(d, 4, false);
+    }
+
+    @Test
+    public void testInvalidate() throws IOException {
+        AbstractFile sub = folder("sub");
+        AbstractFile deep = folder("sub/deep");
+        AbstractFile sibling = folder("sibling");
+        AbstractFile rootFolder = FileFactory.getFile(root.toString());
+        FolderSizeCache.put(rootFolder, 60);
+        FolderSizeCache.put(sub, 30);
+        FolderSizeCache.put(deep, 10);
+        FolderSizeCache.put(sibling, 20);
+
+        // The ancestors of a changed folder are outdated, not its siblings
+        FolderSizeCache.invalidate(deep);
+        assertSize(deep, 10, true);
+        assertSize(sub, 30, true);
+        assertSize(rootFolder, 60, true);
+        assertSize(sibling, 20, false);
+
+        FolderSizeCache.invalidate(root.resolve("sibling").toString());
+        assertSize(sibling, 20, true);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        AbstractFile a = folder("a");
+        AbstractFile b = folder("b");
+        AbstractFile c = folder("c");
+        FolderSizeCache.put(a, 100);
+        FolderSizeCache.put(b, 200);
+        FolderSizeCache.invalidate(b);
+
+        FolderSizeCache.save();
+        File file = preferences.resolve("folder_sizes.dat").toFile();
+        assertTrue(file.exists());
+
+        // Sizes are saved only if they changed since they were loaded or saved
+        assertTrue(file.delete());
+        FolderSizeCache.save();
+        assertFalse(file.exists());
+        FolderSizeCache.put(c, 300);
+        FolderSizeCache.save();
+        assertTrue(file.exists());
+
+        FolderSizeCache.clear();
+        assertNull(FolderSizeCache.get(a));
+        // A size calculated before the sizes are loaded is more recent than the saved one
+        FolderSizeCache.put(c, 400);
+        FolderSizeCache.load();
+        assertSize(a, 100, false);
+        assertSize(b, 200, true);
+        assertSize(c, 400, false);
+    }
+
+    /**
+     * Makes sure that the sizes of the folders changed by a file job are outdated when the job ends.
+     */
+    @Test
+    public void testFileJob() throws IOException {
+        AbstractFile rootFolder = FileFactory.getFile(root.toString());
+        AbstractFile changed = folder("changed");
+        AbstractFile unchanged = folder("unchanged");
+        FolderSizeCache.put(rootFolder, 30);
+        FolderSizeCache.put(changed, 10);
+        FolderSizeCache.put(unchanged, 20);
+
+        new TestJob(List.of(changed, unchanged), changed).end();
+        assertSize(changed, 10, true);
+        assertSize(rootFolder, 30, true);
+        assertSize(unchanged, 20, false);
+    }
+
+    /**
+     * Makes sure that the sizes of the folders in which the watch service of the search indexes reports a change are
+     * outdated, even though their modification date is the same.
+     */
+    @Test
+    public void testWatchEvents() throws Exception {
+        Path file = root.resolve("sub/file");
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[10]);
+        AbstractFile rootFolder = FileFactory.getFile(root.toString());
+        AbstractFile sub = FileFactory.getFile(file.getParent().toString());
+
+        MuConfigurations.getPreferences().setVariable(MuPreference.SEARCH_INDEX_ROOTS, root.toString());
+        try {
+            FileIndexManager.start();
+            waitFor(() -> FileIndexManager.getFolderSize(rootFolder) >= 0);
+            FolderSizeCache.put(rootFolder, 1);
+            FolderSizeCache.put(sub, 1);
+            // The size of an indexed folder comes from the index
+            assertSize(rootFolder, 10, false);
+
+            // Modifying a file leaves the date of its folder unchanged
+            Files.write(file, new byte[20]);
+            waitFor(() -> FolderSizeCache.get(sub).isOutdated());
+            assertSize(sub, 1, true);
+            assertSize(rootFolder, 1, true);
+        } finally {
+            FileIndexManager.stop();
+            MuConfigurations.getPreferences().removeVariable(MuPreferences.SEARCH_INDEX_ROOTS);
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WATCH_TIMEOUT;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    /**
+     * A job that processes no file and changed one of the folders it works on.
+     */
+    private static class TestJob extends FileJob {
+        private final List<AbstractFile> folders;
+        private final AbstractFile changedFolder;
+
+        TestJob(List<AbstractFile> folders, AbstractFile changedFolder) {
+            super(null, new FileSet());
+            this.folders = folders;
+            this.changedFolder = changedFolder;
+        }
+
+        /**
+         * Does what {@link #run()} does with the folder sizes when the job has ended.
+         */
+        void end() {
+            invalidateFolderSizes();
+        }
+
+        @Override
+        protected List<AbstractFile> getScheduledFolders() {
+            return folders;
+        }
+
+        @Override
+        protected boolean hasFolderChangedImpl(AbstractFile folder) {
+            return folder.equals(changedFolder);
+        }
+
+        @Override
+        protected boolean processFile(AbstractFile file, Object recurseParams) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.file.ProxyFile;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.job.impl.FileJob;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Runs tests on {@link JobScheduler}, with the default limits of 1 job per local volume and 2 jobs per remote host.
+ */
+public class JobSchedulerTest {
+
+    private JobScheduler scheduler;
+    /** Jobs started by {@link #scheduler}, in order */
+    private List<FileJob> startedJobs;
+
+    private AbstractFile localFolder;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        scheduler = new JobScheduler();
+        startedJobs = new ArrayList<>();
+        localFolder = FileFactory.getTemporaryFolder();
+    }
+
+    /**
+     * Returns a folder on the given remote host, which the scheduler only uses the URL of.
+     */
+    private AbstractFile remoteFolder(String host) throws IOException {
+        FileURL url = FileURL.getFileURL("ftp://" + host + "/folder");
+        return new ProxyFile(localFolder) {
+            @Override
+            public FileURL getURL() {
+                return url;
+            }
+        };
+    }
+
+    private TestJob schedule(AbstractFile... folders) {
+        TestJob job = new TestJob(folders);
+        scheduler.schedule(job, job.folders, () -> startedJobs.add(job));
+        return job;
+    }
+
+    /**
+     * Returns the number of running and queued jobs of the given device.
+     */
+    private static String status(JobScheduler scheduler, String name) {
+        for (JobScheduler.QueueStatus status : scheduler.getQueueStatuses()) {
+            if (status.getName().equals(name))
+                return status.getRunningJobs() + " running, " + status.getQueuedJobs() + " queued";
+        }
+        return "idle";
+    }
+
+    @Test
+    public void testDeviceQueues() throws IOException {
+        AbstractFile host1 = remoteFolder("host1");
+        String volume = localFolder.getVolume().getAbsolutePath();
+
+        TestJob local1 = schedule(localFolder);
+        TestJob local2 = schedule(localFolder);
+        TestJob remote1 = schedule(host1);
+        // A job that involves a remote host is only scheduled on the host
+        TestJob upload = schedule(localFolder, host1);
+        TestJob remote2 = schedule(host1);
+
+        assertEquals(startedJobs, List.of(local1, remote1, upload));
+        assertEquals(scheduler.getQueuedJobs(), List.of(local2, remote2));
+        assertTrue(scheduler.isQueued(local2));
+        assertFalse(scheduler.isQueued(local1));
+        assertEquals(status(scheduler, volume), "1 running, 1 queued");
+        assertEquals(status(scheduler, "ftp://host1"), "2 running, 1 queued");
+
+        scheduler.jobEnded(local1);
+        assertEquals(startedJobs, List.of(local1, remote1, upload, local2));
+        scheduler.jobEnded(upload);
+        assertEquals(startedJobs, List.of(local1, remote1, upload, local2, remote2));
+        assertTrue(scheduler.getQueuedJobs().isEmpty());
+
+        // Ending a job twice or a job that wasn't scheduled does nothing
+        scheduler.jobEnded(local1);
+        scheduler.jobEnded(new TestJob());
+        assertEquals(status(scheduler, volume), "1 running, 0 queued");
+
+        scheduler.jobEnded(local2);
+        scheduler.jobEnded(remote1);
+        scheduler.jobEnded(remote2);
+        assertTrue(scheduler.getQueueStatuses().isEmpty());
+    }
+
+    /**
+     * Makes sure that a waiting job reserves its devices, so that the jobs queued after it don't start on them even if
+     * they have a free slot, unless they are moved before it or it is cancelled.
+     */
+    @Test
+    public void testReservation() throws IOException {
+        AbstractFile host1 = remoteFolder("host1");
+        AbstractFile host2 = remoteFolder("host2");
+
+        TestJob running1 = schedule(host1);
+        TestJob running2 = schedule(host1);
+        TestJob both = schedule(host1, host2);
+        TestJob host2Job = schedule(host2);
+        assertEquals(startedJobs, List.of(running1, running2));
+        assertEquals(scheduler.getQueuedJobs(), List.of(both, host2Job));
+
+        scheduler.moveJob(host2Job, -1);
+        assertEquals(startedJobs, List.of(running1, running2, host2Job));
+        assertEquals(scheduler.getQueuedJobs(), List.of(both));
+
+        assertTrue(scheduler.cancel(both));
+        assertFalse(scheduler.cancel(both));
+        assertTrue(scheduler.getQueuedJobs().isEmpty());
+
+        // The second host has a free slot, but it is reserved by a job queued before
+        both = schedule(host1, host2);
+        TestJob host2Job2 = schedule(host2);
+        assertEquals(scheduler.getQueuedJobs(), List.of(both, host2Job2));
+        assertEquals(status(scheduler, "ftp://host2"), "1 running, 2 queued");
+
+        scheduler.jobEnded(running1);
+        assertEquals(startedJobs, List.of(running1, running2, host2Job, both));
+        scheduler.jobEnded(host2Job);
+        assertEquals(startedJobs, List.of(running1, running2, host2Job, both, host2Job2));
+        assertEquals(status(scheduler, "ftp://host2"), "2 running, 0 queued");
+    }
+
+    /**
+     * Makes sure that a job that is interrupted after being taken off the queue, but before being launched, is not
+     * launched and releases its devices.
+     */
+    @Test
+    public void testInterruptWhileLaunched() throws IOException {
+        JobScheduler scheduler = JobScheduler.getInstance();
+        AbstractFile host3 = remoteFolder("interrupt-host3");
+        AbstractFile host4 = remoteFolder("interrupt-host4");
+
+        // Fill both hosts
+        TestJob blocker1 = new TestJob(host3, host4);
+        TestJob blocker2 = new TestJob(host3, host4);
+        scheduler.schedule(blocker1, blocker1.folders, () -> {});
+        scheduler.schedule(blocker2, blocker2.folders, () -> {});
+
+        // The launcher of the first job interrupts the second one, which is started by the same dispatch
+        TestJob interrupted = new TestJob(host4);
+        TestJob interrupter = new TestJob(host3);
+        scheduler.schedule(interrupter, interrupter.folders, interrupted::interrupt);
+        interrupted.start();
+        assertEquals(interrupted.getState(), FileJobState.QUEUED);
+        assertTrue(scheduler.isQueued(interrupted));
+
+        scheduler.jobEnded(blocker1);
+        assertEquals(interrupted.getState(), FileJobState.INTERRUPTED);
+        assertEquals(interrupted.getStartDate(), 0);
+        assertTrue(interrupted.getEndDate() > 0);
+        assertFalse(scheduler.isQueued(interrupted));
+
+        // The interrupted job released its slot
+        scheduler.jobEnded(interrupter);
+        assertEquals(status(scheduler, "ftp://interrupt-host3"), "1 running, 0 queued");
+        assertEquals(status(scheduler, "ftp://interrupt-host4"), "1 running, 0 queued");
+
+        scheduler.jobEnded(blocker2);
+        assertEquals(status(scheduler, "ftp://interrupt-host4"), "idle");
+    }
+
+    /**
+     * A job that works on the given folders and processes no file.
+     */
+    private static class TestJob extends FileJob {
+        private final List<AbstractFile> folders;
+
+        TestJob(AbstractFile... folders) {
+            super(null, new FileSet());
+            this.folders = List.of(folders);
+        }
+
+        @Override
+        protected List<AbstractFile> getScheduledFolders() {
+            return folders;
+        }
+
+        @Override
+        protected boolean hasFolderChangedImpl(AbstractFile folder) {
+            return false;
+        }
+
+        @Override
+        protected boolean processFile(AbstractFile file, Object recurseParams) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job.impl;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.ProxyFile;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.job.FileJobAction;
+import com.mucommander.translator.TranslationServiceProvider;
+import com.mucommander.translator.Translator;
+import com.mucommander.ui.dialog.DialogAction;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Runs tests on the batch deletion of {@link DeleteJob}, against a folder that deletes its children in batches and
+ * fails to delete the files whose name starts with <code>locked</code>.
+ */
+public class DeleteJobTest {
+
+    /** Number of plain files of the test folder, which takes 3 batches */
+    private static final int NB_FILES = 450;
+
+    private AbstractFile folder;
+
+    @BeforeClass
+    public static void setUpClass() {
+        new TranslationServiceProvider();
+    }
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        folder = FileFactory.getTemporaryFile(getClass().getSimpleName(), true);
+        folder.mkdir();
+        for (int i = 0; i < NB_FILES; i++)
+            folder.getChild("file" + i).mkfile();
+        AbstractFile subfolder = folder.getChild("sub");
+        subfolder.mkdir();
+        subfolder.getChild("file").mkfile();
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        if (folder.exists())
+            folder.deleteRecursively();
+    }
+
+    /**
+     * Makes sure that the files a batch failed to delete are reported one by one, deleted again if the user asks to
+     * retry, and that the files and folders left are processed as usual.
+     */
+    @Test
+    public void testPartialFailures() throws IOException {
+        AbstractFile locked1 = folder.getChild("locked1");
+        AbstractFile locked2 = folder.getChild("locked2");
+        locked1.mkfile();
+        locked2.mkfile();
+        BatchFolder batchFolder = new BatchFolder(folder, false);
+        TestDeleteJob job = new TestDeleteJob(FileJobAction.RETRY, FileJobAction.SKIP, FileJobAction.SKIP);
+
+        assertFalse(job.processFile(batchFolder, null));
+        assertEquals(batchFolder.batchSizes, List.of(200, 200, NB_FILES + 2 - 400));
+
+        // The first file reported was deleted on retry, the second one was skipped, and so was the folder
+        assertEquals(job.errors.size(), 3);
+        AbstractFile skipped = job.errors.get(1).equals(cannotDelete(locked1)) ? locked1 : locked2;
+        AbstractFile retried = skipped == locked1 ? locked2 : locked1;
+        assertEquals(job.errors, List.of(cannotDelete(retried), cannotDelete(skipped),
+                Translator.get("cannot_delete_folder", folder.getName())));
+        assertEquals(List.of(folder.ls()), List.of(skipped));
+    }
+
+    /**
+     * Makes sure that the files of a batch that failed as a whole are deleted one by one.
+     */
+    @Test
+    public void testFailedBatch() throws IOException {
+        BatchFolder batchFolder = new BatchFolder(folder, true);
+        TestDeleteJob job = new TestDeleteJob();
+
+        assertTrue(job.processFile(batchFolder, null));
+        assertEquals(batchFolder.batchSizes, List.of(200, 200, NB_FILES - 400));
+        assertTrue(job.errors.isEmpty());
+        assertFalse(folder.exists());
+    }
+
+    private static String cannotDelete(AbstractFile file) {
+        return Translator.get("cannot_delete_file", file.getName());
+    }
+
+    /**
+     * A folder that deletes its plain children in batches.
+     */
+    private static class BatchFolder extends ProxyFile {
+        private final boolean failBatches;
+        /** Number of files of each batch, in order */
+        private final List<Integer> batchSizes = new ArrayList<>();
+
+        BatchFolder(AbstractFile folder, boolean failBatches) {
+            super(folder);
+            this.failBatches = failBatches;
+        }
+
+        @Override
+        public Map<AbstractFile, IOException> deleteChildren(List<AbstractFile> children) throws IOException {
+            batchSizes.add(children.size());
+            if (failBatches)
+                throw new IOException("batch failed");
+
+            Map<AbstractFile, IOException> failures = new LinkedHashMap<>();
+            for (AbstractFile child : children) {
+                assertFalse(child.isDirectory());
+                if (child.getName().startsWith("locked"))
+                    failures.put(child, new IOException("locked"));
+                else
+                    child.delete();
+            }
+            return failures;
+        }
+    }
+
+    /**
+     * A deletion job that records the error messages and answers them with the given actions, then with
+     * {@link FileJobAction#SKIP}.
+     */
+    private static class TestDeleteJob extends DeleteJob {
+        private final Deque<DialogAction> actions;
+        private final List<String> errors = new ArrayList<>();
+
+        TestDeleteJob(DialogAction... actions) {
+            super(null, null, new FileSet(), false);
+            this.actions = new ArrayDeque<>(List.of(actions));
+        }
+
+        @Override
+        protected DialogAction showErrorDialog(String title, String message, List<DialogAction> actionChoices) {
+            errors.add(message);
+            return actions.isEmpty() ? FileJobAction.SKIP : actions.poll();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.search;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.ProxyFile;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * A test case for {@link ContentMatcher}.
+ */
+public class ContentMatcherTest {
+
+    /** Size of the regions local files are searched by */
+    private static final int REGION_SIZE = 256 * 1024;
+    /** Size of the test file: a full region followed by a shorter tail region */
+    private static final int FILE_SIZE = REGION_SIZE + 1000;
+
+    private AbstractFile file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = FileFactory.getTemporaryFile(getClass().getName(), true);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        file.delete();
+    }
+
+    private static int indexOf(ContentMatcher matcher, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        return matcher.indexOf(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * Tests {@link ContentMatcher#indexOf(ByteBuffer, int, int)} with a case-sensitive literal string.
+     */
+    @Test
+    public void testCaseSensitive() {
+        ContentMatcher matcher = new ContentMatcher("needle", true, false);
+        assertEquals(indexOf(matcher, "needle"), 0);
+        assertEquals(indexOf(matcher, "a needle in a haystack"), 2);
+        assertEquals(indexOf(matcher, "a NEEDLE in a haystack"), -1);
+        assertEquals(indexOf(matcher, "needl"), -1);
+        assertEquals(indexOf(matcher, "neeneedle"), 3);
+        assertEquals(indexOf(matcher, ""), -1);
+    }
+
+    /**
+     * Tests {@link ContentMatcher#indexOf(ByteBuffer, int, int)} with a case-insensitive literal string.
+     */
+    @Test
+    public void testCaseInsensitive() {
+        ContentMatcher matcher = new ContentMatcher("NeEdLe", false, false);
+        assertEquals(indexOf(matcher, "a needle in a haystack"), 2);
+        assertEquals(indexOf(matcher, "a NEEDLE in a haystack"), 2);
+        assertEquals(indexOf(matcher, "a needle NEEDLE"), 2);
+        assertEquals(indexOf(matcher, "a noodle in a haystack"), -1);
+    }
+
+    /**
+     * Tests that {@link ContentMatcher#indexOf(ByteBuffer, int, int)} only searches the given range.
+     */
+    @Test
+    public void testRange() {
+        ContentMatcher matcher = new ContentMatcher("abc", true, false);
+        byte[] bytes = "abc-abc-abc".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(matcher.indexOf(ByteBuffer.wrap(bytes), 1, bytes.length), 4);
+        assertEquals(matcher.indexOf(ByteBuffer.wrap(bytes), 1, 6), -1);
+        assertEquals(matcher.indexOf(ByteBuffer.wrap(bytes), 5, bytes.length), 8);
+    }
+
+    /**
+     * Creates the test file, filled with text and containing the given string at the given offset, if any.
+     */
+    private void createFile(String text, int offset) throws IOException {
+        byte[] content = new byte[FILE_SIZE];
+        byte[] filler = "lorem ipsum dolor sit amet\n".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < content.length; i++) {
+            content[i] = filler[i % filler.length];
+        }
+        if (text != null) {
+            byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(bytes, 0, content, offset, bytes.length);
+        }
+        try (OutputStream out = file.getOutputStream()) {
+            out.write(content);
+        }
+    }
+
+    /**
+     * Tests the given matcher against the test file, searched as a local file and as a stream.
+     */
+    private void assertMatches(ContentMatcher matcher, boolean expected) {
+        assertEquals(matcher.test(file), expected, "local file");
+        assertEquals(matcher.test(new StreamFile(file)), expected, "stream");
+    }
+
+    /**
+     * Tests a match that spans the end of the first region of a local file and the beginning of the next one.
+     */
+    @Test
+    public void testMatchAcrossRegions() throws IOException {
+        ContentMatcher matcher = new ContentMatcher("needle", true, false, REGION_SIZE);
+        createFile("needle", REGION_SIZE - 3);
+        assertMatches(matcher, true);
+        createFile(null, 0);
+        assertMatches(matcher, false);
+    }
+
+    /**
+     * Tests a match in the small region that ends a local file, which is read into the same buffer.
+     */
+    @Test
+    public void testMatchInTail() throws IOException {
+        ContentMatcher matcher = new ContentMatcher("NEEDLE", false, false, REGION_SIZE);
+        createFile("needle", FILE_SIZE - 6);
+        assertMatches(matcher, true);
+        createFile("needle", REGION_SIZE + 10);
+        assertMatches(matcher, true);
+    }
+
+    /**
+     * Tests a regular expression, which is matched line by line.
+     */
+    @Test
+    public void testPattern() throws IOException {
+        createFile("needle 42", FILE_SIZE - 20);
+        assertTrue(new ContentMatcher("needle \\d+", true, true).test(file));
+        assertFalse(new ContentMatcher("needle \\d{3}", true, true).test(file));
+    }
+
+    /**
+     * Tests that an empty text matches no file, literal or regular expression.
+     */
+    @Test
+    public void testEmptyText() throws IOException {
+        createFile(null, 0);
+        assertMatches(new ContentMatcher("", true, false), false);
+        assertMatches(new ContentMatcher("", false, false), false);
+        assertMatches(new ContentMatcher("", true, true), false);
+    }
+
+    /**
+     * A file which is only searched as a stream.
+     */
+    private static class StreamFile extends ProxyFile {
+
+        StreamFile(AbstractFile file) {
+            super(file);
+        }
+
+        @Override
+        public Object getUnderlyingFileObject() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.search.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Runs tests on {@link FileIndex}.
+ */
+public class FileIndexTest {
+
+    private Path root;
+
+    /**
+     * Creates the following tree, with the size of the files in brackets:
+     * <pre>
+     * a.txt (10)
+     * b.log (20)
+     * .hidden.txt (30)
+     * sub/a.txt (40)
+     * sub/deep/a.txt (50)
+     * sub2/c.txt (60)
+     * </pre>
+     */
+    @BeforeMethod
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory(getClass().getSimpleName());
+        createFile("a.txt", 10);
+        createFile("b.log", 20);
+        createFile(".hidden.txt", 30);
+        createFile("sub/a.txt", 40);
+        createFile("sub/deep/a.txt", 50);
+        createFile("sub2/c.txt", 60);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                Files.delete(path);
+        }
+    }
+
+    private void createFile(String relativePath, int size) throws IOException {
+        Path file = root.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[size]);
+    }
+
+    private String path(String relativePath) {
+        return root.resolve(relativePath).toString();
+    }
+
+    private Set<String> paths(String... relativePaths) {
+        Set<String> paths = new HashSet<>();
+        for (String relativePath : relativePaths)
+            paths.add(path(relativePath));
+        return paths;
+    }
+
+    private static IndexQuery query(String extension, int depth) {
+        return new IndexQuery(name -> name.endsWith(extension), null, true, false, false, false, false, depth);
+    }
+
+    private static Set<String> find(FileIndex index, String folderPath, IndexQuery query) {
+        List<String> results = index.find(folderPath, query);
+        assertEquals(new HashSet<>(results).size(), results.size());
+        return new HashSet<>(results);
+    }
+
+    @Test
+    public void testFind() throws IOException {
+        FileIndex index = FileIndex.build(root.toString(), 100);
+        assertTrue(index.isComplete());
+        // The root, 3 folders and 6 files
+        assertEquals(index.size(), 10);
+
+        assertEquals(find(index, root.toString(), query(".txt", 0)), paths("a.txt", "sub/a.txt", "sub/deep/a.txt", "sub2/c.txt"));
+        assertEquals(find(index, root.toString(), query(".txt", 1)), paths("a.txt"));
+        assertEquals(find(index, root.toString(), query(".txt", 2)), paths("a.txt", "sub/a.txt", "sub2/c.txt"));
+        assertEquals(find(index, path("sub"), query(".txt", 0)), paths("a.txt", "deep/a.txt").stream()
+                .map(p -> p.replace(root.toString(), path("sub"))).collect(Collectors.toSet()));
+
+        // Hidden files, folders and sizes
+        assertEquals(find(index, root.toString(), new IndexQuery(name -> true, null, false, false, false, true, false, 0)),
+                paths("a.txt", "b.log", ".hidden.txt"));
+        assertEquals(find(index, root.toString(), new IndexQuery(name -> true, null, true, false, true, false, false, 0)),
+                paths("a.txt", "b.log", "sub", "sub/a.txt", "sub/deep", "sub/deep/a.txt", "sub2", "sub2/c.txt"));
+        assertEquals(find(index, root.toString(), new IndexQuery(name -> true, size -> size >= 40, true, false, false, false, false, 0)),
+                paths("sub/a.txt", "sub/deep/a.txt", "sub2/c.txt"));
+
+        // Lookups of folders that are not part of the index
+        assertNull(index.find(path("missing"), query(".txt", 0)));
+        assertNull(index.find(path("sub/missing"), query(".txt", 0)));
+        assertNull(index.find(root.getParent().toString(), query(".txt", 0)));
+        assertTrue(index.covers(path("sub/deep")));
+        assertFalse(index.covers(root + "sibling"));
+
+        assertEquals(index.getFolderSize(root.toString()), 210);
+        assertEquals(index.getFolderSize(path("sub")), 90);
+        assertEquals(index.getFolderSize(path("missing")), -1);
+    }
+
+    /**
+     * Makes sure that refreshing a folder replaces its entries without altering the entries before and after it,
+     * and that its subfolders that were already indexed are copied rather than listed again.
+     */
+    @Test
+    public void testRefresh() throws IOException {
+        FileIndex index = FileIndex.build(root.toString(), 100);
+
+        createFile("sub/new.txt", 1);
+        createFile("sub/deep/new.txt", 1);
+        createFile("sub/newdir/x.txt", 1);
+        index.refresh(path("sub"));
+        assertEquals(index.size(), 13);
+        // sub/deep was copied as indexed, sub/newdir was traversed
+        assertEquals(find(index, root.toString(), query(".txt", 0)),
+                paths("a.txt", "sub/a.txt", "sub/new.txt", "sub/deep/a.txt", "sub/newdir/x.txt", "sub2/c.txt"));
+        assertEquals(index.getFolderSize(root.toString()), 212);
+
+        index.refresh(path("sub/deep"));
+        assertEquals(find(index, path("sub/deep"), query(".txt", 0)), paths("sub/deep/a.txt", "sub/deep/new.txt"));
+        assertEquals(index.getFolderSize(path("sub")), 93);
+
+        List<String> folders = new ArrayList<>();
+        index.forEachFolder((path, date) -> folders.add(path));
+        assertEquals(new HashSet<>(folders), new HashSet<>(List.of(root.toString(), path("sub"), path("sub/deep"), path("sub/newdir"), path("sub2"))));
+        assertEquals(folders.get(0), root.toString());
+
+        // A deleted folder is refreshed through its closest indexed ancestor
+        Files.delete(root.resolve("sub/deep/a.txt"));
+        Files.delete(root.resolve("sub/deep/new.txt"));
+        Files.delete(root.resolve("sub/deep"));
+        index.refresh(path("sub/deep"));
+        assertNull(index.find(path("sub/deep"), query(".txt", 0)));
+        assertEquals(find(index, root.toString(), query(".txt", 0)),
+                paths("a.txt", "sub/a.txt", "sub/new.txt", "sub/newdir/x.txt", "sub2/c.txt"));
+
+        // A folder that is not indexed yet is added by refreshing its parent
+        createFile("sub2/later/y.txt", 1);
+        index.refresh(path("sub2/later"));
+        assertEquals(find(index, path("sub2"), query(".txt", 0)), paths("sub2/c.txt", "sub2/later/y.txt"));
+        assertEquals(index.size(), 13);
+    }
+
+    @Test
+    public void testMaxEntries() throws IOException {
+        FileIndex index = FileIndex.build(root.toString(), 5);
+        assertFalse(index.isComplete());
+        assertTrue(index.size() <= 5);
+        assertEquals(index.getFolderSize(root.toString()), -1);
+
+        // Refreshing a folder doesn't make the index exceed its max number of entries
+        index = FileIndex.build(root.toString(), 10);
+        assertTrue(index.isComplete());
+        createFile("sub/new.txt", 1);
+        index.refresh(path("sub"));
+        assertFalse(index.isComplete());
+        assertTrue(index.size() <= 10);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        FileIndex index = FileIndex.build(root.toString(), 100);
+        File file = File.createTempFile(getClass().getSimpleName(), ".idx");
+        try {
+            assertFalse(index.save(file, 10));
+            assertTrue(index.save(file, 1024));
+
+            assertNull(FileIndex.load(file, path("sub"), 100));
+            FileIndex loaded = FileIndex.load(file, root.toString(), 100);
+            assertTrue(loaded.isComplete());
+            assertEquals(loaded.size(), index.size());
+            assertEquals(find(loaded, root.toString(), query(".txt", 0)), find(index, root.toString(), query(".txt", 0)));
+            assertEquals(loaded.getFolderSize(path("sub")), 90);
+
+            // An index loaded with a lower max number of entries is incomplete
+            assertFalse(FileIndex.load(file, root.toString(), 5).isComplete());
+        } finally {
+            file.delete();
+        }
+    }
+}
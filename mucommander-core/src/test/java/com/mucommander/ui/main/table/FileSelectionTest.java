@@ -0,0 +1,120 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.ui.main.table;
+
+import java.net.MalformedURLException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.CachedFile;
+import com.mucommander.commons.file.DummyFile;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.file.util.FileSet;
+
+/**
+ * Tests that {@link FileSelection} returns the marked files in the order of the rows, as a stream and as a
+ * {@link FileSet}.
+ */
+@Test
+public class FileSelectionTest {
+
+    private static AbstractFile createFile(String path) {
+        try {
+            return new DummyFile(FileURL.getFileURL(path));
+        }
+        catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void testSelection() {
+        AbstractFile folder = createFile("/folder");
+        AbstractFile[] files = new AbstractFile[5];
+        for (int i = 0; i < files.length; i++)
+            files[i] = createFile("/folder/file" + i);
+        AbstractFile[] cachedFiles = new AbstractFile[files.length];
+        for (int i = 0; i < files.length; i++)
+            cachedFiles[i] = new CachedFile(files[i], true);
+
+        // Rows in reverse order of the files, files 0, 2 and 3 marked
+        int[] order = {4, 3, 2, 1, 0};
+        BitSet marked = new BitSet();
+        marked.set(0);
+        marked.set(2);
+        marked.set(3);
+        FileSelection selection = new FileSelection(folder, cachedFiles, order, marked, 3);
+
+        assert selection.size() == 3;
+        assert selection.getBaseFolder() == folder;
+        List<AbstractFile> streamed = selection.stream().collect(Collectors.toList());
+        assert streamed.equals(List.of(files[3], files[2], files[0]));
+        // Files are returned as the files that the table cached
+        assert streamed.get(0) == files[3];
+
+        FileSet fileSet = selection.toFileSet();
+        assert fileSet.getBaseFolder() == folder;
+        assert fileSet.equals(streamed);
+
+        FileSelection empty = new FileSelection(folder, cachedFiles, order, new BitSet(), 0);
+        assert empty.isEmpty();
+        assert empty.toFileSet().isEmpty();
+    }
+
+    /**
+     * Tests that the file set is accessed by index and modified as a job does, and then as a vector.
+     */
+    @Test
+    public void testFileSet() {
+        AbstractFile folder = createFile("/folder");
+        AbstractFile[] files = new AbstractFile[6];
+        for (int i = 0; i < files.length; i++)
+            files[i] = createFile("/folder/file" + i);
+
+        // Rows in reverse order of the files, files 1, 2 and 4 marked
+        int[] order = {5, 4, 3, 2, 1, 0};
+        BitSet marked = new BitSet();
+        marked.set(1);
+        marked.set(2);
+        marked.set(4);
+        FileSet fileSet = new FileSelection(folder, files, order, marked, 3).toFileSet();
+
+        assert fileSet.size() == 3;
+        assert fileSet.elementAt(0) == files[4];
+        assert fileSet.elementAt(2) == files[1];
+        assert fileSet.elementAt(1) == files[2];
+
+        // Files are replaced as the job processes them
+        AbstractFile cachedFile = new CachedFile(files[2], true);
+        fileSet.setElementAt(cachedFile, 1);
+        assert fileSet.elementAt(1) == cachedFile;
+        assert fileSet.elementAt(2) == files[1];
+
+        // Other changes apply to the files that were replaced
+        fileSet.add(files[0]);
+        assert fileSet.equals(List.of(files[4], cachedFile, files[1], files[0]));
+        assert fileSet.indexOf(cachedFile) == 1;
+        fileSet.remove(0);
+        assert fileSet.size() == 3;
+        assert fileSet.elementAt(0) == cachedFile;
+    }
+}
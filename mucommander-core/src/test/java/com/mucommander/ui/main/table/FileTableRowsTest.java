@@ -0,0 +1,183 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.ui.main.table;
+
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.DummyFile;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.file.util.FileComparator;
+import com.mucommander.commons.util.IndexSort;
+
+/**
+ * Tests the incremental sort of {@link FileTableRows} against a complete sort, and the lookup of files by name.
+ */
+@Test
+public class FileTableRowsTest {
+
+    final static Locale LOCALE = Locale.ENGLISH;
+
+    /** URL shared by the test files, which are identified by their name */
+    private final static FileURL URL;
+
+    static {
+        try {
+            URL = FileURL.getFileURL("/");
+        }
+        catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A file whose name and attributes are given to the constructor.
+     */
+    private static class TestFile extends DummyFile {
+        private final String name;
+        private final boolean directory;
+        private final long size;
+        private final long date;
+
+        private TestFile(String name, boolean directory, long size, long date) {
+            super(URL);
+            this.name = name;
+            this.directory = directory;
+            this.size = size;
+            this.date = date;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public long getDate() {
+            return date;
+        }
+    }
+
+    private static TestFile createFile(Random random, int id) {
+        String[] extensions = {".txt", ".TXT", ".jpg", "", ".java"};
+        String name = (random.nextBoolean() ? "File" : "file") + random.nextInt(300) + "_" + id + extensions[random.nextInt(extensions.length)];
+        return new TestFile(name, random.nextInt(5) == 0, random.nextInt(50), random.nextInt(30));
+    }
+
+    static List<AbstractFile> createFiles(Random random, int nbFiles) {
+        List<AbstractFile> files = new ArrayList<>(nbFiles);
+        for (int i = 0; i < nbFiles; i++)
+            files.add(createFile(random, i));
+        return files;
+    }
+
+    /**
+     * Adds, removes and modifies the given number of files, at random positions. Added files are identified from
+     * <code>firstId</code>.
+     */
+    static void changeFiles(Random random, List<AbstractFile> files, int nbChanges, int firstId) {
+        for (int i = 0; i < nbChanges; i++) {
+            int index = random.nextInt(files.size());
+            switch (random.nextInt(3)) {
+            case 0:
+                files.remove(index);
+                break;
+            case 1:
+                files.add(index, createFile(random, firstId + i));
+                break;
+            default:
+                TestFile file = (TestFile)files.get(index);
+                files.set(index, new TestFile(file.name, file.directory, file.size + 1, file.date));
+            }
+        }
+    }
+
+    static FileTableRows createRows(List<AbstractFile> files) {
+        return new FileTableRows(files.toArray(new AbstractFile[0]), AbstractFile::getName, false, false);
+    }
+
+    static int[] sort(FileTableRows rows, FileComparator.CRITERION criterion, boolean ascending, FileComparator.Mode mode) {
+        int[] order = new int[rows.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        IndexSort.sort(order, rows.getComparator(criterion, ascending, true, LOCALE, mode));
+        return order;
+    }
+
+    /**
+     * Asserts that rows sorted incrementally are in the same order as rows sorted entirely.
+     */
+    @Test
+    public void testIncrementalSort() {
+        FileComparator.Mode mode = FileComparator.Mode.LEXICOGRAPHIC;
+        for (FileComparator.CRITERION criterion : FileComparator.CRITERION.values()) {
+            Random random = new Random(criterion.ordinal());
+            boolean ascending = random.nextBoolean();
+            List<AbstractFile> files = createFiles(random, 2000);
+            FileTableRows previousRows = createRows(files);
+            int[] previousOrder = sort(previousRows, criterion, ascending, mode);
+
+            changeFiles(random, files, 100, 2000);
+            FileTableRows rows = createRows(files);
+            int[] order = rows.sortIncrementally(previousRows, previousOrder, criterion, ascending, true, LOCALE, mode);
+            assert Arrays.equals(sort(createRows(files), criterion, ascending, mode), order);
+            // The ranks of names calculated from the previous ones give the same order as new ones
+            assert Arrays.equals(sort(createRows(files), FileComparator.CRITERION.NAME, ascending, mode),
+                    sort(rows, FileComparator.CRITERION.NAME, ascending, mode));
+
+            // Too many changes to sort incrementally
+            changeFiles(random, files, 1000, 3000);
+            assert createRows(files).sortIncrementally(rows, order, criterion, ascending, true, LOCALE, mode) == null;
+        }
+    }
+
+    /**
+     * Asserts that files are found by name, including files that share their name with other files.
+     */
+    @Test
+    public void testIndexOf() {
+        List<AbstractFile> files = createFiles(new Random(0), 2000);
+        files.add(new TestFile(files.get(0).getName(), true, 0, 0));
+        FileTableRows rows = createRows(files);
+
+        for (int i = 0; i < files.size(); i++) {
+            int fileIndex = i;
+            assert rows.indexOf(files.get(i).getName(), index -> index == fileIndex) == i;
+        }
+        assert rows.indexOf(files.get(0).getName(), rows::isDirectory) == files.size() - 1;
+        assert rows.indexOf("missing", index -> true) == -1;
+        assert rows.indexOf(files.get(1).getName(), index -> false) == -1;
+    }
+}
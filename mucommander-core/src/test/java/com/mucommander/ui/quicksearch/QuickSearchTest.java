@@ -0,0 +1,237 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.ui.quicksearch;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.swing.JPanel;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests the folding of strings, the fuzzy matching of {@link QuickSearch} and the narrowing of the matching items as
+ * the search string changes.
+ */
+@Test
+public class QuickSearchTest {
+
+    /**
+     * Asserts that case and diacritics are folded, and that the folded prefix of a string is a prefix of its
+     * folded string.
+     */
+    @Test
+    public void testFold() {
+        String lowerCase = "readme.txt";
+        assert QuickSearch.fold(lowerCase) == lowerCase;
+        assert QuickSearch.fold("ReadMe.TXT").equals("readme.txt");
+        assert QuickSearch.fold("Éléphant Çà").equals("elephant ca");
+        assert QuickSearch.fold("Straße").equals(QuickSearch.fold("STRAßE"));
+
+        String name = "Ångström Été.doc";
+        for (int i = 0; i <= name.length(); i++)
+            assert QuickSearch.fold(name).startsWith(QuickSearch.fold(name.substring(0, i)));
+    }
+
+    /**
+     * Asserts that the characters of the search string must be found in order, and that contiguous characters and
+     * characters at the start of words score higher.
+     */
+    @Test
+    public void testFuzzyScore() {
+        assert QuickSearch.getFuzzyScore("file_table_model.java", "ftm") != -1;
+        assert QuickSearch.getFuzzyScore("file_table_model.java", "mtf") == -1;
+        assert QuickSearch.getFuzzyScore("abc", "abcd") == -1;
+
+        assert QuickSearch.getFuzzyScore("table.java", "tab") > QuickSearch.getFuzzyScore("tXaXb.java", "tab");
+        assert QuickSearch.getFuzzyScore("file_table.java", "ft") > QuickSearch.getFuzzyScore("filter.java", "ft");
+    }
+
+    /**
+     * Asserts that the items matching a search string are searched among the ones that match its prefix, and that
+     * the matches of the prefixes are reused when a character is removed, but not when another one is then typed.
+     */
+    @Test
+    public void testCandidates() {
+        TestQuickSearch search = new TestQuickSearch("apple", "apricot", "banana", "grape", "grapefruit", "pineapple", "cherry");
+        search.start();
+        try {
+            search.type('a');
+            assert search.getMatches().equals(Arrays.asList(0, 1, 2, 3, 4, 5));
+            assert search.getTestedItems().equals(Arrays.asList(0, 1, 2, 3, 4, 5, 6));
+
+            search.type('p');
+            assert search.getMatches().equals(Arrays.asList(0, 1, 3, 4, 5));
+            assert search.getTestedItems().equals(Arrays.asList(0, 1, 2, 3, 4, 5));
+
+            search.type('r');
+            assert search.getMatches().equals(Arrays.asList(1));
+            assert search.getTestedItems().equals(Arrays.asList(0, 1, 3, 4, 5));
+
+            // The matches of "ap" are known already
+            search.backspace();
+            assert search.getMatches().equals(Arrays.asList(0, 1, 3, 4, 5));
+            assert search.getTestedItems().isEmpty();
+
+            // The matches of "apr" are not the ones of "ape"
+            search.type('e');
+            assert search.getMatches().equals(Arrays.asList(3, 4));
+            assert search.getTestedItems().equals(Arrays.asList(0, 1, 3, 4, 5));
+        } finally {
+            search.stop();
+        }
+    }
+
+    /**
+     * Asserts that the next and the previous matches are found from the given row, whether or not the row matches.
+     */
+    @Test
+    public void testFindMatch() {
+        TestQuickSearch search = new TestQuickSearch("a1", "b", "a2", "c", "a3");
+        search.start();
+        try {
+            search.type('a');
+
+            assert search.find(0, true) == 0;
+            assert search.find(1, true) == 2;
+            assert search.find(2, true) == 2;
+            assert search.find(3, true) == 4;
+            assert search.find(5, true) == -1;
+
+            assert search.find(4, false) == 4;
+            assert search.find(3, false) == 2;
+            assert search.find(1, false) == 0;
+            assert search.find(-1, false) == -1;
+        } finally {
+            search.stop();
+        }
+    }
+
+    /**
+     * Asserts that the matching items are searched again once the items have been reordered.
+     */
+    @Test
+    public void testItemsChanged() {
+        TestQuickSearch search = new TestQuickSearch("b", "a", "c");
+        search.start();
+        try {
+            search.type('a');
+            assert search.getMatches().equals(Arrays.asList(1));
+
+            Arrays.sort(search.items);
+            search.itemsChanged();
+            assert search.getMatches().equals(Arrays.asList(0));
+            assert search.find(1, true) == -1;
+            assert search.find(2, false) == 0;
+        } finally {
+            search.stop();
+        }
+    }
+
+    /**
+     * A quick search on a fixed array of strings, which records the items it tests and the match it finds.
+     */
+    private static class TestQuickSearch extends QuickSearch<String> {
+        private final String[] items;
+        /** Items whose folded string was requested since the last call to {@link #getTestedItems()} */
+        private final BitSet testedItems = new BitSet();
+        /** Row of the last match found, -1 if none was found */
+        private int match;
+
+        TestQuickSearch(String... items) {
+            super(new JPanel());
+            this.items = items;
+        }
+
+        void type(char c) {
+            appendCharacterToSearchString(c);
+            setLastSearchStringChange(System.currentTimeMillis());
+        }
+
+        void backspace() {
+            removeLastCharacterFromSearchString();
+            setLastSearchStringChange(System.currentTimeMillis());
+        }
+
+        /**
+         * Returns the first row that matches the search string from the given row, in the given direction.
+         */
+        int find(int startRow, boolean descending) {
+            findMatch(startRow, descending, false);
+            return match;
+        }
+
+        /**
+         * Returns the rows that match the search string, in ascending order.
+         */
+        List<Integer> getMatches() {
+            return IntStream.range(0, items.length).filter(this::matches).boxed().collect(Collectors.toList());
+        }
+
+        /**
+         * Returns the rows that were tested against the search string since the last call to this method.
+         */
+        List<Integer> getTestedItems() {
+            List<Integer> tested = testedItems.stream().boxed().collect(Collectors.toList());
+            testedItems.clear();
+            return tested;
+        }
+
+        @Override
+        protected String getFoldedItemString(int index) {
+            testedItems.set(index);
+            return super.getFoldedItemString(index);
+        }
+
+        @Override
+        protected int getNumOfItems() {
+            return items.length;
+        }
+
+        @Override
+        protected String getItemString(int index) {
+            return items[index];
+        }
+
+        @Override
+        protected void searchStarted() {
+        }
+
+        @Override
+        protected void searchStopped() {
+        }
+
+        @Override
+        protected void searchStringBecameEmpty(String searchString) {
+            match = -1;
+        }
+
+        @Override
+        protected void matchFound(int row, String searchString) {
+            match = row;
+        }
+
+        @Override
+        protected void matchNotFound(String searchString) {
+            match = -1;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive.bzip2;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tools.bzip2.CBZip2InputStream;
+import org.apache.tools.bzip2.CBZip2OutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mucommander.commons.io.TestData;
+
+/**
+ * Measures the time it takes to decompress 16 MB of Bzip2 data with {@link CBZip2InputStream}, when
+ * {@link #nbThreads} is 1, and with {@link ParallelBzip2InputStream} otherwise, as {@link Bzip2ArchiveFile} does.
+ * Run with <code>./gradlew :mucommander-format-bzip2:jmh</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class Bzip2InputStreamBenchmark {
+
+    /** Size of the decompressed data */
+    private final static int DATA_SIZE = 16 * 1024 * 1024;
+
+    /** Number of decompression threads, 0 for as many as there are processors */
+    @Param({"1", "0"})
+    public int nbThreads;
+
+    /** The compressed data, without the 'BZ' magic bytes */
+    private byte[] compressed;
+
+    @Setup
+    public void setUp() throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (CBZip2OutputStream out = new CBZip2OutputStream(bout, 9)) {
+            out.write(TestData.createWords(DATA_SIZE, 7));
+        }
+        compressed = bout.toByteArray();
+    }
+
+    /**
+     * Decompresses the data and returns its size.
+     */
+    @Benchmark
+    public long decompress() throws IOException {
+        int threads = nbThreads > 0 ? nbThreads : Runtime.getRuntime().availableProcessors();
+        InputStream in = new ByteArrayInputStream(compressed);
+        long size = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream bzin = threads > 1 ? new ParallelBzip2InputStream(in, threads) : new CBZip2InputStream(new BufferedInputStream(in), true)) {
+            int nbRead;
+            while ((nbRead = bzin.read(buffer, 0, buffer.length)) != -1)
+                size += nbRead;
+        }
+        return size;
+    }
+}
@@ -36,7 +36,8 @@ import java.io.InputStream;
  * Bzip2ArchiveFile provides read-only access to archives in the Bzip2 format.
  *
  * <p>The actual decompression work is performed by the <code>Apache Ant</code> library under the terms of the
- * Apache Software License.</p>
+ * Apache Software License. On multiprocessor machines, blocks are decompressed on several threads by a
+ * {@link ParallelBzip2InputStream}.</p>
  *
  * @see com.mucommander.commons.file.archive.bzip2.Bzip2FormatProvider
  * @author Maxence Bernard
@@ -92,10 +93,16 @@ public class Bzip2ArchiveFile extends AbstractROArchiveFile {
             in.read();
             in.read();
 
+            // Blocks are decompressed on several threads when several processors are available
+            int nbThreads = Runtime.getRuntime().availableProcessors();
+            if (nbThreads > 1)
+                return new ParallelBzip2InputStream(in, nbThreads);
+
             // Quoted from CBZip2InputStream's Javadoc:
             // "CBZip2InputStream reads bytes from the compressed source stream via the single byte {@link java.io.InputStream#read()
             // read()} method exclusively. Thus you should consider to use a buffered source stream."
-            return new CBZip2InputStream(new BufferedInputStream(in));
+            // Concatenated streams are decompressed as well, as written by bzip2 compressors working in parallel
+            return new CBZip2InputStream(new BufferedInputStream(in), true);
         }
         catch(Exception e) {
             // CBZip2InputStream is known to throw NullPointerException if file is not properly Bzip2-encoded
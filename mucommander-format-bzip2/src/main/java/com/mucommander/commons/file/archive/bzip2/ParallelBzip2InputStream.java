@@ -0,0 +1,561 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive.bzip2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.tools.bzip2.CBZip2InputStream;
+
+/**
+ * Bzip2 <code>InputStream</code> that decompresses data on several threads.
+ *
+ * <p>Bzip2 blocks are compressed independently of each other, but they are not byte-aligned and their compressed
+ * size is not stored anywhere. The compressed data is thus scanned for the 48-bit magic numbers that start blocks
+ * and end streams. The bits of each block are copied into a single-block Bzip2 stream of their own, which is
+ * decompressed by {@link CBZip2InputStream} on a different thread. The decompressed blocks are returned in their
+ * original order.</p>
+ *
+ * <p>A block magic number can also appear by chance inside compressed data. Since the CRC of each block is verified,
+ * such a false block boundary makes the decompression of the block fail, in which case the block is decompressed
+ * again together with the following one.</p>
+ *
+ * <p>Like {@link CBZip2InputStream}, this stream expects the 'BZ' magic bytes to have been read already, and
+ * decompresses concatenated Bzip2 streams.</p>
+ */
+public class ParallelBzip2InputStream extends InputStream {
+
+    /** Magic number that starts a block: the BCD representation of pi */
+    private final static long BLOCK_MAGIC = 0x314159265359L;
+
+    /** Magic number that ends a stream: the BCD representation of sqrt(pi) */
+    private final static long EOS_MAGIC = 0x177245385090L;
+
+    /** Mask of the bits of a magic number */
+    private final static long MAGIC_MASK = 0xffffffffffffL;
+
+    /** Size of a magic number, in bits */
+    private final static int MAGIC_BITS = 48;
+
+    /** Maximum size of a compressed block, larger blocks are considered corrupt */
+    private final static int MAX_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    /** Number of seconds after which an idle decompression thread ends */
+    private final static long THREAD_KEEP_ALIVE = 1;
+
+    /** Table used to compute the CRC of blocks, Bzip2 uses the big-endian variant of CRC32 */
+    private final static int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 24;
+            for (int j = 0; j < 8; j++)
+                crc = (crc & 0x80000000) != 0 ? (crc << 1) ^ 0x04c11db7 : crc << 1;
+            CRC_TABLE[i] = crc;
+        }
+    }
+
+    /** The underlying stream */
+    private final InputStream in;
+
+    /** Executes the decompression of the blocks */
+    private final ThreadPoolExecutor executor;
+
+    /** Maximum number of blocks that can be decompressed at once, bounds the amount of memory used */
+    private final int maxPendingSegments;
+
+    /** Blocks being decompressed, in the order they must be returned */
+    private final Deque<PendingSegment> pendingSegments = new ArrayDeque<>();
+
+    /** Buffer of compressed data read from the underlying stream */
+    private final byte[] readBuffer = new byte[64 * 1024];
+
+    /** Position of the next byte in {@link #readBuffer} */
+    private int readPos;
+
+    /** Number of bytes in {@link #readBuffer} */
+    private int readLength;
+
+    /** True once the end of the underlying stream has been reached */
+    private boolean inputEnded;
+
+    /** Last bits read from the underlying stream */
+    private long window;
+
+    /** Number of bits read from the underlying stream after the header */
+    private long bitPosition;
+
+    /** Compressed bytes of the current block */
+    private byte[] segmentBytes = new byte[1024 * 1024];
+
+    /** Number of bytes in {@link #segmentBytes} */
+    private int segmentLength;
+
+    /** Position of the first byte of {@link #segmentBytes} in the underlying stream */
+    private long segmentByteOffset;
+
+    /** Bit position of the magic number of the current block, -1 before the first block */
+    private long segmentStart = -1;
+
+    /** Bit position of the first end of stream magic number after the current block, -1 if none was found yet */
+    private long segmentEos = -1;
+
+    /** Decompressed data of the current block */
+    private byte[] decoded;
+
+    /** Position of the next byte in {@link #decoded} */
+    private int decodedPos;
+
+    /** True once this stream has been closed */
+    private boolean closed;
+
+
+    /**
+     * Creates a new <code>ParallelBzip2InputStream</code> that reads compressed data from the given stream, which must
+     * be positioned right after the 'BZ' magic bytes.
+     *
+     * @param in the underlying stream
+     * @param nbThreads the number of decompression threads
+     * @throws IOException if the stream is not in the Bzip2 format or an I/O error occurred
+     */
+    public ParallelBzip2InputStream(InputStream in, int nbThreads) throws IOException {
+        int magic = in.read();
+        int blockSize = in.read();
+        if (magic != 'h' || blockSize < '1' || blockSize > '9')
+            throw new IOException("Stream is not in the BZip2 format");
+
+        this.in = in;
+        this.maxPendingSegments = 2 * nbThreads;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(nbThreads, nbThreads, THREAD_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "Bzip2 decompression #" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // The threads of a stream that is not closed must not live on: they end when idle, and the executor is shut
+        // down once the last block has been submitted
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Reads the underlying stream until the end of the current block and returns it.
+     *
+     * @return the next block, <code>null</code> if there are no more blocks
+     * @throws IOException if an I/O error occurred or if a block is too large to be valid
+     */
+    private Segment nextSegment() throws IOException {
+        while (!inputEnded) {
+            if (readPos == readLength) {
+                readLength = in.read(readBuffer);
+                readPos = 0;
+                if (readLength <= 0) {
+                    inputEnded = true;
+                    readLength = 0;
+                    break;
+                }
+            }
+
+            int b = readBuffer[readPos++] & 0xff;
+            if (segmentLength == segmentBytes.length) {
+                if (segmentLength >= MAX_SEGMENT_SIZE)
+                    throw new IOException("Bad block size");
+                segmentBytes = Arrays.copyOf(segmentBytes, segmentLength * 2);
+            }
+            segmentBytes[segmentLength++] = (byte)b;
+
+            window = (window << 8) | b;
+            bitPosition += 8;
+
+            // Looks for a magic number ending at each bit of the byte, from the first one to the last one. The window
+            // holds enough bits for that.
+            for (int shift = 7; shift >= 0; shift--) {
+                long magicStart = bitPosition - shift - MAGIC_BITS;
+                if (magicStart < 0)
+                    continue;
+
+                long bits = (window >>> shift) & MAGIC_MASK;
+                if (bits == BLOCK_MAGIC) {
+                    Segment segment = segmentStart >= 0 ? createSegment(magicStart, false) : null;
+                    startSegment(magicStart);
+                    if (segment != null)
+                        return segment;
+                    break;
+                }
+                if (bits == EOS_MAGIC) {
+                    if (segmentStart >= 0 && segmentEos < 0)
+                        segmentEos = magicStart;
+                    break;
+                }
+            }
+
+            // Keeps only the bytes that may contain the first block's magic number
+            if (segmentStart < 0 && segmentLength > 16) {
+                System.arraycopy(segmentBytes, segmentLength - 8, segmentBytes, 0, 8);
+                segmentByteOffset += segmentLength - 8;
+                segmentLength = 8;
+            }
+        }
+
+        if (segmentStart < 0)
+            return null;
+
+        Segment segment = createSegment(bitPosition, true);
+        segmentStart = -1;
+        return segment;
+    }
+
+    /**
+     * Returns the current block, which ends at the given bit position.
+     */
+    private Segment createSegment(long end, boolean last) {
+        return new Segment(Arrays.copyOf(segmentBytes, segmentLength), (int)(segmentStart - segmentByteOffset * 8),
+                end - segmentStart, segmentEos < 0 ? -1 : segmentEos - segmentStart, last);
+    }
+
+    /**
+     * Starts a new block at the given bit position, keeping the bytes read so far that belong to it.
+     */
+    private void startSegment(long start) {
+        int startByte = (int)(start / 8 - segmentByteOffset);
+        System.arraycopy(segmentBytes, startByte, segmentBytes, 0, segmentLength - startByte);
+        segmentLength -= startByte;
+        segmentByteOffset += startByte;
+        segmentStart = start;
+        segmentEos = -1;
+    }
+
+    /**
+     * Reads and submits blocks for decompression, until enough of them are pending or there are no more blocks.
+     */
+    private void submitSegments() throws IOException {
+        while (pendingSegments.size() < maxPendingSegments) {
+            Segment segment = nextSegment();
+            if (segment == null) {
+                executor.shutdown();
+                break;
+            }
+
+            pendingSegments.addLast(new PendingSegment(segment, executor.submit(() -> decode(segment))));
+        }
+    }
+
+    /**
+     * Waits for the next block to be decompressed and makes it the current one.
+     *
+     * @return false if there are no more blocks
+     * @throws IOException if the block could not be decompressed
+     */
+    private boolean nextDecoded() throws IOException {
+        submitSegments();
+        if (pendingSegments.isEmpty())
+            return false;
+
+        PendingSegment pendingSegment = pendingSegments.removeFirst();
+        try {
+            decoded = get(pendingSegment.decoded);
+        }
+        catch (IOException e) {
+            // The block may have been cut short by a magic number found by chance in its data,
+            // in which case its remaining bits are in the next block
+            if (pendingSegment.segment.last)
+                throw e;
+
+            submitSegments();
+            if (pendingSegments.isEmpty())
+                throw e;
+
+            PendingSegment nextSegment = pendingSegments.removeFirst();
+            nextSegment.decoded.cancel(true);
+            try {
+                decoded = decode(pendingSegment.segment.append(nextSegment.segment));
+            }
+            catch (IOException e2) {
+                throw e;
+            }
+        }
+
+        decodedPos = 0;
+        return true;
+    }
+
+    /**
+     * Waits for the given decompression to complete and returns its result.
+     */
+    private static byte[] get(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException)e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Decompresses the given block by wrapping it into a Bzip2 stream of its own.
+     *
+     * @param segment the block to decompress
+     * @return the decompressed data
+     * @throws IOException if the block is corrupt
+     */
+    private static byte[] decode(Segment segment) throws IOException {
+        if (segment.eos < 0 && segment.last)
+            throw new IOException("Unexpected end of stream");
+
+        long bitLength = segment.eos < 0 ? segment.bitLength : segment.eos;
+        // Block magic number and CRC, at the very least
+        if (bitLength < MAGIC_BITS + 32)
+            throw new IOException("Bad block header");
+
+        int storedCRC = (int)segment.getBits(MAGIC_BITS, 32);
+
+        // The largest block size is used, as blocks of different streams may have different sizes
+        BitWriter writer = new BitWriter((int)(bitLength / 8) + 16);
+        writer.write('h', 8);
+        writer.write('9', 8);
+        writer.write(segment, 0, bitLength);
+        writer.write(EOS_MAGIC, MAGIC_BITS);
+        // The combined CRC of a single block stream is the CRC of the block
+        writer.write(storedCRC, 32);
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(4 * (int)(bitLength / 8));
+        int crc = 0xffffffff;
+        try (CBZip2InputStream bzin = new CBZip2InputStream(new ByteArrayInputStream(writer.toByteArray()), false)) {
+            byte[] buffer = new byte[64 * 1024];
+            int nbRead;
+            while ((nbRead = bzin.read(buffer, 0, buffer.length)) != -1) {
+                for (int i = 0; i < nbRead; i++)
+                    crc = (crc << 8) ^ CRC_TABLE[((crc >>> 24) ^ buffer[i]) & 0xff];
+                bout.write(buffer, 0, nbRead);
+            }
+        }
+        catch (RuntimeException e) {
+            // CBZip2InputStream is known to throw runtime exceptions on corrupt data
+            throw new IOException("Corrupt block", e);
+        }
+
+        // CBZip2InputStream does not fail on CRC errors
+        if (~crc != storedCRC)
+            throw new IOException("CRC error");
+
+        return bout.toByteArray();
+    }
+
+
+    ////////////////////////////////
+    // InputStream implementation //
+    ////////////////////////////////
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed)
+            throw new IOException("stream closed");
+
+        if (len == 0)
+            return 0;
+
+        while (decoded == null || decodedPos == decoded.length) {
+            if (!nextDecoded()) {
+                decoded = null;
+                return -1;
+            }
+        }
+
+        int n = Math.min(len, decoded.length - decodedPos);
+        System.arraycopy(decoded, decodedPos, b, off, n);
+        decodedPos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return decoded == null ? 0 : decoded.length - decodedPos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        try {
+            pendingSegments.forEach(pendingSegment -> pendingSegment.decoded.cancel(true));
+            pendingSegments.clear();
+            executor.shutdownNow();
+        }
+        finally {
+            decoded = null;
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the number of decompression threads of this stream that are alive, for testing purposes.
+     */
+    int getThreadCount() {
+        return executor.getPoolSize();
+    }
+
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * The compressed bits of a block, from its magic number to the magic number of the next block.
+     */
+    private static class Segment {
+
+        /** Bytes containing the block */
+        private final byte[] bytes;
+
+        /** Position of the first bit of the block in the first byte */
+        private final int startBit;
+
+        /** Number of bits of the block */
+        private final long bitLength;
+
+        /** Position of the end of stream magic number relative to the start of the block, -1 if there is none */
+        private final long eos;
+
+        /** True if no block follows this one */
+        private final boolean last;
+
+        private Segment(byte[] bytes, int startBit, long bitLength, long eos, boolean last) {
+            this.bytes = bytes;
+            this.startBit = startBit;
+            this.bitLength = bitLength;
+            this.eos = eos;
+            this.last = last;
+        }
+
+        /**
+         * Returns the given number of bits (up to 56) starting at the given position relative to the start of the
+         * block.
+         */
+        private long getBits(long position, int nbBits) {
+            long bitPos = startBit + position;
+            int index = (int)(bitPos >>> 3);
+            int skip = (int)(bitPos & 7);
+            long bits = 0;
+            int nbRead = 0;
+            while (nbRead < skip + nbBits) {
+                bits = (bits << 8) | (index < bytes.length ? bytes[index] & 0xff : 0);
+                index++;
+                nbRead += 8;
+            }
+            return (bits >>> (nbRead - skip - nbBits)) & ((1L << nbBits) - 1);
+        }
+
+        /**
+         * Returns a new block made of the bits of this block followed by the bits of the given one.
+         */
+        private Segment append(Segment next) {
+            BitWriter writer = new BitWriter((int)((bitLength + next.bitLength) / 8) + 2);
+            writer.write(this, 0, bitLength);
+            writer.write(next, 0, next.bitLength);
+            return new Segment(writer.toByteArray(), 0, bitLength + next.bitLength,
+                    next.eos < 0 ? -1 : bitLength + next.eos, next.last);
+        }
+    }
+
+    /**
+     * A block and its pending decompression.
+     */
+    private static class PendingSegment {
+        private final Segment segment;
+        private final Future<byte[]> decoded;
+
+        private PendingSegment(Segment segment, Future<byte[]> decoded) {
+            this.segment = segment;
+            this.decoded = decoded;
+        }
+    }
+
+    /**
+     * Writes bits into a byte array, most significant bit first.
+     */
+    private static class BitWriter {
+        private byte[] bytes;
+        private int length;
+        private long buffer;
+        private int bufferBits;
+
+        private BitWriter(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        /**
+         * Writes the given number of low-order bits (up to 56) of the given value.
+         */
+        private void write(long value, int nbBits) {
+            buffer = (buffer << nbBits) | (value & ((1L << nbBits) - 1));
+            bufferBits += nbBits;
+            while (bufferBits >= 8) {
+                bufferBits -= 8;
+                if (length == bytes.length)
+                    bytes = Arrays.copyOf(bytes, length * 2);
+                bytes[length++] = (byte)(buffer >>> bufferBits);
+            }
+            buffer &= (1L << bufferBits) - 1;
+        }
+
+        /**
+         * Writes the given number of bits of the given block, starting at the given position.
+         */
+        private void write(Segment segment, long position, long nbBits) {
+            while (nbBits >= 48) {
+                write(segment.getBits(position, 48), 48);
+                position += 48;
+                nbBits -= 48;
+            }
+            if (nbBits > 0)
+                write(segment.getBits(position, (int)nbBits), (int)nbBits);
+        }
+
+        private byte[] toByteArray() {
+            if (bufferBits > 0)
+                write(0, 8 - bufferBits);
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+}
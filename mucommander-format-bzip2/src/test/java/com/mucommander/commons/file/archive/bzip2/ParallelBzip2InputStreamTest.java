@@ -0,0 +1,176 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive.bzip2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.apache.tools.bzip2.CBZip2OutputStream;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.io.TestData;
+
+/**
+ * Tests {@link ParallelBzip2InputStream} against data compressed by {@link CBZip2OutputStream}.
+ */
+@Test
+public class ParallelBzip2InputStreamTest {
+
+    private final static int NB_THREADS = 4;
+
+    /**
+     * Compresses the given data into a Bzip2 stream, without the 'BZ' magic bytes if <code>magic</code> is false.
+     */
+    private static byte[] compress(byte[] data, int blockSize, boolean magic) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        if (magic) {
+            bout.write('B');
+            bout.write('Z');
+        }
+        try (CBZip2OutputStream out = new CBZip2OutputStream(bout, blockSize)) {
+            out.write(data);
+        }
+        return bout.toByteArray();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int nbRead;
+            while ((nbRead = in.read(buffer, 0, buffer.length)) != -1)
+                bout.write(buffer, 0, nbRead);
+            return bout.toByteArray();
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    private static byte[] decompress(byte[] compressed) throws IOException {
+        return readFully(new ParallelBzip2InputStream(new ByteArrayInputStream(compressed), NB_THREADS));
+    }
+
+    /**
+     * Asserts that a stream made of many blocks is decompressed in order.
+     */
+    @Test
+    public void testBlocks() throws IOException {
+        // 100k blocks
+        byte[] data = TestData.createWords(1024 * 1024 + 17, 1);
+        assert Arrays.equals(data, decompress(compress(data, 1, false)));
+
+        // A single block
+        data = TestData.createWords(1000, 2);
+        assert Arrays.equals(data, decompress(compress(data, 9, false)));
+
+        // No block at all
+        assert decompress(compress(new byte[0], 9, false)).length == 0;
+    }
+
+    /**
+     * Asserts that concatenated streams with different block sizes are decompressed as a whole.
+     */
+    @Test
+    public void testConcatenatedStreams() throws IOException {
+        byte[] data1 = TestData.createWords(250 * 1000, 3);
+        byte[] data2 = TestData.createWords(500 * 1000, 4);
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        bout.write(compress(data1, 1, false));
+        bout.write(compress(new byte[0], 5, true));
+        bout.write(compress(data2, 2, true));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(data1);
+        expected.write(data2);
+
+        assert Arrays.equals(expected.toByteArray(), decompress(bout.toByteArray()));
+    }
+
+    /**
+     * Asserts that corrupt and truncated streams are reported.
+     */
+    @Test
+    public void testCorruptStreams() throws IOException {
+        byte[] compressed = compress(TestData.createWords(300 * 1000, 5), 1, false);
+
+        try {
+            decompress(Arrays.copyOf(compressed, compressed.length - 20));
+            assert false;
+        }
+        catch (IOException e) {
+            // Expected
+        }
+
+        compressed[compressed.length / 2] ^= 0x55;
+        try {
+            decompress(compressed);
+            assert false;
+        }
+        catch (IOException e) {
+            // Expected
+        }
+
+        try {
+            decompress(new byte[] {'x', 'y', 'z'});
+            assert false;
+        }
+        catch (IOException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Asserts that the decompression threads of streams that are not closed end, whether they were read to the end
+     * or not.
+     */
+    @Test
+    public void testThreadsEnd() throws Exception {
+        byte[] data = TestData.createWords(1024 * 1024, 6);
+        byte[] compressed = compress(data, 1, false);
+
+        ParallelBzip2InputStream in = new ParallelBzip2InputStream(new ByteArrayInputStream(compressed), NB_THREADS);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int nbRead;
+        while ((nbRead = in.read(buffer, 0, buffer.length)) != -1)
+            bout.write(buffer, 0, nbRead);
+        assert Arrays.equals(data, bout.toByteArray());
+        waitForDecompressionThreads(in);
+
+        in = new ParallelBzip2InputStream(new ByteArrayInputStream(compressed), NB_THREADS);
+        assert in.read(buffer, 0, buffer.length) > 0;
+        waitForDecompressionThreads(in);
+    }
+
+    /**
+     * Waits for the decompression threads of the given stream to end, failing if they are still running after a few
+     * seconds.
+     */
+    private static void waitForDecompressionThreads(ParallelBzip2InputStream in) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (in.getThreadCount() > 0) {
+            assert System.currentTimeMillis() < deadline;
+            Thread.sleep(50);
+        }
+    }
+}
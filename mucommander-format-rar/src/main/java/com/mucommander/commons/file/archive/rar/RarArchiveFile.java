@@ -18,8 +18,12 @@
 
 package com.mucommander.commons.file.archive.rar;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 import com.github.junrar.exception.RarException;
@@ -28,6 +32,7 @@ import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.UnsupportedFileOperationException;
 import com.mucommander.commons.file.archive.AbstractROArchiveFile;
 import com.mucommander.commons.file.archive.ArchiveEntry;
+import com.mucommander.commons.file.archive.ArchiveEntryHandler;
 import com.mucommander.commons.file.archive.ArchiveEntryIterator;
 import com.mucommander.commons.file.archive.WrapperArchiveEntryIterator;
 
@@ -119,4 +124,62 @@ public class RarArchiveFile extends AbstractROArchiveFile {
             throw new IOException(e);
         }
     }
+
+    @Override
+    public void extractEntries(ArchiveEntryHandler handler) throws IOException, UnsupportedFileOperationException {
+        // The archive is read separately so that the handler can safely access this archive file
+        RarFile rarFile;
+        try {
+            rarFile = new RarFile(file, password);
+        } catch (RarException e) {
+            throw new IOException(e);
+        }
+
+        List<FileHeader> headers = new ArrayList<>(rarFile.getEntries());
+        ArchiveEntry[] acceptedEntries = new ArchiveEntry[headers.size()];
+        int lastAccepted = -1;
+        for (int i = 0; i < headers.size(); i++) {
+            ArchiveEntry entry = createArchiveEntry(headers.get(i));
+            if (handler.accept(entry)) {
+                acceptedEntries[i] = entry;
+                lastAccepted = i;
+            }
+        }
+
+        boolean solid = rarFile.isSolid();
+        try {
+            for (int i = 0; i <= lastAccepted; i++) {
+                FileHeader header = headers.get(i);
+                ArchiveEntry entry = acceptedEntries[i];
+                if (entry == null) {
+                    // The entries of a solid archive are compressed using the data of the previous ones
+                    if (solid && !header.isDirectory())
+                        rarFile.skipEntry(header);
+                    continue;
+                }
+
+                if (header.isDirectory()) {
+                    if (!handler.extract(entry, null))
+                        return;
+                    continue;
+                }
+
+                try (InputStream in = rarFile.getEntryInputStream(header)) {
+                    // Closing the pipe would stop junrar in the middle of the entry, so the handler can't close it
+                    InputStream entryIn = new FilterInputStream(in) {
+                        @Override
+                        public void close() {
+                        }
+                    };
+                    if (!handler.extract(entry, entryIn))
+                        return;
+                    // Data that the handler did not read is decompressed and discarded, so that the next entry is
+                    // not extracted while this one is still being decompressed
+                    in.transferTo(OutputStream.nullOutputStream());
+                }
+            }
+        } catch (RarException e) {
+            throw new IOException(e);
+        }
+    }
 }
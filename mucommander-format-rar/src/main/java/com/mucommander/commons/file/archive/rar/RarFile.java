@@ -18,6 +18,7 @@ package com.mucommander.commons.file.archive.rar;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collection;
 
 import com.github.junrar.Archive;
@@ -25,14 +26,17 @@ import com.github.junrar.exception.RarException;
 import com.github.junrar.rarfile.FileHeader;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.UnsupportedFileOperationException;
-import com.mucommander.commons.util.CircularByteBuffer;
+import com.mucommander.commons.io.ProducerInputStream;
 
 /**
  * RAR 4 and lower
  * @author Arik Hadas
  */
 public class RarFile {
-	
+
+    /** Size of the pipe that entries are extracted to */
+    private static final int PIPE_SIZE = 256 * 1024;
+
     /** Interface to junrar library */
     private Archive archive;
 
@@ -53,38 +57,37 @@ public class RarFile {
     	return archive.getFileHeaders();
     }
     
+    /**
+     * Returns <code>true</code> if this archive is solid, i.e. if its entries can only be decompressed in order.
+     */
+    public boolean isSolid() {
+        return archive.getMainHeader().isSolid();
+    }
+
     public InputStream getEntryInputStream(String path) throws IOException, RarException {
         final FileHeader header = archive.getFileHeaders().stream()
                 .filter(h -> h.getFileName().equals(path))
                 .findFirst()
                 .orElse(null);
 
+        return getEntryInputStream(header);
+    }
+
+    public InputStream getEntryInputStream(FileHeader header) throws IOException, RarException {
     	// If the file that is going to be extracted is divided and continued in another archive 
         // part - don't extract it and throw corresponding exception to raise an error. 
         if (header.isSplitAfter())
     		throw new RarException(new Throwable("Splitting is not implemented yet"));
     	
-        final CircularByteBuffer cbb = new CircularByteBuffer(CircularByteBuffer.INFINITE_SIZE);
-        
-        new Thread(
-    		    new Runnable(){
-    		      public void run(){
-    		    	try {
-						archive.extractFile(header, cbb.getOutputStream());
-					} catch (RarException e) {
-					    e.printStackTrace();
-					}
-    		    	finally {
-    		    		try {
-							cbb.getOutputStream().close();
-						} catch (IOException e1) {
-							e1.printStackTrace();
-						}
-    		    	}
-    		      }
-    		    }
-    		  ).start();
-        
-        return cbb.getInputStream();
+        // The entry is extracted as it is read, so that it does not need to fit in memory
+        return new ProducerInputStream(out -> archive.extractFile(header, out), PIPE_SIZE);
+    }
+
+    /**
+     * Decompresses the given entry and discards its contents. In a solid archive, this is needed to extract the
+     * entries that follow it.
+     */
+    public void skipEntry(FileHeader header) throws RarException {
+        archive.extractFile(header, OutputStream.nullOutputStream());
     }
 }
@@ -0,0 +1,188 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive.rar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.archive.ArchiveEntry;
+import com.mucommander.commons.file.archive.ArchiveEntryHandler;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Runs tests on the extraction of the entries of a {@link RarArchiveFile} in a single pass, with a handler that closes
+ * the streams it is given as <code>UnpackJob</code> does.
+ */
+public class RarArchiveFileTest {
+
+    /** Size of the files of the test archive, larger than the pipe the entries are extracted to */
+    private static final int FILE_SIZE = 300 * 1024;
+
+    private AbstractFile file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = FileFactory.getTemporaryFile(getClass().getSimpleName() + ".rar", true);
+        try (OutputStream out = file.getOutputStream()) {
+            out.write(createArchive("dir", "dir\\file1", "file2", "file3", "file4"));
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        file.delete();
+    }
+
+    /**
+     * Makes sure that all the accepted entries are extracted in order, including the ones that follow an entry that
+     * was not read entirely or not accepted, and that the extraction stops when the handler asks it to.
+     */
+    @Test
+    public void testExtractEntries() throws IOException {
+        RarArchiveFile archive = new RarArchiveFile(file);
+        List<String> extracted = new ArrayList<>();
+        archive.extractEntries(new ArchiveEntryHandler() {
+            @Override
+            public boolean accept(ArchiveEntry entry) {
+                return !entry.getPath().equals("file3");
+            }
+
+            @Override
+            public boolean extract(ArchiveEntry entry, InputStream in) throws IOException {
+                extracted.add(entry.getPath());
+                if (entry.isDirectory()) {
+                    assertNull(in);
+                    return true;
+                }
+
+                try (InputStream entryIn = in) {
+                    // Only the first bytes of the first file are read
+                    if (entry.getPath().equals("dir/file1"))
+                        assertEquals(entryIn.readNBytes(10), Arrays.copyOf(getContents("dir\\file1"), 10));
+                    else
+                        assertEquals(entryIn.readAllBytes(), getContents(entry.getPath()));
+                }
+                return true;
+            }
+        });
+        assertEquals(extracted, List.of("dir", "dir/file1", "file2", "file4"));
+
+        extracted.clear();
+        archive.extractEntries(new ArchiveEntryHandler() {
+            @Override
+            public boolean accept(ArchiveEntry entry) {
+                return true;
+            }
+
+            @Override
+            public boolean extract(ArchiveEntry entry, InputStream in) {
+                extracted.add(entry.getPath());
+                return !entry.getPath().equals("file2");
+            }
+        });
+        assertEquals(extracted, List.of("dir", "dir/file1", "file2"));
+    }
+
+    /**
+     * Returns the contents of the file of the test archive that has the given name.
+     */
+    private static byte[] getContents(String name) {
+        byte[] contents = new byte[FILE_SIZE];
+        byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < FILE_SIZE; i++)
+            contents[i] = (byte) (i % 251 == 0 ? nameBytes[(i / 251) % nameBytes.length] : i);
+        return contents;
+    }
+
+    /**
+     * Creates a solid RAR 4 archive whose files are stored, i.e. not compressed. A name that is followed by the name
+     * of one of its children is a directory, the other ones are files.
+     */
+    private static byte[] createArchive(String... names) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Marker block
+        out.write(new byte[] { 0x52, 0x61, 0x72, 0x21, 0x1a, 0x07, 0x00 });
+        // Archive header, with the solid flag
+        writeHeader(out, 0x73, 0x0008, new byte[6], null);
+
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i];
+            boolean directory = i + 1 < names.length && names[i + 1].startsWith(name + "\\");
+            byte[] contents = directory ? new byte[0] : getContents(name);
+            byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+            CRC32 crc = new CRC32();
+            crc.update(contents);
+
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            writeInt(header, contents.length, 4);   // packed size
+            writeInt(header, contents.length, 4);   // unpacked size
+            header.write(2);                        // host OS: Windows
+            writeInt(header, crc.getValue(), 4);
+            writeInt(header, 0x50210000, 4);        // DOS date: 2020-01-01 00:00:00
+            header.write(29);                       // version needed to extract
+            header.write(0x30);                     // method: store
+            writeInt(header, nameBytes.length, 2);
+            writeInt(header, directory ? 0x10 : 0x20, 4);
+            header.write(nameBytes);
+
+            // The files of a solid archive, except the first one, depend on the previous ones
+            int flags = 0x8000 | (directory ? 0x00e0 : 0) | (i > 0 ? 0x0010 : 0);
+            writeHeader(out, 0x74, flags, header.toByteArray(), contents);
+        }
+
+        // End of archive
+        writeHeader(out, 0x7b, 0x4000, new byte[0], null);
+        return out.toByteArray();
+    }
+
+    private static void writeHeader(ByteArrayOutputStream out, int type, int flags, byte[] fields, byte[] data) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        header.write(type);
+        writeInt(header, flags, 2);
+        writeInt(header, 7 + fields.length, 2);
+        header.write(fields);
+        byte[] headerBytes = header.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(headerBytes);
+        writeInt(out, crc.getValue(), 2);
+        out.write(headerBytes);
+        if (data != null)
+            out.write(data);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, long value, int nbBytes) {
+        for (int i = 0; i < nbBytes; i++)
+            out.write((int) (value >> (8 * i)));
+    }
+}
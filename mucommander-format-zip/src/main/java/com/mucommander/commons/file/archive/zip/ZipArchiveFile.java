@@ -21,16 +21,20 @@ package com.mucommander.commons.file.archive.zip;
 import com.mucommander.commons.file.*;
 import com.mucommander.commons.file.archive.AbstractRWArchiveFile;
 import com.mucommander.commons.file.archive.ArchiveEntry;
+import com.mucommander.commons.file.archive.ArchiveEntryHandler;
 import com.mucommander.commons.file.archive.ArchiveEntryIterator;
 import com.mucommander.commons.file.archive.zip.provider.ZipConstants;
 import com.mucommander.commons.file.archive.zip.provider.ZipEntry;
 import com.mucommander.commons.file.archive.zip.provider.ZipFile;
 import com.mucommander.commons.io.FilteredOutputStream;
+import com.mucommander.commons.io.ProducerInputStream;
 import com.mucommander.commons.io.StreamUtils;
 
 import java.io.*;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.zip.ZipInputStream;
 
 import org.slf4j.Logger;
@@ -61,6 +65,12 @@ public class ZipArchiveFile extends AbstractRWArchiveFile {
     /** The date at which the current ZipFile object was created */
     private long lastZipFileDate;
 
+    /** Number of entries inflated ahead by {@link #extractEntries(ArchiveEntryHandler)} */
+    private final static int READ_AHEAD = Math.min(8, Runtime.getRuntime().availableProcessors());
+
+    /** Size of the pipes that entries inflated ahead are written to */
+    private final static int PIPE_SIZE = 256 * 1024;
+
     /** Contents of an empty Zip file, 22 bytes long */
     private final static byte EMPTY_ZIP_BYTES[] = {
             0x50, 0x4B, 0x05, 0x06, 0x00, 0x00, 0x00, 0x00,
@@ -160,6 +170,22 @@ public class ZipArchiveFile extends AbstractRWArchiveFile {
         return "";
     }
 
+    /**
+     * Returns the {@link ZipEntry} designated by the given entry's entry object, which is either the ZipEntry itself
+     * or its index in the given zip file. Returns <code>null</code> if the entry doesn't exist in the zip file.
+     *
+     * @param zipFile the zip file the entry belongs to
+     * @param entry an entry of this archive
+     * @return the ZipEntry designated by the given entry, <code>null</code> if it doesn't exist in the zip file
+     */
+    private static ZipEntry getZipEntry(ZipFile zipFile, ArchiveEntry entry) {
+        Object entryObject = entry.getEntryObject();
+        if (entryObject instanceof Integer)
+            return zipFile.getEntry((Integer)entryObject);
+
+        return (ZipEntry)entryObject;
+    }
+
     /**
      * Adds the given {@link ArchiveEntry} to the entries tree and declares the Zip file and entries tree up-to-date.
      *
@@ -198,7 +224,14 @@ public class ZipArchiveFile extends AbstractRWArchiveFile {
                     if(!iterator.hasNext() || (entry = iterator.next())==null)
                         return null;
 
-                    return createArchiveEntry(entry);
+                    ArchiveEntry archiveEntry = createArchiveEntry(entry);
+
+                    // Retain the index of the entry rather than the ZipEntry, which the zip file creates on demand
+                    int index = zipFile.getEntryIndex(entry);
+                    if(index!=-1)
+                        archiveEntry.setEntryObject(index);
+
+                    return archiveEntry;
                 }
             };
         }
@@ -211,13 +244,21 @@ public class ZipArchiveFile extends AbstractRWArchiveFile {
     }
 
 
+    /**
+     * Entries of random access files are read independently of each other, this method is not synchronized so that
+     * several entries can be read concurrently.
+     */
     @Override
-    public synchronized InputStream getEntryInputStream(ArchiveEntry entry, ArchiveEntryIterator entryIterator) throws IOException, UnsupportedFileOperationException {
+    public InputStream getEntryInputStream(ArchiveEntry entry, ArchiveEntryIterator entryIterator) throws IOException, UnsupportedFileOperationException {
         // If the underlying AbstractFile has random read access, use our own ZipFile implementation to read the entry
         if (file.isFileOperationSupported(FileOperation.RANDOM_READ_FILE)) {
-            checkZipFile();
+            ZipFile zipFile;
+            synchronized(this) {
+                checkZipFile();
+                zipFile = this.zipFile;
+            }
 
-            ZipEntry zipEntry = (com.mucommander.commons.file.archive.zip.provider.ZipEntry)entry.getEntryObject();
+            ZipEntry zipEntry = getZipEntry(zipFile, entry);
             if(zipEntry==null)  // Should not normally happen
                 throw new IOException();
 
@@ -259,6 +300,66 @@ public class ZipArchiveFile extends AbstractRWArchiveFile {
         }
     }
 
+    /**
+     * Inflates the next accepted entries on other threads while the handler extracts the current one, when the
+     * underlying file has random read access and several processors are available. The handler still receives the
+     * entries one at a time, in the order of the archive.
+     */
+    @Override
+    public void extractEntries(ArchiveEntryHandler handler) throws IOException, UnsupportedFileOperationException {
+        extractEntries(handler, READ_AHEAD);
+    }
+
+    /**
+     * Extracts the entries, inflating up to <code>readAhead</code> entries at once.
+     */
+    void extractEntries(ArchiveEntryHandler handler, int readAhead) throws IOException, UnsupportedFileOperationException {
+        if (readAhead < 2 || !file.isFileOperationSupported(FileOperation.RANDOM_READ_FILE)) {
+            super.extractEntries(handler);
+            return;
+        }
+
+        List<ArchiveEntry> entries = new ArrayList<>();
+        try (ArchiveEntryIterator iterator = getEntryIterator()) {
+            ArchiveEntry entry;
+            while ((entry = iterator.nextEntry()) != null) {
+                if (handler.accept(entry))
+                    entries.add(entry);
+            }
+        }
+
+        int nbEntries = entries.size();
+        InputStream[] streams = new InputStream[nbEntries];
+        int nbStarted = 0;
+        try {
+            for (int i = 0; i < nbEntries; i++) {
+                // Keep the next entries being inflated
+                for (; nbStarted < nbEntries && nbStarted < i + readAhead; nbStarted++) {
+                    ArchiveEntry entry = entries.get(nbStarted);
+                    if (!entry.isDirectory())
+                        streams[nbStarted] = new ProducerInputStream(out -> {
+                            try (InputStream in = getEntryInputStream(entry, null)) {
+                                StreamUtils.copyStream(in, out);
+                            }
+                        }, PIPE_SIZE);
+                }
+
+                try (InputStream in = streams[i]) {
+                    streams[i] = null;
+                    if (!handler.extract(entries.get(i), in))
+                        break;
+                }
+            }
+        }
+        finally {
+            // Stop inflating the entries that have not been extracted
+            for (InputStream in : streams) {
+                if (in != null)
+                    in.close();
+            }
+        }
+    }
+
     //////////////////////////////////////////
     // AbstractRWArchiveFile implementation //
     //////////////////////////////////////////
@@ -299,16 +400,18 @@ public class ZipArchiveFile extends AbstractRWArchiveFile {
 
     @Override
     public synchronized void deleteEntry(ArchiveEntry entry) throws IOException, UnsupportedFileOperationException {
-        ZipEntry zipEntry = (com.mucommander.commons.file.archive.zip.provider.ZipEntry)entry.getEntryObject();
-
         // Most of the time, the ZipEntry will not be null. However, it can be null in some rare cases, when directory
         // entries have been created in the entries tree but don't exist in the Zip file.
         // That is the case when a file entry exists in the Zip file but has no directory entry for the parent.
+        ZipEntry zipEntry = null;
+        if(entry.getEntryObject()!=null) {
+            checkZipFile();
+            zipEntry = getZipEntry(zipFile, entry);
+        }
+
         if(zipEntry!=null) {
             // Entry exists physically in the zip file
 
-            checkZipFile();
-
             // Delete the entry from the zip file (physically)
             zipFile.deleteEntry(zipEntry);
 
@@ -327,16 +430,18 @@ public class ZipArchiveFile extends AbstractRWArchiveFile {
 
     @Override
     public void updateEntry(ArchiveEntry entry) throws IOException, UnsupportedFileOperationException {
-        ZipEntry zipEntry = (com.mucommander.commons.file.archive.zip.provider.ZipEntry)entry.getEntryObject();
-
         // Most of the time, the ZipEntry will not be null. However, it can be null in some rare cases, when directory
         // entries have been created in the entries tree but don't exist in the Zip file.
         // That is the case when a file entry exists in the Zip file but has no directory entry for the parent.
+        ZipEntry zipEntry = null;
+        if(entry.getEntryObject()!=null) {
+            checkZipFile();
+            zipEntry = getZipEntry(zipFile, entry);
+        }
+
         if(zipEntry!=null) {
             // Entry exists physically in the zip file
 
-            checkZipFile();
-
             zipEntry.setTime(entry.getDate());
             zipEntry.setUnixMode(entry.getPermissions().getIntValue());
 
@@ -0,0 +1,270 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive.zip.provider;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+/**
+ * ParallelDeflatedOutputStream compresses data using the DEFLATED compression method on several threads.
+ *
+ * <p>The data is split into blocks of {@link #BLOCK_SIZE} bytes that are deflated independently by the threads of an
+ * <code>ExecutorService</code>, and written to the underlying stream in their original order. Each block but the last
+ * one ends with a sync flush so that the blocks can simply be concatenated, and is primed with the last 32KB of the
+ * previous block to preserve the compression ratio. The result is a single raw DEFLATE stream that any inflater can
+ * decompress.</p>
+ */
+public class ParallelDeflatedOutputStream extends ZipEntryOutputStream {
+
+    /** Size of the blocks of uncompressed data that are deflated independently */
+    public final static int BLOCK_SIZE = 128 * 1024;
+
+    /** Size of the DEFLATE window, i.e. amount of previous data that a block can refer to */
+    private final static int DICTIONARY_SIZE = 32 * 1024;
+
+    /** Compression level of the Deflater instances */
+    private final int level;
+
+    /** Executes the compression of the blocks */
+    private final ExecutorService executor;
+
+    /** Maximum number of blocks that can be compressed at once, bounds the amount of memory used */
+    private final int maxPendingBlocks;
+
+    /** Blocks being compressed, in the order they must be written */
+    private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+
+    /** Block being filled, submitted once full */
+    private byte[] block = new byte[BLOCK_SIZE];
+
+    /** Number of bytes in the current block */
+    private int blockLength;
+
+    /** Previously submitted block, which primes the compression of the current one */
+    private byte[] previousBlock;
+
+    /** Number of bytes in the previous block */
+    private int previousBlockLength;
+
+    /** Number of uncompressed bytes written so far */
+    private long totalIn;
+
+    /** Number of compressed bytes written so far */
+    private long totalOut;
+
+    /** True once the last block has been written */
+    private boolean finished;
+
+
+    /**
+     * Creates a new <code>ParallelDeflatedOutputStream</code> that writes compressed data to the given
+     * <code>OutputStream</code>.
+     *
+     * @param out the OutputStream where the compressed data is sent to
+     * @param level the compression level, between {@link Deflater#DEFAULT_COMPRESSION} and {@link Deflater#BEST_COMPRESSION}
+     * @param executor executes the compression of the blocks
+     * @param parallelism number of blocks that can be compressed at once, usually the number of threads of the executor
+     */
+    public ParallelDeflatedOutputStream(OutputStream out, int level, ExecutorService executor, int parallelism) {
+        super(out, ZipConstants.DEFLATED);
+
+        this.level = level;
+        this.executor = executor;
+        this.maxPendingBlocks = 2 * Math.max(1, parallelism);
+    }
+
+    /**
+     * Deflates the given data into a new array.
+     *
+     * @param dictionary preceding data that the compressed data may refer to, <code>null</code> for none
+     * @param dictionaryLength number of bytes of the dictionary
+     * @param data the data to compress
+     * @param length number of bytes of data
+     * @param level the compression level
+     * @param last if true, the DEFLATE stream is finished, otherwise it is sync-flushed so that more blocks can follow
+     * @return the compressed data, exactly sized
+     */
+    public static byte[] deflate(byte[] dictionary, int dictionaryLength, byte[] data, int length, int level, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null && dictionaryLength > 0) {
+                int dictionaryOffset = Math.max(0, dictionaryLength - DICTIONARY_SIZE);
+                deflater.setDictionary(dictionary, dictionaryOffset, dictionaryLength - dictionaryOffset);
+            }
+            deflater.setInput(data, 0, length);
+
+            byte[] buf = new byte[length / 2 + 64];
+            int len = 0;
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    if (len == buf.length)
+                        buf = Arrays.copyOf(buf, buf.length * 2);
+                    len += deflater.deflate(buf, len, buf.length - len);
+                }
+            }
+            else {
+                // A sync flush only completes when the output buffer is not filled up
+                do {
+                    if (len == buf.length)
+                        buf = Arrays.copyOf(buf, buf.length * 2);
+                    len += deflater.deflate(buf, len, buf.length - len, Deflater.SYNC_FLUSH);
+                } while (len == buf.length);
+            }
+
+            return len == buf.length ? buf : Arrays.copyOf(buf, len);
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Submits the current block for compression and starts a new one.
+     *
+     * @param last true if this is the last block of the stream
+     * @throws IOException if an error occurred while writing the blocks that were waited for
+     */
+    private void submitBlock(boolean last) throws IOException {
+        // Wait for the oldest blocks to be written when enough of them are queued
+        while (pendingBlocks.size() >= maxPendingBlocks)
+            writeBlock(pendingBlocks.removeFirst());
+
+        byte[] dictionary = previousBlock;
+        int dictionaryLength = previousBlockLength;
+        byte[] data = block;
+        int length = blockLength;
+        pendingBlocks.addLast(executor.submit(() -> deflate(dictionary, dictionaryLength, data, length, level, last)));
+
+        previousBlock = block;
+        previousBlockLength = blockLength;
+        block = last ? null : new byte[BLOCK_SIZE];
+        blockLength = 0;
+    }
+
+    /**
+     * Waits for the given block to be compressed and writes it to the underlying stream.
+     *
+     * @param pendingBlock the block to write
+     * @throws IOException if an error occurred while compressing or writing the block
+     */
+    private void writeBlock(Future<byte[]> pendingBlock) throws IOException {
+        byte[] compressed;
+        try {
+            compressed = pendingBlock.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+
+        out.write(compressed);
+        totalOut += compressed.length;
+    }
+
+    /**
+     * Finishes writing the DEFLATED-compressed data.
+     *
+     * @throws IOException if an I/O occurred
+     */
+    public void finishDeflate() throws IOException {
+        if (finished)
+            return;
+
+        finished = true;
+        try {
+            submitBlock(true);
+            while (!pendingBlocks.isEmpty())
+                writeBlock(pendingBlocks.removeFirst());
+        }
+        finally {
+            pendingBlocks.forEach(pendingBlock -> pendingBlock.cancel(false));
+            pendingBlocks.clear();
+            previousBlock = null;
+        }
+    }
+
+
+    /////////////////////////////////////////
+    // ZipEntryOutputStream implementation //
+    /////////////////////////////////////////
+
+    @Override
+    public int getTotalIn() {
+        return (int)totalIn;
+    }
+
+    @Override
+    public int getTotalOut() {
+        return (int)totalOut;
+    }
+
+
+    /////////////////////////////////
+    // OutputStream implementation //
+    /////////////////////////////////
+
+    /**
+     * Writes the given bytes to the Zip entry.
+     *
+     * @param b the byte array to write
+     * @param offset the start position to write from
+     * @param length the number of bytes to write
+     * @throws java.io.IOException on error
+     */
+    @Override
+    public void write(byte[] b, int offset, int length) throws IOException {
+        if (finished)
+            throw new IOException("Stream finished");
+
+        crc.update(b, offset, length);
+        totalIn += length;
+
+        while (length > 0) {
+            int chunk = Math.min(length, BLOCK_SIZE - blockLength);
+            System.arraycopy(b, offset, block, blockLength, chunk);
+            blockLength += chunk;
+            offset += chunk;
+            length -= chunk;
+
+            if (blockLength == BLOCK_SIZE)
+                submitBlock(false);
+        }
+    }
+
+    /**
+     * Completes writing the entry <b>without</b> closing the underlying <code>OutputStream</code>.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        finishDeflate();
+    }
+}
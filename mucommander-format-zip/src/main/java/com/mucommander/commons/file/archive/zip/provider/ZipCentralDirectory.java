@@ -0,0 +1,366 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.archive.zip.provider;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * ZipCentralDirectory is a compact representation of the entries read from the central directory of a Zip file.
+ * The fields of the entries are stored in arrays of primitive values, and their filename, extra field and comment
+ * bytes in a single byte array. {@link ZipEntry} instances are created only when they are requested, and decode
+ * the filename and comment at that time.
+ *
+ * <p>Entries are designated by their index in the central directory. Entries that have been requested are weakly
+ * referenced, so that the same <code>ZipEntry</code> instance is returned as long as it is used.</p>
+ *
+ * @see ZipFile
+ */
+class ZipCentralDirectory {
+
+    /** Number of entries */
+    private int nbEntries;
+
+    /** Offset to the central file header of each entry */
+    private long[] centralHeaderOffsets;
+
+    /** Offset to the local file header of each entry */
+    private long[] headerOffsets;
+
+    /** Offset to the data of each entry, -1 if not calculated yet */
+    private long[] dataOffsets;
+
+    /** Uncompressed size of each entry */
+    private long[] sizes;
+
+    /** Compressed size of each entry */
+    private long[] compressedSizes;
+
+    /** CRC-32 of each entry, unsigned */
+    private int[] crcs;
+
+    /** DOS time of each entry, unsigned */
+    private int[] dosTimes;
+
+    /** External attributes of each entry, unsigned */
+    private int[] externalAttributes;
+
+    /** Internal attributes, platform, compression method, data descriptor flag and encoding of each entry */
+    private int[] attributes;
+
+    /** Offset of the filename bytes of each entry in {@link #bytes}, followed by its extra field and comment bytes */
+    private int[] bytesOffsets;
+
+    /** Length of the filename of each entry */
+    private char[] filenameLengths;
+
+    /** Length of the extra field of each entry */
+    private char[] extraLengths;
+
+    /** Length of the comment of each entry */
+    private char[] commentLengths;
+
+    /** Filename, extra field and comment bytes of all entries */
+    private byte[] bytes;
+
+    /** Number of bytes used in {@link #bytes} */
+    private int nbBytes;
+
+    /** Encodings used by the entries, designated by their index in this array */
+    private String[] encodings = new String[0];
+
+    /** Entries that have been requested */
+    private EntryReference[] requestedEntries;
+
+    /** Receives the references to the requested entries that have been garbage collected */
+    private final ReferenceQueue<ZipEntry> collectedEntries = new ReferenceQueue<>();
+
+    /**
+     * Open addressing hash table of the entries, designated by their index plus one, created the first time an entry
+     * is looked up by name
+     */
+    private int[] nameTable;
+
+    /** Hash code of the name of each entry, created along with {@link #nameTable} */
+    private int[] nameHashCodes;
+
+    /** Mask of the internal attributes in {@link #attributes} */
+    private final static int INTERNAL_ATTRIBUTES_MASK = 0xFFFF;
+    /** Shift of the platform in {@link #attributes} */
+    private final static int PLATFORM_SHIFT = 16;
+    /** Flag set in {@link #attributes} if the entry is DEFLATED, STORED otherwise */
+    private final static int DEFLATED_FLAG = 1 << 20;
+    /** Flag set in {@link #attributes} if the entry has a data descriptor */
+    private final static int DATA_DESCRIPTOR_FLAG = 1 << 21;
+    /** Shift of the encoding index in {@link #attributes} */
+    private final static int ENCODING_SHIFT = 24;
+
+
+    ZipCentralDirectory() {
+        allocate(1024, 64 * 1024);
+    }
+
+    /**
+     * Allocates the arrays to the given capacity, keeping the entries that have been added.
+     */
+    private void allocate(int capacity, int bytesCapacity) {
+        if (centralHeaderOffsets == null || centralHeaderOffsets.length != capacity) {
+            centralHeaderOffsets = centralHeaderOffsets == null ? new long[capacity] : Arrays.copyOf(centralHeaderOffsets, capacity);
+            headerOffsets = headerOffsets == null ? new long[capacity] : Arrays.copyOf(headerOffsets, capacity);
+            dataOffsets = dataOffsets == null ? new long[capacity] : Arrays.copyOf(dataOffsets, capacity);
+            sizes = sizes == null ? new long[capacity] : Arrays.copyOf(sizes, capacity);
+            compressedSizes = compressedSizes == null ? new long[capacity] : Arrays.copyOf(compressedSizes, capacity);
+            crcs = crcs == null ? new int[capacity] : Arrays.copyOf(crcs, capacity);
+            dosTimes = dosTimes == null ? new int[capacity] : Arrays.copyOf(dosTimes, capacity);
+            externalAttributes = externalAttributes == null ? new int[capacity] : Arrays.copyOf(externalAttributes, capacity);
+            attributes = attributes == null ? new int[capacity] : Arrays.copyOf(attributes, capacity);
+            bytesOffsets = bytesOffsets == null ? new int[capacity] : Arrays.copyOf(bytesOffsets, capacity);
+            filenameLengths = filenameLengths == null ? new char[capacity] : Arrays.copyOf(filenameLengths, capacity);
+            extraLengths = extraLengths == null ? new char[capacity] : Arrays.copyOf(extraLengths, capacity);
+            commentLengths = commentLengths == null ? new char[capacity] : Arrays.copyOf(commentLengths, capacity);
+            requestedEntries = requestedEntries == null ? new EntryReference[capacity] : Arrays.copyOf(requestedEntries, capacity);
+        }
+
+        if (bytes == null || bytes.length != bytesCapacity)
+            bytes = bytes == null ? new byte[bytesCapacity] : Arrays.copyOf(bytes, bytesCapacity);
+    }
+
+    /**
+     * Adds an entry parsed from the central directory. The sizes and local header offset of the given entry must
+     * have been resolved already, Zip64 values included.
+     *
+     * @param ze the parsed entry, which is not retained
+     * @param entryInfo the parsed entry's info, its encoding may be <code>null</code> if not known yet
+     * @param filename the filename bytes
+     * @param extra the central directory extra field bytes
+     * @param comment the comment bytes
+     */
+    void add(ZipEntry ze, ZipEntryInfo entryInfo, byte[] filename, byte[] extra, byte[] comment) {
+        int nbNewBytes = filename.length + extra.length + comment.length;
+        if (nbEntries == centralHeaderOffsets.length || nbBytes + nbNewBytes > bytes.length) {
+            // Note: 2GB of filename, extra field and comment bytes is more than the central directory can hold
+            allocate(nbEntries == centralHeaderOffsets.length ? Math.max(16, nbEntries * 2) : centralHeaderOffsets.length,
+                    (int)Math.min(Integer.MAX_VALUE - 8, Math.max(bytes.length * 2L, (long)nbBytes + nbNewBytes)));
+        }
+
+        int i = nbEntries++;
+        centralHeaderOffsets[i] = entryInfo.centralHeaderOffset;
+        headerOffsets[i] = entryInfo.headerOffset;
+        dataOffsets[i] = entryInfo.dataOffset;
+        sizes[i] = ze.getSize();
+        compressedSizes[i] = ze.getCompressedSize();
+        crcs[i] = (int)ze.getCrc();
+        dosTimes[i] = (int)ze.getDosTime();
+        externalAttributes[i] = (int)ze.getExternalAttributes();
+        attributes[i] = (ze.getInternalAttributes() & INTERNAL_ATTRIBUTES_MASK)
+                | (ze.getPlatform() << PLATFORM_SHIFT)
+                | (ze.getMethod() == ZipConstants.DEFLATED ? DEFLATED_FLAG : 0)
+                | (entryInfo.hasDataDescriptor ? DATA_DESCRIPTOR_FLAG : 0);
+        setEncoding(i, entryInfo.encoding);
+
+        bytesOffsets[i] = nbBytes;
+        filenameLengths[i] = (char)filename.length;
+        extraLengths[i] = (char)extra.length;
+        commentLengths[i] = (char)comment.length;
+        System.arraycopy(filename, 0, bytes, nbBytes, filename.length);
+        System.arraycopy(extra, 0, bytes, nbBytes + filename.length, extra.length);
+        System.arraycopy(comment, 0, bytes, nbBytes + filename.length + extra.length, comment.length);
+        nbBytes += nbNewBytes;
+    }
+
+    /**
+     * Releases the unused capacity of the arrays, once all entries have been added.
+     */
+    void trim() {
+        allocate(nbEntries, nbBytes);
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    int size() {
+        return nbEntries;
+    }
+
+    /**
+     * Returns the encoding of the given entry, <code>null</code> if it is not known.
+     */
+    String getEncoding(int i) {
+        int encodingIndex = attributes[i] >>> ENCODING_SHIFT;
+        return encodingIndex == 0 ? null : encodings[encodingIndex - 1];
+    }
+
+    /**
+     * Sets the encoding of the given entry, <code>null</code> if it is not known.
+     */
+    void setEncoding(int i, String encoding) {
+        int encodingIndex = 0;
+        if (encoding != null) {
+            while (encodingIndex < encodings.length && !encoding.equals(encodings[encodingIndex]))
+                encodingIndex++;
+
+            if (encodingIndex == encodings.length) {
+                encodings = Arrays.copyOf(encodings, encodings.length + 1);
+                encodings[encodingIndex] = encoding;
+            }
+            encodingIndex++;
+        }
+
+        attributes[i] = (attributes[i] & ~(0xFF << ENCODING_SHIFT)) | (encodingIndex << ENCODING_SHIFT);
+    }
+
+    /**
+     * Stores the data offset of the given entry, once it has been calculated.
+     */
+    void setDataOffset(int i, long dataOffset) {
+        dataOffsets[i] = dataOffset;
+    }
+
+    /**
+     * Returns the filename bytes of the given entry.
+     */
+    byte[] getFilename(int i) {
+        return Arrays.copyOfRange(bytes, bytesOffsets[i], bytesOffsets[i] + filenameLengths[i]);
+    }
+
+    /**
+     * Returns the comment bytes of the given entry.
+     */
+    byte[] getComment(int i) {
+        int offset = bytesOffsets[i] + filenameLengths[i] + extraLengths[i];
+        return Arrays.copyOfRange(bytes, offset, offset + commentLengths[i]);
+    }
+
+    /**
+     * Returns the entry with the given index. The same instance is returned as long as it is referenced elsewhere.
+     *
+     * @param i index of the entry, between 0 and {@link #size()} (excluded)
+     * @return the entry with the given index
+     */
+    synchronized ZipEntry getEntry(int i) {
+        // Release the references to the entries that are not used anymore
+        Reference<? extends ZipEntry> collected;
+        while ((collected = collectedEntries.poll()) != null) {
+            int index = ((EntryReference)collected).index;
+            if (requestedEntries[index] == collected)
+                requestedEntries[index] = null;
+        }
+
+        EntryReference ref = requestedEntries[i];
+        ZipEntry ze = ref == null ? null : ref.get();
+        if (ze == null) {
+            ze = createEntry(i);
+            requestedEntries[i] = new EntryReference(ze, i, collectedEntries);
+        }
+        return ze;
+    }
+
+    /**
+     * Returns the index of the entry with the given name, -1 if there is none.
+     *
+     * @param name the name of an entry
+     * @return the index of the entry with the given name, -1 if there is none
+     */
+    synchronized int indexOf(String name) {
+        if (nameTable == null) {
+            nameTable = new int[Integer.highestOneBit(Math.max(1, nbEntries)) * 4];
+            nameHashCodes = new int[nbEntries];
+            for (int i = 0; i < nbEntries; i++) {
+                nameHashCodes[i] = getName(i).hashCode();
+                int slot = nameHashCodes[i] & (nameTable.length - 1);
+                while (nameTable[slot] != 0)
+                    slot = (slot + 1) & (nameTable.length - 1);
+                nameTable[slot] = i + 1;
+            }
+        }
+
+        int hashCode = name.hashCode();
+        int i = -1;
+        for (int slot = hashCode & (nameTable.length - 1); nameTable[slot] != 0; slot = (slot + 1) & (nameTable.length - 1)) {
+            // The last entry with the given name is returned if there are several, as it overrides the previous ones
+            int candidate = nameTable[slot] - 1;
+            if (nameHashCodes[candidate] == hashCode && candidate > i && getName(candidate).equals(name))
+                i = candidate;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the name of the given entry, as returned by {@link ZipEntry#getName()}.
+     */
+    private String getName(int i) {
+        ZipEntry ze = new ZipEntry();
+        ze.setPlatform((attributes[i] >>> PLATFORM_SHIFT) & 0x0F);
+        ZipFile.setFilename(ze, ZipFile.getString(getFilename(i), getEncoding(i)));
+        return ze.getName();
+    }
+
+    /**
+     * Creates a new <code>ZipEntry</code> instance for the given entry.
+     */
+    private ZipEntry createEntry(int i) {
+        ZipEntry ze = new ZipEntry();
+        String encoding = getEncoding(i);
+        int attrs = attributes[i];
+
+        ze.setPlatform((attrs >>> PLATFORM_SHIFT) & 0x0F);
+        ze.setMethod((attrs & DEFLATED_FLAG) != 0 ? ZipConstants.DEFLATED : ZipConstants.STORED);
+        ze.setDosTime(dosTimes[i] & 0xFFFFFFFFL);
+        ze.setCrc(crcs[i] & 0xFFFFFFFFL);
+        ze.setInternalAttributes(attrs & INTERNAL_ATTRIBUTES_MASK);
+        ze.setExternalAttributes(externalAttributes[i] & 0xFFFFFFFFL);
+
+        ZipFile.setFilename(ze, ZipFile.getString(getFilename(i), encoding));
+        int offset = bytesOffsets[i] + filenameLengths[i];
+        ze.setCentralDirectoryExtra(Arrays.copyOfRange(bytes, offset, offset + extraLengths[i]));
+        ze.setComment(ZipFile.getString(getComment(i), encoding));
+
+        // The sizes are set after the extra field as they may come from the Zip64 extra field
+        ze.setSize(sizes[i]);
+        ze.setCompressedSize(compressedSizes[i]);
+
+        ZipEntryInfo entryInfo = new ZipEntryInfo();
+        entryInfo.index = i;
+        entryInfo.encoding = encoding;
+        entryInfo.hasDataDescriptor = (attrs & DATA_DESCRIPTOR_FLAG) != 0;
+        entryInfo.centralHeaderOffset = centralHeaderOffsets[i];
+        entryInfo.centralHeaderLen = 46 + filenameLengths[i] + extraLengths[i] + commentLengths[i];
+        entryInfo.headerOffset = headerOffsets[i];
+        entryInfo.dataOffset = dataOffsets[i];
+        ze.setEntryInfo(entryInfo);
+
+        return ze;
+    }
+
+
+    /**
+     * Weak reference to a requested entry, which remembers the index of the entry.
+     */
+    private static class EntryReference extends WeakReference<ZipEntry> {
+
+        private final int index;
+
+        EntryReference(ZipEntry ze, int index, ReferenceQueue<ZipEntry> queue) {
+            super(ze, queue);
+            this.index = index;
+        }
+    }
+}
@@ -26,6 +26,9 @@ package com.mucommander.commons.file.archive.zip.provider;
  */
 final class ZipEntryInfo {
 
+    /** Index of the entry in the central directory the Zip file was opened with, -1 for entries added afterwards */
+    int index = -1;
+
     /** Offset to the central file header */
     long centralHeaderOffset = -1;
 
@@ -43,10 +46,4 @@ final class ZipEntryInfo {
 
     /** The encoding used for filename and comment fields */
     String encoding;
-
-    /** The filename's bytes */
-    byte filename[];
-
-    /** The comment's bytes */
-    byte comment[];
 }
@@ -25,8 +25,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Vector;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
@@ -81,11 +85,12 @@ public class ZipFile implements ZipConstants {
     /** The currently opened RandomAccessInputStream to the zip file (may be null) */
     private RandomAccessOutputStream raos;
 
-    /** Contains ZipEntry instances corresponding to the archive's entries, in the order they were found in the archive. */
-    private Vector<ZipEntry> entries = new Vector<ZipEntry>();
-
-    /** Maps entry paths to corresponding ZipEntry instances */
-    private Hashtable<String, ZipEntry> nameMap = new Hashtable<String, ZipEntry>();
+    /**
+     * The entries of this zip file, either in the compact form of the central directory or loaded as ZipEntry
+     * instances. Both forms are published at once, so that entries can be read without locking while the zip file is
+     * modified.
+     */
+    private volatile Entries entries;
 
     /** Global zip file comment */
     private String comment;
@@ -229,7 +234,27 @@ public class ZipFile implements ZipConstants {
      * @return Returns all entries as an <code>Iterator</code> of ZipEntry instances.
      */
     public Iterator<ZipEntry> getEntries() {
-        return entries.iterator();
+        Entries entries = this.entries;
+        if (entries.list != null)
+            return entries.list.iterator();
+
+        final ZipCentralDirectory centralDirectory = entries.centralDirectory;
+        return new Iterator<ZipEntry>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < centralDirectory.size();
+            }
+
+            @Override
+            public ZipEntry next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                return centralDirectory.getEntry(index++);
+            }
+        };
     }
 
     /**
@@ -238,7 +263,8 @@ public class ZipFile implements ZipConstants {
      * @return the number of entries contained by this Zip file
      */
     public int getNbEntries() {
-        return entries.size();
+        Entries entries = this.entries;
+        return entries.list != null ? entries.list.size() : entries.centralDirectory.size();
     }
 
     /**
@@ -248,7 +274,67 @@ public class ZipFile implements ZipConstants {
      * @return the ZipEntry corresponding to the given name or <code>null</code> if not present.
      */
     public ZipEntry getEntry(String name) {
-        return nameMap.get(name);
+        Entries entries = this.entries;
+        if (entries.list != null)
+            return entries.nameMap.get(name);
+
+        int index = entries.centralDirectory.indexOf(name);
+        return index == -1 ? null : entries.centralDirectory.getEntry(index);
+    }
+
+    /**
+     * Returns the index of the given entry in the central directory this zip file was opened with, -1 if the entry
+     * was added afterwards. Unlike the entry itself, the index does not need to be retained: the entry can be retrieved
+     * from it with {@link #getEntry(int)}.
+     *
+     * @param ze an entry of this zip file
+     * @return the index of the given entry, -1 if it was added after this zip file was opened
+     */
+    public int getEntryIndex(ZipEntry ze) {
+        ZipEntryInfo entryInfo = ze.getEntryInfo();
+        return entryInfo == null ? -1 : entryInfo.index;
+    }
+
+    /**
+     * Returns the entry with the given index in the central directory this zip file was opened with, or
+     * <code>null</code> if the entry has been deleted.
+     *
+     * @param index the index of the entry, as returned by {@link #getEntryIndex(ZipEntry)}
+     * @return the entry with the given index, <code>null</code> if the entry has been deleted
+     */
+    public ZipEntry getEntry(int index) {
+        Entries entries = this.entries;
+        if (entries.list != null)
+            return entries.indexedEntries[index];
+
+        return entries.centralDirectory.getEntry(index);
+    }
+
+    /**
+     * Returns the entries as ZipEntry instances, loading them from the compact central directory the first time this
+     * method is called. This is only needed to modify the zip file, as all entries are retained from then on.
+     *
+     * @return the loaded entries
+     */
+    private Entries loadEntries() {
+        Entries entries = this.entries;
+        if (entries.list == null) {
+            ZipCentralDirectory centralDirectory = entries.centralDirectory;
+            int nbEntries = centralDirectory.size();
+            Vector<ZipEntry> list = new Vector<>(nbEntries);
+            Hashtable<String, ZipEntry> nameMap = new Hashtable<>();
+            ZipEntry[] indexedEntries = new ZipEntry[nbEntries];
+            for (int i = 0; i < nbEntries; i++) {
+                // Entries that are currently used by the caller are returned as is, so that they remain valid
+                ZipEntry ze = centralDirectory.getEntry(i);
+                list.add(ze);
+                nameMap.put(ze.getName(), ze);
+                indexedEntries[i] = ze;
+            }
+            entries = new Entries(list, nameMap, indexedEntries);
+            this.entries = entries;
+        }
+        return entries;
     }
 
     /**
@@ -266,15 +352,23 @@ public class ZipFile implements ZipConstants {
         if (entryInfo == null)
             throw new ZipException("Unknown entry: "+ze.getName());
 
-        openRead();
-        RandomAccessInputStream entryIn = this.rais;
+        // Each stream reads the zip file independently, so that several entries can be read concurrently
+        EntryDataInput entryIn = openEntryDataInput();
+        try {
+            // If data offset is -1 (not calculated yet), calculate it now
+            if (entryInfo.dataOffset == -1) {
+                calculateDataOffset(entryInfo, entryIn);
 
-        // If data offset is -1 (not calculated yet), calculate it now
-        if (entryInfo.dataOffset == -1)
-            calculateDataOffset(entryInfo);
+                ZipCentralDirectory centralDirectory = this.entries.centralDirectory;
+                if (centralDirectory != null && entryInfo.index != -1)
+                    centralDirectory.setDataOffset(entryInfo.index, entryInfo.dataOffset);
+            }
+        }
+        catch(IOException e) {
+            entryIn.close();
+            throw e;
+        }
 
-        this.rais = null;
-        
         long start = entryInfo.dataOffset;
         BoundedInputStream bis = new BoundedInputStream(entryIn, start, ze.getCompressedSize());
         switch (ze.getMethod()) {
@@ -284,11 +378,28 @@ public class ZipFile implements ZipConstants {
                 bis.addDummy();
                 return new InflaterInputStream(bis, new Inflater(true));
             default:
+                bis.close();
                 throw new ZipException("Found unsupported compression method "
                                        + ze.getMethod());
         }
     }
 
+    /**
+     * Opens the zip file for positional reads: local files are read through a <code>FileChannel</code>, other files
+     * through a new <code>RandomAccessInputStream</code>.
+     *
+     * @return a new EntryDataInput, to be closed by the caller
+     * @throws IOException if an error occurred while opening the zip file
+     * @throws UnsupportedFileOperationException if a required operation is not supported by the underlying filesystem.
+     */
+    private EntryDataInput openEntryDataInput() throws IOException, UnsupportedFileOperationException {
+        Object underlyingFile = file.getUnderlyingFileObject();
+        if (underlyingFile instanceof File)
+            return new ChannelEntryDataInput(FileChannel.open(((File)underlyingFile).toPath(), StandardOpenOption.READ));
+
+        return new RandomAccessEntryDataInput(file.getRandomAccessInputStream());
+    }
+
 
     /**
      * Deletes the given entry from this zip file. For performance reasons, this method removes the central file
@@ -328,6 +439,8 @@ public class ZipFile implements ZipConstants {
 
             // Strip out central file header of deleted entry
 
+            Entries loadedEntries = loadEntries();
+            Vector<ZipEntry> entries = loadedEntries.list;
             int entryIndex = entries.indexOf(ze);
             int nbEntries = entries.size();
 
@@ -416,7 +529,9 @@ public class ZipFile implements ZipConstants {
 
             // All good, remove the deleted entry from the lists
             entries.removeElementAt(entryIndex);
-            nameMap.remove(ze.getName());
+            loadedEntries.nameMap.remove(ze.getName());
+            if (entryInfo.index != -1)
+                loadedEntries.indexedEntries[entryInfo.index] = null;
         }
         finally {
             try { closeRead(); }
@@ -460,9 +575,11 @@ public class ZipFile implements ZipConstants {
                                      ZipOutputStream.writeLocalFileHeader(entry, raos, entryInfo.encoding, false, zipBuffer);
 
             // Add the new entry to the internal lists
+            Entries loadedEntries = loadEntries();
+            final Vector<ZipEntry> entries = loadedEntries.list;
             entry.setEntryInfo(entryInfo);
             entries.add(entry);
-            nameMap.put(entry.getName(), entry);
+            loadedEntries.nameMap.put(entry.getName(), entry);
 
             // Create the ZipEntryOutputStream to write the entry's contents
 
@@ -545,6 +662,9 @@ public class ZipFile implements ZipConstants {
             // Open the zip file for write
             openWrite();
 
+            // Retain the entries so that the updated entry is not loaded again from the central directory
+            loadEntries();
+
             ZipEntryInfo entryInfo = entry.getEntryInfo();
 
             /* Local file header */
@@ -590,6 +710,7 @@ public class ZipFile implements ZipConstants {
      * @throws UnsupportedFileOperationException if a required operation is not supported by the underlying filesystem.
      */
     public void defragment() throws IOException, UnsupportedFileOperationException {
+        Vector<ZipEntry> entries = loadEntries().list;
         int nbEntries = entries.size();
         if(nbEntries==0)
             return;
@@ -691,13 +812,24 @@ public class ZipFile implements ZipConstants {
 
     /**
      * Calulcates the data offset of the entry which starts at the given ZipEntryInfo.headerOffset and stores the result
-     * in ZipEntryInfo.dataOffset. After calling this method, the RandomAccessInputStream will be positionned at the
-     * beginning of the filename field.
+     * in ZipEntryInfo.dataOffset, reading the local file header with the current RandomAccessInputStream.
      *
      * @param entryInfo the ZipEntryInfo object in which to store the data offset
      * @throws IOException if an unexpected I/O error occurred
      */
     private void calculateDataOffset(ZipEntryInfo entryInfo) throws IOException {
+        calculateDataOffset(entryInfo, new RandomAccessEntryDataInput(rais));
+    }
+
+    /**
+     * Calulcates the data offset of the entry which starts at the given ZipEntryInfo.headerOffset and stores the result
+     * in ZipEntryInfo.dataOffset, reading the local file header with the given EntryDataInput.
+     *
+     * @param entryInfo the ZipEntryInfo object in which to store the data offset
+     * @param in the input to read the local file header from
+     * @throws IOException if an unexpected I/O error occurred
+     */
+    private static void calculateDataOffset(ZipEntryInfo entryInfo, EntryDataInput in) throws IOException {
         // Skip the following fields:
         //  local file header signature     4 bytes
         //  version needed to extract       2 bytes
@@ -711,16 +843,13 @@ public class ZipFile implements ZipConstants {
         // Total nb of bytes to skip:      26
 
         long dataOffset = entryInfo.headerOffset + 26;
-        rais.seek(dataOffset);
 
-        // Advance the offset of the filename field's length (plus the filename length field: 2 bytes)
-        byte[] b = new byte[2];
-        rais.readFully(b);
-        dataOffset += 2 + ZipShort.getValue(b);
+        // Read the filename field's length and the extra field's length (2 bytes each)
+        byte[] b = new byte[4];
+        in.readFully(dataOffset, b);
 
-        // Advance the offset of the extra field's length (plus the extra field length field: 2 bytes)
-        rais.readFully(b);
-        dataOffset += 2 + ZipShort.getValue(b);
+        // Advance the offset past both length fields, the filename and the extra field
+        dataOffset += 4 + ZipShort.getValue(b, 0) + ZipShort.getValue(b, 2);
 
         entryInfo.dataOffset = dataOffset;
     }
@@ -770,6 +899,9 @@ public class ZipFile implements ZipConstants {
         boolean defaultEncodingSet = defaultEncoding!=null;
         ByteArrayOutputStream encodingAccumulator = defaultEncodingSet?null:new ByteArrayOutputStream();
 
+        // The parsed ZipEntry instances are not retained, the entries are stored in a compact form
+        ZipCentralDirectory centralDirectory = new ZipCentralDirectory();
+
         while (sig == cfhSig) {
             ZipEntryInfo entryInfo = new ZipEntryInfo();
 
@@ -844,20 +976,13 @@ public class ZipFile implements ZipConstants {
             ze.setExternalAttributes(ZipLong.getValue(cfh, 34));
             // off += 4;
 
-            // Read filename bytes
+            // Read filename bytes, the String is decoded when the entry is requested
             byte[] filename = new byte[fileNameLen];
             rais.readFully(filename);
 
-            // If the encoding is known already, set the String now
-            if(entryInfo.encoding!=null) {
-                setFilename(ze, getString(filename, entryInfo.encoding));
-            }
-            else {
-                // Keep the filename bytes, String will be encoded after
-                entryInfo.filename = filename;
-                // Accumulate those unidentified bytes for encoding detection
+            // Accumulate unidentified bytes for encoding detection
+            if(entryInfo.encoding==null)
                 feedEncodingAccumulator(encodingAccumulator, filename);
-            }
 
             // Offset to local file header
             entryInfo.headerOffset = ZipLong.getValue(cfh, 38);
@@ -872,27 +997,16 @@ public class ZipFile implements ZipConstants {
             // using the Zip64 extended information extra field (if any).
             resolveZip64Values(ze, entryInfo, diskStart);
 
-            // Read comment bytes
+            // Read comment bytes, the String is decoded when the entry is requested
             byte[] comment = new byte[commentLen];
             rais.readFully(comment);
 
-            // If the encoding is known already, set the String now
-            if(entryInfo.encoding!=null) {
-                ze.setComment(getString(comment, entryInfo.encoding));
-            }
-            else {
-                // Keep the comment bytes, String will be encoded after
-                entryInfo.comment = comment;
-                // Accumulate those unidentified bytes for encoding detection
+            // Accumulate unidentified bytes for encoding detection
+            if(entryInfo.encoding==null)
                 feedEncodingAccumulator(encodingAccumulator, comment);
-            }
-
-            entryInfo.centralHeaderLen = 46 + fileNameLen + extraLen + commentLen;
 
-            // Add the new entry to the internal lists
-            ze.setEntryInfo(entryInfo);
-            entries.add(ze);
-            nameMap.put(ze.getName(), ze);
+            // Add the new entry to the central directory
+            centralDirectory.add(ze, entryInfo, filename, extra, comment);
 
             // Swallow signature
             rais.readFully(signatureBytes);
@@ -900,32 +1014,22 @@ public class ZipFile implements ZipConstants {
         }
 
         if(encodingAccumulator!=null && encodingAccumulator.size()>0) {
-            int nbEntries = entries.size();
+            int nbEntries = centralDirectory.size();
             // Note: guessedEncoding may be null if no encoding could be detected.
             // In that case, the default system encoding will be used to create the string
             String guessedEncoding = EncodingDetector.detectEncoding(encodingAccumulator.toByteArray());
 
             LOGGER.info("Guessed encoding: "+guessedEncoding);
 
-            ZipEntry entry;
-            ZipEntryInfo entryInfo;
             for(int i=0; i<nbEntries; i++) {
-                entry = entries.elementAt(i);
-                entryInfo = entry.getEntryInfo();
-
                 // Skip those entries for which we know the encoding already
-                if(entryInfo.encoding != null)
-                    continue;
-
-                entryInfo.encoding = guessedEncoding;
-
-                setFilename(entry, getString(entryInfo.filename, guessedEncoding));
-                entryInfo.filename = null;
-
-                entry.setComment(getString(entryInfo.comment, guessedEncoding));
-                entryInfo.comment = null;
+                if(centralDirectory.getEncoding(i) == null)
+                    centralDirectory.setEncoding(i, guessedEncoding);
             }
         }
+
+        centralDirectory.trim();
+        entries = new Entries(centralDirectory);
     }
 
     /**
@@ -978,7 +1082,7 @@ public class ZipFile implements ZipConstants {
      * @param ze the ZipEntry object in which to set the filename
      * @param filename the filename to set 
      */
-    private static void setFilename(ZipEntry ze, String filename) {
+    static void setFilename(ZipEntry ze, String filename) {
         if(ze.getPlatform()==ZipEntry.PLATFORM_FAT)
             filename = filename.replace('\\', '/');
 
@@ -1215,7 +1319,7 @@ public class ZipFile implements ZipConstants {
      * @param encoding the encoding to use to instantiate the String
      * @return String instance that was created with the given encoding
      */
-    private static String getString(byte[] bytes, String encoding) {
+    static String getString(byte[] bytes, String encoding) {
         if(bytes.length==0)
             return "";
 
@@ -1238,36 +1342,138 @@ public class ZipFile implements ZipConstants {
     ///////////////////
     
     /**
-     * InputStream that delegates requests to the underlying RandomAccessFile, making sure that only bytes from a
+     * The entries of a zip file, in the compact form of its central directory until the zip file is modified, then
+     * as ZipEntry instances.
+     */
+    private static class Entries {
+
+        /** Compact representation of the entries found in the central directory, <code>null</code> once loaded */
+        private final ZipCentralDirectory centralDirectory;
+
+        /** ZipEntry instances in the order they were found in the archive, <code>null</code> until loaded */
+        private final Vector<ZipEntry> list;
+
+        /** Maps entry paths to corresponding ZipEntry instances, <code>null</code> until loaded */
+        private final Hashtable<String, ZipEntry> nameMap;
+
+        /**
+         * The entries found in the central directory, designated by their index, <code>null</code> until loaded.
+         * Deleted entries are <code>null</code>.
+         */
+        private final ZipEntry[] indexedEntries;
+
+        Entries(ZipCentralDirectory centralDirectory) {
+            this.centralDirectory = centralDirectory;
+            this.list = null;
+            this.nameMap = null;
+            this.indexedEntries = null;
+        }
+
+        Entries(Vector<ZipEntry> list, Hashtable<String, ZipEntry> nameMap, ZipEntry[] indexedEntries) {
+            this.centralDirectory = null;
+            this.list = list;
+            this.nameMap = nameMap;
+            this.indexedEntries = indexedEntries;
+        }
+    }
+
+    /**
+     * Reads the zip file at given positions, without any state shared between reads.
+     */
+    private interface EntryDataInput extends Closeable {
+
+        /**
+         * Reads up to <code>len</code> bytes starting at the given position of the zip file.
+         *
+         * @return the number of bytes read, -1 if the position is at the end of the file
+         */
+        int read(long position, byte[] b, int off, int len) throws IOException;
+
+        /**
+         * Reads <code>b.length</code> bytes starting at the given position of the zip file.
+         */
+        default void readFully(long position, byte[] b) throws IOException {
+            int off = 0;
+            while (off < b.length) {
+                int ret = read(position + off, b, off, b.length - off);
+                if (ret < 0)
+                    throw new EOFException();
+                off += ret;
+            }
+        }
+    }
+
+    /**
+     * EntryDataInput that reads a local file with <code>FileChannel#read(ByteBuffer, long)</code>, which does not
+     * move the channel's position.
+     */
+    private static class ChannelEntryDataInput implements EntryDataInput {
+
+        private final FileChannel channel;
+
+        ChannelEntryDataInput(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read(long position, byte[] b, int off, int len) throws IOException {
+            return channel.read(ByteBuffer.wrap(b, off, len), position);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * EntryDataInput that seeks a <code>RandomAccessInputStream</code> before reading it. The stream must not be
+     * used by other threads.
+     */
+    private static class RandomAccessEntryDataInput implements EntryDataInput {
+
+        private final RandomAccessInputStream rais;
+
+        RandomAccessEntryDataInput(RandomAccessInputStream rais) {
+            this.rais = rais;
+        }
+
+        @Override
+        public int read(long position, byte[] b, int off, int len) throws IOException {
+            if (rais.getOffset() != position)
+                rais.seek(position);
+            return rais.read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            rais.close();
+        }
+    }
+
+    /**
+     * InputStream that reads the data of an entry from an {@link EntryDataInput}, making sure that only bytes from a
      * certain range can be read.
      */
     private static class BoundedInputStream extends InputStream {
 
-        private final RandomAccessInputStream rais;
+        private final EntryDataInput in;
 
         private long remaining;
         private long loc;
         private boolean addDummyByte = false;
 
-        BoundedInputStream(RandomAccessInputStream rais, long start, long remaining) {
-            this.rais = rais;
+        BoundedInputStream(EntryDataInput in, long start, long remaining) {
+            this.in = in;
             this.remaining = remaining;
             loc = start;
         }
 
         @Override
         public int read() throws IOException {
-            if (remaining-- <= 0) {
-                if (addDummyByte) {
-                    addDummyByte = false;
-                    return 0;
-                }
-                return -1;
-            }
-            synchronized (rais) {
-                rais.seek(loc++);
-                return rais.read();
-            }
+            byte[] b = new byte[1];
+            int ret = read(b, 0, 1);
+            return ret == 1 ? b[0] & 0xFF : -1;
         }
 
         @Override
@@ -1288,11 +1494,7 @@ public class ZipFile implements ZipConstants {
             if (len > remaining) {
                 len = (int) remaining;
             }
-            int ret;
-            synchronized (rais) {
-                rais.seek(loc);
-                ret = rais.read(b, off, len);
-            }
+            int ret = in.read(loc, b, off, len);
             if (ret > 0) {
                 loc += ret;
                 remaining -= ret;
@@ -1300,9 +1502,21 @@ public class ZipFile implements ZipConstants {
             return ret;
         }
 
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0)
+                return 0;
+
+            if (n > remaining)
+                n = remaining;
+            loc += n;
+            remaining -= n;
+            return n;
+        }
+
         @Override
         public void close() throws IOException {
-            rais.close();
+            in.close();
         }
 
         /**
@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
 import java.util.zip.Deflater;
 import java.util.zip.ZipException;
 
@@ -67,6 +68,12 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
     /** Buffer used by Deflater to deflate data */
     protected byte[] deflaterBuf;
 
+    /** Compresses DEFLATED entries on several threads if not null */
+    private ExecutorService compressionExecutor;
+
+    /** Number of threads of {@link #compressionExecutor} */
+    private int compressionParallelism;
+
     /** List of zip entries written so far */
     private Vector<ZipEntry> entries = new Vector<ZipEntry>();
 
@@ -245,7 +252,10 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         long crc = zeos.getCrc();
 
         if (entry.getMethod() == DEFLATED) {
-            ((DeflatedOutputStream)zeos).finishDeflate();
+            if (zeos instanceof ParallelDeflatedOutputStream)
+                ((ParallelDeflatedOutputStream)zeos).finishDeflate();
+            else
+                ((DeflatedOutputStream)zeos).finishDeflate();
 
             entry.setSize(adjustToLong(zeos.getTotalIn()));
             long compressedSize = adjustToLong(zeos.getTotalOut());
@@ -262,37 +272,48 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
         // If random access output, write the local file header containing
         // the correct CRC and compressed/uncompressed sizes
-        if (!useDataDescriptor) {
-            RandomAccessOutputStream raos = (RandomAccessOutputStream)out;
-
-            long save = raos.getOffset();
+        if (!useDataDescriptor)
+            writeEntrySizes(entry, (RandomAccessOutputStream)out, encoding, zipBuffer);
+    }
 
-            boolean isZip64 = entry.getCompressedSize() >= MAX_ZIP32_SIZE || entry.getSize() >= MAX_ZIP32_SIZE;
+    /**
+     * Writes the CRC and sizes of the given entry, which must have been set in the entry, to its local file header by
+     * seeking back to it. The current offset of the stream is preserved.
+     *
+     * @param entry the entry
+     * @param raos the stream the entry was written to
+     * @param encoding the encoding used for writing the entry's filename in the local file header
+     * @param zipBuffer a ZipBuffer instance used to convert integer values to Zip variants
+     * @throws IOException if an I/O error occurred
+     */
+    private static void writeEntrySizes(ZipEntry entry, RandomAccessOutputStream raos, String encoding, ZipBuffer zipBuffer) throws IOException {
+        long save = raos.getOffset();
 
-            raos.seek(entry.getEntryInfo().headerOffset + 14);
-            raos.write(ZipLong.getBytes(entry.getCrc(), zipBuffer.longBuffer));
-            if (isZip64) {
-                raos.write(LONG_MAX);
-                raos.write(LONG_MAX);
-            }
-            else {
-                raos.write(ZipLong.getBytes(entry.getCompressedSize(), zipBuffer.longBuffer));
-                raos.write(ZipLong.getBytes(entry.getSize(), zipBuffer.longBuffer));
-            }
+        boolean isZip64 = entry.getCompressedSize() >= MAX_ZIP32_SIZE || entry.getSize() >= MAX_ZIP32_SIZE;
 
-            // writeLocalFileHeader always reserves a Zip64 extended information extra field for entries
-            // written with random access, so that the actual sizes can be patched in here, even if they
-            // turn out to exceed 4GB.
-            long zip64ExtraOffset = getZip64LocalExtraDataOffset(entry);
-            if (zip64ExtraOffset >= 0) {
-                byte[] name = getBytes(entry.getName(), encoding);
-                raos.seek(entry.getEntryInfo().headerOffset + 30 + name.length + zip64ExtraOffset);
-                raos.write(ZipEightByteInteger.getBytes(entry.getSize()));
-                raos.write(ZipEightByteInteger.getBytes(entry.getCompressedSize()));
-            }
+        raos.seek(entry.getEntryInfo().headerOffset + 14);
+        raos.write(ZipLong.getBytes(entry.getCrc(), zipBuffer.longBuffer));
+        if (isZip64) {
+            raos.write(LONG_MAX);
+            raos.write(LONG_MAX);
+        }
+        else {
+            raos.write(ZipLong.getBytes(entry.getCompressedSize(), zipBuffer.longBuffer));
+            raos.write(ZipLong.getBytes(entry.getSize(), zipBuffer.longBuffer));
+        }
 
-            raos.seek(save);
+        // writeLocalFileHeader always reserves a Zip64 extended information extra field for entries
+        // written with random access, so that the actual sizes can be patched in here, even if they
+        // turn out to exceed 4GB.
+        long zip64ExtraOffset = getZip64LocalExtraDataOffset(entry);
+        if (zip64ExtraOffset >= 0) {
+            byte[] name = getBytes(entry.getName(), encoding);
+            raos.seek(entry.getEntryInfo().headerOffset + 30 + name.length + zip64ExtraOffset);
+            raos.write(ZipEightByteInteger.getBytes(entry.getSize()));
+            raos.write(ZipEightByteInteger.getBytes(entry.getCompressedSize()));
         }
+
+        raos.seek(save);
     }
 
     /**
@@ -342,7 +363,10 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
             entry.setTime(System.currentTimeMillis());
         }
 
-        if(entryMethod == DEFLATED) {
+        if(entryMethod == DEFLATED && compressionExecutor != null) {
+            zeos = new ParallelDeflatedOutputStream(out, level, compressionExecutor, compressionParallelism);
+        }
+        else if(entryMethod == DEFLATED) {
             deflater.reset();
             deflater.setLevel(level);
 
@@ -357,6 +381,43 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         entryInfo.dataOffset = written;
     }
 
+    /**
+     * Writes an entry whose data has already been compressed using the DEFLATED method, typically on another thread
+     * with {@link ParallelDeflatedOutputStream#deflate(byte[], int, byte[], int, int, boolean)}. The entry is complete
+     * when this method returns, {@link #closeEntry()} needs not be called.
+     *
+     * @param ze the entry to write
+     * @param data the complete DEFLATE stream of the entry's data
+     * @param size the uncompressed size of the entry's data
+     * @param crc the CRC32 checksum of the entry's uncompressed data
+     * @throws IOException on error
+     */
+    public void putDeflatedEntry(ZipEntry ze, byte[] data, long size, long crc) throws IOException {
+        closeEntry();
+
+        ZipEntryInfo info = new ZipEntryInfo();
+        ze.setEntryInfo(info);
+        ze.setMethod(DEFLATED);
+        if (ze.getTime() == -1)
+            ze.setTime(System.currentTimeMillis());
+        ze.setSize(size);
+        ze.setCompressedSize(data.length);
+        ze.setCrc(crc);
+        entries.addElement(ze);
+
+        info.headerOffset = written;
+        written += writeLocalFileHeader(ze, out, encoding, !hasRandomAccess, zipBuffer);
+        info.dataOffset = written;
+
+        out.write(data);
+        written += data.length;
+
+        if (hasRandomAccess)
+            writeEntrySizes(ze, (RandomAccessOutputStream)out, encoding, zipBuffer);
+        else
+            written += writeDataDescriptor(ze, out, zipBuffer);
+    }
+
     /**
      * Sets the file comment.
      *
@@ -383,6 +444,18 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         this.level = level;
     }
 
+    /**
+     * Makes subsequent DEFLATED entries be compressed by blocks on the threads of the given executor, see
+     * {@link ParallelDeflatedOutputStream}. The executor is not shut down by this stream.
+     *
+     * @param executor the executor that compresses the data, <code>null</code> to compress on the calling thread
+     * @param parallelism the number of threads of the executor
+     */
+    public void setCompressionExecutor(ExecutorService executor, int parallelism) {
+        this.compressionExecutor = executor;
+        this.compressionParallelism = parallelism;
+    }
+
     /**
      * Sets the default compression method for subsequent entries.
      *
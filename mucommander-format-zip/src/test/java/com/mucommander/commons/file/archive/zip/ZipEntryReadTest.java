@@ -0,0 +1,347 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive.zip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipOutputStream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.ProxyFile;
+import com.mucommander.commons.file.archive.ArchiveEntry;
+import com.mucommander.commons.file.archive.ArchiveEntryHandler;
+import com.mucommander.commons.file.archive.zip.provider.ZipEntry;
+import com.mucommander.commons.file.archive.zip.provider.ZipFile;
+import com.mucommander.commons.io.RandomAccessInputStream;
+
+/**
+ * Tests the reading of entries by {@link ZipFile}, through a <code>FileChannel</code> for local files and through
+ * <code>RandomAccessInputStream</code> for other files, and the read-ahead of
+ * {@link ZipArchiveFile#extractEntries(ArchiveEntryHandler)}.
+ */
+@Test
+public class ZipEntryReadTest {
+
+    /** Number of file entries in the test zip file, the first of which is stored and the others deflated */
+    private final static int NB_FILES = 12;
+
+    /** Size of the largest entries, larger than the pipes that entries inflated ahead are written to */
+    private final static int MAX_ENTRY_SIZE = 600 * 1024;
+
+    /** The test zip file */
+    private AbstractFile file;
+
+    /** Names of the entries of the zip file, in the order of the archive */
+    private List<String> names;
+
+    /** Contents of the entries, <code>null</code> for directories */
+    private List<byte[]> contents;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = FileFactory.getTemporaryFile(ZipEntryReadTest.class.getName() + ".zip", true);
+        names = new ArrayList<>();
+        contents = new ArrayList<>();
+
+        try (ZipOutputStream zout = new ZipOutputStream(file.getOutputStream())) {
+            for (int i = 0; i < NB_FILES; i++) {
+                if (i % 4 == 0) {
+                    names.add("dir" + i + "/");
+                    contents.add(null);
+                    zout.putNextEntry(new java.util.zip.ZipEntry("dir" + i + "/"));
+                    zout.closeEntry();
+                }
+
+                byte[] data = new byte[i % 3 == 0 ? MAX_ENTRY_SIZE : 1000 * i];
+                for (int j = 0; j < data.length; j++)
+                    data[j] = (byte)(j % (i + 7) + j / 4096);
+
+                java.util.zip.ZipEntry entry = new java.util.zip.ZipEntry("file" + i);
+                if (i == 0) {
+                    CRC32 crc = new CRC32();
+                    crc.update(data);
+                    entry.setMethod(java.util.zip.ZipEntry.STORED);
+                    entry.setSize(data.length);
+                    entry.setCrc(crc.getValue());
+                }
+                names.add(entry.getName());
+                contents.add(data);
+                zout.putNextEntry(entry);
+                zout.write(data);
+                zout.closeEntry();
+            }
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        file.delete();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int nbRead;
+            while ((nbRead = in.read(buffer, 0, buffer.length)) != -1)
+                bout.write(buffer, 0, nbRead);
+            return bout.toByteArray();
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Asserts that the entries of a local zip file can be read concurrently.
+     */
+    @Test
+    public void testLocalFile() throws Exception {
+        testConcurrentReads(new ZipFile(file));
+    }
+
+    /**
+     * Asserts that the entries of a zip file that is not local can be read concurrently, each stream reading its own
+     * <code>RandomAccessInputStream</code> that is closed with the stream.
+     */
+    @Test
+    public void testRandomAccessFile() throws Exception {
+        RemoteFile remoteFile = new RemoteFile(file);
+        testConcurrentReads(new ZipFile(remoteFile));
+        assert remoteFile.nbOpenStreams.get() == 0;
+    }
+
+    /**
+     * Reads the entries of the given zip file on several threads at once, each thread reading them in a different
+     * order and reading two entries at a time, alternately.
+     */
+    private void testConcurrentReads(ZipFile zipFile) throws Exception {
+        List<ZipEntry> entries = new ArrayList<>();
+        zipFile.getEntries().forEachRemaining(ze -> {
+            if (!ze.isDirectory())
+                entries.add(ze);
+        });
+        assert entries.size() == NB_FILES;
+
+        int nbThreads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < nbThreads; t++) {
+                int offset = t * 5;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < NB_FILES; i++) {
+                        ZipEntry ze1 = entries.get((offset + i) % NB_FILES);
+                        ZipEntry ze2 = entries.get((offset + i + 1) % NB_FILES);
+                        try (InputStream in1 = zipFile.getInputStream(ze1); InputStream in2 = zipFile.getInputStream(ze2)) {
+                            ByteArrayOutputStream bout1 = new ByteArrayOutputStream();
+                            ByteArrayOutputStream bout2 = new ByteArrayOutputStream();
+                            byte[] buffer = new byte[1000];
+                            int nbRead1 = 0;
+                            int nbRead2 = 0;
+                            while (nbRead1 != -1 || nbRead2 != -1) {
+                                if (nbRead1 != -1 && (nbRead1 = in1.read(buffer, 0, buffer.length)) > 0)
+                                    bout1.write(buffer, 0, nbRead1);
+                                if (nbRead2 != -1 && (nbRead2 = in2.read(buffer, 0, buffer.length)) > 0)
+                                    bout2.write(buffer, 0, nbRead2);
+                            }
+                            assert Arrays.equals(bout1.toByteArray(), contents.get(names.indexOf(ze1.getName())));
+                            assert Arrays.equals(bout2.toByteArray(), contents.get(names.indexOf(ze2.getName())));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Asserts that entries inflated ahead are handed to the handler in the order of the archive, and only those that
+     * were accepted.
+     */
+    @Test
+    public void testReadAheadOrder() throws IOException {
+        List<String> expectedNames = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            if (i % 5 != 2)
+                expectedNames.add(names.get(i));
+        }
+
+        List<String> extractedNames = new ArrayList<>();
+        new ZipArchiveFile(file).extractEntries(new ArchiveEntryHandler() {
+            @Override
+            public boolean accept(ArchiveEntry entry) {
+                return expectedNames.contains(entry.getPath());
+            }
+
+            @Override
+            public boolean extract(ArchiveEntry entry, InputStream in) throws IOException {
+                extractedNames.add(entry.getPath());
+                byte[] expected = contents.get(names.indexOf(entry.getPath()));
+                if (entry.isDirectory())
+                    assert in == null;
+                else
+                    assert Arrays.equals(readFully(in), expected);
+                return true;
+            }
+        }, 4);
+
+        assert extractedNames.equals(expectedNames);
+    }
+
+    /**
+     * Asserts that the entries that were inflated ahead stop being read when the handler stops the extraction or
+     * fails, even though they were not read entirely.
+     */
+    @Test
+    public void testReadAheadCancellation() throws Exception {
+        RemoteFile remoteFile = new RemoteFile(file);
+        ZipArchiveFile archiveFile = new ZipArchiveFile(remoteFile);
+
+        // Stops after the first file, leaving large entries waiting on their full pipe
+        List<String> extractedNames = new ArrayList<>();
+        archiveFile.extractEntries(new ArchiveEntryHandler() {
+            @Override
+            public boolean accept(ArchiveEntry entry) {
+                return !entry.isDirectory();
+            }
+
+            @Override
+            public boolean extract(ArchiveEntry entry, InputStream in) {
+                extractedNames.add(entry.getPath());
+                return false;
+            }
+        }, 6);
+        assert extractedNames.equals(List.of("file0"));
+        waitForStreamsClosed(remoteFile);
+
+        // Fails while reading the second file
+        try {
+            archiveFile.extractEntries(new ArchiveEntryHandler() {
+                @Override
+                public boolean accept(ArchiveEntry entry) {
+                    return !entry.isDirectory();
+                }
+
+                @Override
+                public boolean extract(ArchiveEntry entry, InputStream in) throws IOException {
+                    if (!entry.getPath().equals("file0"))
+                        throw new IOException();
+                    readFully(in);
+                    return true;
+                }
+            }, 6);
+            assert false;
+        }
+        catch (IOException e) {
+            // Expected
+        }
+        waitForStreamsClosed(remoteFile);
+    }
+
+    /**
+     * Waits for the streams opened on the given file to be closed, failing if they are still open after a few seconds.
+     */
+    private static void waitForStreamsClosed(RemoteFile remoteFile) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (remoteFile.nbOpenStreams.get() > 0) {
+            assert System.currentTimeMillis() < deadline;
+            Thread.sleep(50);
+        }
+    }
+
+    /**
+     * A local file seen as a file that is not local, which is read through <code>RandomAccessInputStream</code>.
+     * Keeps track of the streams that are open.
+     */
+    private static class RemoteFile extends ProxyFile {
+
+        private final AtomicInteger nbOpenStreams = new AtomicInteger();
+
+        RemoteFile(AbstractFile file) {
+            super(file);
+        }
+
+        @Override
+        public Object getUnderlyingFileObject() {
+            return null;
+        }
+
+        @Override
+        public RandomAccessInputStream getRandomAccessInputStream() throws IOException {
+            RandomAccessInputStream rais = file.getRandomAccessInputStream();
+            nbOpenStreams.incrementAndGet();
+            return new RandomAccessInputStream() {
+                private boolean closed;
+
+                @Override
+                public int read() throws IOException {
+                    return rais.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    return rais.read(b, off, len);
+                }
+
+                @Override
+                public long getOffset() throws IOException {
+                    return rais.getOffset();
+                }
+
+                @Override
+                public long getLength() throws IOException {
+                    return rais.getLength();
+                }
+
+                @Override
+                public void seek(long offset) throws IOException {
+                    rais.seek(offset);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (!closed) {
+                        closed = true;
+                        nbOpenStreams.decrementAndGet();
+                    }
+                    rais.close();
+                }
+            };
+        }
+    }
+}
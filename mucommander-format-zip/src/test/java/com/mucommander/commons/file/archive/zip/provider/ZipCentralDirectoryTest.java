@@ -0,0 +1,162 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive.zip.provider;
+
+import java.nio.charset.StandardCharsets;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Runs tests on {@link ZipCentralDirectory}, the compact representation of the entries of a zip file.
+ */
+public class ZipCentralDirectoryTest {
+
+    /** An extra field with an unrecognized header id, and 1 byte of data */
+    private final static byte[] EXTRA = {0x34, 0x12, 0x01, 0x00, 0x07};
+
+    /**
+     * Adds an entry with the given filename bytes and attributes to the given central directory.
+     */
+    private static void add(ZipCentralDirectory centralDirectory, byte[] filename, String encoding, int platform, int method, boolean hasDataDescriptor) {
+        ZipEntry ze = new ZipEntry();
+        ze.setPlatform(platform);
+        ze.setMethod(method);
+        ze.setDosTime(0xFFFFFFFEL);
+        ze.setCrc(0xCAFEBABEL);
+        ze.setInternalAttributes(0xFFFF);
+        ze.setExternalAttributes(0xA1ED0000L);
+        ze.setSize(5000000000L);
+        ze.setCompressedSize(4000000000L);
+
+        ZipEntryInfo entryInfo = new ZipEntryInfo();
+        entryInfo.encoding = encoding;
+        entryInfo.hasDataDescriptor = hasDataDescriptor;
+        entryInfo.centralHeaderOffset = 6000000000L;
+        entryInfo.headerOffset = 7000000000L;
+
+        centralDirectory.add(ze, entryInfo, filename, EXTRA, "comment".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void add(ZipCentralDirectory centralDirectory, String filename) {
+        add(centralDirectory, filename.getBytes(StandardCharsets.UTF_8), "UTF-8", ZipEntry.PLATFORM_UNIX, ZipConstants.DEFLATED, false);
+    }
+
+    /**
+     * Makes sure that the fields that are packed together, and the unsigned values, are restored as they were added.
+     */
+    @Test
+    public void testPacking() {
+        ZipCentralDirectory centralDirectory = new ZipCentralDirectory();
+        add(centralDirectory, "a".getBytes(StandardCharsets.US_ASCII), null, ZipEntry.PLATFORM_UNIX, ZipConstants.DEFLATED, true);
+        add(centralDirectory, "b".getBytes(StandardCharsets.US_ASCII), null, ZipEntry.PLATFORM_FAT, ZipConstants.STORED, false);
+        centralDirectory.trim();
+        // The data offset is stored once calculated
+        centralDirectory.setDataOffset(1, 8000000000L);
+
+        for (int i = 0; i < 2; i++) {
+            ZipEntry ze = centralDirectory.getEntry(i);
+            assertEquals(ze.getPlatform(), i == 0 ? ZipEntry.PLATFORM_UNIX : ZipEntry.PLATFORM_FAT);
+            assertEquals(ze.getMethod(), i == 0 ? ZipConstants.DEFLATED : ZipConstants.STORED);
+            assertEquals(ze.getDosTime(), 0xFFFFFFFEL);
+            assertEquals(ze.getCrc(), 0xCAFEBABEL);
+            assertEquals(ze.getInternalAttributes(), 0xFFFF);
+            assertEquals(ze.getExternalAttributes(), 0xA1ED0000L);
+            assertEquals(ze.getSize(), 5000000000L);
+            assertEquals(ze.getCompressedSize(), 4000000000L);
+            assertEquals(ze.getCentralDirectoryExtra(), EXTRA);
+            assertEquals(ze.getComment(), "comment");
+
+            ZipEntryInfo entryInfo = ze.getEntryInfo();
+            assertEquals(entryInfo.index, i);
+            assertEquals(entryInfo.hasDataDescriptor, i == 0);
+            assertNull(entryInfo.encoding);
+            assertEquals(entryInfo.centralHeaderOffset, 6000000000L);
+            assertEquals(entryInfo.centralHeaderLen, 46 + 1 + EXTRA.length + 7);
+            assertEquals(entryInfo.headerOffset, 7000000000L);
+            assertEquals(entryInfo.dataOffset, i == 0 ? -1 : 8000000000L);
+        }
+    }
+
+    /**
+     * Makes sure that filenames are decoded with the encoding of their entry, which can be set after the entry has
+     * been added, and that the separators of FAT filenames are converted.
+     */
+    @Test
+    public void testEncodings() {
+        ZipCentralDirectory centralDirectory = new ZipCentralDirectory();
+        add(centralDirectory, "déjà".getBytes(StandardCharsets.UTF_8), "UTF-8", ZipEntry.PLATFORM_UNIX, ZipConstants.STORED, false);
+        add(centralDirectory, "déjà".getBytes(StandardCharsets.ISO_8859_1), null, ZipEntry.PLATFORM_UNIX, ZipConstants.STORED, false);
+        add(centralDirectory, "dir\\file".getBytes(StandardCharsets.US_ASCII), "UTF-8", ZipEntry.PLATFORM_FAT, ZipConstants.STORED, false);
+        add(centralDirectory, "dir\\file".getBytes(StandardCharsets.US_ASCII), "UTF-8", ZipEntry.PLATFORM_UNIX, ZipConstants.STORED, false);
+
+        assertEquals(centralDirectory.getEncoding(0), "UTF-8");
+        assertNull(centralDirectory.getEncoding(1));
+        centralDirectory.setEncoding(1, "ISO-8859-1");
+        assertEquals(centralDirectory.getEncoding(1), "ISO-8859-1");
+        // Setting the encoding doesn't change the other packed attributes
+        assertEquals(centralDirectory.getEntry(1).getPlatform(), ZipEntry.PLATFORM_UNIX);
+
+        assertEquals(centralDirectory.getEntry(0).getName(), "déjà");
+        assertEquals(centralDirectory.getEntry(1).getName(), "déjà");
+        assertEquals(centralDirectory.getEntry(2).getName(), "dir/file");
+        assertEquals(centralDirectory.getEntry(3).getName(), "dir\\file");
+        assertEquals(centralDirectory.getEntry(1).getEntryInfo().encoding, "ISO-8859-1");
+
+        assertEquals(centralDirectory.indexOf("dir/file"), 2);
+        assertEquals(centralDirectory.indexOf("dir\\file"), 3);
+    }
+
+    /**
+     * Makes sure that entries are found by name, the last entry being returned if several have the same name, also
+     * once the arrays have grown.
+     */
+    @Test
+    public void testIndexOf() {
+        ZipCentralDirectory centralDirectory = new ZipCentralDirectory();
+        int nbEntries = 3000;
+        for (int i = 0; i < nbEntries; i++)
+            add(centralDirectory, "file" + (i % 1000));
+        add(centralDirectory, "other");
+        centralDirectory.trim();
+
+        assertEquals(centralDirectory.size(), nbEntries + 1);
+        for (int i = 0; i < 1000; i++)
+            assertEquals(centralDirectory.indexOf("file" + i), 2000 + i);
+        assertEquals(centralDirectory.indexOf("other"), nbEntries);
+        assertEquals(centralDirectory.indexOf("missing"), -1);
+    }
+
+    /**
+     * Makes sure that the same entry instance is returned as long as it is referenced.
+     */
+    @Test
+    public void testSameEntry() {
+        ZipCentralDirectory centralDirectory = new ZipCentralDirectory();
+        add(centralDirectory, "a");
+        add(centralDirectory, "b");
+
+        ZipEntry ze = centralDirectory.getEntry(0);
+        assertSame(centralDirectory.getEntry(0), ze);
+        assertNotSame(centralDirectory.getEntry(1), ze);
+    }
+}
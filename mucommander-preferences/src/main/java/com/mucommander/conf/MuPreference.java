@@ -81,8 +81,19 @@ public enum MuPreference {
     SHOW_TAB_HEADER(MuPreferences.SHOW_SINGLE_TAB_HEADER),
     SET_DROP_ACTION_TO_COPY(MuPreferences.SET_DROP_ACTION_TO_COPY),
     QUICK_SEARCH_TIMEOUT(MuPreferences.QUICK_SEARCH_TIMEOUT),
+    QUICK_SEARCH_FUZZY_MATCHING(MuPreferences.QUICK_SEARCH_FUZZY_MATCHING),
     SHOW_PARENT_FOLDER(MuPreferences.SHOW_PARENT_FOLDER),
+    SHOW_CACHED_FOLDER_SIZES(MuPreferences.SHOW_CACHED_FOLDER_SIZES),
+    FOLDER_SIZE_CACHE_MAX_ENTRIES(MuPreferences.FOLDER_SIZE_CACHE_MAX_ENTRIES),
     FILE_COMPARATOR_USE_LEXICOGRAPHIC_SORT(MuPreferences.FILES_LEXICOGRAPHIC_ORDER),
+    SEARCH_INDEX_ROOTS(MuPreferences.SEARCH_INDEX_ROOTS),
+    SEARCH_INDEX_MAX_ENTRIES(MuPreferences.SEARCH_INDEX_MAX_ENTRIES),
+    SEARCH_INDEX_MAX_DISK_SIZE(MuPreferences.SEARCH_INDEX_MAX_DISK_SIZE),
+    SEARCH_INDEX_MAX_WATCHED_FOLDERS(MuPreferences.SEARCH_INDEX_MAX_WATCHED_FOLDERS),
+    MAX_JOBS_PER_LOCAL_VOLUME(MuPreferences.MAX_JOBS_PER_LOCAL_VOLUME),
+    MAX_JOBS_PER_REMOTE_HOST(MuPreferences.MAX_JOBS_PER_REMOTE_HOST),
+    ARCHIVER_COMPRESSION_THREADS(MuPreferences.ARCHIVER_COMPRESSION_THREADS),
+    ARCHIVER_COMPRESSION_LEVEL(MuPreferences.ARCHIVER_COMPRESSION_LEVEL),
     ;
 
     private String label;
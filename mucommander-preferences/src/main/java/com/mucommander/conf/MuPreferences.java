@@ -20,6 +20,7 @@ package com.mucommander.conf;
 import com.mucommander.commons.conf.Configuration;
 import com.mucommander.commons.conf.ConfigurationException;
 import com.mucommander.commons.conf.ConfigurationListener;
+import com.mucommander.commons.conf.ConfigurationVariable;
 import com.mucommander.commons.conf.ValueList;
 import com.mucommander.commons.conf.XmlConfigurationReader;
 import com.mucommander.commons.conf.XmlConfigurationWriter;
@@ -242,10 +243,22 @@ public class MuPreferences implements MuPreferencesAPI {
     public static final String QUICK_SEARCH_TIMEOUT                = FILE_TABLE_SECTION + '.' + "quick_search_timeout";
     /** Default value for 'Quick search timeout' */
     public static final int DEFAULT_QUICK_SEARCH_TIMEOUT           = 2;
+    /** Whether quick search matches names that contain the characters of the search string in order, not necessarily contiguous */
+    public static final String QUICK_SEARCH_FUZZY_MATCHING         = FILE_TABLE_SECTION + '.' + "quick_search_fuzzy_matching";
+    /** Default value for {@link #QUICK_SEARCH_FUZZY_MATCHING}. */
+    public static final boolean DEFAULT_QUICK_SEARCH_FUZZY_MATCHING = false;
     /** Controls whether a link to the parent folder should be displayed in file tables (".."). */
     public static final String SHOW_PARENT_FOLDER                  = FILE_TABLE_SECTION + '.' + "show_parent_folder";
     /** Default value for {@link #SHOW_PARENT_FOLDER}. */
     public static final boolean DEFAULT_SHOW_PARENT_FOLDER         = true;
+    /** Whether to display the recursive size of folders whose size was calculated before. */
+    public static final String SHOW_CACHED_FOLDER_SIZES            = FILE_TABLE_SECTION + '.' + "show_cached_folder_sizes";
+    /** Default value for {@link #SHOW_CACHED_FOLDER_SIZES}. */
+    public static final boolean DEFAULT_SHOW_CACHED_FOLDER_SIZES   = true;
+    /** Max number of folder sizes remembered. */
+    public static final String FOLDER_SIZE_CACHE_MAX_ENTRIES       = FILE_TABLE_SECTION + '.' + "folder_size_cache_max_entries";
+    /** Default value for {@link #FOLDER_SIZE_CACHE_MAX_ENTRIES}. */
+    public static final int DEFAULT_FOLDER_SIZE_CACHE_MAX_ENTRIES  = 50000;
 
     /** Name of the root element's attribute that contains the version of muCommander used to write the CONFIGURATION file. */
     static final String VERSION_ATTRIBUTE = "version";
@@ -379,6 +392,59 @@ public class MuPreferences implements MuPreferencesAPI {
     public static final boolean DEFAULT_SMB_USE_EXTENDED_SECURITY = false;
 
 
+
+    // - Variables used for the search index ---------------------------------
+    // -----------------------------------------------------------------------
+    /** Section containing all search index variables. */
+    public static final String SEARCH_INDEX_SECTION               = "search_index";
+    /** Folders that are indexed to speed up file searches, none by default. */
+    public static final String SEARCH_INDEX_ROOTS                 = SEARCH_INDEX_SECTION + '.' + "roots";
+    /** Separator used to tokenise the indexed folders. */
+    public static final String SEARCH_INDEX_ROOTS_SEPARATOR       = ";";
+    /** Max number of files held by the index of a folder. */
+    public static final String SEARCH_INDEX_MAX_ENTRIES           = SEARCH_INDEX_SECTION + '.' + "max_entries";
+    /** Default value for {@link #SEARCH_INDEX_MAX_ENTRIES}. */
+    public static final int DEFAULT_SEARCH_INDEX_MAX_ENTRIES      = 5000000;
+    /** Max size in megabytes of the index of a folder when saved to disk. */
+    public static final String SEARCH_INDEX_MAX_DISK_SIZE         = SEARCH_INDEX_SECTION + '.' + "max_disk_size";
+    /** Default value for {@link #SEARCH_INDEX_MAX_DISK_SIZE}. */
+    public static final int DEFAULT_SEARCH_INDEX_MAX_DISK_SIZE    = 512;
+    /** Max number of folders watched for changes across all indexes. */
+    public static final String SEARCH_INDEX_MAX_WATCHED_FOLDERS   = SEARCH_INDEX_SECTION + '.' + "max_watched_folders";
+    /** Default value for {@link #SEARCH_INDEX_MAX_WATCHED_FOLDERS}. */
+    public static final int DEFAULT_SEARCH_INDEX_MAX_WATCHED_FOLDERS = 4096;
+
+
+
+    // - Variables used for scheduling file jobs -----------------------------
+    // -----------------------------------------------------------------------
+    /** Section containing all job scheduling variables. */
+    public static final String JOBS_SECTION                       = "jobs";
+    /** Max number of jobs running concurrently on the same local volume. */
+    public static final String MAX_JOBS_PER_LOCAL_VOLUME          = JOBS_SECTION + '.' + "max_per_local_volume";
+    /** Default value for {@link #MAX_JOBS_PER_LOCAL_VOLUME}. */
+    public static final int DEFAULT_MAX_JOBS_PER_LOCAL_VOLUME     = 1;
+    /** Max number of jobs running concurrently on the same remote host. */
+    public static final String MAX_JOBS_PER_REMOTE_HOST           = JOBS_SECTION + '.' + "max_per_remote_host";
+    /** Default value for {@link #MAX_JOBS_PER_REMOTE_HOST}. */
+    public static final int DEFAULT_MAX_JOBS_PER_REMOTE_HOST      = 2;
+
+
+
+    // - Variables used for creating archives --------------------------------
+    // -----------------------------------------------------------------------
+    /** Section containing all archive creation variables. */
+    public static final String ARCHIVER_SECTION                   = "archiver";
+    /** Number of threads that compress data, 0 to use as many threads as there are processors. */
+    public static final String ARCHIVER_COMPRESSION_THREADS       = ARCHIVER_SECTION + '.' + "compression_threads";
+    /** Default value for {@link #ARCHIVER_COMPRESSION_THREADS}, a single thread as other jobs may be running. */
+    public static final int DEFAULT_ARCHIVER_COMPRESSION_THREADS  = 1;
+    /** Compression level between 1 (fastest) and 9 (best), -1 to use the default level of each format. */
+    public static final String ARCHIVER_COMPRESSION_LEVEL         = ARCHIVER_SECTION + '.' + "compression_level";
+    /** Default value for {@link #ARCHIVER_COMPRESSION_LEVEL}. */
+    public static final int DEFAULT_ARCHIVER_COMPRESSION_LEVEL    = -1;
+
+
     private static final String ROOT_ELEMENT = "preferences";
 
     // - Instance fields -----------------------------------------------------
@@ -422,7 +488,8 @@ public class MuPreferences implements MuPreferencesAPI {
      * @throws ConfigurationException if a CONFIGURATION related error occurs.
      */
     void write() throws IOException, ConfigurationException {
-        // Clear the configuration before saving to drop preferences which are unused anymore
+        // Save a copy of the configuration to drop preferences which are unused anymore. The configuration itself is
+        // kept, so that its listeners and compiled variables remain notified of its changes.
         Configuration conf = new Configuration(
                 MuPreferencesFile.getPreferencesFile(),
                 () -> new XmlConfigurationReader(),
@@ -436,9 +503,7 @@ public class MuPreferences implements MuPreferencesAPI {
             conf.removeVariable(USE_SCREEN_MENU_BAR);
         }
 
-        configuration = conf;
-
-        configuration.write();
+        conf.write();
     }
 
     // - Configuration listening -----------------------------------------------
@@ -547,6 +612,22 @@ public class MuPreferences implements MuPreferencesAPI {
         return configuration.getListVariable(preference.toString(), separator);
     }
 
+    public ConfigurationVariable.StringVariable compileVariable(MuPreference preference, String value) {
+        return configuration.compileVariable(preference.toString(), value);
+    }
+
+    public ConfigurationVariable.IntegerVariable compileVariable(MuPreference preference, int value) {
+        return configuration.compileVariable(preference.toString(), value);
+    }
+
+    public ConfigurationVariable.LongVariable compileVariable(MuPreference preference, long value) {
+        return configuration.compileVariable(preference.toString(), value);
+    }
+
+    public ConfigurationVariable.BooleanVariable compileVariable(MuPreference preference, boolean value) {
+        return configuration.compileVariable(preference.toString(), value);
+    }
+
     public boolean getBooleanVariable(String name) {
         return configuration.getBooleanVariable(name);
     }
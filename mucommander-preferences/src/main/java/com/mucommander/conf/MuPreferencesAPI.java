@@ -19,6 +19,7 @@ package com.mucommander.conf;
 
 import java.util.List;
 
+import com.mucommander.commons.conf.ConfigurationVariable;
 import com.mucommander.commons.conf.ValueList;
 
 /**
@@ -43,6 +44,11 @@ public interface MuPreferencesAPI {
 	public long 		getVariable(MuPreference preference, long value);
 	public double 		getVariable(MuPreference preference, double value);
 	public ValueList 	getListVariable(MuPreference preference, String separator);
+
+	public ConfigurationVariable.StringVariable 	compileVariable(MuPreference preference, String value);
+	public ConfigurationVariable.IntegerVariable 	compileVariable(MuPreference preference, int value);
+	public ConfigurationVariable.LongVariable 		compileVariable(MuPreference preference, long value);
+	public ConfigurationVariable.BooleanVariable 	compileVariable(MuPreference preference, boolean value);
 	
 	// TODO: remove those methods
 	public boolean getBooleanVariable(String name);
@@ -8,10 +8,12 @@ import org.slf4j.LoggerFactory;
 import com.dropbox.core.DbxRequestConfig;
 import com.dropbox.core.oauth.DbxCredential;
 import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.Metadata;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.AuthException;
 import com.mucommander.commons.file.FileURL;
 import com.mucommander.commons.file.connection.ConnectionHandler;
+import com.mucommander.commons.file.util.MetadataCache;
 import com.mucommander.conf.PlatformManager;
 
 public class DropboxConnectionHandler extends ConnectionHandler implements AutoCloseable {
@@ -19,14 +21,21 @@ public class DropboxConnectionHandler extends ConnectionHandler implements AutoC
 
 	private DbxClientV2 dbxClient;
 	private FileURL fileURL;
+	/** Metadata of the files that were recently listed or resolved through the connections to the account, by lower-case path */
+	private final MetadataCache<Metadata> metadataCache;
 
 	public DbxClientV2 getDbxClient() {
 		return dbxClient;
 	}
 
+	public MetadataCache<Metadata> getMetadataCache() {
+		return metadataCache;
+	}
+
 	public DropboxConnectionHandler(FileURL serverURL) {
 		super(serverURL);
 		this.fileURL = serverURL;
+		this.metadataCache = MetadataCache.getRealmCache(realm, "/");
 	}
 
 	@Override
@@ -70,6 +79,7 @@ public class DropboxConnectionHandler extends ConnectionHandler implements AutoC
 	@Override
 	public void closeConnection() {
 		dbxClient = null;
+		metadataCache.clear();
 	}
 
 	@Override
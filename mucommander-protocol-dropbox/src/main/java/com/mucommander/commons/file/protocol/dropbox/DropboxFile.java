@@ -7,6 +7,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,6 +22,7 @@ import com.dropbox.core.v2.files.DbxUserFilesRequests;
 import com.dropbox.core.v2.files.DeletedMetadata;
 import com.dropbox.core.v2.files.FileMetadata;
 import com.dropbox.core.v2.files.FolderMetadata;
+import com.dropbox.core.v2.files.GetMetadataErrorException;
 import com.dropbox.core.v2.files.ListFolderResult;
 import com.dropbox.core.v2.files.Metadata;
 import com.dropbox.core.v2.files.UploadSessionCursor;
@@ -37,6 +42,7 @@ import com.mucommander.commons.file.connection.ConnectionHandler;
 import com.mucommander.commons.file.connection.ConnectionHandlerFactory;
 import com.mucommander.commons.file.connection.ConnectionPool;
 import com.mucommander.commons.file.protocol.ProtocolFile;
+import com.mucommander.commons.file.util.MetadataCache;
 import com.mucommander.commons.file.util.PathUtils;
 import com.mucommander.commons.io.RandomAccessInputStream;
 import com.mucommander.commons.io.RandomAccessOutputStream;
@@ -84,10 +90,26 @@ public class DropboxFile extends ProtocolFile implements ConnectionHandlerFactor
 
 	private void resolveFile() throws IOException {
 		try (DropboxConnectionHandler connHandler = getConnHandler()) {
+			// The file may be known from a recent listing of its parent
+			MetadataCache<Metadata> cache = connHandler.getMetadataCache();
+			Optional<Metadata> cachedMetadata = cache.get(getCacheKey(fileURL));
+			if (cachedMetadata != null) {
+				cachedMetadata.ifPresent(this::updateAttributes);
+				return;
+			}
+
 			LOGGER.info("Resolving {}", getURL());
 			String path = PathUtils.removeTrailingSeparator(getURL().getPath());
-			Metadata metadata = connHandler.getDbxClient().files().getMetadata(path);
-			updateAttributes(metadata);
+			try {
+				Metadata metadata = connHandler.getDbxClient().files().getMetadata(path);
+				updateAttributes(metadata);
+				cache.put(getCacheKey(fileURL), metadata);
+			} catch (GetMetadataErrorException e) {
+				if (e.errorValue.isPath() && e.errorValue.getPathValue().isNotFound())
+					cache.putMissing(getCacheKey(fileURL));
+				else
+					throw e;
+			}
 		} catch (DbxException e) {
 			LOGGER.error("failed to resolve dropbox file", e);
 		} finally {
@@ -95,6 +117,20 @@ public class DropboxFile extends ProtocolFile implements ConnectionHandlerFactor
 		}
 	}
 
+	/**
+	 * Returns the key of the given file in the metadata cache. Dropbox paths are case-insensitive.
+	 */
+	private static String getCacheKey(FileURL url) {
+		return PathUtils.removeTrailingSeparator(url.getPath(), "/").toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Discards what the metadata cache knows about the given file, to be called after the file is modified.
+	 */
+	private static void invalidateCache(DropboxConnectionHandler connHandler, FileURL url) {
+		connHandler.getMetadataCache().invalidate(getCacheKey(url));
+	}
+
 	protected String getId() {
 		return id;
 	}
@@ -200,14 +236,30 @@ public class DropboxFile extends ProtocolFile implements ConnectionHandlerFactor
 				LOGGER.error("failed to list folder", e);
 				return null;
 			}
-			return result.getEntries().stream()
+			DropboxFile[] children = result.getEntries().stream()
 					.filter(meta -> !(meta instanceof DeletedMetadata))
 					.map(meta -> {
 						FileURL url = (FileURL) fileURL.clone();
 						url.setPath(meta.getPathDisplay());
 						return new DropboxFile(url, this, meta);
 					})
-					.toArray(AbstractFile[]::new);
+					.toArray(DropboxFile[]::new);
+
+			// Cache the listed files so that resolving them later does not require another request
+			MetadataCache<Metadata> cache = connHandler.getMetadataCache();
+			Map<String, Metadata> listing = new LinkedHashMap<>();
+			for (Metadata meta : result.getEntries()) {
+				if (meta instanceof DeletedMetadata)
+					continue;
+				if (result.getHasMore())
+					cache.put(getCacheKey(fileURL) + "/" + meta.getName().toLowerCase(Locale.ROOT), meta);
+				else
+					listing.put(meta.getName().toLowerCase(Locale.ROOT), meta);
+			}
+			if (!result.getHasMore())
+				cache.putListing(getCacheKey(fileURL), listing);
+
+			return children;
 		}
 	}
 
@@ -230,6 +282,7 @@ public class DropboxFile extends ProtocolFile implements ConnectionHandlerFactor
 		try (DropboxConnectionHandler connHandler = getConnHandler()) {
 			CreateFolderResult result = connHandler.getDbxClient().files().createFolderV2(getURL().getPath());
 			id = result.getMetadata().getId();
+			invalidateCache(connHandler, fileURL);
 		} catch (DbxException e) {
 			LOGGER.error("failed to make directory" , e);
 			throw new IOException(e);
@@ -303,6 +356,7 @@ public class DropboxFile extends ProtocolFile implements ConnectionHandlerFactor
 						throw new IOException(e);
 					}
 					id = metadata.getId();
+					invalidateCache(connHandler, fileURL);
 				}
 			};
 			return new BufferedOutputStream(out, 4 << 20);
@@ -328,6 +382,7 @@ public class DropboxFile extends ProtocolFile implements ConnectionHandlerFactor
 	public void delete() throws IOException, UnsupportedFileOperationException {
 		try (DropboxConnectionHandler connHandler = getConnHandler()) { 
 			connHandler.getDbxClient().files().deleteV2(getId());
+			invalidateCache(connHandler, fileURL);
 		} catch (DbxException e) {
 			LOGGER.error("failed to delete file", e);
 			throw new IOException(e);
@@ -338,6 +393,8 @@ public class DropboxFile extends ProtocolFile implements ConnectionHandlerFactor
 	public void renameTo(AbstractFile destFile) throws IOException, UnsupportedFileOperationException {
 		try (DropboxConnectionHandler connHandler = getConnHandler()) {
 			connHandler.getDbxClient().files().moveV2(getId(), destFile.getURL().getPath());
+			invalidateCache(connHandler, fileURL);
+			invalidateCache(connHandler, destFile.getURL());
 		} catch (DbxException e) {
 			LOGGER.error("failed to rename file", e);
 			throw new IOException(e);
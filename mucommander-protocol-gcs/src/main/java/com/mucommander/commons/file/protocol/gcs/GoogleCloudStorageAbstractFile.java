@@ -22,6 +22,7 @@ import java.io.OutputStream;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
+import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.Storage;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileFactory;
@@ -37,6 +38,7 @@ import com.mucommander.commons.file.UnsupportedFileOperation;
 import com.mucommander.commons.file.UnsupportedFileOperationException;
 import com.mucommander.commons.file.connection.ConnectionPool;
 import com.mucommander.commons.file.protocol.ProtocolFile;
+import com.mucommander.commons.file.util.MetadataCache;
 import com.mucommander.commons.file.util.PathUtils;
 import com.mucommander.commons.io.RandomAccessInputStream;
 import com.mucommander.commons.io.RandomAccessOutputStream;
@@ -82,6 +84,27 @@ public abstract class GoogleCloudStorageAbstractFile extends ProtocolFile {
         return gcsClient;
     }
 
+    /**
+     * Returns the cache of the blobs known to the client of this file.
+     *
+     * @return the cache of the blobs, <b>null</b> if the client is not available
+     */
+    protected MetadataCache<Blob> getBlobCache() {
+        try {
+            return getCloudStorageClient().getBlobCache();
+        } catch (IOException ex) {
+            // The cache is not mandatory
+            return null;
+        }
+    }
+
+    /**
+     * Returns the key of the given file in the blob cache, i.e., its path without trailing separator.
+     */
+    protected static String getCacheKey(FileURL url) {
+        return PathUtils.removeTrailingSeparator(url.getPath(), "/");
+    }
+
     @Override
     public long getDate() {
         // No date supplied
@@ -18,21 +18,29 @@ package com.mucommander.commons.file.protocol.gcs;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
+import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Bucket;
 import com.google.cloud.storage.BucketInfo;
 import com.google.cloud.storage.Storage;
+import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.file.util.PathUtils;
 
 /**
  * Representation of the Bucket as a Folder for the CloudStorage. The bucket lists its content as its children.
@@ -45,6 +53,9 @@ public class GoogleCloudStorageBucket extends GoogleCloudStorageAbstractFile {
 
     protected static final Pattern BUCKER_NAME_BLOB_PATH_PATTERN = Pattern.compile("^/([^/]+)/?(.*)/?$");
 
+    /** Maximum number of calls that a single batch request to Cloud Storage can carry */
+    private static final int MAX_BLOBS_PER_BATCH = 100;
+
     private Bucket bucket;
 
     GoogleCloudStorageBucket(FileURL url) {
@@ -110,8 +121,26 @@ public class GoogleCloudStorageBucket extends GoogleCloudStorageAbstractFile {
         var files = getBucket().list(
                 // By default, lists bucket root as directory
                 Storage.BlobListOption.currentDirectory());
-        return StreamSupport.stream(files.iterateAll().spliterator(), false)
-                .map(this::toFile);
+        var blobs = StreamSupport.stream(files.iterateAll().spliterator(), false)
+                .collect(Collectors.toList());
+        cacheListing(getBucketName(), "", blobs);
+        return blobs.stream().map(this::toFile);
+    }
+
+    /**
+     * Caches the given blobs, listed from the given directory, so that they do not have to be fetched again.
+     *
+     * @param bucketName name of the bucket of the directory
+     * @param path path of the directory in the bucket
+     * @param blobs the blobs in the directory
+     */
+    protected void cacheListing(String bucketName, String path, List<Blob> blobs) {
+        var cache = getBlobCache();
+        if (cache != null) {
+            var children = new LinkedHashMap<String, Blob>();
+            blobs.forEach(blob -> children.put(getBlobName(blob), blob));
+            cache.putListing(PathUtils.removeTrailingSeparator("/" + bucketName + "/" + path, "/"), children);
+        }
     }
 
     /**
@@ -123,6 +152,16 @@ public class GoogleCloudStorageBucket extends GoogleCloudStorageAbstractFile {
                 url -> new GoogleCloudStorageFile(url, getBucket(), blob));
     }
 
+    /**
+     * Discards what the blob cache knows about this file, to be called after this file is modified.
+     */
+    protected void invalidateCache() {
+        var cache = getBlobCache();
+        if (cache != null) {
+            cache.invalidate(getCacheKey(getURL()));
+        }
+    }
+
     @Override
     public long getDate() {
         if (getBucket() == null) {
@@ -145,6 +184,7 @@ public class GoogleCloudStorageBucket extends GoogleCloudStorageAbstractFile {
             }
             // We can set created bucket here
             bucket = getStorageService().create(bucketBuilder.build());
+            invalidateCache();
         } catch (Exception ex) {
             throw new IOException("Unable to create bucket " + getBucketName(), ex);
         }
@@ -156,6 +196,7 @@ public class GoogleCloudStorageBucket extends GoogleCloudStorageAbstractFile {
             if (getBucket() != null && getBucket().delete()) {
                 // The bucket was deleted
                 bucket = null;
+                invalidateCache();
             } else {
                 throw new IllegalStateException("Bucket " + getBucketName() + " wasn't deleted, it's probably missing");
             }
@@ -163,4 +204,45 @@ public class GoogleCloudStorageBucket extends GoogleCloudStorageAbstractFile {
             throw new IOException("Unable to delete bucket " + getBucketName(), ex);
         }
     }
+
+    @Override
+    public Map<AbstractFile, IOException> deleteChildren(List<AbstractFile> children) throws IOException {
+        var failures = new LinkedHashMap<AbstractFile, IOException>();
+        var bucketName = getBucketName();
+
+        // Blobs are deleted by batches, each of them being sent in a single HTTP request
+        for (int from = 0; from < children.size(); from += MAX_BLOBS_PER_BATCH) {
+            var files = new ArrayList<AbstractFile>();
+            var blobIds = new ArrayList<BlobId>();
+            for (var child : children.subList(from, Math.min(children.size(), from + MAX_BLOBS_PER_BATCH))) {
+                var file = child.getAncestor(GoogleCloudStorageFile.class);
+                if (file == null || file.isDirectory()) {
+                    failures.put(child, new IOException("Unable to delete " + child.getURL() + ", not a file"));
+                } else {
+                    files.add(child);
+                    blobIds.add(BlobId.of(bucketName, file.getBlobPath()));
+                }
+            }
+
+            if (blobIds.isEmpty()) {
+                continue;
+            }
+
+            try {
+                var deleted = getStorageService().delete(blobIds);
+                for (int i = 0; i < files.size(); i++) {
+                    var file = files.get(i);
+                    if (Boolean.TRUE.equals(deleted.get(i))) {
+                        file.getAncestor(GoogleCloudStorageFile.class).blobDeleted();
+                    } else {
+                        failures.put(file, new IOException("File " + file.getURL() + " wasn't deleted, it's probably missing"));
+                    }
+                }
+            } catch (Exception ex) {
+                var cause = new IOException("Unable to delete files in bucket " + bucketName, ex);
+                files.forEach(file -> failures.put(file, cause));
+            }
+        }
+        return failures;
+    }
 }
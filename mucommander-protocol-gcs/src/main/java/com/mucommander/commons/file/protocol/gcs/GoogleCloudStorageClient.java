@@ -24,8 +24,10 @@ import java.util.List;
 import com.google.api.services.storage.StorageScopes;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.auth.oauth2.ImpersonatedCredentials;
+import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.StorageOptions;
+import com.mucommander.commons.file.util.MetadataCache;
 import com.mucommander.commons.util.StringUtils;
 
 /**
@@ -37,9 +39,16 @@ public class GoogleCloudStorageClient implements Closeable {
 
     private final GoogleCloudStorageConnectionProperties connectionProperties;
     private Storage storageService;
-
-    public GoogleCloudStorageClient(GoogleCloudStorageConnectionProperties connectionProperties) {
+    /** Blobs that were recently listed or fetched through the clients of the project, by file path */
+    private final MetadataCache<Blob> blobCache;
+
+    /**
+     * @param connectionProperties the properties of the connection to the project
+     * @param blobCache the cache shared by the clients of the project
+     */
+    public GoogleCloudStorageClient(GoogleCloudStorageConnectionProperties connectionProperties, MetadataCache<Blob> blobCache) {
         this.connectionProperties = connectionProperties;
+        this.blobCache = blobCache;
     }
 
     public Storage getConnection() throws IOException {
@@ -50,6 +59,10 @@ public class GoogleCloudStorageClient implements Closeable {
         return storageService;
     }
 
+    public MetadataCache<Blob> getBlobCache() {
+        return blobCache;
+    }
+
     public GoogleCloudStorageConnectionProperties getConnectionProperties() {
         return connectionProperties;
     }
@@ -108,6 +121,7 @@ public class GoogleCloudStorageClient implements Closeable {
 
     @Override
     public void close() throws IOException {
+        blobCache.clear();
         try {
             storageService.close();
         } catch (Exception e) {
@@ -21,8 +21,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import com.google.cloud.storage.Blob;
 import com.mucommander.commons.file.FileURL;
 import com.mucommander.commons.file.connection.ConnectionHandler;
+import com.mucommander.commons.file.util.MetadataCache;
 import com.mucommander.conf.PlatformManager;
 
 /**
@@ -33,10 +35,13 @@ public class GoogleCloudStorageConnectionHandler extends ConnectionHandler imple
     private static final String GCS_CREDENTIALS_FOLDER = "/google_cloud_storage";
     private final FileURL fileURL;
     private GoogleCloudStorageClient client;
+    /** Blobs that were recently listed or fetched through the connections to the project, by file path */
+    private final MetadataCache<Blob> blobCache;
 
     public GoogleCloudStorageConnectionHandler(FileURL serverURL) {
         super(serverURL);
         this.fileURL = serverURL;
+        this.blobCache = MetadataCache.getRealmCache(realm, "/");
     }
 
     public GoogleCloudStorageClient getClient() throws IOException {
@@ -62,11 +67,15 @@ public class GoogleCloudStorageConnectionHandler extends ConnectionHandler imple
                 throw new IOException("Cannot read connection properties", ex);
             }
 
-            client = new GoogleCloudStorageClient(connectionProperties);
+            client = new GoogleCloudStorageClient(connectionProperties, blobCache);
             client.connect();
         }
     }
 
+    MetadataCache<Blob> getBlobCache() {
+        return blobCache;
+    }
+
     /**
      * Finds url path of the credentials file for the given project id.
      */
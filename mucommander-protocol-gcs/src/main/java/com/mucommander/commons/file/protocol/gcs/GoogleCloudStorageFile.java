@@ -16,6 +16,7 @@
  */
 package com.mucommander.commons.file.protocol.gcs;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -23,6 +24,7 @@ import java.nio.channels.Channels;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.regex.Matcher;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -61,24 +63,54 @@ public class GoogleCloudStorageFile extends GoogleCloudStorageBucket {
      *         doesn't exist
      */
     private Blob getBlob() {
+        if (blob != null || getBucket() == null) {
+            return blob;
+        }
+
+        // The blob may be known from a recent listing of its parent directory
+        var cache = getBlobCache();
+        var cacheKey = getCacheKey(getURL());
+        var cachedBlob = cache != null ? cache.get(cacheKey) : null;
+        if (cachedBlob != null) {
+            return blob = cachedBlob.orElse(null);
+        }
+
         // Get Blob file from the bucket
         var blobPath = getBlobPath();
-        if (blob == null && getBucket() != null && !blobPath.endsWith(getSeparator())) {
+        if (!blobPath.endsWith(getSeparator())) {
             blob = getBucket().get(blobPath);
         }
 
         // Directories are not returned using bucket#get()
-        if (blob == null && getBucket() != null) {
-            // Try to find this blob in the parent directory
+        if (blob == null) {
+            // Try to find this blob in the parent directory, which caches its siblings along the way
             blob = listGcsDir(getBlobPath(getURL().getParent()))
                     .filter(blob -> Objects.equals(getBlobName(blob), getURL().getFilename()))
                     .findFirst()
                     .orElse(null);
         }
 
+        if (cache != null) {
+            if (blob != null) {
+                cache.put(cacheKey, blob);
+            } else {
+                cache.putMissing(cacheKey);
+            }
+        }
         return blob;
     }
 
+    /**
+     * Replaces what the blob cache knows about this file by the blob that was just created.
+     */
+    private void cacheCreatedBlob() {
+        invalidateCache();
+        var cache = getBlobCache();
+        if (cache != null) {
+            cache.put(getCacheKey(getURL()), blob);
+        }
+    }
+
     /**
      * Finds the path of the Blob in the GCS Bucket from the given fileURL. I.e., full path without Bucket name.
      */
@@ -109,16 +141,19 @@ public class GoogleCloudStorageFile extends GoogleCloudStorageBucket {
     }
 
     /**
-     * Returns stream of the blobs in the directory on the given path
+     * Returns stream of the blobs in the directory on the given path, which are cached along the way
      */
     private Stream<Blob> listGcsDir(String path) {
         var files = getBucket().list(
                 // List all blobs in the given folder by string path
                 Storage.BlobListOption.prefix(path),
                 Storage.BlobListOption.currentDirectory());
-        return StreamSupport.stream(files.iterateAll().spliterator(), false)
+        var blobs = StreamSupport.stream(files.iterateAll().spliterator(), false)
                 // Blob name in bucket equals to its path, and sometimes Google API returns parent folder in the result
-                .filter(blob -> !path.equals(blob.getName()));
+                .filter(blob -> !path.equals(blob.getName()))
+                .collect(Collectors.toList());
+        cacheListing(getBucketName(), path, blobs);
+        return blobs.stream();
     }
 
     @Override
@@ -168,10 +203,24 @@ public class GoogleCloudStorageFile extends GoogleCloudStorageBucket {
             var blobInfo = BlobInfo.newBuilder(blobId).build();
             // Any change to the blob creates a new blob in Cloud Storage, the fresh blob will be fetched later
             blob = null;
+            invalidateCache();
 
-            return Channels.newOutputStream(
+            var out = Channels.newOutputStream(
                     // Let the library detect the content
                     getStorageService().writer(blobInfo, Storage.BlobWriteOption.detectContentType()));
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    // The blob is committed on close, forget about it having been looked up during the upload
+                    invalidateCache();
+                }
+            };
         } catch (Exception ex) {
             throw new IOException("Unable to write file " + getURL(), ex);
         }
@@ -187,6 +236,7 @@ public class GoogleCloudStorageFile extends GoogleCloudStorageBucket {
             var blobInfo = BlobInfo.newBuilder(blobId).build();
             // The new blob represents created folder
             blob = getStorageService().create(blobInfo);
+            cacheCreatedBlob();
         } catch (Exception ex) {
             throw new IOException("Unable to create folder " + blobPath + " in bucket " + bucketName, ex);
         }
@@ -201,6 +251,7 @@ public class GoogleCloudStorageFile extends GoogleCloudStorageBucket {
             var blobInfo = BlobInfo.newBuilder(blobId).setContentType(EMPTY_FILE_CONTENT_TYPE).build();
             // The new blob represents created file
             blob = getStorageService().create(blobInfo);
+            cacheCreatedBlob();
         } catch (Exception ex) {
             throw new IOException("Unable to create file " + blobPath + " in bucket " + bucketName, ex);
         }
@@ -219,7 +270,7 @@ public class GoogleCloudStorageFile extends GoogleCloudStorageBucket {
             // GCS flat namespace explanation here https://cloud.google.com/storage/docs/folders
             if (getBlob().exists() && getBlob().delete() || !getBlob().exists()) {
                 // The blob was deleted or doesn't exist anymore
-                blob = null;
+                blobDeleted();
             } else {
                 throw new IllegalStateException("File " + blobName + " wasn't deleted, it's probably missing");
             }
@@ -227,4 +278,12 @@ public class GoogleCloudStorageFile extends GoogleCloudStorageBucket {
             throw new IOException("Unable to delete file " + blobName, ex);
         }
     }
+
+    /**
+     * Forgets about the blob of this file, to be called once it has been deleted.
+     */
+    void blobDeleted() {
+        blob = null;
+        invalidateCache();
+    }
 }
@@ -0,0 +1,32 @@
+package com.mucommander.commons.file.protocol.gcs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.net.MalformedURLException;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import com.mucommander.commons.file.FileURL;
+
+public class GoogleCloudStorageConnectionHandlerTest {
+
+    @Test
+    public void sharedBlobCache() throws MalformedURLException {
+        var handler1 = new GoogleCloudStorageConnectionHandler(FileURL.getFileURL("gcs://shared-project/bucket-name1/folder"));
+        var handler2 = new GoogleCloudStorageConnectionHandler(FileURL.getFileURL("gcs://shared-project/bucket-name2"));
+        var otherHandler = new GoogleCloudStorageConnectionHandler(FileURL.getFileURL("gcs://other-project/bucket-name1"));
+
+        // The connections to the same project see the changes made through each other
+        assertSame(handler1.getBlobCache(), handler2.getBlobCache());
+        handler1.getBlobCache().putMissing("/bucket-name1/file.txt");
+        assertEquals(Optional.empty(), handler2.getBlobCache().get("/bucket-name1/file.txt"));
+        handler2.getBlobCache().invalidate("/bucket-name1/file.txt");
+        assertNull(handler1.getBlobCache().get("/bucket-name1/file.txt"));
+
+        assertNotSame(handler1.getBlobCache(), otherHandler.getBlobCache());
+    }
+}
@@ -23,9 +23,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
 import com.mucommander.commons.file.AuthException;
 import com.mucommander.commons.file.FileURL;
 import com.mucommander.commons.file.connection.ConnectionHandler;
+import com.mucommander.commons.file.util.MetadataCache;
 
 /**
  *
@@ -38,6 +40,8 @@ public class GoogleDriveConnHandler extends ConnectionHandler implements AutoClo
 
     private FileURL location;
     private GoogleDriveClient client;
+    /** Files that were recently listed or created through the connections to the account, by path */
+    private final MetadataCache<File> fileCache;
 
     public String getCertificate() {
         return location.getProperty("certificate");
@@ -46,12 +50,17 @@ public class GoogleDriveConnHandler extends ConnectionHandler implements AutoClo
     public GoogleDriveConnHandler(FileURL serverURL) {
         super(serverURL);
         this.location = serverURL;
+        this.fileCache = MetadataCache.getRealmCache(realm, "/");
     }
 
     public Drive getConnection() throws IOException {
         return client.getConnection();
     }
 
+    public MetadataCache<File> getFileCache() {
+        return fileCache;
+    }
+
     @Override
     public void startConnection() throws IOException, AuthException {
         if (client == null) {
@@ -73,6 +82,7 @@ public class GoogleDriveConnHandler extends ConnectionHandler implements AutoClo
             // nothing we can do... ignore..
         } finally {
             client = null;
+            fileCache.clear();
         }
     }
 
@@ -23,8 +23,10 @@ import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 import org.slf4j.Logger;
@@ -50,6 +52,7 @@ import com.mucommander.commons.file.connection.ConnectionHandler;
 import com.mucommander.commons.file.connection.ConnectionHandlerFactory;
 import com.mucommander.commons.file.connection.ConnectionPool;
 import com.mucommander.commons.file.protocol.ProtocolFile;
+import com.mucommander.commons.file.util.MetadataCache;
 import com.mucommander.commons.file.util.PathUtils;
 import com.mucommander.commons.io.RandomAccessInputStream;
 import com.mucommander.commons.io.RandomAccessOutputStream;
@@ -75,6 +78,35 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
         return connection;
     }
 
+    /**
+     * Returns the cache of the files known to the connection of this file, <code>null</code> if there is no
+     * connection.
+     */
+    protected MetadataCache<File> getFileCache() {
+        try (GoogleDriveConnHandler connHandler = getConnHandler()) {
+            return connHandler.getFileCache();
+        } catch (IOException e) {
+            LOGGER.debug("failed to get connection", e);
+            return null;
+        }
+    }
+
+    protected static String getCacheKey(FileURL url) {
+        return PathUtils.removeTrailingSeparator(url.getPath(), AbstractFile.DEFAULT_SEPARATOR);
+    }
+
+    /**
+     * Discards what the file cache knows about the given file, to be called after the file is modified.
+     */
+    private void invalidateCache(FileURL url, File file) {
+        MetadataCache<File> cache = getFileCache();
+        if (cache != null) {
+            cache.invalidate(getCacheKey(url));
+            if (file != null)
+                cache.put(getCacheKey(url), file);
+        }
+    }
+
     @Override
     public MonitoredFile toMonitoredFile() {
         return new GoogleDriveMonitoredFile(this);
@@ -133,12 +165,22 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
         if (file != null)
             return true;
 
+        // The file may be known from a recent listing of its parent
+        MetadataCache<File> cache = getFileCache();
+        Optional<File> cachedFile = cache != null ? cache.get(getCacheKey(fileURL)) : null;
+        if (cachedFile != null) {
+            file = cachedFile.orElse(null);
+            return file != null;
+        }
+
         GoogleDriveFile parent = getParent();
         if (parent == null || !parent.exists())
             return false;
 
         try {
             Stream.of(parent.ls()).filter(this::equals).findFirst().ifPresent(other -> this.file = other.file);
+            if (file == null && cache != null)
+                cache.putMissing(getCacheKey(fileURL));
         } catch (IOException e) {
             LOGGER.warn("failed to list {}", parent);
             return false;
@@ -209,13 +251,27 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
             List<File> files = result.getFiles();
             if (files == null || files.isEmpty()) {
                 LOGGER.info("No files found.");
-                return new GoogleDriveFile[0];
+                files = Collections.emptyList();
             }
 
-            return files.stream()
+            GoogleDriveFile[] children = files.stream()
                     .filter(Files::isNotTrashed)
                     .map(this::toFile)
                     .toArray(GoogleDriveFile[]::new);
+
+            // Cache the listed files so that resolving them later does not require listing this folder again
+            MetadataCache<File> cache = connHandler.getFileCache();
+            if (result.getNextPageToken() == null) {
+                Map<String, File> listing = new LinkedHashMap<>();
+                for (GoogleDriveFile child : children)
+                    listing.put(child.getName(), child.file);
+                cache.putListing(getCacheKey(fileURL), listing);
+            } else {
+                for (GoogleDriveFile child : children)
+                    cache.put(getCacheKey(child.getURL()), child.file);
+            }
+
+            return children;
         }
     }
 
@@ -240,6 +296,7 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
                     .setFields("id,name,parents,size,modifiedTime,mimeType")
                     .execute();
         }
+        invalidateCache(fileURL, file);
     }
 
     @Override
@@ -279,6 +336,7 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
             fileMetadata.setName(filename);
             PipedOutputStream output = new PipedOutputStream();
             PipedInputStream input = new PipedInputStream(output);
+            invalidateCache(fileURL, null);
             new Thread(() -> {
                 InputStreamContent in = new InputStreamContent("application/octet-stream", input);
                 try {
@@ -286,6 +344,7 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
                             .create(fileMetadata, in)
                             .setFields("id,name,parents,size,modifiedTime,mimeType")
                             .execute();
+                    invalidateCache(fileURL, file);
                 } catch (IOException e) {
                     LOGGER.error("failed to copy to Google Drive", e);
                 }
@@ -327,6 +386,7 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
         try (GoogleDriveConnHandler connHandler = getConnHandler()) {
             connHandler.getConnection().files().delete(file.getId()).execute();
         }
+        invalidateCache(fileURL, null);
     }
 
     @Override
@@ -335,6 +395,8 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
             connHandler.getConnection().files().update(file.getId(), new File().setName(destFile.getName())).execute();
             file.setName(destFile.getName());
         }
+        invalidateCache(fileURL, null);
+        invalidateCache(destFile.getURL(), null);
     }
 
     @Override
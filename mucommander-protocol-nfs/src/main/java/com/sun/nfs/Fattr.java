@@ -64,8 +64,10 @@ public abstract class Fattr {
 
     long validtime;			// time when attrs were new
     long cachetime;			// max cache duration in ms
-    static final int ACMIN = 3  * 1000;	// 3 sec - min cache time
-    static final int ACMAX = 60 * 1000;	// 1 min - max cache time
+    static final int ACREGMIN = 3  * 1000;	// 3 sec - min cache time of files
+    static final int ACREGMAX = 60 * 1000;	// 1 min - max cache time of files
+    static final int ACDIRMIN = 30 * 1000;	// 30 sec - min cache time of dirs
+    static final int ACDIRMAX = 60 * 1000;	// 1 min - max cache time of dirs
 
     static final int NOBODY = 60001;	// Svr4 UID/GID "nobody"
     static final int NFS_NOBODY = -2;	// NFS  UID/GID "nobody"
@@ -85,6 +87,36 @@ public abstract class Fattr {
         return (timenow <= validtime + cachetime);
     }
         
+    /**
+     * Record that the attributes were just retrieved and
+     * set how long they may be cached for.
+     *
+     * We want the cache time to be short for files/dirs
+     * that change frequently and long for files/dirs that
+     * change infrequently.  So the cache time is reset to
+     * the minimum when the modification time changes, and
+     * otherwise grows with the time elapsed since the last
+     * modification, limited by the minimum and maximum
+     * for files or directories (acregmin/acregmax and
+     * acdirmin/acdirmax).
+     *
+     * @param directory	true if the attributes are those of a dir
+     * @param oldmtime	modification time previously known
+     * @param mtime	modification time just retrieved
+     */
+    void setCacheTime(boolean directory, long oldmtime, long mtime) {
+        long min = directory ? ACDIRMIN : ACREGMIN;
+        long max = directory ? ACDIRMAX : ACREGMAX;
+        long timenow = System.currentTimeMillis();
+
+        if (oldmtime != 0 && mtime != oldmtime)
+            cachetime = min;
+        else
+            cachetime = Math.max(min, Math.min(max, (timenow - mtime) / 10));
+
+        validtime = timenow;
+    }
+
     abstract void putFattr(Xdr x);
 
     abstract void getFattr(Xdr x);
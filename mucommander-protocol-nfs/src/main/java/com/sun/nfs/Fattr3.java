@@ -104,23 +104,7 @@ class Fattr3 extends Fattr {
         mtime  = x.xdr_u_int() * 1000 + x.xdr_u_int() / 1000000;
         ctime  = x.xdr_u_int() * 1000 + x.xdr_u_int() / 1000000;
 
-        /*
-         * We want the cache time to be short
-         * for files/dirs that change frequently
-         * and long for files/dirs that change
-         * infrequently. So set the cache time to
-         * the delta between file modifications
-         * limited by ACMIN and ACMAX
-         */
-        long delta = mtime - oldmtime;
-        if (delta > 0) {
-            cachetime = delta;
-            if (cachetime < ACMIN)
-                cachetime = ACMIN;
-            else if (cachetime > ACMAX)
-                cachetime = ACMAX;
-        }
-        validtime = System.currentTimeMillis();
+        setCacheTime(ftype == Nfs.NFDIR, oldmtime, mtime);
     }
 
     public String toString() {
@@ -39,7 +39,6 @@ package com.sun.nfs;
 
 import java.io.*;
 import com.sun.rpc.*;
-import java.util.Hashtable;
 import java.util.Vector;
 
 /**
@@ -52,8 +51,8 @@ import java.util.Vector;
  * and attributes. If a regular file then data may
  * be cached in an XDR buffer.  If a directory then
  * the string array for the entries will be cached.
- * There's also a static hash table that's used to cache
- * these Nfs objects.
+ * There's also a static, bounded cache of these
+ * Nfs objects.
  *
  * @see Nfs2
  * @see Nfs3
@@ -71,7 +70,7 @@ public abstract class Nfs {
     long cacheTime;		// Time when object was cached
     int rsize, wsize;
     private Object wbLock = new Object(); // write-behind semaphore lock
-    static Hashtable cacheNfs = new Hashtable();
+    static final NfsCache cacheNfs = new NfsCache(NfsCache.DEFAULT_CAPACITY);
 
     // Some of the filetypes we're dealing with.
 
@@ -84,13 +83,15 @@ public abstract class Nfs {
     private final static int ASYNC = 0;
     private final static int SYNC  = 2;
 
-    int NRA;	// max reads-ahead      (set in subclass constructor)
+    int NRA;	// initial reads-ahead  (set in subclass constructor)
     int NWB;	// max writes-behind    (")
     int NWC;	// max writes committed (")
     int nwb;	// current writes-behind
     int prevReadIndex  = -1;	// Buffer index of previous read
     int prevWriteIndex = -1;	// Buffer index of previous write
     int maxIndexRead = 0;	// Max file offset read
+    int nra;			// current reads-ahead window
+    int maxIndexAhead = -1;	// Max buffer index read ahead
     long maxLength = 0;		// Size of file
 
     // Some important permission bits
@@ -98,6 +99,25 @@ public abstract class Nfs {
     static final int RBIT = 004;
     static final int WBIT = 002;
 
+    /*
+     * Bounds of the read-ahead window.  The window starts
+     * at NRA buffers and doubles with each sequential buffer
+     * read, up to the number of buffers that fit in
+     * MAX_READ_AHEAD_BYTES.  Each buffer being read ahead
+     * is an outstanding READ request on the connection.
+     */
+    static final int MAX_READ_AHEAD = 16;
+    static final int MAX_READ_AHEAD_BYTES = 2 * 1024 * 1024;
+
+    /*
+     * Largest read or write size we will use, whatever
+     * the server advertises, so as to bound the memory
+     * held by buffers.  Datagrams can't be larger than
+     * the reply buffer of the connection.
+     */
+    static final int MAX_TRANSFER_TCP = 256 * 1024;
+    static final int MAX_TRANSFER_UDP = 32 * 1024;
+
     /*
      * The following abstract classes are version-specific
      * and are implemented in the version subclasses.
@@ -167,13 +187,63 @@ public abstract class Nfs {
 	return (fh);
     }
 
+    /*
+     * Compute the read or write size to use given the
+     * preferred and maximum sizes advertised by the server.
+     *
+     * @param pref	preferred size, 0 if not advertised
+     * @param max	maximum size, 0 if not advertised
+     * @param dflt	size to use if none is advertised
+     * @returns		the transfer size
+     */
+    int transferSize(long pref, long max, int dflt) {
+        long size = pref > 0 ? pref : dflt;
+        if (max > 0 && size > max)
+            size = max;
+
+        size = Math.min(size, rpc.conn instanceof ConnectSocket ?
+            MAX_TRANSFER_TCP : MAX_TRANSFER_UDP);
+
+        return size > 0 ? (int) size : dflt;
+    }
+
+    /*
+     * Max number of buffers read ahead of the current one
+     */
+    int maxReadAhead() {
+        return Math.max(NRA, Math.min(MAX_READ_AHEAD, MAX_READ_AHEAD_BYTES / rsize));
+    }
+
+    /*
+     * Release the buffers read ahead that won't be used
+     * because the reads are no longer sequential.
+     * Releasing a buffer that is still loading waits
+     * for the load to complete.
+     *
+     * @param index	the buffer now being read
+     */
+    void releaseReadAhead(int index) {
+        for (int i = prevReadIndex + 1; i <= maxIndexAhead && i < bufferList.length; i++) {
+            Buffer b = bufferList[i];
+            if (b == null || i == index || i == prevWriteIndex)
+                continue;
+
+            if (b.status == b.LOADED || b.status == b.EMPTY) {
+                bufferList[i] = null;
+                b.exit();
+            }
+        }
+
+        maxIndexAhead = -1;
+    }
+
     /*
      * Cache an Nfs object
      *
      * @param n	the object to be cached
      */
     static void cache_put(Nfs n) {
-        cacheNfs.put(n.rpc.conn.server + ":" + n.name, n);
+        cacheNfs.put(n.rpc.conn.server, n);
     }
 
     /*
@@ -184,7 +254,7 @@ public abstract class Nfs {
      * @returns		The object - or null if not cached
      */
     static Nfs cache_get(String server, String name) {
-        return ((Nfs)cacheNfs.get(server + ":" + name));
+        return cacheNfs.get(server, name);
     }
 
     /*
@@ -194,9 +264,18 @@ public abstract class Nfs {
      */
     static void cache_remove(Nfs n, String name) {
 	if (n.name.equals(".")) 
-       	    cacheNfs.remove(n.rpc.conn.server + ":" + name);
+       	    cacheNfs.remove(n.rpc.conn.server, name);
 	else
-            cacheNfs.remove(n.rpc.conn.server + ":" + n.name + "/" + name);
+            cacheNfs.remove(n.rpc.conn.server, n.name + "/" + name);
+    }
+
+    /**
+     * Get the cache of Nfs objects, e.g. for its statistics
+     *
+     * @return	the cache shared by all the Nfs objects
+     */
+    public static NfsCache getCache() {
+        return cacheNfs;
     }
 
     /**
@@ -227,8 +306,18 @@ public abstract class Nfs {
                     bufferList[i] = null;
 
             prevReadIndex = -1;
+            maxIndexAhead = -1;
+            nra = 0;
         }
 
+        /*
+         * Ask the server for its transfer sizes before
+         * sizing the buffers.  FSINFO also sets wsize,
+         * so this is done once per file.
+         */
+        if (wsize == 0)
+            fsinfo();
+
 	/*
 	 * Check whether we're at EOF
 	 */
@@ -271,16 +360,25 @@ public abstract class Nfs {
             if (index != prevReadIndex) {
 		if (prevReadIndex >= 0 && prevReadIndex != prevWriteIndex) {
                     b = bufferList[prevReadIndex];
-                    if (b.status == b.LOADED) {
+                    if (b != null && b.status == b.LOADED) {
                         bufferList[prevReadIndex] = null;
                         b.exit();
                     }
+		}
 
-		    /*
-		     * Do read-ahead only for sequential I/O
-		     */
-		    if (index == (prevReadIndex + 1) && index >= maxIndexRead)
-			readAhead = NRA;
+		/*
+		 * Do read-ahead only for sequential I/O, doubling
+		 * the window for as long as the reads are sequential
+		 * so that more READ requests are outstanding.
+		 * Random I/O closes the window and releases the
+		 * buffers read ahead.
+		 */
+		if (index == (prevReadIndex + 1) && index >= maxIndexRead) {
+		    nra = nra == 0 ? NRA : Math.min(nra * 2, maxReadAhead());
+		    readAhead = nra;
+		} else {
+		    nra = 0;
+		    releaseReadAhead(index);
 		}
 		prevReadIndex = index;
 	    }
@@ -303,6 +401,8 @@ public abstract class Nfs {
                     bufferList[n] = b;
                 }
             }
+            if (index + readAhead > maxIndexAhead)
+                maxIndexAhead = index + readAhead;
 
             /*
              * Now select the buffer and wait until its not busy.
@@ -325,6 +425,7 @@ public abstract class Nfs {
                     rsize = 8192;
                     bufferList = 
                         new Buffer[(int)(length() / rsize + 1)];
+                    maxIndexAhead = -1;
                     continue;
                 }
 
@@ -342,6 +443,8 @@ public abstract class Nfs {
                 bufferList = null;
                 prevReadIndex  = -1;
                 prevWriteIndex = -1;
+                maxIndexAhead = -1;
+                nra = 0;
 
                 continue;	// Try again with new rsize
             }
@@ -593,9 +696,9 @@ public abstract class Nfs {
          * be released.
          */
         if (nwc > 0 && (flushing || nwc >= NWC)) {
-            int commitOffset = minIndex * rsize +
+            int commitOffset = minIndex * wsize +
                 bufferList[minIndex].minOffset;
-            int commitLength = (maxIndex * rsize +
+            int commitLength = (maxIndex * wsize +
                 bufferList[maxIndex].maxOffset) - commitOffset;
     
             long verf = commit(commitOffset, commitLength);
@@ -689,6 +792,8 @@ public abstract class Nfs {
 
         prevReadIndex  = -1;
         prevWriteIndex = -1;
+        maxIndexAhead = -1;
+        nra = 0;
     }
 
     /*
@@ -122,7 +122,6 @@ class Nfs3 extends Nfs {
     private final static int DATA_SYNC = 1;
     private final static int FILE_SYNC = 2;
 
-    int nra;	// current reads-ahead
     int nwb;	// current writes-behind
 
     int prevWriteIndex = -1;
@@ -1055,11 +1054,21 @@ class Nfs3 extends Nfs {
         if (status != NFS_OK)
             throw new NfsException(status);
     
-        reply.xdr_u_int();		// rtmax
-        reply.xdr_u_int();		// rtpref
+        long rtmax = reply.xdr_u_int();	// rtmax:  maximum read size
+        long rtpref = reply.xdr_u_int();	// rtpref: preferred read size
         reply.xdr_u_int();		// rtmult
-        reply.xdr_u_int();		// wtmax:  maximum write size
-        wsize = reply.xdr_int();	// wtpref: preferred write size
+        long wtmax = reply.xdr_u_int();	// wtmax:  maximum write size
+        long wtpref = reply.xdr_u_int();	// wtpref: preferred write size
+
+        /*
+         * Use the preferred transfer sizes, within the
+         * maximum sizes supported by the server.
+         * The read size can't change once buffers are
+         * sized for reading.
+         */
+        if (bufferList == null)
+            rsize = transferSize(rtpref, rtmax, RWSIZE);
+        wsize = transferSize(wtpref, wtmax, RWSIZE);
 
         /*
          * More attributes follow but we don't
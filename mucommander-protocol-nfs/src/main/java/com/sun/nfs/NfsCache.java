@@ -0,0 +1,234 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sun.nfs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the {@link Nfs} objects, shared by all the
+ * connections.  Objects are keyed by server and file handle, and
+ * indexed by server and pathname for lookups.  The attributes
+ * held by a cached object remain subject to their own cache time
+ * (see {@link Fattr#setCacheTime}), so a cache hit does not mean
+ * that the object is fresh.
+ *
+ * When the cache holds more objects than its capacity, the least
+ * recently used quarter is evicted in one go, which keeps the cost
+ * of recording uses down to a counter increment.  Lookups do not
+ * lock the cache.
+ */
+public final class NfsCache {
+
+    /** Default maximum number of cached objects */
+    static final int DEFAULT_CAPACITY = 10000;
+
+    private final int capacity;
+
+    private final ConcurrentHashMap<Handle, Cached> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Handle> names = new ConcurrentHashMap<>();
+
+    private final AtomicLong clock = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    NfsCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * File handle of an object on a server.
+     */
+    private static final class Handle {
+        private final String server;
+        private final byte[] fh;
+        private final int hash;
+
+        Handle(String server, byte[] fh) {
+            this.server = server;
+            this.fh = fh;
+            this.hash = 31 * server.hashCode() + Arrays.hashCode(fh);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Handle))
+                return false;
+            Handle h = (Handle) o;
+            return hash == h.hash && server.equals(h.server) && Arrays.equals(fh, h.fh);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Cached {
+        final Nfs nfs;
+        final String name;
+        volatile long used;
+
+        Cached(Nfs nfs, String name, long used) {
+            this.nfs = nfs;
+            this.name = name;
+            this.used = used;
+        }
+    }
+
+    private static String nameKey(String server, String name) {
+        return server + ":" + name;
+    }
+
+    /**
+     * Retrieve a cached object
+     *
+     * @param server	The server that hosts the object
+     * @param name	The pathname of the object
+     * @return		The object - or null if not cached
+     */
+    Nfs get(String server, String name) {
+        String key = nameKey(server, name);
+        Handle handle = names.get(key);
+        Cached cached = handle != null ? entries.get(handle) : null;
+
+        // The handle may since have been evicted, or cached for another name
+        if (cached == null || !cached.name.equals(key)) {
+            if (handle != null)
+                names.remove(key, handle);
+            misses.increment();
+            return null;
+        }
+
+        cached.used = clock.incrementAndGet();
+        hits.increment();
+        return cached.nfs;
+    }
+
+    /**
+     * Cache an object, replacing the object previously cached
+     * for the same file handle or pathname.
+     *
+     * @param server	The server that hosts the object
+     * @param n	the object to be cached
+     */
+    void put(String server, Nfs n) {
+        String key = nameKey(server, n.name);
+        Handle handle = new Handle(server, n.fh);
+
+        entries.put(handle, new Cached(n, key, clock.incrementAndGet()));
+        Handle previous = names.put(key, handle);
+        if (previous != null && !previous.equals(handle))
+            entries.remove(previous);
+
+        if (entries.size() > capacity)
+            evict();
+    }
+
+    /**
+     * Remove the object cached for a pathname
+     *
+     * @param server	The server that hosts the object
+     * @param name	The pathname of the object
+     */
+    void remove(String server, String name) {
+        String key = nameKey(server, name);
+        Handle handle = names.remove(key);
+        if (handle != null) {
+            Cached cached = entries.get(handle);
+            if (cached != null && cached.name.equals(key))
+                entries.remove(handle, cached);
+        }
+    }
+
+    /**
+     * Evict the least recently used quarter of the objects.
+     */
+    private synchronized void evict() {
+        if (entries.size() <= capacity)
+            return;     // another thread got there first
+
+        List<Map.Entry<Handle, Cached>> all = new ArrayList<>(entries.entrySet());
+        all.sort(Comparator.comparingLong(e -> e.getValue().used));
+
+        int count = all.size() - capacity * 3 / 4;
+        for (int i = 0; i < count; i++) {
+            Map.Entry<Handle, Cached> e = all.get(i);
+            if (entries.remove(e.getKey(), e.getValue())) {
+                names.remove(e.getValue().name, e.getKey());
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Remove all the cached objects
+     */
+    public void clear() {
+        entries.clear();
+        names.clear();
+    }
+
+    /**
+     * @return the number of objects currently cached
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the maximum number of objects cached
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of lookups that found a cached object
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that found no cached object
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of objects evicted to keep within capacity
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public String toString() {
+        return "NfsCache: " + size() + "/" + capacity + " objects, " +
+            getHits() + " hits, " + getMisses() + " misses, " +
+            getEvictions() + " evictions";
+    }
+}
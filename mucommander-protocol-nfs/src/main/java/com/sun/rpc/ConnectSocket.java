@@ -194,7 +194,13 @@ public class ConnectSocket extends Connection {
                 recsize = rcv_mark.xdr_u_int();
                 lastfrag = (recsize & LAST_FRAG) != 0;
                 recsize &= SIZE_MASK;
-        
+
+                /*
+                 * Replies to large reads may not fit in the
+                 * buffer sized for the usual replies.
+                 */
+                x.xdr_capacity(off + (int) recsize);
+
                 /*
                  * then read the record data
                  */
@@ -59,9 +59,8 @@ public abstract class Connection extends Thread {
     public int port;
     String proto;
     Hashtable waiters = new Hashtable();
+    Hashtable replies = new Hashtable(); // replies not yet picked up, by xid
     static final int IDLETIME = 300 * 1000; // idle connection after 5 min
-    int xid;		// transaction id
-    Xdr reply;
     int maxSize;	// size of reply Xdr buffer
     Error err;		// might get thrown by the thread
 
@@ -143,47 +142,61 @@ public abstract class Connection extends Thread {
         notifyAll();
     }
 
+    /*
+     * Send a call and wait for its reply.
+     *
+     * Several threads may have calls outstanding on the
+     * connection at the same time: the listener thread
+     * files each reply under its XID and goes straight back
+     * to reading the next one, so that the replies to
+     * pipelined calls are not held up by the threads that
+     * are slow to pick up theirs.
+     */
     synchronized Xdr send(Xdr call, int timeout)
         throws IOException {
 
         checkConnection();
         resumeListener();
-        sendOne(call);
 
-        waiters.put(new Integer(call.xid), new Integer(timeout));
+        Integer key = new Integer(call.xid);
+        waiters.put(key, new Integer(timeout));
+        try {
+            sendOne(call);
 
-        /*
-         * Now sleep until the listener thread posts
-         * my XID and notifies me - or I time out.
-         */
-        while (xid != call.xid) {
-            long t = System.currentTimeMillis();
+            /*
+             * Now sleep until the listener thread posts
+             * my reply and notifies me - or I time out.
+             */
+            Xdr reply;
+            while ((reply = (Xdr) replies.remove(key)) == null) {
+                long t = System.currentTimeMillis();
 
-	    if (err != null)
-		throw err;
+                if (err != null)
+                    throw err;
 
-            try {
-                wait(timeout);
-            } catch (InterruptedException e) {}
-		
-	    if (err != null)
-		throw err;
-
-            timeout -= (System.currentTimeMillis() - t);
-            if (timeout <= 0) {
-                waiters.remove(new Integer(call.xid));
-                throw new InterruptedIOException(); // timed out
-            }
-        }
+                try {
+                    wait(timeout);
+                } catch (InterruptedException e) {}
+
+                if (err != null)
+                    throw err;
 
-        /*
-         * My reply has come in.
-         */
-        xid = 0;
-        waiters.remove(new Integer(call.xid));
-        notifyAll(); // wake the listener
+                if (replies.containsKey(key))
+                    continue;
 
-        return reply;
+                timeout -= (System.currentTimeMillis() - t);
+                if (timeout <= 0)
+                    throw new InterruptedIOException(); // timed out
+            }
+
+            /*
+             * My reply has come in.
+             */
+            return reply;
+        } finally {
+            waiters.remove(key);
+            replies.remove(key);
+        }
     }
 
     /*
@@ -196,16 +209,8 @@ public abstract class Connection extends Thread {
 
 	try {
             while (true) {
-    
-                synchronized (this) {
-                    while (xid != 0) {
-                        try {
-                            wait();
-                        } catch (InterruptedException e) {}
-                    }
-                }
-    
-                reply = new Xdr(maxSize);
+
+                Xdr reply = new Xdr(maxSize);
         
                 /*
                  * The listener thread now blocks reading
@@ -232,16 +237,16 @@ public abstract class Connection extends Thread {
                  * Have received an Xdr buffer.
                  * Extract the xid and check the hashtable
                  * to see if there's thread waiting for that reply.
-                 * If there is, then notify the thread.  If not
-                 * then ignore the reply (its thread may
-                 * have timed out and gone away).
+                 * If there is, then post the reply and notify
+                 * the thread.  If not then ignore the reply
+                 * (its thread may have timed out and gone away).
                  */
                 synchronized (this) {
-                    xid = reply.xdr_int();
-                    if (waiters.containsKey(new Integer(xid)))
+                    Integer xid = new Integer(reply.xdr_int());
+                    if (waiters.containsKey(xid)) {
+                        replies.put(xid, reply);
                         notifyAll();
-                    else
-                        xid = 0;   // ignore it
+                    }
                 }
             }
         } catch (Error e) {
@@ -155,6 +155,24 @@ public class Xdr {
 	this.size = size;
     }
 
+    /**
+     * Make sure the XDR buffer can hold at least the given
+     * number of bytes, growing it if needed.  The data
+     * already in the buffer are preserved.
+     *
+     * @param	capacity of buffer in bytes
+     */
+    void xdr_capacity(int capacity) {
+	if (capacity <= buf.length)
+	    return;
+
+	byte[] nbuf = new byte[Math.max(capacity, buf.length * 2)];
+	System.arraycopy(buf, 0, nbuf, 0, buf.length);
+	if (size == buf.length)
+	    size = nbuf.length;
+	buf = nbuf;
+    }
+
     /**
      * Get an integer from the buffer
      *
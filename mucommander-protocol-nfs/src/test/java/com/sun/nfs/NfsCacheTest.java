@@ -0,0 +1,110 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sun.nfs;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Runs tests on {@link NfsCache}.
+ */
+public class NfsCacheTest {
+
+    private static final String SERVER = "server";
+
+    private static Nfs nfs(int fh, String name) {
+        return new Nfs3(null, new byte[] { (byte) fh, 1, 2, 3 }, name, null);
+    }
+
+    @Test
+    public void testGet() {
+        NfsCache cache = new NfsCache(10);
+        Nfs file = nfs(1, "dir/file");
+        cache.put(SERVER, file);
+
+        assertSame(cache.get(SERVER, "dir/file"), file);
+        assertNull(cache.get(SERVER, "dir/other"));
+        // The same path on another server is another object
+        assertNull(cache.get("other", "dir/file"));
+        assertEquals(cache.getHits(), 1);
+        assertEquals(cache.getMisses(), 2);
+
+        // The object cached for a path is replaced, even if its file handle changed
+        Nfs replaced = nfs(2, "dir/file");
+        cache.put(SERVER, replaced);
+        assertSame(cache.get(SERVER, "dir/file"), replaced);
+        assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testRemove() {
+        NfsCache cache = new NfsCache(10);
+        cache.put(SERVER, nfs(1, "dir/file"));
+        cache.put(SERVER, nfs(2, "dir/other"));
+
+        cache.remove(SERVER, "dir/file");
+        assertNull(cache.get(SERVER, "dir/file"));
+        assertEquals(cache.size(), 1);
+        // Removing a path that is not cached does nothing
+        cache.remove(SERVER, "dir/missing");
+        assertEquals(cache.size(), 1);
+
+        cache.clear();
+        assertNull(cache.get(SERVER, "dir/other"));
+        assertEquals(cache.size(), 0);
+    }
+
+    /**
+     * Makes sure that a file handle cached under a new pathname, e.g. after a rename, is no longer found under the
+     * previous one, and that removing the previous pathname doesn't remove it.
+     */
+    @Test
+    public void testRename() {
+        NfsCache cache = new NfsCache(10);
+        cache.put(SERVER, nfs(1, "dir/old"));
+        Nfs renamed = nfs(1, "dir/new");
+        cache.put(SERVER, renamed);
+
+        assertNull(cache.get(SERVER, "dir/old"));
+        cache.remove(SERVER, "dir/old");
+        assertSame(cache.get(SERVER, "dir/new"), renamed);
+        assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testEviction() {
+        NfsCache cache = new NfsCache(8);
+        for (int i = 0; i < 8; i++)
+            cache.put(SERVER, nfs(i, "file" + i));
+        // The first files are the most recently used ones
+        for (int i = 0; i < 3; i++)
+            cache.get(SERVER, "file" + i);
+
+        // Exceeding the capacity evicts the least recently used quarter, down to 3/4 of the capacity
+        cache.put(SERVER, nfs(8, "file8"));
+        assertEquals(cache.size(), 6);
+        assertEquals(cache.getEvictions(), 3);
+        for (int i = 3; i < 6; i++)
+            assertNull(cache.get(SERVER, "file" + i));
+        for (int i : new int[] { 0, 1, 2, 6, 7, 8 })
+            assertEquals(cache.get(SERVER, "file" + i).name, "file" + i);
+    }
+}
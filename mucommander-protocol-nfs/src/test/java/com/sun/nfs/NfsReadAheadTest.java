@@ -0,0 +1,238 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sun.nfs;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Runs tests on the read-ahead of {@link Nfs}, against a stand-in that serves READ requests from memory with some
+ * latency instead of from a server.
+ */
+public class NfsReadAheadTest {
+
+    private static final int RSIZE = 8192;
+
+    @Test
+    public void testSequentialRead() throws IOException {
+        RecordedNfs nfs = new RecordedNfs(64 * RSIZE + 100);
+        byte[] read = new byte[nfs.data.length];
+        int offset = 0;
+        int count;
+        while ((count = nfs.read(read, offset, Math.min(4096, read.length - offset), offset)) > 0) {
+            offset += count;
+            // the buffers allocated are bounded by the read-ahead window
+            assertTrue(nfs.countBuffers() <= nfs.maxReadAhead() + 2);
+        }
+
+        assertEquals(offset, nfs.data.length);
+        assertEquals(read, nfs.data);
+        // several READ requests were outstanding at the same time
+        assertTrue(nfs.maxOutstanding.get() > 1);
+        nfs.close();
+    }
+
+    @Test
+    public void testRandomRead() throws IOException {
+        RecordedNfs nfs = new RecordedNfs(64 * RSIZE);
+        byte[] read = new byte[1000];
+
+        // open the read-ahead window
+        for (long offset = 0; offset < 16 * RSIZE; offset += read.length)
+            nfs.read(read, 0, read.length, offset);
+
+        Random random = new Random(0);
+        for (int i = 0; i < 50; i++) {
+            int offset = random.nextInt(nfs.data.length - read.length);
+            assertEquals(nfs.read(read, 0, read.length, offset), read.length);
+            for (int j = 0; j < read.length; j++)
+                assertEquals(read[j], nfs.data[offset + j]);
+        }
+        // buffers read ahead are released when the reads are no longer sequential
+        assertTrue(nfs.countBuffers() <= 2);
+        nfs.close();
+    }
+
+    /**
+     * Answers READ requests from an in-memory file, like a server would after some latency.
+     */
+    private static class RecordedNfs extends Nfs {
+        private final byte[] data;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger maxOutstanding = new AtomicInteger();
+
+        RecordedNfs(int length) {
+            data = new byte[length];
+            new Random(length).nextBytes(data);
+            name = "file";
+            rsize = RSIZE;
+            NRA = 1;
+            NWB = 4;
+            NWC = 10;
+        }
+
+        synchronized int countBuffers() {
+            int count = 0;
+            for (Buffer b : bufferList)
+                if (b != null)
+                    count++;
+            return count;
+        }
+
+        @Override
+        void read_otw(Buffer b) throws IOException {
+            maxOutstanding.accumulateAndGet(outstanding.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {}
+
+            int length = (int) Math.max(0, Math.min(rsize, data.length - b.foffset));
+            b.buf = new byte[length];
+            System.arraycopy(data, (int) b.foffset, b.buf, 0, length);
+            b.bufoff = 0;
+            b.buflen = length;
+            b.eof = b.foffset + rsize >= data.length;
+            outstanding.decrementAndGet();
+        }
+
+        @Override
+        void fsinfo() {
+            wsize = rsize;
+        }
+
+        @Override
+        boolean cacheOK(long t) {
+            return true;
+        }
+
+        @Override
+        long length() {
+            return data.length;
+        }
+
+        @Override
+        void checkAttr() {}
+
+        @Override
+        void getattr() {}
+
+        @Override
+        long mtime() {
+            return 0;
+        }
+
+        @Override
+        boolean exists() {
+            return true;
+        }
+
+        @Override
+        boolean canWrite() {
+            return false;
+        }
+
+        @Override
+        boolean canRead() {
+            return true;
+        }
+
+        @Override
+        boolean isFile() {
+            return true;
+        }
+
+        @Override
+        boolean isDirectory() {
+            return false;
+        }
+
+        @Override
+        boolean isSymlink() {
+            return false;
+        }
+
+        @Override
+        Fattr getAttr() {
+            return null;
+        }
+
+        @Override
+        Nfs lookup(String path) throws IOException {
+            throw new IOException("not supported");
+        }
+
+        @Override
+        String lookupSec() {
+            return null;
+        }
+
+        @Override
+        int write_otw(Buffer buf) throws IOException {
+            throw new IOException("not supported");
+        }
+
+        @Override
+        String[] readdir() throws IOException {
+            throw new IOException("not supported");
+        }
+
+        @Override
+        String readlink() throws IOException {
+            throw new IOException("not supported");
+        }
+
+        @Override
+        Nfs create(String name, long mode) throws IOException {
+            throw new IOException("not supported");
+        }
+
+        @Override
+        Nfs mkdir(String name, long mode) throws IOException {
+            throw new IOException("not supported");
+        }
+
+        @Override
+        boolean remove(String name) {
+            return false;
+        }
+
+        @Override
+        boolean rename(Nfs dstP, String sName, String dName) {
+            return false;
+        }
+
+        @Override
+        boolean rmdir(String name) {
+            return false;
+        }
+
+        @Override
+        long commit(int foffset, int length) {
+            return 0;
+        }
+
+        @Override
+        void invalidate() {}
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sun.rpc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Runs tests on the dispatching of RPC replies by {@link Connection}, against a transport that answers the calls
+ * out of order.
+ */
+public class ConnectionTest {
+
+    private static final int TIMEOUT = 10000;
+
+    /**
+     * Makes sure that several calls can be outstanding on a connection and that each of them gets its own reply,
+     * whatever the order in which the replies come in.
+     */
+    @Test
+    public void testOutOfOrderReplies() throws Exception {
+        int nbCalls = 4;
+        // No reply comes in before all the calls are sent, so the calls must be pipelined
+        ReorderingConnection connection = new ReorderingConnection(nbCalls);
+        connection.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(nbCalls);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 1; i <= nbCalls; i++) {
+                int xid = i;
+                results.add(executor.submit(() -> call(connection, xid, TIMEOUT)));
+            }
+            for (int i = 1; i <= nbCalls; i++)
+                assertEquals((int) results.get(i - 1).get(), payload(i));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // The replies came in the reverse order of the calls
+        List<Integer> reversed = new ArrayList<>(connection.called);
+        Collections.reverse(reversed);
+        assertEquals(connection.replied, reversed);
+        assertTrue(connection.replies.isEmpty());
+        assertTrue(connection.waiters.isEmpty());
+    }
+
+    /**
+     * Makes sure that a call times out when its reply doesn't come in, and that the reply coming in late is
+     * discarded without holding up the next call.
+     */
+    @Test
+    public void testLateReply() throws Exception {
+        ReorderingConnection connection = new ReorderingConnection(2);
+        connection.start();
+
+        try {
+            call(connection, 1, 100);
+            fail();
+        } catch (InterruptedIOException e) {
+            // expected
+        }
+
+        // The reply to the second call comes in before the one to the first call
+        assertEquals(call(connection, 2, TIMEOUT), payload(2));
+        assertEquals((int) connection.replied.get(0), 2);
+        assertTrue(connection.replies.isEmpty());
+        assertTrue(connection.waiters.isEmpty());
+    }
+
+    private static int call(Connection connection, int xid, int timeout) throws IOException {
+        Xdr call = new Xdr(64);
+        call.xid = xid;
+        Xdr reply = connection.send(call, timeout);
+        // The listener has read the xid already
+        return reply.xdr_int();
+    }
+
+    private static int payload(int xid) {
+        return xid * 100;
+    }
+
+    /**
+     * Sends the calls nowhere, and answers them by batches in the reverse order they were sent.
+     */
+    private static class ReorderingConnection extends Connection {
+
+        private final int batchSize;
+        /** XIDs of the calls sent and not answered yet */
+        private final List<Integer> sent = new ArrayList<>();
+        /** XIDs of the replies to come in */
+        private final Deque<Integer> pending = new ArrayDeque<>();
+        /** XIDs of the calls that were sent, in order */
+        private final List<Integer> called = Collections.synchronizedList(new ArrayList<>());
+        /** XIDs of the replies that came in, in order */
+        private final List<Integer> replied = Collections.synchronizedList(new ArrayList<>());
+
+        ReorderingConnection(int batchSize) {
+            super("test", 0, "tcp", 64);
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        void sendOne(Xdr call) {
+            synchronized (sent) {
+                sent.add(call.xid);
+                called.add(call.xid);
+                sent.notifyAll();
+            }
+        }
+
+        @Override
+        void receiveOne(Xdr reply, int timeout) throws IOException {
+            int xid;
+            synchronized (sent) {
+                while (pending.isEmpty()) {
+                    if (sent.size() >= batchSize) {
+                        Collections.reverse(sent);
+                        pending.addAll(sent);
+                        sent.clear();
+                        break;
+                    }
+                    try {
+                        sent.wait();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                }
+                xid = pending.poll();
+            }
+            replied.add(xid);
+
+            reply.xdr_offset(0);
+            reply.xdr_int(xid);
+            reply.xdr_int(payload(xid));
+            reply.xdr_offset(0);
+        }
+
+        @Override
+        InetAddress getPeer() {
+            return InetAddress.getLoopbackAddress();
+        }
+
+        @Override
+        void dropConnection() {
+        }
+
+        @Override
+        void checkConnection() {
+        }
+    }
+}
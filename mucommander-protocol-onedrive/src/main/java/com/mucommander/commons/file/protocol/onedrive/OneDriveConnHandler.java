@@ -19,10 +19,12 @@ package com.mucommander.commons.file.protocol.onedrive;
 
 import java.io.IOException;
 
+import com.microsoft.graph.models.DriveItem;
 import com.microsoft.graph.requests.GraphServiceClient;
 import com.mucommander.commons.file.AuthException;
 import com.mucommander.commons.file.FileURL;
 import com.mucommander.commons.file.connection.ConnectionHandler;
+import com.mucommander.commons.file.util.MetadataCache;
 
 /**
  * @author Arik Hadas
@@ -31,16 +33,23 @@ public class OneDriveConnHandler extends ConnectionHandler implements AutoClosea
 
     private String account;
     private OneDriveClient client;
+    /** Items that were recently listed or created through the connections to the account, by path */
+    private final MetadataCache<DriveItem> itemCache;
 
     public OneDriveConnHandler(FileURL serverURL) {
         super(serverURL);
         account = serverURL.getHost();
+        itemCache = MetadataCache.getRealmCache(realm, "/");
     }
 
     public GraphServiceClient<?> getClient() {
         return client.getClient();
     }
 
+    public MetadataCache<DriveItem> getItemCache() {
+        return itemCache;
+    }
+
     @Override
     public void startConnection() throws IOException, AuthException {
         if (client == null) {
@@ -63,6 +72,7 @@ public class OneDriveConnHandler extends ConnectionHandler implements AutoClosea
             // nothing we can do... ignore..
         } finally {
             client = null;
+            itemCache.clear();
         }
     }
 
@@ -22,7 +22,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 import org.slf4j.Logger;
@@ -52,6 +55,7 @@ import com.mucommander.commons.file.connection.ConnectionHandler;
 import com.mucommander.commons.file.connection.ConnectionHandlerFactory;
 import com.mucommander.commons.file.connection.ConnectionPool;
 import com.mucommander.commons.file.protocol.ProtocolFile;
+import com.mucommander.commons.file.util.MetadataCache;
 import com.mucommander.commons.file.util.PathUtils;
 import com.mucommander.commons.io.FileTransferException;
 import com.mucommander.commons.io.RandomAccessInputStream;
@@ -79,6 +83,35 @@ public class OneDriveFile extends ProtocolFile implements ConnectionHandlerFacto
         return connection;
     }
 
+    /**
+     * Returns the cache of the items known to the connection of this file, <code>null</code> if there is no
+     * connection.
+     */
+    protected MetadataCache<DriveItem> getItemCache() {
+        try (OneDriveConnHandler connHandler = getConnHandler()) {
+            return connHandler.getItemCache();
+        } catch (IOException e) {
+            LOGGER.debug("failed to get connection", e);
+            return null;
+        }
+    }
+
+    protected static String getCacheKey(FileURL url) {
+        return PathUtils.removeTrailingSeparator(url.getPath(), AbstractFile.DEFAULT_SEPARATOR);
+    }
+
+    /**
+     * Discards what the item cache knows about the given file, to be called after the file is modified.
+     */
+    private void invalidateCache(FileURL url, DriveItem driveItem) {
+        MetadataCache<DriveItem> cache = getItemCache();
+        if (cache != null) {
+            cache.invalidate(getCacheKey(url));
+            if (driveItem != null)
+                cache.put(getCacheKey(url), driveItem);
+        }
+    }
+
     @Override
     public ConnectionHandler createConnectionHandler(FileURL location) {
         return new OneDriveConnHandler(location);
@@ -114,12 +147,23 @@ public class OneDriveFile extends ProtocolFile implements ConnectionHandlerFacto
     public boolean exists() {
         if (driveItem != null)
             return true;
+
+        // The item may be known from a recent listing of its parent
+        MetadataCache<DriveItem> cache = getItemCache();
+        Optional<DriveItem> cachedItem = cache != null ? cache.get(getCacheKey(fileURL)) : null;
+        if (cachedItem != null) {
+            driveItem = cachedItem.orElse(null);
+            return driveItem != null;
+        }
+
         OneDriveFile parent = getParent();
         if (parent == null || !parent.exists())
             return false;
 
         try {
             Stream.of(parent.ls()).filter(this::equals).findFirst().ifPresent(other -> this.driveItem = other.driveItem);
+            if (driveItem == null && cache != null)
+                cache.putMissing(getCacheKey(fileURL));
         } catch (IOException e) {
             LOGGER.warn("failed to list {}", parent);
             return false;
@@ -153,14 +197,28 @@ public class OneDriveFile extends ProtocolFile implements ConnectionHandlerFacto
             DriveItemCollectionPage items = builder.children().buildRequest().get();
             List<DriveItem> files = items.getCurrentPage();
             // TODO: support more than one page (https://docs.microsoft.com/en-us/graph/sdks/paging?view=graph-rest-beta&tabs=java)
-            return files.stream()
+            OneDriveFile[] children = files.stream()
                     .filter(file -> file.file != null || file.folder != null)
                     .map(this::toFile)
                     .toArray(OneDriveFile[]::new);
+
+            // Cache the listed items so that resolving them later does not require listing this folder again
+            MetadataCache<DriveItem> cache = connHandler.getItemCache();
+            if (items.getNextPage() == null) {
+                Map<String, DriveItem> listing = new LinkedHashMap<>();
+                for (OneDriveFile child : children)
+                    listing.put(child.getName(), child.driveItem);
+                cache.putListing(getCacheKey(fileURL), listing);
+            } else {
+                for (OneDriveFile child : children)
+                    cache.put(getCacheKey(child.getURL()), child.driveItem);
+            }
+
+            return children;
         }
     }
 
-    protected AbstractFile toFile(DriveItem driveItem) {
+    protected OneDriveFile toFile(DriveItem driveItem) {
         FileURL url = (FileURL) getURL().clone();
         String parentPath = PathUtils.removeTrailingSeparator(url.getPath()) + AbstractFile.DEFAULT_SEPARATOR;
         url.setPath(parentPath + driveItem.name);
@@ -182,6 +240,7 @@ public class OneDriveFile extends ProtocolFile implements ConnectionHandlerFacto
                 builder = builder.itemWithPath(path);
             driveItem = builder.children().buildRequest().post(newItem);
         }
+        invalidateCache(fileURL, driveItem);
     }
 
     @Override
@@ -226,9 +285,11 @@ public class OneDriveFile extends ProtocolFile implements ConnectionHandlerFacto
                     input,
                     lengthToStream,
                     DriveItem.class);
+            invalidateCache(fileURL, null);
             new Thread(() -> {
                 try {
                     largeFileUploadTask.upload(327680);
+                    invalidateCache(fileURL, null);
                 } catch (IOException e) {
                     LOGGER.error("failed to upload to OneDrive", e);
                 }
@@ -261,6 +322,7 @@ public class OneDriveFile extends ProtocolFile implements ConnectionHandlerFacto
             String path = PathUtils.removeLeadingSeparator(getURL().getPath());
             connHandler.getClient().me().drive().root().itemWithPath(path).buildRequest().delete();
         }
+        invalidateCache(fileURL, null);
     }
 
     @Override
@@ -276,6 +338,8 @@ public class OneDriveFile extends ProtocolFile implements ConnectionHandlerFacto
                     .buildRequest()
                     .patch(driveItem);
         }
+        invalidateCache(fileURL, null);
+        invalidateCache(destFile.getURL(), null);
     }
 
     @Override
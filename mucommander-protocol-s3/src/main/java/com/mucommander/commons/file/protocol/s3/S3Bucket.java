@@ -21,6 +21,8 @@ package com.mucommander.commons.file.protocol.s3;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
 
 import org.jets3t.service.S3Service;
 import org.jets3t.service.S3ServiceException;
@@ -110,6 +112,11 @@ public class S3Bucket extends S3File {
         }
     }
 
+    @Override
+    public Map<AbstractFile, IOException> deleteChildren(List<AbstractFile> children) throws IOException {
+        return deleteObjects(bucketName, children);
+    }
+
     @Override
     public void mkdir() throws IOException {
         try {
@@ -23,13 +23,17 @@ import java.io.OutputStream;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.jets3t.service.Constants;
 import org.jets3t.service.S3Service;
 import org.jets3t.service.ServiceException;
 import org.jets3t.service.StorageObjectsChunk;
+import org.jets3t.service.model.MultipleDeleteResult;
 import org.jets3t.service.model.StorageObject;
+import org.jets3t.service.utils.ObjectKeyAndVersion;
 
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.AuthException;
@@ -63,6 +67,9 @@ public abstract class S3File extends ProtocolFile {
     public static String SECUTRE_HTTP = "secureHttp";
     public static String DEFAULT_BUCKET_LOCATION = "defaultBucketLocation";
 
+    /** Maximum number of keys that a single 'Multi-Object Delete' request can carry */
+    private final static int MAX_KEYS_PER_DELETE = 1000;
+
     protected S3File(FileURL url, S3Service service) {
         super(url);
 
@@ -155,6 +162,60 @@ public abstract class S3File extends ProtocolFile {
     }
 
 
+    /**
+     * Deletes the given objects from the specified bucket using 'Multi-Object Delete' requests, each of which
+     * removes up to 1000 keys in a single round trip. Directories are not accepted by this method as S3 does not
+     * check that they are empty.
+     *
+     * @param bucketName name of the bucket the objects belong to
+     * @param children the objects to delete
+     * @return the objects that could not be deleted, mapped to the cause of the failure
+     * @throws IOException if the request could not be authenticated
+     */
+    protected Map<AbstractFile, IOException> deleteObjects(String bucketName, List<AbstractFile> children) throws IOException {
+        Map<AbstractFile, IOException> failures = new LinkedHashMap<>();
+
+        for(int from=0; from<children.size(); from+=MAX_KEYS_PER_DELETE) {
+            List<AbstractFile> chunk = children.subList(from, Math.min(children.size(), from+MAX_KEYS_PER_DELETE));
+            Map<String, AbstractFile> files = new LinkedHashMap<>();
+            for(AbstractFile child : chunk) {
+                S3Object object = child.getAncestor(S3Object.class);
+                if(object==null || object.isDirectory())
+                    failures.put(child, new IOException("Not a file: "+child.getAbsolutePath()));
+                else
+                    files.put(object.getObjectKey(false), child);
+            }
+
+            if(files.isEmpty())
+                continue;
+
+            ObjectKeyAndVersion[] keys = new ObjectKeyAndVersion[files.size()];
+            int i=0;
+            for(String key : files.keySet())
+                keys[i++] = new ObjectKeyAndVersion(key);
+
+            try {
+                // In quiet mode, only the keys that failed to be deleted are reported
+                MultipleDeleteResult result = service.deleteMultipleObjects(bucketName, keys, true);
+                for(MultipleDeleteResult.ErrorResult error : result.getErrorResults()) {
+                    AbstractFile file = files.remove(error.getKey());
+                    if(file!=null)
+                        failures.put(file, new IOException(error.getErrorCode()+": "+error.getMessage()));
+                }
+
+                for(AbstractFile file : files.values())
+                    file.getAncestor(S3Object.class).setDeleted();
+            }
+            catch(ServiceException e) {
+                IOException cause = getIOException(e);
+                for(AbstractFile file : files.values())
+                    failures.put(file, cause);
+            }
+        }
+
+        return failures;
+    }
+
     //////////////////////
     // Abstract methods //
     //////////////////////
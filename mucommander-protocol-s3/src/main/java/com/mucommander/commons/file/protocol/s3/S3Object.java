@@ -21,6 +21,8 @@ package com.mucommander.commons.file.protocol.s3;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
 
 import org.jets3t.service.S3Service;
 import org.jets3t.service.S3ServiceException;
@@ -86,7 +88,7 @@ public class S3Object extends S3File {
         return urlPath.substring(bucketName.length()+2, urlPath.length());
     }
 
-    private String getObjectKey(boolean wantTrailingSeparator) {
+    String getObjectKey(boolean wantTrailingSeparator) {
         String objectKey = getObjectKey();
         return wantTrailingSeparator?addTrailingSeparator(objectKey):removeTrailingSeparator(objectKey);
     }
@@ -184,17 +186,27 @@ public class S3Object extends S3File {
                 throw new IOException("Directory not empty");
 
             service.deleteObject(bucketName, getObjectKey(isDirectory));
-
-            // Update file attributes locally
-            atts.setExists(false);
-            atts.setDirectory(false);
-            atts.setSize(0);
+            setDeleted();
         }
         catch(ServiceException e) {
             throw getIOException(e);
         }
     }
 
+    @Override
+    public Map<AbstractFile, IOException> deleteChildren(List<AbstractFile> children) throws IOException {
+        return deleteObjects(bucketName, children);
+    }
+
+    /**
+     * Updates the file attributes locally after this object has been deleted.
+     */
+    void setDeleted() {
+        atts.setExists(false);
+        atts.setDirectory(false);
+        atts.setSize(0);
+    }
+
     @Override
     public void renameTo(AbstractFile destFile) throws IOException {
         copyTo(destFile);
@@ -22,10 +22,17 @@ package com.mucommander.commons.file.protocol.sftp;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -112,6 +119,9 @@ public class SFTPFile extends ProtocolFile {
 
     private final static String SEPARATOR = DEFAULT_SEPARATOR;
 
+    /** Maximum number of connections used concurrently to delete files, one being left to browse the server */
+    private final static int MAX_PARALLEL_REMOVES = 3;
+
 
     /**
      * Creates a new instance of SFTPFile and initializes the SSH/SFTP connection to the server.
@@ -377,6 +387,86 @@ public class SFTPFile extends ProtocolFile {
         }
     }
 
+    /**
+     * Removes the given files using several pooled connections in parallel, so that the round trip of each
+     * <code>rm</code> request overlaps with the others instead of adding up.
+     */
+    @Override
+    public Map<AbstractFile, IOException> deleteChildren(List<AbstractFile> children) throws IOException {
+        Map<AbstractFile, IOException> failures = new ConcurrentHashMap<>();
+        Queue<AbstractFile> remaining = new ConcurrentLinkedQueue<>(children);
+        // Set when a thread stops before the files are all removed because it was interrupted
+        AtomicBoolean interrupted = new AtomicBoolean();
+        // Why a thread could not get a connection, the files are then left to the other threads
+        AtomicReference<IOException> connectionFailure = new AtomicReference<>();
+
+        Runnable remover = () -> {
+            try (SFTPConnectionHandler connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(connHandlerFactory, fileURL, true)) {
+                // Makes sure the connection is started, if not starts it
+                connHandler.checkConnection();
+
+                AbstractFile child;
+                while ((child = remaining.poll()) != null) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        remaining.add(child);
+                        interrupted.set(true);
+                        break;
+                    }
+
+                    SFTPFile file = child.getAncestor(SFTPFile.class);
+                    try {
+                        if (file == null || file.isDirectory())
+                            throw new IOException("Not a file: " + child.getAbsolutePath());
+
+                        connHandler.channelSftp.rm(file.absPath);
+
+                        // Update local attributes
+                        file.fileAttributes.setExists(false);
+                        file.fileAttributes.setSymlink(false);
+                        file.fileAttributes.setSize(0);
+                    } catch (SftpException e) {
+                        failures.put(child, new IOException(e));
+                    } catch (IOException e) {
+                        failures.put(child, e);
+                    }
+                }
+            } catch (InterruptedIOException e) {
+                // Interrupted while waiting for a connection
+                interrupted.set(true);
+            } catch (Exception e) {
+                connectionFailure.set(e instanceof IOException ? (IOException)e : new IOException(e));
+            }
+        };
+
+        int nbThreads = Math.min(MAX_PARALLEL_REMOVES, children.size());
+        List<Thread> threads = new ArrayList<>(nbThreads);
+        for (int i = 0; i < nbThreads; i++) {
+            Thread thread = new Thread(remover, "SFTP remove " + fileURL.getHost() + " #" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+
+        try {
+            for (Thread thread : threads)
+                thread.join();
+        } catch (InterruptedException e) {
+            threads.forEach(Thread::interrupt);
+            throw new InterruptedIOException();
+        }
+
+        if (!remaining.isEmpty()) {
+            if (interrupted.get())
+                throw new InterruptedIOException();
+
+            // Files left over if no connection could be established at all
+            for (AbstractFile child : remaining)
+                failures.put(child, new IOException("Unable to connect to " + fileURL.getHost(), connectionFailure.get()));
+        }
+
+        return failures;
+    }
+
 
     @SuppressWarnings("unchecked")
     @Override
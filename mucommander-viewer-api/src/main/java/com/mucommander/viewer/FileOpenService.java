@@ -39,6 +39,7 @@ public interface FileOpenService {
      * Returns order priority.
      *
      * Reference editors/viewers use:<br>
+     * 15 - large text<br>
      * 10 - text<br>
      * 0 - binary
      *
@@ -98,6 +98,10 @@ class BinaryViewer extends BinaryBase implements FileViewer {
 
     private synchronized void loadFile(AbstractFile file) {
         CodeArea codeArea = binaryComponent.getCodeArea();
+        // Releases the file previously viewed
+        if (codeArea.getContentData() instanceof FileBinaryData) {
+            ((FileBinaryData) codeArea.getContentData()).close();
+        }
         codeArea.setContentData(new FileBinaryData(file));
         codeArea.setEditMode(EditMode.READ_ONLY);
         notifyOrigFileChanged();
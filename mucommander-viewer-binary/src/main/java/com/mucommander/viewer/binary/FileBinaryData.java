@@ -19,6 +19,15 @@ package com.mucommander.viewer.binary;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,27 +38,66 @@ import org.exbin.auxiliary.binary_data.BinaryData;
 import org.exbin.auxiliary.binary_data.array.paged.ByteArrayPagedData;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.protocol.local.LocalFile;
 import com.mucommander.commons.io.RandomAccess;
 import com.mucommander.commons.io.StreamUtils;
 
 /**
  * Class for direct binary access to abstract file.
+ * <p>
+ * Data is read in pages of {@link #PAGE_SIZE} bytes which are kept in a least-recently-used cache of a configurable
+ * number of pages. Sequential access in either direction triggers the prefetch of a few neighbouring pages.
+ * Local files are read with positional reads of a file channel into the buffer of the page, other files through
+ * the file's input stream, seeking or skipping as needed. The file is not memory-mapped, so that it is not left locked
+ * until the mapping is garbage collected: the channel is closed by {@link #close()} when the viewer is closed.
  */
 @ParametersAreNonnullByDefault
 public class FileBinaryData implements BinaryData {
 
     public static final String BROKEN_ABSTRACT_FILE = "Broken abstract file";
     public static final int PAGE_SIZE = 4096;
+    /** Default number of pages kept in the cache (1 MB) */
+    public static final int DEFAULT_CACHE_PAGES = 256;
+    /** Number of pages read ahead when data is accessed sequentially */
+    public static final int PREFETCH_PAGES = 8;
+
+    private static final Logger LOGGER = Logger.getLogger(FileBinaryData.class.getName());
 
     private final AbstractFile file;
+    private final int maxCachePages;
 
     private InputStream cacheInputStream = null;
     private long cachePosition = 0;
-    private final DataPage[] cachePages = new DataPage[] { new DataPage(), new DataPage() };
-    private int nextCachePage = 0;
+    private final PageCache cachePages;
+    /** Pages evicted from the cache, kept for reuse to avoid reallocating page buffers */
+    private final Deque<DataPage> freePages = new ArrayDeque<>();
+    private long lastPageIndex = -1;
+
+    /** Channel used for reading local files, <code>null</code> if not opened yet or not applicable */
+    private FileChannel channel = null;
+    private boolean channelAvailable;
+
+    private long cacheHits;
+    private long cacheMisses;
 
     public FileBinaryData(AbstractFile file) {
+        this(file, DEFAULT_CACHE_PAGES);
+    }
+
+    /**
+     * Creates a new binary data for the given file, caching up to the specified number of pages.
+     *
+     * @param file          the file to access
+     * @param maxCachePages maximum number of pages kept in the cache, at least 2
+     */
+    public FileBinaryData(AbstractFile file, int maxCachePages) {
+        if (maxCachePages < 2) {
+            throw new IllegalArgumentException("At least 2 cache pages are required");
+        }
         this.file = file;
+        this.maxCachePages = maxCachePages;
+        this.cachePages = new PageCache(maxCachePages);
+        this.channelAvailable = file.getURL().getScheme().equals(LocalFile.SCHEMA) && file.hasAncestor(LocalFile.class);
     }
 
     @Override
@@ -67,20 +115,13 @@ public class FileBinaryData implements BinaryData {
         long pageIndex = position / PAGE_SIZE;
         int pageOffset = (int) (position % PAGE_SIZE);
 
-        if (cachePages[0].pageIndex == pageIndex) {
-            return cachePages[0].page[pageOffset];
-        }
-        if (cachePages[1].pageIndex == pageIndex) {
-            return cachePages[1].page[pageOffset];
-        }
-        int usedPage = loadPage(pageIndex);
-        return cachePages[usedPage].page[pageOffset];
+        return getPage(pageIndex).page[pageOffset];
     }
 
     @Nonnull
     @Override
     public BinaryData copy() {
-        return new FileBinaryData(file);
+        return new FileBinaryData(file, maxCachePages);
     }
 
     @Nonnull
@@ -93,7 +134,7 @@ public class FileBinaryData implements BinaryData {
         long dataPosition = 0;
         while (length > 0) {
             int pageLength = length > PAGE_SIZE - pageOffset ? PAGE_SIZE - pageOffset : (int) length;
-            copyTo(data, dataPosition, pageIndex, pageOffset, pageLength);
+            data.insert(dataPosition, getPage(pageIndex).page, pageOffset, pageLength);
             pageIndex++;
             pageOffset = 0;
             dataPosition += pageLength;
@@ -103,17 +144,6 @@ public class FileBinaryData implements BinaryData {
         return data;
     }
 
-    private void copyTo(ByteArrayPagedData data, long dataPosition, long pageIndex, int pageOffset, int pageLength) {
-        if (cachePages[0].pageIndex == pageIndex) {
-            data.insert(dataPosition, cachePages[0].page, pageOffset, pageLength);
-        } else if (cachePages[1].pageIndex == pageIndex) {
-            data.insert(dataPosition, cachePages[1].page, pageOffset, pageLength);
-        } else {
-            int usedPage = loadPage(pageIndex);
-            data.insert(dataPosition, cachePages[usedPage].page, pageOffset, pageLength);
-        }
-    }
-
     @Override
     public synchronized void copyToArray(long startFrom, byte[] target, int offset, int length) {
         long pageIndex = startFrom / PAGE_SIZE;
@@ -122,7 +152,7 @@ public class FileBinaryData implements BinaryData {
         int dataPosition = offset;
         while (length > 0) {
             int pageLength = Math.min(length, PAGE_SIZE - pageOffset);
-            copyTo(target, dataPosition, pageIndex, pageOffset, pageLength);
+            System.arraycopy(getPage(pageIndex).page, pageOffset, target, dataPosition, pageLength);
             pageIndex++;
             pageOffset = 0;
             dataPosition += pageLength;
@@ -130,17 +160,6 @@ public class FileBinaryData implements BinaryData {
         }
     }
 
-    private void copyTo(byte[] data, int dataPosition, long pageIndex, int pageOffset, int pageLength) {
-        if (cachePages[0].pageIndex == pageIndex) {
-            System.arraycopy(cachePages[0].page, pageOffset, data, dataPosition, pageLength);
-        } else if (cachePages[1].pageIndex == pageIndex) {
-            System.arraycopy(cachePages[1].page, pageOffset, data, dataPosition, pageLength);
-        } else {
-            int usedPage = loadPage(pageIndex);
-            System.arraycopy(cachePages[usedPage].page, pageOffset, data, dataPosition, pageLength);
-        }
-    }
-
     @Override
     public void saveToStream(OutputStream outputStream) throws IOException {
         try (InputStream inputStream = file.getInputStream()) {
@@ -163,24 +182,123 @@ public class FileBinaryData implements BinaryData {
         resetCache();
     }
 
-    public void resetCache() {
+    public synchronized void resetCache() {
         if (cacheInputStream != null) {
             try {
                 cacheInputStream.close();
             } catch (IOException ex) {
-                Logger.getLogger(FileBinaryData.class.getName()).log(Level.SEVERE, null, ex);
+                LOGGER.log(Level.SEVERE, null, ex);
             }
             cacheInputStream = null;
         }
 
-        cachePages[0].pageIndex = -1;
-        cachePages[1].pageIndex = -1;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.SEVERE, null, ex);
+            }
+            channel = null;
+        }
+
+        cachePages.clear();
+        freePages.clear();
+        lastPageIndex = -1;
     }
 
     public synchronized void close() {
         resetCache();
     }
 
+    /**
+     * Returns the number of bytes currently held by the page cache.
+     *
+     * @return the heap memory used by cached pages, in bytes
+     */
+    public synchronized long getCacheMemoryUsage() {
+        return (long) (cachePages.size() + freePages.size()) * PAGE_SIZE;
+    }
+
+    /**
+     * Returns <code>true</code> if the file is currently held open by this binary data, i.e. until
+     * {@link #close()} is called.
+     *
+     * @return <code>true</code> if the file is open
+     */
+    public synchronized boolean isOpen() {
+        return channel != null || cacheInputStream != null;
+    }
+
+    /**
+     * Returns the maximum number of pages kept in the cache.
+     *
+     * @return the maximum number of cached pages
+     */
+    public int getMaxCachePages() {
+        return maxCachePages;
+    }
+
+    /**
+     * Returns the number of page requests that were served from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Returns the number of page requests that required the page to be read from the file.
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    @Nonnull
+    private DataPage getPage(long pageIndex) {
+        DataPage dataPage = cachePages.get(pageIndex);
+        if (dataPage != null) {
+            cacheHits++;
+        } else {
+            cacheMisses++;
+            dataPage = loadPage(pageIndex);
+            prefetch(pageIndex);
+            // Prefetched pages are more recent than the requested one, make sure it is not evicted first
+            cachePages.get(pageIndex);
+        }
+        lastPageIndex = pageIndex;
+
+        return dataPage;
+    }
+
+    /**
+     * Reads ahead a few pages in the direction of the access when the given page immediately follows or precedes
+     * the previously accessed one.
+     */
+    private void prefetch(long pageIndex) {
+        int direction;
+        if (pageIndex == lastPageIndex + 1) {
+            direction = 1;
+        } else if (pageIndex == lastPageIndex - 1) {
+            direction = -1;
+        } else {
+            return;
+        }
+
+        int prefetchPages = Math.min(PREFETCH_PAGES, maxCachePages - 1);
+        long pagesCount = (getDataSize() + PAGE_SIZE - 1) / PAGE_SIZE;
+        // Backward prefetch is read in ascending order, which suits sequential streams
+        long firstPage = direction > 0 ? pageIndex + 1 : Math.max(0, pageIndex - prefetchPages);
+        long lastPage = direction > 0 ? Math.min(pagesCount, pageIndex + 1 + prefetchPages) : pageIndex;
+        for (long index = firstPage; index < lastPage; index++) {
+            if (!cachePages.containsKey(index)) {
+                loadPage(index);
+            }
+        }
+    }
+
     @Nonnull
     private InputStream getInputStream(long position) throws IOException {
         if (cacheInputStream != null && position == cachePosition) {
@@ -207,36 +325,95 @@ public class FileBinaryData implements BinaryData {
         return cacheInputStream;
     }
 
-    private int loadPage(long pageIndex) {
-        int usedPage = nextCachePage;
-        long position = pageIndex * PAGE_SIZE;
-        long dataSize = getDataSize();
-        try {
-            InputStream inputStream = getInputStream(position);
+    /**
+     * Reads the given page of a local file with a positional read of the file channel, opening it if needed. Returns
+     * <code>false</code> if the file cannot be read this way, in which case the stream should be used instead.
+     */
+    private boolean readFromChannel(DataPage dataPage, long position, int length) {
+        if (!channelAvailable) {
+            return false;
+        }
 
-            int done = 0;
-            int remains = position + PAGE_SIZE > dataSize ? (int) (dataSize - position) : PAGE_SIZE;
-            while (remains > 0) {
-                int copied = inputStream.read(cachePages[usedPage].page, done, remains);
-                if (copied < 0) {
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(Paths.get(file.getAbsolutePath()), StandardOpenOption.READ);
+            }
+            ByteBuffer buffer = dataPage.buffer;
+            buffer.clear().limit(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
                     throw new IllegalStateException(BROKEN_ABSTRACT_FILE);
                 }
-                cachePosition += copied;
-                remains -= copied;
-                done += copied;
             }
+            return true;
+        } catch (IOException | UnsupportedOperationException | InvalidPathException e) {
+            LOGGER.log(Level.FINE, "Unable to read " + file.getAbsolutePath() + " from a file channel, using streams instead", e);
+            channelAvailable = false;
+            return false;
+        }
+    }
 
-            cachePages[usedPage].pageIndex = pageIndex;
-            nextCachePage = 1 - nextCachePage;
-        } catch (IOException e) {
-            throw new IllegalStateException(BROKEN_ABSTRACT_FILE, e);
+    @Nonnull
+    private DataPage loadPage(long pageIndex) {
+        DataPage dataPage = freePages.isEmpty() ? new DataPage() : freePages.pop();
+        long position = pageIndex * PAGE_SIZE;
+        long dataSize = getDataSize();
+        int length = position + PAGE_SIZE > dataSize ? (int) (dataSize - position) : PAGE_SIZE;
+
+        if (!readFromChannel(dataPage, position, length)) {
+            try {
+                InputStream inputStream = getInputStream(position);
+
+                int done = 0;
+                int remains = length;
+                while (remains > 0) {
+                    int copied = inputStream.read(dataPage.page, done, remains);
+                    if (copied < 0) {
+                        throw new IllegalStateException(BROKEN_ABSTRACT_FILE);
+                    }
+                    cachePosition += copied;
+                    remains -= copied;
+                    done += copied;
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(BROKEN_ABSTRACT_FILE, e);
+            }
         }
 
-        return usedPage;
+        dataPage.pageIndex = pageIndex;
+        cachePages.put(pageIndex, dataPage);
+
+        return dataPage;
     }
 
     private static class DataPage {
         long pageIndex = -1;
-        byte[] page = new byte[PAGE_SIZE];
+        final byte[] page = new byte[PAGE_SIZE];
+        /** Buffer wrapping the page, which channels read into */
+        final ByteBuffer buffer = ByteBuffer.wrap(page);
+    }
+
+    /**
+     * Access-ordered map of cached pages, which recycles its least recently used page once full.
+     */
+    private class PageCache extends LinkedHashMap<Long, DataPage> {
+
+        private final int maxPages;
+
+        PageCache(int maxPages) {
+            super(maxPages * 4 / 3 + 1, 0.75f, true);
+            this.maxPages = maxPages;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, DataPage> eldest) {
+            if (size() > maxPages) {
+                DataPage evicted = eldest.getValue();
+                evicted.pageIndex = -1;
+                freePages.push(evicted);
+                return true;
+            }
+            return false;
+        }
     }
 }
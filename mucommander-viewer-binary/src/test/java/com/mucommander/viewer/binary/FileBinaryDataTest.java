@@ -0,0 +1,125 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.viewer.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.util.Arrays;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.file.ProxyFile;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Runs tests on {@link FileBinaryData}, reading a local file through its channel and a remote file through its
+ * stream.
+ */
+public class FileBinaryDataTest {
+
+    /** Size of the test file, which doesn't end on a page boundary */
+    private static final int FILE_SIZE = FileBinaryData.PAGE_SIZE * 40 + 123;
+
+    private AbstractFile file;
+    private byte[] contents;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = FileFactory.getTemporaryFile(getClass().getName(), true);
+        contents = new byte[FILE_SIZE];
+        for (int i = 0; i < FILE_SIZE; i++) {
+            contents[i] = (byte) (i * 31 + i / FileBinaryData.PAGE_SIZE);
+        }
+        try (OutputStream out = file.getOutputStream()) {
+            out.write(contents);
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        file.delete();
+    }
+
+    @Test
+    public void testLocalFile() {
+        testReads(new FileBinaryData(file, 4));
+    }
+
+    @Test
+    public void testRemoteFile() {
+        testReads(new FileBinaryData(new RemoteFile(file), 4));
+    }
+
+    /**
+     * Makes sure that the bytes are read as they are in the file, sequentially in both directions and at random
+     * positions, with a cache smaller than the file, and that the file is no longer open once closed.
+     */
+    private void testReads(FileBinaryData data) {
+        assertEquals(data.getDataSize(), FILE_SIZE);
+        for (int i = 0; i < FILE_SIZE; i += 97) {
+            assertEquals(data.getByte(i), contents[i]);
+        }
+        for (int i = FILE_SIZE - 1; i >= 0; i -= 89) {
+            assertEquals(data.getByte(i), contents[i]);
+        }
+        assertEquals(data.getByte(FILE_SIZE - 1), contents[FILE_SIZE - 1]);
+        assertTrue(data.getCacheMemoryUsage() <= (4 + FileBinaryData.PREFETCH_PAGES) * FileBinaryData.PAGE_SIZE);
+
+        // Copies across page boundaries
+        int start = FileBinaryData.PAGE_SIZE * 3 - 10;
+        byte[] copy = new byte[FileBinaryData.PAGE_SIZE * 2 + 20];
+        data.copyToArray(start, copy, 0, copy.length);
+        assertEquals(copy, Arrays.copyOfRange(contents, start, start + copy.length));
+        assertTrue(data.isOpen());
+
+        data.close();
+        assertFalse(data.isOpen());
+        // The file is opened again when needed
+        assertEquals(data.getByte(FILE_SIZE / 2), contents[FILE_SIZE / 2]);
+        data.close();
+        assertFalse(data.isOpen());
+    }
+
+    /**
+     * A local file seen as a remote one, which is read through its input stream.
+     */
+    private static class RemoteFile extends ProxyFile {
+
+        RemoteFile(AbstractFile file) {
+            super(file);
+        }
+
+        @Override
+        public FileURL getURL() {
+            try {
+                return FileURL.getFileURL("ftp://host" + file.getURL().getPath());
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
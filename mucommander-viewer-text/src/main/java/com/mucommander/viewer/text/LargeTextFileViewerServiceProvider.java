@@ -0,0 +1,72 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.viewer.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.io.BinaryDetector;
+import com.mucommander.viewer.CanOpen;
+import com.mucommander.viewer.FileViewer;
+import com.mucommander.viewer.FileViewerService;
+
+/**
+ * Service provider for the large text file viewer, which takes precedence over the regular text viewer for text files
+ * that are too large to be loaded into memory.
+ */
+public class LargeTextFileViewerServiceProvider implements FileViewerService {
+
+    /**
+     * Min file size for which the large text viewer is offered.
+     */
+    static final long MIN_FILE_SIZE = 16 * 1024 * 1024;
+
+    @Override
+    public String getName() {
+        return "Large text";
+    }
+
+    @Override
+    public int getOrderPriority() {
+        return 15;
+    }
+
+    @Override
+    public CanOpen canOpenFile(AbstractFile file) {
+        // Do not allow directories and files small enough for the regular text viewer
+        if (file.isDirectory() || file.getSize() < MIN_FILE_SIZE) {
+            return CanOpen.NO;
+        }
+
+        try (InputStream in = file.getInputStream()) {
+            if (BinaryDetector.guessBinary(in)) {
+                return CanOpen.NO;
+            }
+        } catch (IOException e) {
+            // Not much to do
+        }
+
+        return CanOpen.YES;
+    }
+
+    @Override
+    public FileViewer createFileViewer(boolean fromSearchWithContent) {
+        return new LargeTextViewer();
+    }
+}
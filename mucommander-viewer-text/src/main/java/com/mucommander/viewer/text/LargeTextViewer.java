@@ -0,0 +1,550 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.viewer.text;
+
+import java.awt.BorderLayout;
+import java.awt.Font;
+import java.awt.Toolkit;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.swing.AbstractAction;
+import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JMenu;
+import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.io.EncodingDetector;
+import com.mucommander.commons.util.StringUtils;
+import com.mucommander.commons.util.ui.dialog.DialogOwner;
+import com.mucommander.commons.util.ui.helper.MenuToolkit;
+import com.mucommander.commons.util.ui.helper.MnemonicHelper;
+import com.mucommander.core.desktop.DesktopManager;
+import com.mucommander.desktop.ActionType;
+import com.mucommander.search.SearchProperty;
+import com.mucommander.translator.Translator;
+import com.mucommander.ui.encoding.EncodingListener;
+import com.mucommander.ui.encoding.EncodingMenu;
+import com.mucommander.viewer.FileViewer;
+import com.mucommander.viewer.ViewerPresenter;
+
+/**
+ * A read-only viewer for text files too large to be loaded into memory, such as multi-gigabyte log files.
+ * <p>
+ * The offsets of the lines are indexed in the background by a {@link LineIndex} and only the lines that fit in the
+ * window are read and decoded. The viewer supports jumping to a line, searching over the indexed lines and following
+ * the end of a file that keeps growing.
+ * <p>
+ * The lines of the window are read by a background thread, which keeps the file open from one scroll to the next, so
+ * that slow or remote files don't block the event dispatch thread.
+ */
+public class LargeTextViewer implements FileViewer, EncodingListener, ActionListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LargeTextViewer.class);
+
+    /** Interval at which the file is checked for new lines when following its end, in milliseconds */
+    private static final int FOLLOW_INTERVAL = 1000;
+
+    /** Number of lines scrolled by one notch of the mouse wheel */
+    private static final int WHEEL_SCROLL_LINES = 3;
+
+    /** Time after which the idle thread loading the window terminates, in seconds */
+    private static final int LOADER_KEEP_ALIVE = 10;
+
+    private final JPanel ui;
+    private final JTextArea textArea;
+    private final JScrollBar scrollBar;
+    private final JLabel statusLabel;
+
+    private ViewerPresenter presenter;
+    private AbstractFile currentFile;
+    private LineIndex lineIndex;
+    private Charset charset = StandardCharsets.UTF_8;
+
+    /** Index of the first line displayed in the window */
+    private long firstVisibleLine;
+    /** Index of the line of the last search match, -1 if none */
+    private long lastMatchLine = -1;
+
+    private final Timer followTimer = new Timer(FOLLOW_INTERVAL, e -> lineIndex.update());
+    private Thread searchThread;
+
+    /** Loads the lines of the window, one request at a time */
+    private final ThreadPoolExecutor windowLoader = new ThreadPoolExecutor(0, 1, LOADER_KEEP_ALIVE, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "LargeTextViewer loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+    /** Reader of the lines of the window, only used by the thread of {@link #windowLoader}, <code>null</code> once closed */
+    private LineIndex.Reader windowReader;
+    /** Number of the last window load requested, the loads requested before it are skipped or discarded */
+    private final AtomicLong windowRequest = new AtomicLong();
+
+    // Menus //
+    private JMenu editMenu;
+    private JMenu viewMenu;
+    // Items //
+    private JMenuItem copyItem;
+    private JMenuItem selectAllItem;
+    private JMenuItem findItem;
+    private JMenuItem findNextItem;
+    private JMenuItem findPreviousItem;
+    private JMenuItem goToLineItem;
+    private JCheckBoxMenuItem followItem;
+
+    LargeTextViewer() {
+        textArea = new JTextArea();
+        textArea.setEditable(false);
+        textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, textArea.getFont().getSize()));
+        textArea.addMouseWheelListener(e -> scrollTo(firstVisibleLine + (long) e.getWheelRotation() * WHEEL_SCROLL_LINES));
+        bindScrollKey(KeyStroke.getKeyStroke(KeyEvent.VK_PAGE_DOWN, 0), () -> scrollTo(firstVisibleLine + getVisibleRows()));
+        bindScrollKey(KeyStroke.getKeyStroke(KeyEvent.VK_PAGE_UP, 0), () -> scrollTo(firstVisibleLine - getVisibleRows()));
+        bindScrollKey(KeyStroke.getKeyStroke(KeyEvent.VK_HOME, InputEvent.CTRL_DOWN_MASK), () -> scrollTo(0));
+        bindScrollKey(KeyStroke.getKeyStroke(KeyEvent.VK_END, InputEvent.CTRL_DOWN_MASK), this::scrollToEnd);
+
+        JScrollPane textScrollPane = new JScrollPane(textArea,
+                JScrollPane.VERTICAL_SCROLLBAR_NEVER, JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+        textScrollPane.getViewport().addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                refreshWindow();
+            }
+        });
+
+        scrollBar = new JScrollBar(JScrollBar.VERTICAL);
+        scrollBar.addAdjustmentListener(e -> {
+            if (scrollBar.getValue() != firstVisibleLine) {
+                scrollTo(scrollBar.getValue());
+            }
+        });
+
+        statusLabel = new JLabel(" ");
+
+        ui = new JPanel(new BorderLayout());
+        ui.add(textScrollPane, BorderLayout.CENTER);
+        ui.add(scrollBar, BorderLayout.EAST);
+        ui.add(statusLabel, BorderLayout.SOUTH);
+
+        initMenuBarItems();
+    }
+
+    private void bindScrollKey(KeyStroke keyStroke, Runnable action) {
+        String actionKey = "scroll" + keyStroke;
+        textArea.getInputMap().put(keyStroke, actionKey);
+        textArea.getActionMap().put(actionKey, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+
+    private void initMenuBarItems() {
+        // Edit menu
+        editMenu = new JMenu(Translator.get("text_viewer.edit"));
+        MnemonicHelper menuItemMnemonicHelper = new MnemonicHelper();
+
+        copyItem = MenuToolkit.addMenuItem(editMenu, Translator.get("text_viewer.copy"), menuItemMnemonicHelper, null, this);
+        selectAllItem = MenuToolkit.addMenuItem(editMenu, Translator.get("text_viewer.select_all"), menuItemMnemonicHelper, null, this);
+        editMenu.addSeparator();
+
+        findItem = MenuToolkit.addMenuItem(editMenu, Translator.get("text_viewer.find"), menuItemMnemonicHelper, DesktopManager.getActionShortcuts().getDefaultKeystroke(ActionType.Find), this);
+        findNextItem = MenuToolkit.addMenuItem(editMenu, Translator.get("text_viewer.find_next"), menuItemMnemonicHelper, KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), this);
+        findPreviousItem = MenuToolkit.addMenuItem(editMenu, Translator.get("text_viewer.find_previous"), menuItemMnemonicHelper, KeyStroke.getKeyStroke(KeyEvent.VK_F3, KeyEvent.SHIFT_DOWN_MASK), this);
+
+        // View menu
+        viewMenu = new JMenu(Translator.get("text_viewer.view"));
+        goToLineItem = MenuToolkit.addMenuItem(viewMenu, Translator.get("text_viewer.go_to_line"), menuItemMnemonicHelper, KeyStroke.getKeyStroke(KeyEvent.VK_G, InputEvent.CTRL_DOWN_MASK), this);
+        followItem = MenuToolkit.addCheckBoxMenuItem(viewMenu, Translator.get("text_viewer.follow_tail"), menuItemMnemonicHelper, null, this);
+    }
+
+    /**
+     * Returns the number of lines that fit in the window.
+     */
+    private int getVisibleRows() {
+        int lineHeight = textArea.getFontMetrics(textArea.getFont()).getHeight();
+        int height = textArea.getParent() != null ? textArea.getParent().getHeight() : 0;
+        return Math.max(1, height / Math.max(1, lineHeight));
+    }
+
+    private void scrollTo(long line) {
+        firstVisibleLine = Math.max(0, Math.min(line, lineIndex.getLineCount() - getVisibleRows()));
+        refreshWindow();
+    }
+
+    private void scrollToEnd() {
+        scrollTo(Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads the lines that are visible in the window in the background, then updates the text area, scroll bar and
+     * status bar. Requests which are superseded by a newer one before their lines are read are skipped.
+     */
+    private void refreshWindow() {
+        if (windowReader == null) {
+            return;
+        }
+
+        long request = windowRequest.incrementAndGet();
+        long firstLine = firstVisibleLine;
+        int rows = getVisibleRows();
+        Charset windowCharset = charset;
+        LineIndex.Reader reader = windowReader;
+        AbstractFile file = currentFile;
+        windowLoader.execute(() -> {
+            if (windowRequest.get() != request) {
+                return;
+            }
+
+            List<String> lines;
+            try {
+                lines = reader.readLines(firstLine, rows, windowCharset);
+            } catch (IOException e) {
+                LOGGER.info("Failed to read lines of " + file.getAbsolutePath(), e);
+                return;
+            }
+
+            SwingUtilities.invokeLater(() -> {
+                if (windowRequest.get() == request) {
+                    showWindow(firstLine, rows, lines);
+                }
+            });
+        });
+    }
+
+    /**
+     * Displays the given lines, read from the given line, and updates the scroll bar and status bar.
+     */
+    private void showWindow(long firstLine, int rows, List<String> lines) {
+        // Filter out the byte-order mark of UTF files, if any
+        if (firstLine == 0 && !lines.isEmpty() && lines.get(0).startsWith("\uFEFF")) {
+            lines.set(0, lines.get(0).substring(1));
+        }
+
+        textArea.setText(String.join("\n", lines));
+        textArea.setCaretPosition(0);
+        if (lastMatchLine >= firstLine && lastMatchLine < firstLine + lines.size()) {
+            highlightMatch((int) (lastMatchLine - firstLine));
+        }
+
+        long lineCount = lineIndex.getLineCount();
+        int maximum = (int) Math.min(lineCount, Integer.MAX_VALUE);
+        scrollBar.setValues((int) Math.min(firstLine, Integer.MAX_VALUE), Math.min(rows, maximum), 0, maximum);
+        scrollBar.setBlockIncrement(rows);
+
+        String status = Translator.get(lineIndex.isIndexing() ? "text_viewer.large_file.indexing" : "text_viewer.large_file.status",
+                firstLine + 1, firstLine + lines.size(), lineCount);
+        statusLabel.setText(status);
+    }
+
+    /**
+     * Called on the event dispatch thread whenever new lines have been indexed.
+     */
+    private void indexProgressed() {
+        if (followItem.isSelected()) {
+            scrollToEnd();
+        } else {
+            refreshWindow();
+        }
+    }
+
+    /////////////////////////
+    // Search / go to line //
+    /////////////////////////
+
+    private void goToLine() {
+        String value = JOptionPane.showInputDialog(presenter.getWindowFrame(),
+                Translator.get("text_viewer.go_to_line.prompt"), Translator.get("text_viewer.go_to_line"),
+                JOptionPane.QUESTION_MESSAGE);
+        if (StringUtils.isNullOrEmpty(value)) {
+            return;
+        }
+
+        try {
+            followItem.setSelected(false);
+            followTimer.stop();
+            scrollTo(Long.parseLong(value.trim()) - 1);
+        } catch (NumberFormatException e) {
+            Toolkit.getDefaultToolkit().beep();
+        }
+    }
+
+    private void find() {
+        FindDialog findDialog = new FindDialog(presenter.getWindowFrame(), false);
+
+        if (findDialog.wasValidated()) {
+            String searchString = findDialog.getSearchString();
+
+            if (!StringUtils.isNullOrEmpty(searchString)) {
+                SearchProperty.SEARCH_TEXT.setValue(searchString);
+                SearchProperty.TEXT_CASESENSITIVE.setValue(findDialog.getCaseSensitivity());
+                SearchProperty.TEXT_MATCH_REGEX.setValue(findDialog.getRegexMatch());
+                SearchProperty.TEXT_WHOLE_WORDS.setValue(findDialog.isWholeWords());
+                SearchProperty.TEXT_SEARCH_FORWARD.setValue(findDialog.isForwardDirection());
+
+                lastMatchLine = -1;
+                doSearch(findDialog.isForwardDirection());
+            }
+        }
+    }
+
+    private void findNext() {
+        if (StringUtils.isNullOrEmpty(SearchProperty.SEARCH_TEXT.getValue())) {
+            find();
+        } else {
+            doSearch(true);
+        }
+    }
+
+    /**
+     * Returns the pattern matching the current search string, honoring the options of the find dialog.
+     */
+    private static Pattern getSearchPattern() {
+        String searchString = SearchProperty.SEARCH_TEXT.getValue();
+        String regex = SearchProperty.TEXT_MATCH_REGEX.getBoolValue() ? searchString : Pattern.quote(searchString);
+        if (SearchProperty.TEXT_WHOLE_WORDS.getBoolValue()) {
+            regex = "\\b" + regex + "\\b";
+        }
+        int flags = SearchProperty.TEXT_CASESENSITIVE.getBoolValue() ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+        return Pattern.compile(regex, flags);
+    }
+
+    /**
+     * Searches the indexed lines for the current search string in a background thread, starting after (or before)
+     * the last match or the first visible line.
+     */
+    private void doSearch(boolean forward) {
+        String searchString = SearchProperty.SEARCH_TEXT.getValue();
+        if (StringUtils.isNullOrEmpty(searchString) || (searchThread != null && searchThread.isAlive())) {
+            return;
+        }
+
+        Pattern pattern;
+        try {
+            pattern = getSearchPattern();
+        } catch (PatternSyntaxException e) {
+            LOGGER.error("Error while running search", e);
+            Toolkit.getDefaultToolkit().beep();
+            return;
+        }
+        Predicate<String> matcher = line -> pattern.matcher(line).find();
+
+        long startLine = lastMatchLine >= 0 ? lastMatchLine : firstVisibleLine;
+        statusLabel.setText(Translator.get("text_viewer.large_file.searching"));
+        long fromLine = forward && lastMatchLine >= 0 ? startLine + 1 : startLine;
+        Charset searchCharset = charset;
+        LineIndex index = lineIndex;
+        searchThread = new Thread(() -> {
+            long found;
+            try (LineIndex.Reader reader = index.newReader()) {
+                found = forward ? reader.findForward(fromLine, searchCharset, matcher)
+                        : reader.findBackward(fromLine, searchCharset, matcher);
+            } catch (IOException e) {
+                LOGGER.info("Failed to search " + currentFile.getAbsolutePath(), e);
+                found = -1;
+            }
+            long matchLine = found;
+            SwingUtilities.invokeLater(() -> searchFinished(matchLine));
+        }, "LargeTextViewer search");
+        searchThread.setDaemon(true);
+        searchThread.start();
+    }
+
+    private void searchFinished(long matchLine) {
+        if (matchLine < 0) {
+            refreshWindow();
+            // Beep when no match has been found
+            Toolkit.getDefaultToolkit().beep();
+            return;
+        }
+
+        lastMatchLine = matchLine;
+        followItem.setSelected(false);
+        followTimer.stop();
+        // Display a few lines of context above the match
+        scrollTo(matchLine - getVisibleRows() / 3);
+    }
+
+    /**
+     * Selects the first match of the search string in the given row of the window.
+     */
+    private void highlightMatch(int row) {
+        try {
+            int lineStart = textArea.getLineStartOffset(row);
+            int lineEnd = textArea.getLineEndOffset(row);
+            Matcher matcher = getSearchPattern().matcher(textArea.getText(lineStart, lineEnd - lineStart));
+            if (matcher.find()) {
+                textArea.select(lineStart + matcher.start(), lineStart + matcher.end());
+                textArea.getCaret().setSelectionVisible(true);
+            }
+        } catch (Exception e) { // precisely BadLocationException | PatternSyntaxException
+            LOGGER.debug("Failed to highlight search match", e);
+        }
+    }
+
+    ///////////////////////////////
+    // FileViewer implementation //
+    ///////////////////////////////
+
+    @Override
+    public void open(AbstractFile file) throws IOException {
+        close();
+
+        currentFile = file;
+        firstVisibleLine = 0;
+        lastMatchLine = -1;
+
+        String encoding;
+        try (InputStream in = file.getInputStream()) {
+            encoding = EncodingDetector.detectEncoding(in);
+        }
+        setEncoding(encoding);
+
+        lineIndex = new LineIndex(file, () -> SwingUtilities.invokeLater(this::indexProgressed));
+        windowReader = lineIndex.newReader();
+        lineIndex.update();
+        refreshWindow();
+    }
+
+    /**
+     * Sets the charset used to decode lines. Line separators are located by byte value, so encodings which are not
+     * ASCII-compatible (UTF-16, UTF-32) are replaced by UTF-8.
+     */
+    private void setEncoding(String encoding) {
+        Charset newCharset = encoding == null || !Charset.isSupported(encoding) ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+        String name = newCharset.name().toUpperCase();
+        if (name.startsWith("UTF-16") || name.startsWith("UTF-32")) {
+            LOGGER.info("Encoding " + name + " is not supported by the large text viewer, using UTF-8 instead");
+            newCharset = StandardCharsets.UTF_8;
+        }
+        charset = newCharset;
+    }
+
+    @Override
+    public void close() {
+        followTimer.stop();
+        if (searchThread != null) {
+            searchThread.interrupt();
+        }
+        if (lineIndex != null) {
+            lineIndex.stop();
+        }
+        if (windowReader != null) {
+            // Skips the pending loads and closes the reader once the current one, if any, is done
+            windowRequest.incrementAndGet();
+            windowLoader.execute(windowReader::close);
+            windowReader = null;
+        }
+    }
+
+    @Override
+    public JComponent getUI() {
+        return ui;
+    }
+
+    @Override
+    public void setPresenter(ViewerPresenter presenter) {
+        this.presenter = presenter;
+    }
+
+    @Override
+    public void extendMenu(JMenuBar menuBar) {
+        EncodingMenu encodingMenu = new EncodingMenu(new DialogOwner(presenter.getWindowFrame()), charset.name());
+        encodingMenu.addEncodingListener(this);
+
+        menuBar.add(editMenu);
+        menuBar.add(viewMenu);
+        menuBar.add(encodingMenu);
+    }
+
+    @Override
+    public void requestFocus() {
+        textArea.requestFocusInWindow();
+    }
+
+    ///////////////////////////////////
+    // ActionListener implementation //
+    ///////////////////////////////////
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        Object source = e.getSource();
+        if (source == copyItem) {
+            textArea.copy();
+        } else if (source == selectAllItem) {
+            textArea.selectAll();
+        } else if (source == findItem) {
+            find();
+        } else if (source == findNextItem) {
+            findNext();
+        } else if (source == findPreviousItem) {
+            doSearch(false);
+        } else if (source == goToLineItem) {
+            goToLine();
+        } else if (source == followItem) {
+            if (followItem.isSelected()) {
+                followTimer.start();
+                scrollToEnd();
+            } else {
+                followTimer.stop();
+            }
+        }
+    }
+
+    /////////////////////////////////////
+    // EncodingListener implementation //
+    /////////////////////////////////////
+
+    @Override
+    public void encodingChanged(Object source, String oldEncoding, String newEncoding) {
+        setEncoding(newEncoding);
+        refreshWindow();
+    }
+}
@@ -0,0 +1,441 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.viewer.text;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileOperation;
+import com.mucommander.commons.io.RandomAccessInputStream;
+import com.mucommander.commons.io.StreamUtils;
+
+/**
+ * Index of the line offsets of a text file, built incrementally by a background thread without loading the file
+ * into memory.
+ * <p>
+ * To keep the index compact for files with hundreds of millions of lines, only the offset of every
+ * {@link #CHECKPOINT_INTERVAL}th line is stored; the offset of the lines in between is found by scanning forward
+ * from the nearest checkpoint. Lines are delimited by <code>'\n'</code> bytes, which requires the file encoding to
+ * be ASCII-compatible (UTF-8, ISO-8859-x, ...).
+ */
+class LineIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LineIndex.class);
+
+    /** Number of lines between two stored offsets */
+    static final int CHECKPOINT_INTERVAL = 128;
+
+    /** Size of the buffer used to scan the file */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Maximum number of bytes skipped to move a sequential stream forward rather than reopening it */
+    private static final long MAX_SKIP = 16 * BUFFER_SIZE;
+
+    /** Minimum time between two progress notifications, in milliseconds */
+    private static final long PROGRESS_INTERVAL = 200;
+
+    private final AbstractFile file;
+
+    /** Listener notified from the indexing thread as the index grows */
+    private final Runnable progressListener;
+
+    /** checkpoints[i] holds the offset of line i * CHECKPOINT_INTERVAL */
+    private long[] checkpoints = new long[1024];
+    private int checkpointCount;
+
+    /** Number of line separators found so far */
+    private volatile long separatorCount;
+    /** Offset of the byte following the last line separator found so far */
+    private volatile long lastLineOffset;
+    /** Number of bytes of the file indexed so far */
+    private volatile long indexedLength;
+    /** Number of times the index has been rebuilt from scratch, the chunks read before by the readers are stale */
+    private volatile int resetCount;
+
+    private Thread indexingThread;
+    private volatile boolean stopped;
+
+    /**
+     * Creates a new index for the given file. Indexing does not start until {@link #update()} is called.
+     *
+     * @param file the file to index
+     * @param progressListener notified from the indexing thread whenever new lines have been indexed
+     */
+    LineIndex(AbstractFile file, Runnable progressListener) {
+        this.file = file;
+        this.progressListener = progressListener;
+        checkpoints[checkpointCount++] = 0;
+    }
+
+    /**
+     * Starts indexing the part of the file that has not been indexed yet, if any, in a background thread. If the file
+     * has shrunk since it was last indexed (e.g. it has been truncated or rotated), the index is rebuilt from scratch.
+     * This method does nothing if the indexing thread is already running.
+     */
+    synchronized void update() {
+        if (stopped || isIndexing()) {
+            return;
+        }
+
+        long size = file.getSize();
+        if (size < indexedLength) {
+            Arrays.fill(checkpoints, 0);
+            checkpointCount = 1;
+            separatorCount = 0;
+            lastLineOffset = 0;
+            indexedLength = 0;
+            resetCount++;
+        } else if (size == indexedLength) {
+            return;
+        }
+
+        indexingThread = new Thread(this::index, "LineIndex " + file.getName());
+        indexingThread.setDaemon(true);
+        indexingThread.start();
+    }
+
+    /**
+     * Stops the indexing thread, if it is running. The index can no longer be updated after this method is called.
+     */
+    synchronized void stop() {
+        stopped = true;
+        if (indexingThread != null) {
+            indexingThread.interrupt();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the indexing thread is currently running.
+     *
+     * @return <code>true</code> if the indexing thread is currently running
+     */
+    synchronized boolean isIndexing() {
+        return indexingThread != null && indexingThread.isAlive();
+    }
+
+    /**
+     * Returns the number of lines indexed so far. A last line which is not terminated by a separator is counted.
+     *
+     * @return the number of lines indexed so far
+     */
+    long getLineCount() {
+        return separatorCount + (lastLineOffset < indexedLength || separatorCount == 0 ? 1 : 0);
+    }
+
+    /**
+     * Returns the number of bytes of the file indexed so far.
+     *
+     * @return the number of bytes of the file indexed so far
+     */
+    long getIndexedLength() {
+        return indexedLength;
+    }
+
+    private void index() {
+        long offset = indexedLength;
+        long lineStart = lastLineOffset;
+        long separators = separatorCount;
+        long lastNotification = System.currentTimeMillis();
+
+        try (InputStream in = file.getInputStream(offset)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while (!stopped && (read = in.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        separators++;
+                        lineStart = offset + i + 1;
+                        if (separators % CHECKPOINT_INTERVAL == 0) {
+                            addCheckpoint(lineStart);
+                        }
+                    }
+                }
+                offset += read;
+
+                // Publish the new state, indexedLength last as it is used to compute the number of lines
+                separatorCount = separators;
+                lastLineOffset = lineStart;
+                indexedLength = offset;
+
+                long now = System.currentTimeMillis();
+                if (now - lastNotification >= PROGRESS_INTERVAL) {
+                    lastNotification = now;
+                    progressListener.run();
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.info("Failed to index lines of " + file.getAbsolutePath(), e);
+        }
+
+        progressListener.run();
+    }
+
+    private synchronized void addCheckpoint(long offset) {
+        if (checkpointCount == checkpoints.length) {
+            checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+        }
+        checkpoints[checkpointCount++] = offset;
+    }
+
+    private synchronized long getCheckpoint(long line) {
+        int index = (int) Math.min(line / CHECKPOINT_INTERVAL, checkpointCount - 1);
+        return checkpoints[index];
+    }
+
+    /**
+     * Returns a new reader of the lines indexed so far.
+     *
+     * @return a new reader of the lines indexed so far
+     */
+    Reader newReader() {
+        return new Reader();
+    }
+
+    /**
+     * Reads the lines of the indexed file, keeping its stream open and the last chunk read from it from one read to
+     * the next. Reads which fall within that chunk, such as scrolling by a few lines, don't access the file. Otherwise
+     * the stream is moved to the requested line with {@link RandomAccessInputStream#seek(long)} if the file supports
+     * random access, or by skipping the bytes in between if the line is a little further in the file, and is only
+     * reopened if neither is possible.
+     * <p>
+     * A reader must not be used by several threads at once, and must be closed when it is no longer needed.
+     */
+    class Reader implements Closeable {
+
+        private InputStream in;
+        /** Offset of the next byte read from the stream */
+        private long position;
+        /** The last chunk read from the stream, reused by the reads that fall within it */
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        /** Offset in the file of the first byte of the buffer */
+        private long bufferOffset;
+        /** Number of bytes in the buffer */
+        private int bufferLength;
+        /** Value of {@link LineIndex#resetCount} when the buffer was filled */
+        private int bufferResetCount;
+        /** <code>false</code> if the file doesn't support random access or if the random access stream failed to open */
+        private boolean randomAccess = file.isFileOperationSupported(FileOperation.RANDOM_READ_FILE);
+
+        private Reader() {
+            bufferResetCount = resetCount;
+        }
+
+        /**
+         * Reads up to <code>count</code> lines starting at the given line, among the lines indexed so far.
+         *
+         * @param firstLine index of the first line to read, starting at 0
+         * @param count maximum number of lines to read
+         * @param charset charset used to decode the lines
+         * @return the lines, without their separator
+         * @throws IOException if an error occurred while reading the file
+         */
+        List<String> readLines(long firstLine, int count, Charset charset) throws IOException {
+            List<String> lines = new ArrayList<>(count);
+            forEachLine(firstLine, charset, line -> {
+                lines.add(line);
+                return lines.size() < count;
+            });
+            return lines;
+        }
+
+        /**
+         * Returns the index of the first line from the given one (inclusive) that matches the given predicate, among
+         * the lines indexed so far.
+         *
+         * @param fromLine index of the first line to test
+         * @param charset charset used to decode the lines
+         * @param matcher predicate the line must match
+         * @return the index of the matching line, or <code>-1</code> if no line matched
+         * @throws IOException if an error occurred while reading the file
+         */
+        long findForward(long fromLine, Charset charset, Predicate<String> matcher) throws IOException {
+            long[] current = { fromLine, -1 };
+            forEachLine(fromLine, charset, line -> {
+                if (matcher.test(line)) {
+                    current[1] = current[0];
+                    return false;
+                }
+                current[0]++;
+                return !Thread.currentThread().isInterrupted();
+            });
+            return current[1];
+        }
+
+        /**
+         * Returns the index of the last line before the given one (exclusive) that matches the given predicate. Lines
+         * are read forward one checkpoint interval at a time, going back towards the beginning of the file.
+         *
+         * @param beforeLine index of the line following the last line to test
+         * @param charset charset used to decode the lines
+         * @param matcher predicate the line must match
+         * @return the index of the matching line, or <code>-1</code> if no line matched
+         * @throws IOException if an error occurred while reading the file
+         */
+        long findBackward(long beforeLine, Charset charset, Predicate<String> matcher) throws IOException {
+            long blockEnd = Math.min(beforeLine, getLineCount());
+            while (blockEnd > 0 && !Thread.currentThread().isInterrupted()) {
+                long blockStart = (blockEnd - 1) / CHECKPOINT_INTERVAL * CHECKPOINT_INTERVAL;
+                List<String> lines = readLines(blockStart, (int) (blockEnd - blockStart), charset);
+                for (int i = lines.size() - 1; i >= 0; i--) {
+                    if (matcher.test(lines.get(i))) {
+                        return blockStart + i;
+                    }
+                }
+                blockEnd = blockStart;
+            }
+            return -1;
+        }
+
+        /**
+         * Decodes the lines starting at the given line and passes them to the given consumer until it returns
+         * <code>false</code> or the end of the indexed part of the file is reached.
+         */
+        private void forEachLine(long firstLine, Charset charset, Predicate<String> consumer) throws IOException {
+            long end = indexedLength;
+            long offset = getCheckpoint(firstLine);
+            long line = (firstLine / CHECKPOINT_INTERVAL) * CHECKPOINT_INTERVAL;
+
+            ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
+            while (offset < end) {
+                int start = fillBuffer(offset);
+                int read = (int) Math.min(bufferLength - start, end - offset);
+                if (read <= 0) {
+                    break;
+                }
+                offset += read;
+
+                int lineStart = start;
+                for (int i = start; i < start + read; i++) {
+                    if (buffer[i] != '\n') {
+                        continue;
+                    }
+                    if (line >= firstLine) {
+                        lineBytes.write(buffer, lineStart, i - lineStart);
+                        if (!consumer.test(decode(lineBytes, charset))) {
+                            return;
+                        }
+                    }
+                    lineBytes.reset();
+                    lineStart = i + 1;
+                    line++;
+                }
+                if (line >= firstLine) {
+                    lineBytes.write(buffer, lineStart, start + read - lineStart);
+                }
+            }
+
+            // Last line, not terminated by a separator
+            if (line >= firstLine && lineBytes.size() > 0) {
+                consumer.test(decode(lineBytes, charset));
+            }
+        }
+
+        /**
+         * Makes sure that the buffer holds the byte at the given offset, reading the chunk of the file starting at the
+         * offset if it doesn't, and returns the index of the byte in the buffer. The buffer is left empty if the
+         * offset is at the end of the file.
+         */
+        private int fillBuffer(long offset) throws IOException {
+            if (bufferResetCount != resetCount) {
+                // The file has been replaced
+                bufferResetCount = resetCount;
+                bufferLength = 0;
+                close();
+            }
+            if (offset >= bufferOffset && offset < bufferOffset + bufferLength) {
+                return (int) (offset - bufferOffset);
+            }
+
+            // The buffer is invalid until it has been filled
+            bufferLength = 0;
+            try {
+                InputStream in = getInputStream(offset);
+                int length = StreamUtils.readUpTo(in, buffer);
+                position = offset + length;
+                bufferOffset = offset;
+                bufferLength = length;
+            } catch (IOException e) {
+                // The position of the stream is unknown, reopen it on the next read
+                close();
+                throw e;
+            }
+            return 0;
+        }
+
+        /**
+         * Returns the stream of the file, positioned at the given offset.
+         */
+        private InputStream getInputStream(long offset) throws IOException {
+            if (in == null && randomAccess) {
+                try {
+                    in = file.getRandomAccessInputStream();
+                    position = 0;
+                } catch (IOException e) {
+                    LOGGER.debug("Failed to open a random access stream on " + file.getAbsolutePath(), e);
+                    randomAccess = false;
+                }
+            }
+
+            if (in instanceof RandomAccessInputStream) {
+                if (offset != position) {
+                    ((RandomAccessInputStream) in).seek(offset);
+                }
+            } else if (in != null && offset >= position && offset - position <= MAX_SKIP) {
+                StreamUtils.skipFully(in, offset - position);
+            } else {
+                close();
+                in = file.getInputStream(offset);
+            }
+            position = offset;
+            return in;
+        }
+
+        @Override
+        public void close() {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    LOGGER.debug("Failed to close " + file.getAbsolutePath(), e);
+                }
+                in = null;
+            }
+        }
+    }
+
+    private static String decode(ByteArrayOutputStream lineBytes, Charset charset) {
+        byte[] bytes = lineBytes.toByteArray();
+        int length = bytes.length;
+        // Strip the carriage return of DOS line separators
+        if (length > 0 && bytes[length - 1] == '\r') {
+            length--;
+        }
+        return new String(bytes, 0, length, charset);
+    }
+}
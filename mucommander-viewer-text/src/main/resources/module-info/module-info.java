@@ -32,6 +32,7 @@ module org.mucommander.viewer.text {
 
     exports com.mucommander.viewer.text;
 
-    provides com.mucommander.viewer.FileViewerService with com.mucommander.viewer.text.TextFileViewerServiceProvider;
+    provides com.mucommander.viewer.FileViewerService with com.mucommander.viewer.text.TextFileViewerServiceProvider,
+            com.mucommander.viewer.text.LargeTextFileViewerServiceProvider;
     provides com.mucommander.viewer.FileEditorService with com.mucommander.viewer.text.TextFileEditorServiceProvider;
 }
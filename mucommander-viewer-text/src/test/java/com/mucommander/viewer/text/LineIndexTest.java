@@ -0,0 +1,197 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.viewer.text;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.FileOperation;
+import com.mucommander.commons.file.ProxyFile;
+import com.mucommander.commons.file.UnsupportedFileOperation;
+import com.mucommander.commons.file.UnsupportedFileOperationException;
+import com.mucommander.commons.io.RandomAccessInputStream;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Runs tests on {@link LineIndex}.
+ */
+public class LineIndexTest {
+
+    /** Number of lines of the test file, the last one not being terminated by a separator */
+    private static final int NB_LINES = LineIndex.CHECKPOINT_INTERVAL * 3 + 5;
+
+    private AbstractFile file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = FileFactory.getTemporaryFile(getClass().getName(), true);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < NB_LINES; i++) {
+            if (i > 0) {
+                // DOS and Unix line separators
+                content.append(i % 2 == 0 ? "\n" : "\r\n");
+            }
+            content.append("line ").append(i);
+        }
+        write(file, content.toString(), false);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        file.delete();
+    }
+
+    private static void write(AbstractFile file, String content, boolean append) throws IOException {
+        try (OutputStream out = append ? file.getAppendOutputStream() : file.getOutputStream()) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static LineIndex index(AbstractFile file) throws InterruptedException {
+        LineIndex index = new LineIndex(file, () -> {});
+        update(index);
+        return index;
+    }
+
+    private static void update(LineIndex index) throws InterruptedException {
+        index.update();
+        while (index.isIndexing()) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testReadLines() throws Exception {
+        LineIndex index = index(file);
+        assertEquals(index.getLineCount(), NB_LINES);
+        assertEquals(index.getIndexedLength(), file.getSize());
+
+        try (LineIndex.Reader reader = index.newReader()) {
+            // Lines around a checkpoint, read backward then forward with the same stream
+            int checkpoint = LineIndex.CHECKPOINT_INTERVAL * 2;
+            assertReadLines(reader, checkpoint - 2, 4);
+            assertReadLines(reader, 0, 3);
+            assertReadLines(reader, checkpoint + 1, 2);
+
+            // The last line is not terminated by a separator
+            List<String> lines = reader.readLines(NB_LINES - 2, 10, StandardCharsets.UTF_8);
+            assertEquals(lines, List.of("line " + (NB_LINES - 2), "line " + (NB_LINES - 1)));
+            assertEquals(reader.readLines(NB_LINES, 10, StandardCharsets.UTF_8), List.of());
+        }
+    }
+
+    private static void assertReadLines(LineIndex.Reader reader, int firstLine, int count) throws IOException {
+        List<String> lines = reader.readLines(firstLine, count, StandardCharsets.UTF_8);
+        assertEquals(lines.size(), count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(lines.get(i), "line " + (firstLine + i));
+        }
+    }
+
+    @Test
+    public void testFind() throws Exception {
+        LineIndex index = index(file);
+
+        try (LineIndex.Reader reader = index.newReader()) {
+            assertEquals(reader.findForward(0, StandardCharsets.UTF_8, "line 300"::equals), 300);
+            assertEquals(reader.findForward(301, StandardCharsets.UTF_8, "line 300"::equals), -1);
+            assertEquals(reader.findBackward(NB_LINES, StandardCharsets.UTF_8, "line 5"::equals), 5);
+            assertEquals(reader.findBackward(5, StandardCharsets.UTF_8, "line 5"::equals), -1);
+            // Lines of every checkpoint interval are searched backward
+            assertEquals(reader.findBackward(NB_LINES, StandardCharsets.UTF_8, line -> line.endsWith("0")), (NB_LINES - 1) / 10 * 10);
+        }
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        LineIndex index = index(file);
+
+        try (LineIndex.Reader reader = index.newReader()) {
+            assertReadLines(reader, NB_LINES - 1, 1);
+
+            write(file, "\nappended", true);
+            update(index);
+            assertEquals(index.getLineCount(), NB_LINES + 1);
+            assertEquals(reader.readLines(NB_LINES - 1, 2, StandardCharsets.UTF_8), List.of("line " + (NB_LINES - 1), "appended"));
+
+            // The index is rebuilt when the file shrinks, and the lines read before are discarded
+            write(file, "first\nsecond\n", false);
+            update(index);
+            assertEquals(index.getLineCount(), 2);
+            assertEquals(reader.readLines(0, 10, StandardCharsets.UTF_8), List.of("first", "second"));
+        }
+    }
+
+    /**
+     * Makes sure that reads which fall within the last chunk read from a file which doesn't support random access
+     * don't reopen it.
+     */
+    @Test
+    public void testSequentialReader() throws Exception {
+        SequentialFile sequentialFile = new SequentialFile(file);
+        LineIndex index = index(sequentialFile);
+        int opened = sequentialFile.opened;
+
+        try (LineIndex.Reader reader = index.newReader()) {
+            assertReadLines(reader, LineIndex.CHECKPOINT_INTERVAL + 3, 2);
+            assertReadLines(reader, LineIndex.CHECKPOINT_INTERVAL * 3, 5);
+            assertReadLines(reader, LineIndex.CHECKPOINT_INTERVAL * 2, 2);
+            assertEquals(sequentialFile.opened, opened + 1);
+
+            // The file has to be reopened to read lines before the chunk
+            assertReadLines(reader, 1, 2);
+            assertEquals(sequentialFile.opened, opened + 2);
+        }
+    }
+
+    /**
+     * A file which doesn't support random access, counting the streams opened on it.
+     */
+    private static class SequentialFile extends ProxyFile {
+
+        private int opened;
+
+        SequentialFile(AbstractFile file) {
+            super(file);
+        }
+
+        @Override
+        public InputStream getInputStream(long offset) throws IOException {
+            opened++;
+            // Hides the random access stream of the local file, if that's what it returns
+            return new FilterInputStream(file.getInputStream(offset)) {};
+        }
+
+        @Override
+        @UnsupportedFileOperation
+        public RandomAccessInputStream getRandomAccessInputStream() throws UnsupportedFileOperationException {
+            throw new UnsupportedFileOperationException(FileOperation.RANDOM_READ_FILE);
+        }
+    }
+}
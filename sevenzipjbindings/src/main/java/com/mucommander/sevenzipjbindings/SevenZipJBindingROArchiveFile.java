@@ -20,9 +20,15 @@ package com.mucommander.sevenzipjbindings;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PipedOutputStream;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.SynchronousQueue;
 import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
@@ -31,15 +37,21 @@ import org.slf4j.LoggerFactory;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.archive.AbstractROArchiveFile;
 import com.mucommander.commons.file.archive.ArchiveEntry;
+import com.mucommander.commons.file.archive.ArchiveEntryHandler;
 import com.mucommander.commons.file.archive.ArchiveEntryIterator;
 import com.mucommander.commons.file.archive.WrapperArchiveEntryIterator;
-import com.mucommander.commons.util.CircularByteBuffer;
+import com.mucommander.commons.io.FailSafePipedInputStream;
+import com.mucommander.commons.io.ProducerInputStream;
 import com.mucommander.commons.util.StringUtils;
 import com.mucommander.sevenzipjbindings.multivolume.InArchiveWrapper;
 import com.mucommander.sevenzipjbindings.multivolume.SevenZipMultiVolumeCallbackHandler;
 import com.mucommander.sevenzipjbindings.multivolume.SevenZipRarMultiVolumeCallbackHandler;
 
 import net.sf.sevenzipjbinding.ArchiveFormat;
+import net.sf.sevenzipjbinding.ExtractAskMode;
+import net.sf.sevenzipjbinding.ExtractOperationResult;
+import net.sf.sevenzipjbinding.IArchiveExtractCallback;
+import net.sf.sevenzipjbinding.ICryptoGetTextPassword;
 import net.sf.sevenzipjbinding.IInArchive;
 import net.sf.sevenzipjbinding.IInStream;
 import net.sf.sevenzipjbinding.ISequentialOutStream;
@@ -58,6 +70,12 @@ public class SevenZipJBindingROArchiveFile extends AbstractROArchiveFile {
 
     private static final String MULTI_PART_7Z_EXT = ".7z.001";
 
+    /** Size of the pipes that entries are extracted to */
+    private static final int PIPE_SIZE = 256 * 1024;
+
+    /** Marks the end of the extraction performed by {@link #extractEntries(ArchiveEntryHandler)} */
+    private static final ExtractedEntry END_OF_EXTRACTION = new ExtractedEntry(null, null);
+
     protected IInArchive inArchive;
     private ArchiveFormat sevenZipJBindingFormat;
 
@@ -89,31 +107,38 @@ public class SevenZipJBindingROArchiveFile extends AbstractROArchiveFile {
 
     private IInArchive openInArchive() throws IOException {
         if (inArchive == null) {
-            boolean multiPartRar = MULTI_PART_RAR_PATTERN.matcher(file.getName()).find();
-            boolean multiPartSevenZip = file.getName().toLowerCase().endsWith(MULTI_PART_7Z_EXT);
-
-            if (multiPartRar) {
-                SevenZipRarMultiVolumeCallbackHandler handler = new SevenZipRarMultiVolumeCallbackHandler(formatSignature, password);
-                IInStream firstStream = handler.getStream(file.getAbsolutePath());
-                IInArchive tmpInArchive = SevenZip.openInArchive(sevenZipJBindingFormat, firstStream, handler);
-                inArchive = new InArchiveWrapper(tmpInArchive, handler);
-            } else if (multiPartSevenZip) {
-                SevenZipMultiVolumeCallbackHandler handler = new SevenZipMultiVolumeCallbackHandler(formatSignature, file, password);
-                IInArchive tmpInArchive = SevenZip.openInArchive(sevenZipJBindingFormat, new VolumedArchiveInStream(handler));
-                if (isEnc(tmpInArchive) && password == null) {
-                    // Throwing this exception to trigger password dialog
-                    throw new IOException(String.format("Password protected file but password is null [file = %s]", file.getName()));
-                }
-                inArchive = new InArchiveWrapper(tmpInArchive, handler);
-            } else {
-                SignatureCheckedRandomAccessFile in = new SignatureCheckedRandomAccessFile(file, formatSignature);
-                IInArchive tmpInArchive = SevenZip.openInArchive(sevenZipJBindingFormat, in, password);
-                inArchive = new InArchiveWrapper(tmpInArchive, in);
-            }
+            inArchive = createInArchive();
         }
         return inArchive;
     }
 
+    /**
+     * Opens the archive file, the returned archive must be closed by the caller.
+     */
+    private IInArchive createInArchive() throws IOException {
+        boolean multiPartRar = MULTI_PART_RAR_PATTERN.matcher(file.getName()).find();
+        boolean multiPartSevenZip = file.getName().toLowerCase().endsWith(MULTI_PART_7Z_EXT);
+
+        if (multiPartRar) {
+            SevenZipRarMultiVolumeCallbackHandler handler = new SevenZipRarMultiVolumeCallbackHandler(formatSignature, password);
+            IInStream firstStream = handler.getStream(file.getAbsolutePath());
+            IInArchive tmpInArchive = SevenZip.openInArchive(sevenZipJBindingFormat, firstStream, handler);
+            return new InArchiveWrapper(tmpInArchive, handler);
+        } else if (multiPartSevenZip) {
+            SevenZipMultiVolumeCallbackHandler handler = new SevenZipMultiVolumeCallbackHandler(formatSignature, file, password);
+            IInArchive tmpInArchive = SevenZip.openInArchive(sevenZipJBindingFormat, new VolumedArchiveInStream(handler));
+            if (isEnc(tmpInArchive) && password == null) {
+                // Throwing this exception to trigger password dialog
+                throw new IOException(String.format("Password protected file but password is null [file = %s]", file.getName()));
+            }
+            return new InArchiveWrapper(tmpInArchive, handler);
+        } else {
+            SignatureCheckedRandomAccessFile in = new SignatureCheckedRandomAccessFile(file, formatSignature);
+            IInArchive tmpInArchive = SevenZip.openInArchive(sevenZipJBindingFormat, in, password);
+            return new InArchiveWrapper(tmpInArchive, in);
+        }
+    }
+
     private boolean isEnc(IInArchive archive) {
         try {
             if (Boolean.TRUE.equals(archive.getArchiveProperty(PropID.ENCRYPTED))) {
@@ -154,45 +179,70 @@ public class SevenZipJBindingROArchiveFile extends AbstractROArchiveFile {
         }
     }
 
+    /**
+     * Extracts the entry on a shared thread, to a pipe that blocks the extraction when it is full. The archive is
+     * opened separately so that entries can be read concurrently. Closing the returned stream aborts the extraction.
+     */
     @Override
-    public InputStream getEntryInputStream(ArchiveEntry entry, ArchiveEntryIterator entryIterator) {
-        final CircularByteBuffer cbb = new CircularByteBuffer(CircularByteBuffer.INFINITE_SIZE);
-        new Thread(() -> {
-            synchronized (SevenZipJBindingROArchiveFile.this) {
-                try {
-                    try (IInArchive sevenZipFile = openInArchive()) {
-                        ISequentialOutStream outStream = data -> {
-                            try {
-                                cbb.getOutputStream().write(data);
-                            } catch (IOException e) {
-                                throw new SevenZipException(e);
-                            }
-                            return data.length; // Return amount of proceed data
-                        };
-                        sevenZipFile.extractSlow((Integer) entry.getEntryObject(), outStream, password);
-                    }
-                } catch (IOException e) {
-                    LOGGER.warn("failed to extract entry from archive: " + e.getMessage());
-                    LOGGER.debug("failed to extract entry from archive", e);
-
-                    try {
-                        // Close input stream to make sure reader thread will be notified
-                        cbb.getInputStream().close();
-                    } catch (IOException e2) {
-                        LOGGER.debug("failed to close input stream", e2);
-                    }
-                } finally {
+    public InputStream getEntryInputStream(ArchiveEntry entry, ArchiveEntryIterator entryIterator) throws IOException {
+        return new ProducerInputStream(out -> {
+            try (IInArchive sevenZipFile = createInArchive()) {
+                ISequentialOutStream outStream = data -> {
                     try {
-                        cbb.getOutputStream().close();
+                        out.write(data);
                     } catch (IOException e) {
-                        LOGGER.info("Error in closing outputstream: " + e.getMessage());
+                        // Aborts the extraction
+                        throw new SevenZipException(e);
                     }
-                    inArchive = null;
-                }
+                    return data.length; // Return amount of proceed data
+                };
+                ExtractOperationResult result = sevenZipFile.extractSlow((Integer) entry.getEntryObject(), outStream, password);
+                if (result != ExtractOperationResult.OK)
+                    throw new IOException("failed to extract entry from archive: " + result);
+            } catch (IOException e) {
+                // Also happens when the stream is closed before the end of the entry
+                LOGGER.debug("failed to extract entry from archive", e);
+                throw e;
             }
-        }).start();
+        }, PIPE_SIZE);
+    }
 
-        return cbb.getInputStream();
+    /**
+     * Extracts the accepted entries with a single call to {@link IInArchive#extract(int[], boolean, IArchiveExtractCallback)},
+     * so that solid blocks are decompressed only once instead of once per entry. The extraction runs on a separate
+     * thread that pipes the contents of the entries, one at a time, to the handler.
+     */
+    @Override
+    public void extractEntries(ArchiveEntryHandler handler) throws IOException {
+        // The archive is opened separately so that the handler can safely access this archive file
+        try (IInArchive sevenZipFile = createInArchive()) {
+            int nbEntries = sevenZipFile.getNumberOfItems();
+            List<ArchiveEntry> directories = new ArrayList<>();
+            Map<Integer, ArchiveEntry> files = new LinkedHashMap<>();
+            for (int i = 0; i < nbEntries; i++) {
+                ArchiveEntry entry = createArchiveEntry(i, sevenZipFile);
+                if (!handler.accept(entry))
+                    continue;
+
+                if (entry.isDirectory())
+                    directories.add(entry);
+                else
+                    files.put(i, entry);
+            }
+
+            // Directories have no contents to extract
+            for (ArchiveEntry directory : directories) {
+                if (!handler.extract(directory, null))
+                    return;
+            }
+
+            if (!files.isEmpty())
+                new BulkExtraction(sevenZipFile, files).run(handler);
+        } catch (SevenZipException e) {
+            LOGGER.warn("failed to extract entries from archive: " + e.getMessage());
+            LOGGER.debug("failed to extract entries from archive", e);
+            throw new IOException(e);
+        }
     }
 
     /**
@@ -218,4 +268,179 @@ public class SevenZipJBindingROArchiveFile extends AbstractROArchiveFile {
         return result;
     }
 
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * Extracts several entries in one pass on a separate thread, and hands them over to the calling thread through
+     * pipes.
+     */
+    private class BulkExtraction implements IArchiveExtractCallback, ICryptoGetTextPassword {
+
+        private final IInArchive sevenZipFile;
+
+        /** The entries to extract, by index */
+        private final Map<Integer, ArchiveEntry> entries;
+
+        /** Entries whose extraction has started, waiting to be handed over to the calling thread */
+        private final BlockingQueue<ExtractedEntry> extractedEntries = new SynchronousQueue<>();
+
+        /** The pipe of the entry being extracted */
+        private PipedOutputStream out;
+        private FailSafePipedInputStream in;
+
+        /** Set when the calling thread does not want any more entries */
+        private volatile boolean stopped;
+
+        /** Error that interrupted the extraction */
+        private volatile SevenZipException failure;
+
+        private BulkExtraction(IInArchive sevenZipFile, Map<Integer, ArchiveEntry> entries) {
+            this.sevenZipFile = sevenZipFile;
+            this.entries = entries;
+        }
+
+        /**
+         * Starts the extraction thread and passes the extracted entries to the given handler.
+         */
+        private void run(ArchiveEntryHandler handler) throws IOException {
+            int[] indices = entries.keySet().stream().mapToInt(Integer::intValue).toArray();
+
+            Thread thread = new Thread(() -> {
+                try {
+                    sevenZipFile.extract(indices, false, this);
+                } catch (SevenZipException e) {
+                    failure = e;
+                    // Makes sure that the entry being extracted is not mistaken for a complete one
+                    if (in != null)
+                        in.setExternalFailure(new IOException(e));
+                } finally {
+                    closeOutputStream();
+                    try {
+                        extractedEntries.put(END_OF_EXTRACTION);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "7-Zip extraction");
+            thread.start();
+
+            boolean ended = false;
+            try {
+                ExtractedEntry extractedEntry;
+                while ((extractedEntry = extractedEntries.take()) != END_OF_EXTRACTION) {
+                    boolean proceed;
+                    try (InputStream entryIn = extractedEntry.in) {
+                        proceed = handler.extract(extractedEntry.entry, entryIn);
+                    }
+                    if (!proceed)
+                        break;
+                }
+                ended = extractedEntry == END_OF_EXTRACTION;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } finally {
+                if (!ended) {
+                    // Discards the entries that are still to be extracted and waits for the end of the extraction
+                    stopped = true;
+                    try {
+                        ExtractedEntry extractedEntry;
+                        while ((extractedEntry = extractedEntries.take()) != END_OF_EXTRACTION)
+                            extractedEntry.in.close();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+
+            if (ended && failure != null)
+                throw new IOException(failure);
+        }
+
+        private void closeOutputStream() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    LOGGER.debug("failed to close pipe", e);
+                }
+                out = null;
+            }
+        }
+
+        @Override
+        public ISequentialOutStream getStream(int index, ExtractAskMode extractAskMode) throws SevenZipException {
+            if (stopped)
+                throw new SevenZipException("Extraction stopped");
+
+            ArchiveEntry entry = entries.get(index);
+            if (extractAskMode != ExtractAskMode.EXTRACT || entry == null)
+                return null;
+
+            try {
+                out = new PipedOutputStream();
+                in = new FailSafePipedInputStream(out, PIPE_SIZE);
+                extractedEntries.put(new ExtractedEntry(entry, in));
+            } catch (IOException e) {
+                throw new SevenZipException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SevenZipException(e);
+            }
+
+            PipedOutputStream entryOut = out;
+            return data -> {
+                if (stopped)
+                    throw new SevenZipException("Extraction stopped");
+                try {
+                    entryOut.write(data);
+                } catch (IOException e) {
+                    // The entry was not read entirely: its remaining data is decompressed but discarded, to get to
+                    // the next entries of the solid block
+                }
+                return data.length;
+            };
+        }
+
+        @Override
+        public void prepareOperation(ExtractAskMode extractAskMode) {
+        }
+
+        @Override
+        public void setOperationResult(ExtractOperationResult extractOperationResult) {
+            if (extractOperationResult != ExtractOperationResult.OK && in != null)
+                in.setExternalFailure(new IOException("failed to extract entry from archive: " + extractOperationResult));
+            closeOutputStream();
+            in = null;
+        }
+
+        @Override
+        public void setTotal(long total) {
+        }
+
+        @Override
+        public void setCompleted(long complete) {
+        }
+
+        @Override
+        public String cryptoGetTextPassword() {
+            return password != null ? password : "";
+        }
+    }
+
+    /**
+     * An entry and the pipe its contents are extracted to.
+     */
+    private static class ExtractedEntry {
+        private final ArchiveEntry entry;
+        private final InputStream in;
+
+        private ExtractedEntry(ArchiveEntry entry, InputStream in) {
+            this.entry = entry;
+            this.in = in;
+        }
+    }
 }
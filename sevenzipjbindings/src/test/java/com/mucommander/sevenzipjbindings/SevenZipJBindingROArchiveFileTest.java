@@ -0,0 +1,172 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.sevenzipjbindings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.archive.ArchiveEntry;
+import com.mucommander.commons.file.archive.ArchiveEntryHandler;
+
+import net.sf.sevenzipjbinding.ArchiveFormat;
+import net.sf.sevenzipjbinding.IOutCreateArchive7z;
+import net.sf.sevenzipjbinding.IOutCreateCallback;
+import net.sf.sevenzipjbinding.IOutItem7z;
+import net.sf.sevenzipjbinding.ISequentialInStream;
+import net.sf.sevenzipjbinding.SevenZip;
+import net.sf.sevenzipjbinding.impl.OutItemFactory;
+import net.sf.sevenzipjbinding.impl.RandomAccessFileOutStream;
+import net.sf.sevenzipjbinding.util.ByteArrayStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Runs tests on the extraction of the entries of a solid 7z archive in a single pass, with a handler that closes the
+ * streams it is given as <code>UnpackJob</code> does.
+ */
+public class SevenZipJBindingROArchiveFileTest {
+
+    private static final byte[] SIGNATURE = { 0x37, 0x7A, (byte) 0xBC, (byte) 0xAF, 0x27, 0x1C };
+
+    /** Size of the files of the test archive, larger than the pipe the entries are extracted to */
+    private static final int FILE_SIZE = 300 * 1024;
+
+    /** Paths of the entries of the test archive, the ones that end with '/' are directories */
+    private static final String[] PATHS = { "dir/", "dir/file2", "file1", "file3", "file4" };
+
+    private AbstractFile file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = FileFactory.getTemporaryFile(getClass().getSimpleName() + ".7z", true);
+        try (RandomAccessFile raf = new RandomAccessFile(file.getAbsolutePath(), "rw")) {
+            IOutCreateArchive7z archive = SevenZip.openOutArchive7z();
+            archive.setSolid(true);
+            archive.createArchive(new RandomAccessFileOutStream(raf), PATHS.length, new IOutCreateCallback<IOutItem7z>() {
+                @Override
+                public IOutItem7z getItemInformation(int index, OutItemFactory<IOutItem7z> factory) {
+                    IOutItem7z item = factory.createOutItem();
+                    boolean directory = PATHS[index].endsWith("/");
+                    item.setPropertyPath(directory ? PATHS[index].substring(0, PATHS[index].length() - 1) : PATHS[index]);
+                    item.setPropertyIsDir(directory);
+                    item.setPropertyLastModificationTime(new Date());
+                    item.setDataSize(directory ? 0L : FILE_SIZE);
+                    return item;
+                }
+
+                @Override
+                public ISequentialInStream getStream(int index) {
+                    return PATHS[index].endsWith("/") ? null : new ByteArrayStream(getContents(PATHS[index]), false);
+                }
+
+                @Override
+                public void setOperationResult(boolean operationResultOk) {
+                }
+
+                @Override
+                public void setTotal(long total) {
+                }
+
+                @Override
+                public void setCompleted(long complete) {
+                }
+            });
+            archive.close();
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        file.delete();
+    }
+
+    /**
+     * Makes sure that the directories are extracted first, then the accepted files in order, including the ones that
+     * follow a file that was not read entirely or not accepted, and that the extraction stops when the handler asks it
+     * to.
+     */
+    @Test
+    public void testExtractEntries() throws IOException {
+        SevenZipJBindingROArchiveFile archive = new SevenZipJBindingROArchiveFile(file, ArchiveFormat.SEVEN_ZIP, SIGNATURE);
+        List<String> extracted = new ArrayList<>();
+        archive.extractEntries(new ArchiveEntryHandler() {
+            @Override
+            public boolean accept(ArchiveEntry entry) {
+                return !entry.getPath().equals("file3");
+            }
+
+            @Override
+            public boolean extract(ArchiveEntry entry, InputStream in) throws IOException {
+                extracted.add(entry.getPath());
+                if (entry.isDirectory()) {
+                    assertNull(in);
+                    return true;
+                }
+
+                try (InputStream entryIn = in) {
+                    // Only the first bytes of the first file are read
+                    if (entry.getPath().equals("dir/file2"))
+                        assertEquals(entryIn.readNBytes(10), Arrays.copyOf(getContents("dir/file2"), 10));
+                    else
+                        assertEquals(entryIn.readAllBytes(), getContents(entry.getPath()));
+                }
+                return true;
+            }
+        });
+        assertEquals(extracted, List.of("dir", "dir/file2", "file1", "file4"));
+
+        extracted.clear();
+        archive.extractEntries(new ArchiveEntryHandler() {
+            @Override
+            public boolean accept(ArchiveEntry entry) {
+                return !entry.isDirectory();
+            }
+
+            @Override
+            public boolean extract(ArchiveEntry entry, InputStream in) {
+                extracted.add(entry.getPath());
+                return !entry.getPath().equals("file1");
+            }
+        });
+        assertEquals(extracted, List.of("dir/file2", "file1"));
+    }
+
+    /**
+     * Returns the contents of the file of the test archive that has the given path.
+     */
+    private static byte[] getContents(String path) {
+        byte[] contents = new byte[FILE_SIZE];
+        byte[] pathBytes = path.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < FILE_SIZE; i++)
+            contents[i] = (byte) (i % 251 == 0 ? pathBytes[(i / 251) % pathBytes.length] : i);
+        return contents;
+    }
+}